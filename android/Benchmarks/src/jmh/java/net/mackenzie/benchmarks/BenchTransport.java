@@ -0,0 +1,62 @@
+package net.mackenzie.benchmarks;
+
+import androidx.annotation.NonNull;
+
+import net.mackenzie.chromeinteractor.ChromecastInteractor;
+import net.mackenzie.chromeinteractor.Transport;
+
+/**
+ * Transport that is ready as soon as it is connected and keeps the messages sent, so benchmarks can measure
+ * the sender's side of the protocol on its own
+ */
+public class BenchTransport implements Transport {
+    // MUTABLES
+    private Listener listener;
+    private int inFlight = 0;
+    private long sent = 0;
+    private String lastSent;
+
+    @Override
+    public void connect(@NonNull final Listener listener) {
+        this.listener = listener;
+        listener.onTransportState(ChromecastInteractor.CHROMECAST_STATE.CONNECTED);
+        listener.onTransportState(ChromecastInteractor.CHROMECAST_STATE.RECEIVER_READY);
+    }
+
+    @Override
+    public void send(@NonNull final String message) {
+        inFlight++;
+        sent++;
+        lastSent = message;
+    }
+
+    @Override
+    public void disconnect() {
+        listener = null;
+    }
+
+    /**
+     * Report all messages sent so far as delivered, which lets queued messages be sent
+     */
+    public void completeSends() {
+        while (inFlight > 0 && listener != null) {
+            inFlight--;
+            listener.onSendResult(true);
+        }
+    }
+
+    /**
+     * Deliver a message as if it came from the receiver
+     */
+    public void receive(@NonNull final String message) {
+        listener.onMessage(message);
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    public String getLastSent() {
+        return lastSent;
+    }
+}
@@ -0,0 +1,90 @@
+package net.mackenzie.benchmarks;
+
+import android.os.SystemClock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures handling a message from the receiver, from the transport through ChromecastInteractor and the
+ * handoff to the UI thread to PongController.receiverMessage(), for each kind of message the receiver sends.
+ * <p/>
+ * Messages that carry sequence numbers are generated in advance with increasing ones, so each is handled as new.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReceiverMessageBenchmark {
+    // CONSTANTS
+    private static final int MESSAGES = 1024;
+
+    @Param({"GAME_STATE", "PADDLE", "UNKNOWN", "PONG", "INPUT_ACK", "COURT_STATE"})
+    public String messageType;
+
+    // MUTABLES
+    private SenderFixture sender;
+    private String[] messages;
+    private int next;
+
+    @Setup
+    public void setup() {
+        sender = new SenderFixture();
+        messages = new String[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            messages[i] = message(i);
+        }
+        next = 0;
+        sender.pongController.showCourt(messageType.equals("COURT_STATE"));
+        sender.settle();
+    }
+
+    /**
+     * @param i index of the message
+     * @return a message of the type being measured
+     */
+    private String message(final int i) {
+        switch (messageType) {
+            case "GAME_STATE":
+                return (i % 2 == 0) ? "GAME STARTED" : "GAME PAUSED";
+            case "PADDLE":
+                return "PADDLE YES LEFT";
+            case "UNKNOWN":
+                return "SOMETHING NEW";
+            case "PONG":
+                return "PONG " + SystemClock.uptimeMillis();
+            case "INPUT_ACK":
+                return "INPUT " + (i + 1) + " " + (i % 1000) + " 7";
+            case "COURT_STATE":
+                // the first is complete, the rest are deltas from the one before with the ball and a paddle moving
+                if (i == 0) {
+                    return "STATE 1 0 1000 500,500,300,-200,450,450,3,5,69,7,46,7,1777";
+                }
+                return "STATE " + (i + 1) + " " + i + " " + (1000 + (i * 100)) + " 30,-20,,,1,,,,,,,,";
+            default:
+                throw new IllegalArgumentException(messageType);
+        }
+    }
+
+    @Benchmark
+    public long receiveMessage() {
+        if (next == MESSAGES) {
+            next = 0;
+            // start the court state again, as its sequence numbers are going back to the start
+            sender.pongController.showCourt(messageType.equals("COURT_STATE"));
+            sender.settle();
+            sender.transport.completeSends();
+        }
+        sender.transport.receive(messages[next++]);
+        sender.settle();
+        sender.transport.completeSends();
+        return sender.transport.getSent();
+    }
+}
@@ -0,0 +1,79 @@
+package net.mackenzie.benchmarks;
+
+import android.os.Looper;
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import net.mackenzie.chromeinteractor.RepeatListener;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures dispatch of touches and repeated clicks through a RepeatListener on the paddle up button, through to
+ * PongController.paddleUp() and the InputChannel to the InputScheduler on the messaging thread.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RepeatListenerBenchmark {
+    // MUTABLES
+    private SenderFixture sender;
+    private RepeatListener repeatListener;
+    private View button;
+    private MotionEvent down;
+    private MotionEvent up;
+    private int clicks;
+
+    @Setup
+    public void setup() {
+        sender = new SenderFixture();
+        button = new View(sender.activity);
+        repeatListener = new RepeatListener(40, 20, new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                clicks++;
+                sender.pongController.paddleUp();
+            }
+        });
+        down = MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, 0, 0, 0);
+        up = MotionEvent.obtain(0, 0, MotionEvent.ACTION_UP, 0, 0, 0);
+
+        // drop anything posted while setting up, e.g. latency probes, so only repeated clicks are run
+        Looper.getMainLooper().clearPending();
+        sender.transport.completeSends();
+    }
+
+    /**
+     * A press and release of the button, which clicks once
+     */
+    @Benchmark
+    public int pressAndRelease() {
+        repeatListener.onTouch(button, down);
+        repeatListener.onTouch(button, up);
+        sender.settle();
+        sender.transport.completeSends();
+        return clicks;
+    }
+
+    /**
+     * A repeated click while the button is held down
+     */
+    @Benchmark
+    public int repeatClick() {
+        if (!button.isPressed()) {
+            repeatListener.onTouch(button, down);
+        }
+        Looper.getMainLooper().runPending();
+        sender.settle();
+        sender.transport.completeSends();
+        return clicks;
+    }
+}
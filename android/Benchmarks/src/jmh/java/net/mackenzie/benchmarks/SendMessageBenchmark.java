@@ -0,0 +1,68 @@
+package net.mackenzie.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import net.mackenzie.chromeinteractor.OutboundQueue;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building and queueing messages to the receiver through ChromecastInteractor.sendMessage(), up to
+ * the messaging thread and the Transport, with each send completing before the next message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SendMessageBenchmark {
+    // MUTABLES
+    private SenderFixture sender;
+    private boolean top;
+
+    @Setup
+    public void setup() {
+        sender = new SenderFixture();
+        top = false;
+    }
+
+    /**
+     * A fixed control message, e.g. to start play
+     */
+    @Benchmark
+    public String controlMessage() {
+        sender.chromecastInteractor.sendMessage("StartPlay");
+        sender.settle();
+        sender.transport.completeSends();
+        return sender.transport.getLastSent();
+    }
+
+    /**
+     * A control message that has to be built, like the acknowledgements of court state
+     */
+    @Benchmark
+    public String builtMessage() {
+        sender.chromecastInteractor.sendMessage("StateAck " + sender.transport.getSent(),
+                OutboundQueue.DROP_POLICY.DROP_OLDEST);
+        sender.settle();
+        sender.transport.completeSends();
+        return sender.transport.getLastSent();
+    }
+
+    /**
+     * A paddle position from the touch control, encoded as an input frame, alternating between two positions
+     * so that each one is sent
+     */
+    @Benchmark
+    public String paddlePosition() {
+        top = !top;
+        sender.pongController.paddlePosition(top ? 0.25f : 0.75f);
+        sender.settle();
+        sender.transport.completeSends();
+        return sender.transport.getLastSent();
+    }
+}
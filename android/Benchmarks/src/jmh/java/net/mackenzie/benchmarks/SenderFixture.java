@@ -0,0 +1,43 @@
+package net.mackenzie.benchmarks;
+
+import android.os.Looper;
+import android.os.SystemClock;
+
+import net.mackenzie.chromeinteractor.ChromecastInteractor;
+import net.mackenzie.fakecast.FakeActivity;
+import net.mackenzie.pongcast.PongController;
+import net.mackenzie.pongcast.PongControllerView;
+
+/**
+ * The sender app's controller, view and interactor wired together as MainActivity does, connected to a
+ * BenchTransport with the receiver ready and a game started.
+ * <p/>
+ * The interactor's messaging thread is the main Looper here, so settle() must be called to run what is handed
+ * between it and the UI thread.
+ */
+class SenderFixture {
+    // IMMUTABLES
+    final FakeActivity activity = new FakeActivity();
+    final PongController pongController = new PongController(activity);
+    final PongControllerView pongControllerView = new PongControllerView(activity, pongController);
+    final ChromecastInteractor chromecastInteractor;
+    final BenchTransport transport = new BenchTransport();
+
+    SenderFixture() {
+        chromecastInteractor = new ChromecastInteractor(activity, "BENCH", "urn:x-cast:net.mackenzie.pongcast",
+                pongController);
+        chromecastInteractor.connect(transport);
+        settle();
+        transport.receive("PADDLE YES LEFT");
+        transport.receive("GAME STARTED");
+        settle();
+        transport.completeSends();
+    }
+
+    /**
+     * Run everything due now on the main Looper, including what that posts, but nothing later like pings
+     */
+    void settle() {
+        Looper.getMainLooper().runUntil(SystemClock.uptimeMillis());
+    }
+}
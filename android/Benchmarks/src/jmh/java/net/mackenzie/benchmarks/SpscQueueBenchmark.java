@@ -0,0 +1,90 @@
+package net.mackenzie.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import net.mackenzie.chromeinteractor.SpscQueue;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures handing inputs from one thread to another, as the UI thread does to the messaging thread, through the
+ * SpscQueue used for it and, for comparison, through an ArrayBlockingQueue of the same capacity.
+ * <p/>
+ * A producer and a consumer run at the same time in each group. An offer to a full queue, or a poll of an empty
+ * one, fails rather than waits, so both threads measure how many attempts they can make.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SpscQueueBenchmark {
+    // CONSTANTS
+    private static final int CAPACITY = 64;
+
+    // IMMUTABLES
+    private final SpscQueue<Input> spscQueue = new SpscQueue<>(CAPACITY, new SpscQueue.Factory<Input>() {
+        @Override
+        public Input create() {
+            return new Input();
+        }
+    });
+    private final ArrayBlockingQueue<Integer> blockingQueue = new ArrayBlockingQueue<>(CAPACITY);
+
+    // MUTABLES
+    private int produced = 0;
+
+    /**
+     * A slot for an input, like InputChannel's
+     */
+    private static class Input {
+        int value;
+    }
+
+    @Benchmark
+    @Group("spsc")
+    @GroupThreads(1)
+    public boolean spscOffer() {
+        Input input = spscQueue.claim();
+        if (input == null) {
+            return false;
+        }
+        input.value = produced++;
+        spscQueue.publish();
+        return true;
+    }
+
+    @Benchmark
+    @Group("spsc")
+    @GroupThreads(1)
+    public int spscPoll() {
+        Input input = spscQueue.peek();
+        if (input == null) {
+            return -1;
+        }
+        int value = input.value;
+        spscQueue.release();
+        return value;
+    }
+
+    @Benchmark
+    @Group("blocking")
+    @GroupThreads(1)
+    public boolean blockingOffer() {
+        return blockingQueue.offer(produced++);
+    }
+
+    @Benchmark
+    @Group("blocking")
+    @GroupThreads(1)
+    public int blockingPoll() {
+        Integer value = blockingQueue.poll();
+        return value == null ? -1 : value;
+    }
+}
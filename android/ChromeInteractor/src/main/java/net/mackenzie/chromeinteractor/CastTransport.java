@@ -0,0 +1,416 @@
+package net.mackenzie.chromeinteractor;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.cast.Cast;
+import com.google.android.gms.cast.CastDevice;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.common.api.Status;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Transport that reaches the receiver app on a Chromecast via Google Play services and the Cast relay.
+ * <p/>
+ * It connects to the selected Chromecast, launches our receiver app on it and sets up a message channel
+ * on our namespace.
+ * <p/>
+ * The session id of the receiver app is kept, so that after the connection is suspended, or when a new transport
+ * is created for the same Chromecast with it, the running receiver is rejoined rather than launched again.
+ * Launches that fail are retried with exponential backoff and jitter, up to MAX_LAUNCH_ATTEMPTS, so a receiver
+ * that won't start doesn't have the device hammered with launch requests.
+ * <p/>
+ * Google Play services calls it back on the thread connect() was called on, which must have a Looper.
+ */
+public class CastTransport implements Transport {
+    // CONSTANTS
+    private static final String LOG_TAG = "CastTransport";
+    private static final long LAUNCH_RETRY_BASE_MILLIS = 250;
+    private static final long LAUNCH_RETRY_MAX_MILLIS = 8000;
+    private static final int MAX_LAUNCH_ATTEMPTS = 8;
+
+    // IMMUTABLES
+    private final Context context;
+    private final CastDevice castDevice;
+    private final String receiverAppId;
+    private final String nameSpace;
+
+    // INITIALIZED IMMUTABLES
+    private final CastMessageCallbacks castMessageCallbacks = new CastMessageCallbacks();
+    private final ConnectionCallbacks connectionCallbacks = new ConnectionCallbacks();
+    private final CastListener castListener = new CastListener();
+    private final ConnectionFailedListener connectionFailedListener = new ConnectionFailedListener();
+    private final SendResultCallback sendResultCallback = new SendResultCallback();
+    private final Random random = new Random();
+    private final Runnable launchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            launchReceiver();
+        }
+    };
+
+    // MUTABLES
+    private Handler handler;
+    private boolean waitingForReconnect;
+    private GoogleApiClient apiClient;
+    private Listener listener;
+    private String sessionId;
+    private int launchAttempts = 0;
+
+    /**
+     * @param context       to connect to Google Play services from
+     * @param castDevice    the chromecast selected by the user to connect to
+     * @param receiverAppId id of the receiver app to launch on the chromecast
+     * @param nameSpace     custom namespace the receiver app uses for messages
+     */
+    public CastTransport(@NonNull final Context context, @NonNull final CastDevice castDevice,
+                         @NonNull final String receiverAppId, @NonNull final String nameSpace) {
+        this(context, castDevice, receiverAppId, nameSpace, null);
+    }
+
+    /**
+     * @param context       to connect to Google Play services from
+     * @param castDevice    the chromecast selected by the user to connect to
+     * @param receiverAppId id of the receiver app to launch on the chromecast
+     * @param nameSpace     custom namespace the receiver app uses for messages
+     * @param sessionId     of the receiver app last used on this chromecast, to try and rejoin, or null
+     */
+    public CastTransport(@NonNull final Context context, @NonNull final CastDevice castDevice,
+                         @NonNull final String receiverAppId, @NonNull final String nameSpace,
+                         @Nullable final String sessionId) {
+        this.context = context;
+        this.castDevice = castDevice;
+        this.receiverAppId = receiverAppId;
+        this.nameSpace = nameSpace;
+        this.sessionId = sessionId;
+    }
+
+    /**
+     * @return the session id of the receiver app we launched or joined, or null if there isn't one
+     */
+    @Nullable
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * connect to Google Play services.
+     * in the ConnectionCallbacks we will launch the chromecast receiver and create the channel to talk to it
+     *
+     * @param listener to report events to
+     */
+    @Override
+    public void connect(@NonNull final Listener listener) {
+        Log.i(LOG_TAG, "connect() called");
+        this.listener = listener;
+        handler = new Handler();
+        try {
+            listener.onTransportState(ChromecastInteractor.CHROMECAST_STATE.CONNECTING);
+            Cast.CastOptions.Builder apiOptionsBuilder = Cast.CastOptions.builder(castDevice, castListener);
+
+            apiClient = new GoogleApiClient.Builder(context)
+                    .addApi(Cast.API, apiOptionsBuilder.build())
+                    .addConnectionCallbacks(connectionCallbacks)
+                    .addOnConnectionFailedListener(connectionFailedListener)
+                    .setHandler(handler)
+                    .build();
+
+            apiClient.connect();
+            // the onConnected() callback will be called when the connect() call succeeds
+            // or onConnectionFailed() if fails.
+        } catch (Exception e) {
+            Log.e(LOG_TAG, "Failed to connect", e);
+        }
+    }
+
+    /**
+     * remove callbacks from chromecast
+     * disconnect from Google Play services
+     */
+    @Override
+    public void disconnect() {
+        Log.i(LOG_TAG, "disconnect() called");
+        if (handler != null) {
+            handler.removeCallbacks(launchRunnable);
+        }
+        if (apiClient != null) {
+            removeCastCallbacks();
+
+            if (apiClient.isConnected()) {
+                apiClient.disconnect();
+            }
+            apiClient = null;
+        }
+
+        waitingForReconnect = false;
+        listener = null;
+    }
+
+    /**
+     * Disconnect and let the listener know this transport can no longer be used
+     */
+    private void close() {
+        Listener closedListener = listener;
+        disconnect();
+        if (closedListener != null) {
+            closedListener.onTransportClosed();
+        }
+    }
+
+    private void setState(final ChromecastInteractor.CHROMECAST_STATE state) {
+        if (listener != null) {
+            listener.onTransportState(state);
+        }
+    }
+
+    /**
+     * Google Play services callbacks
+     */
+    private class ConnectionCallbacks implements GoogleApiClient.ConnectionCallbacks {
+        @Override
+        public void onConnected(Bundle connectionHint) {
+            Log.d(LOG_TAG, "onConnected() called");
+
+            if (apiClient == null) {
+                // We got disconnected while this runnable was pending execution.
+                Log.d(LOG_TAG, "We got disconnected while trying to connect");
+                return;
+            }
+
+            if (waitingForReconnect) {
+                waitingForReconnect = false;
+                setState(ChromecastInteractor.CHROMECAST_STATE.CONNECTING); // reconnecting
+
+                // Check if the receiver app is still running
+                if (connectionHint != null && connectionHint.getBoolean(Cast.EXTRA_APP_NO_LONGER_RUNNING)) {
+                    // It was running when we lost the connection, now that we have reconnected - see if still running
+                    Log.d(LOG_TAG, "Receiver is no longer running - try restarting it");
+                    sessionId = null;
+                    launchReceiver();
+                } else {
+                    Log.d(LOG_TAG, "Receiver is running - setup the message channel to it");
+                    createCastMessageChannel();
+                }
+            } else {
+                setState(ChromecastInteractor.CHROMECAST_STATE.CONNECTED);
+
+                if (sessionId != null) {
+                    Log.d(LOG_TAG, "New connection - try rejoining receiver session " + sessionId);
+                    joinReceiver();
+                } else {
+                    Log.d(LOG_TAG, "New connection");
+                    launchReceiver();
+                }
+            }
+        }
+
+        @Override
+        public void onConnectionSuspended(int cause) {
+            Log.d(LOG_TAG, "onConnectionSuspended()");
+            handler.removeCallbacks(launchRunnable);
+            setState(ChromecastInteractor.CHROMECAST_STATE.CONNECTION_SUSPENDED);
+            waitingForReconnect = true;
+        }
+    }
+
+    /**
+     * Google Play services callbacks
+     */
+    private class ConnectionFailedListener implements GoogleApiClient.OnConnectionFailedListener {
+        @Override
+        public void onConnectionFailed(@NonNull ConnectionResult result) {
+            Log.e(LOG_TAG, "onConnectionFailed()");
+            // Make sure and remove all callbacks etc
+            close();
+        }
+    }
+
+    /**
+     * Try and start our receiver on the chromecast
+     */
+    private void launchReceiver() {
+        try {
+            Log.d(LOG_TAG, "Trying to launch receiver on chromecast");
+            // receiver is not running - try and launch the receiver
+            Cast.CastApi.launchApplication(apiClient, receiverAppId, false)
+                    .setResultCallback(new CastReceiverLaunchCallback(false));
+        } catch (Exception e) {
+            Log.e(LOG_TAG, "Failed to launch application", e);
+        }
+    }
+
+    /**
+     * Try and join the session of our receiver we used last, which is quicker than launching it if still running
+     */
+    private void joinReceiver() {
+        try {
+            Cast.CastApi.joinApplication(apiClient, receiverAppId, sessionId)
+                    .setResultCallback(new CastReceiverLaunchCallback(true));
+        } catch (Exception e) {
+            Log.e(LOG_TAG, "Failed to join application", e);
+            sessionId = null;
+            launchReceiver();
+        }
+    }
+
+    /**
+     * Launch the receiver again after a failed launch, waiting longer after each failure up to a limit, with
+     * jitter so that senders don't retry in step. Give up and close after MAX_LAUNCH_ATTEMPTS.
+     */
+    private void retryLaunch() {
+        launchAttempts++;
+        if (launchAttempts >= MAX_LAUNCH_ATTEMPTS) {
+            Log.e(LOG_TAG, "Receiver failed to launch " + launchAttempts + " times - giving up");
+            close();
+            return;
+        }
+
+        long backoff = Math.min(LAUNCH_RETRY_MAX_MILLIS, LAUNCH_RETRY_BASE_MILLIS << (launchAttempts - 1));
+        long delay = (backoff / 2) + (long) (random.nextDouble() * (backoff / 2));
+        Log.w(LOG_TAG, "Receiver launch failed - retrying in " + delay + "ms");
+        handler.postDelayed(launchRunnable, delay);
+    }
+
+    /**
+     * This is the callback class that handles the result on attempt to start the receiver from scratch, or to
+     * join it if it is already running
+     * <p/>
+     * ApplicationConnectionResult can be used to:
+     * Status getStatus();
+     * ApplicationMetadata getApplicationMetadata();
+     * String getApplicationStatus();
+     * String getSessionId();
+     * boolean getWasLaunched();
+     */
+    private class CastReceiverLaunchCallback implements ResultCallback<Cast.ApplicationConnectionResult> {
+        private final boolean join;
+
+        /**
+         * @param join true if this is the result of joining the receiver, false if of launching it
+         */
+        CastReceiverLaunchCallback(final boolean join) {
+            this.join = join;
+        }
+
+        @Override
+        public void onResult(Cast.ApplicationConnectionResult result) {
+            if (apiClient == null) {
+                return;
+            }
+
+            if (result.getStatus().isSuccess()) {
+                Log.d(LOG_TAG, "Receiver was successfully " + (join ? "joined" : "launched"));
+                sessionId = result.getSessionId();
+                launchAttempts = 0;
+                createCastMessageChannel();
+            } else if (join) {
+                Log.d(LOG_TAG, "Receiver session has gone - launching it");
+                sessionId = null;
+                launchReceiver();
+            } else {
+                retryLaunch();
+            }
+        }
+    }
+
+    /**
+     * Remove previously set callbacks on messages from the chromecast
+     */
+    private void removeCastCallbacks() {
+        try {
+            Cast.CastApi.removeMessageReceivedCallbacks(apiClient, nameSpace);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Exception while removing callbacks", e);
+        }
+    }
+
+    /**
+     * Setup the callbacks that will be called when a message is received
+     */
+    private void setCastCallbacks() {
+        try {
+            Cast.CastApi.setMessageReceivedCallbacks(apiClient, nameSpace, castMessageCallbacks);
+            setState(ChromecastInteractor.CHROMECAST_STATE.RECEIVER_READY);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Exception while setting messageReceived callbacks channel", e);
+        }
+    }
+
+    /**
+     * Listener for events from the Chromecast device
+     * We only react to the application disconnected event
+     */
+    private class CastListener extends Cast.Listener {
+        @Override
+        public void onApplicationDisconnected(int errorCode) {
+            Log.i(LOG_TAG, "onApplicationDisconnected()");
+            // the receiver has stopped, so there is no session to rejoin
+            sessionId = null;
+            close();
+        }
+    }
+
+    /**
+     * Create a chromecast message channel between this app and the receiver to pass message about game events
+     * and requests back and fore.
+     */
+    private void createCastMessageChannel() {
+        setCastCallbacks();
+    }
+
+    /**
+     * Callback receive messages from the chromecast
+     */
+    private class CastMessageCallbacks implements Cast.MessageReceivedCallback {
+        /**
+         * Receive message from the receiver app that is running on a Chromecast
+         */
+        @Override
+        public void onMessageReceived(CastDevice castDevice, String namespace, String message) {
+            if (listener != null) {
+                listener.onMessage(message);
+            }
+        }
+    }
+
+    /**
+     * Send a message to the chromecast receiver on our namespace
+     *
+     * @param message String to send to the cast device
+     */
+    @Override
+    public void send(@NonNull final String message) {
+        try {
+            Cast.CastApi.sendMessage(apiClient, nameSpace, message).setResultCallback(sendResultCallback);
+        } catch (Exception e) {
+            Log.e(LOG_TAG, "Exception while sending message", e);
+            if (listener != null) {
+                listener.onSendResult(false);
+            }
+        }
+    }
+
+    /**
+     * Callback for the result of sending a message, one instance is used for all messages
+     */
+    private class SendResultCallback implements ResultCallback<Status> {
+        @Override
+        public void onResult(@NonNull Status result) {
+            if (!result.isSuccess()) {
+                Log.e(LOG_TAG, "Sending message failed");
+            }
+            if (listener != null) {
+                listener.onSendResult(result.isSuccess());
+            }
+        }
+    }
+}
@@ -5,34 +5,56 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
-import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.core.view.MenuItemCompat;
 import androidx.mediarouter.app.MediaRouteActionProvider;
 import androidx.mediarouter.media.MediaRouteSelector;
 import androidx.mediarouter.media.MediaRouter;
 
-import com.google.android.gms.cast.Cast;
 import com.google.android.gms.cast.CastDevice;
 import com.google.android.gms.cast.CastMediaControlIntent;
-import com.google.android.gms.common.ConnectionResult;
-import com.google.android.gms.common.api.GoogleApiClient;
-import com.google.android.gms.common.api.ResultCallback;
-import com.google.android.gms.common.api.Status;
 
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Class for handling all interactions with a Chromecast for the purposes of playing a game that an android
  * app connects to to play.
  * <p/>
+ * Chromecasts are discovered with the MediaRouter and reached via a CastTransport, but the receiver can
+ * also be reached through any other Transport passed to connect(), such as a WebSocketTransport on the local
+ * network.
+ * <p/>
+ * Setting up the Cast stack is slow on older phones, so it is not done when this is created but by initialize(),
+ * which does as much as it can on a background thread, and can be called once the UI has been shown.
+ * <p/>
+ * The session of the receiver app last used on a Chromecast is remembered, so selecting the same Chromecast again
+ * rejoins it if it is still running. The time taken to get from starting to connect to the receiver being ready
+ * is recorded, including reconnections after the connection was suspended.
+ * <p/>
+ * Messaging runs on its own thread, so inputs reach the receiver on time even when the UI thread is busy. The
+ * transport is connected, used and called back on the messaging thread, with the outbound queue and pings; messages
+ * to send are handed to it, and states and messages from the receiver handed back to the UI thread, through
+ * lock-free queues. Everything public, and the GameController, is called on the UI thread.
+ * <p/>
+ * Each connection to a receiver is a ReceiverSession, with its own transport, state and outbound queue. The primary
+ * session is the one made by selecting a Chromecast or calling connect(), and its events go to the GameController.
+ * Other sessions, to more receivers at the same time, can be added with addSession(), and the events of all of them
+ * go to a SessionListener. Messages can be sent to the primary session, to any one session, or to all of them.
+ * <p/>
+ * The traffic of the primary session, and its states, can be recorded with a SessionRecorder, and played back later
+ * with a SessionReplay.
+ * <p/>
  * User: andrew
  * Date: 11/01/15
  * Time: 02:15
@@ -54,32 +76,102 @@ public class ChromecastInteractor {
 
     // CONSTANTS
     private static final String LOG_TAG = "ChromecastInteractor";
+    private static final String PRIMARY_SESSION_NAME = "Receiver";
+    private static final int OUTBOUND_QUEUE_CAPACITY = 8;
+    // Messages in flight adapt to the connection between these, see OutboundQueue
+    private static final int MIN_MESSAGES_IN_FLIGHT = 2;
+    private static final int MAX_MESSAGES_IN_FLIGHT = 16;
+    private static final int OUTBOUND_HANDOFF_CAPACITY = 32;
+    private static final int INBOUND_HANDOFF_CAPACITY = 128;
+    // How often what a SessionRecorder has recorded is written out, at most this is lost if the app is killed
+    private static final long RECORDER_FLUSH_MILLIS = 1000;
 
     // IMMUTABLES
-    private final MediaRouteSelector mediaRouteSelector;
     private final String receiverAppId;
     private final String nameSpace;
     private final GameController gameController;
-    private final MediaRouter mediaRouter;
     private final Activity activity;
 
     // INITIALIZED IMMUTABLES
-    private final CastMessageCallbacks castMessageCallbacks = new CastMessageCallbacks();
-    private final ConnectionCallbacks connectionCallbacks = new ConnectionCallbacks();
     private final MediaRouter.Callback mediaRouterCallback = new MyMediaRouterCallback();
-    private final CastListener castListener = new CastListener();
-    private final ConnectionFailedListener connectionFailedListener = new ConnectionFailedListener();
+    private final RouteMonitor routeMonitor;
+    private final LatencyHistogram timeToReadyHistogram = new LatencyHistogram();
+    private final Handler uiHandler = new Handler();
+    private final HandlerThread messagingThread = startMessagingThread();
+    private final Handler messagingHandler = new Handler(messagingThread.getLooper());
+    private final Handoff<Outbound> outboundHandoff;
+    private final Handoff<Inbound> inboundHandoff;
+    private final ArrayList<ReceiverSession> sessions = new ArrayList<>();
+    // Only used on the messaging thread
+    private final ArrayList<ReceiverSession> messagingSessions = new ArrayList<>();
+    private final Runnable disconnectPrimaryRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (messagingPrimary != null) {
+                disconnectSession(messagingPrimary);
+            }
+        }
+    };
+    private final Runnable recorderFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (messagingRecorder != null) {
+                messagingRecorder.flush();
+                messagingHandler.postDelayed(this, RECORDER_FLUSH_MILLIS);
+            }
+        }
+    };
 
     // MUTABLES
-    private boolean waitingForReconnect;
-    private GoogleApiClient apiClient;
+    // These are set up by initialize(), until it completes they are null
+    private MediaRouteSelector mediaRouteSelector;
+    private MediaRouter mediaRouter;
+    private MediaRouteActionProvider mediaRouteActionProvider;
+    private boolean initializing = false;
+    // Registered by initialize(), and unregistered by destroy()
+    private WiFiChangeReceiver wiFiChangeReceiver;
+    private boolean destroyed = false;
+    private boolean resumed = false;
+    private ReceiverSession primarySession;
+    // The primary session, or the last one once it has been disconnected, for its counters
+    private ReceiverSession lastPrimarySession;
+    private SessionListener sessionListener;
     private CHROMECAST_STATE state = CHROMECAST_STATE.INITIAL;
+    private long connectingSince = -1;
+    private long lastTimeToReady = -1;
+    private String lastCastDeviceId;
+    // Set on the messaging thread
+    private volatile String lastSessionId;
+    // Set when a SessionRecorder is in use, so states are only handed to it then
+    private boolean recording = false;
+    // Prefixes of messages from receivers that only the latest of is wanted, copied by each session as it is made
+    private String[] coalescedPrefixes = new String[0];
+    // Only used on the messaging thread
+    private ReceiverSession messagingPrimary;
+    private SessionRecorder messagingRecorder;
+
+    /**
+     * A slot for a message to send, handed from the UI thread to the messaging thread
+     */
+    private static class Outbound {
+        ReceiverSession to;     // null to send to all sessions
+        String message;
+        OutboundQueue.DROP_POLICY policy;
+    }
+
+    /**
+     * A slot for a message received, handed from the messaging thread to the UI thread
+     */
+    private static class Inbound {
+        ReceiverSession from;
+        String message;
+    }
 
     private class WiFiChangeReceiver extends BroadcastReceiver {
         @Override
         public void onReceive(Context context, Intent intent) {
             Log.i(LOG_TAG, "Wifi state change");
-            checkRouteStatus();
+            routeMonitor.wifiChanged();
         }
     }
 
@@ -87,6 +179,8 @@ public class ChromecastInteractor {
      * This class is responsible for interacting with the chromecast device, and sending and receiving messages.
      * <p/>
      * When messages are received it will parse them and then update the game accordingly.
+     * <p/>
+     * Chromecasts can't be found until initialize() has been called and completed.
      */
     public ChromecastInteractor(@NonNull final Activity a, @NonNull final String receiverId,
                                 @NonNull final String ns, @NonNull final GameController gc) {
@@ -94,19 +188,145 @@ public class ChromecastInteractor {
         receiverAppId = receiverId;
         nameSpace = ns;
         gameController = gc;
+        routeMonitor = new RouteMonitor(activity, new RouteStatusListener());
+        outboundHandoff = new Handoff<>(OUTBOUND_HANDOFF_CAPACITY, new SpscQueue.Factory<Outbound>() {
+            @Override
+            public Outbound create() {
+                return new Outbound();
+            }
+        }, messagingHandler, new OutboundConsumer());
+        inboundHandoff = new Handoff<>(INBOUND_HANDOFF_CAPACITY, new SpscQueue.Factory<Inbound>() {
+            @Override
+            public Inbound create() {
+                return new Inbound();
+            }
+        }, uiHandler, new InboundConsumer());
+
+        gameController.setChromecastInteractor(this);
+    }
+
+    /**
+     * Start the thread messages are sent and received on, at the priority of the display so it isn't held up by
+     * the app's background work
+     */
+    private static HandlerThread startMessagingThread() {
+        HandlerThread thread = new HandlerThread("CastMessaging", Process.THREAD_PRIORITY_DISPLAY);
+        thread.start();
+        return thread;
+    }
 
-        // Configure Cast device discovery
+    /**
+     * @return a Handler for the messaging thread, which transports are used on
+     */
+    Handler getMessagingHandler() {
+        return messagingHandler;
+    }
+
+    /**
+     * @return a Handler for the UI thread, which messages from receivers are passed to
+     */
+    Handler getUiHandler() {
+        return uiHandler;
+    }
+
+    /**
+     * Disconnect from all receivers, stop listening for wifi changes and stop the messaging thread once that is done.
+     * Can't be used again after. If initialize() hasn't completed yet, it stops listening for wifi changes when it
+     * does.
+     * <p/>
+     * The thread is quit by a message posted after the disconnect work, as HandlerThread.quitSafely() needs API 18.
+     */
+    public void destroy() {
+        destroyed = true;
+        if (wiFiChangeReceiver != null) {
+            activity.unregisterReceiver(wiFiChangeReceiver);
+            wiFiChangeReceiver = null;
+        }
+        for (ReceiverSession session : new ArrayList<>(sessions)) {
+            removeSession(session);
+        }
+        disconnect();
+        setRecorder(null);
+        messagingHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                messagingThread.quit();
+            }
+        });
+    }
+
+    /**
+     * Set up Cast device discovery. The route selector is built, which loads the Cast classes, and the broadcast
+     * receiver for wifi changes is registered on a background thread, then the MediaRouter, which can only be used
+     * on the main thread, is set up on it.
+     * <p/>
+     * resume(), pause() and setMediaRouteSelector() can be called before it completes, and take effect when it does.
+     *
+     * @param onInitialized called on the main thread once it has completed, or null
+     */
+    public void initialize(@Nullable final Runnable onInitialized) {
+        if (initializing) {
+            return;
+        }
+        initializing = true;
+
+        Log.i(LOG_TAG, "initialize() called");
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final MediaRouteSelector selector = new MediaRouteSelector.Builder().addControlCategory(
+                        CastMediaControlIntent.categoryForCast(receiverAppId)).build();
+
+                // install the broadcast receiver to listen for wifi changes
+                final WiFiChangeReceiver receiver = new WiFiChangeReceiver();
+                IntentFilter wifiChangeIntentFilter = new IntentFilter("android.net.wifi.WIFI_STATE_CHANGED");
+                activity.registerReceiver(receiver, wifiChangeIntentFilter);
+
+                uiHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        initialized(selector, receiver, onInitialized);
+                    }
+                });
+            }
+        }, "CastInit").start();
+    }
+
+    /**
+     * Finish initialization on the main thread, and catch up with what was asked for while it was in progress,
+     * unless destroy() was called meanwhile
+     */
+    private void initialized(@NonNull final MediaRouteSelector selector, @NonNull final WiFiChangeReceiver receiver,
+                             @Nullable final Runnable onInitialized) {
+        if (destroyed) {
+            Log.i(LOG_TAG, "Destroyed before initialized");
+            activity.unregisterReceiver(receiver);
+            return;
+        }
+
+        Log.i(LOG_TAG, "Initialized");
+        wiFiChangeReceiver = receiver;
+        mediaRouteSelector = selector;
         mediaRouter = MediaRouter.getInstance(activity.getApplicationContext());
 
-        mediaRouteSelector = new MediaRouteSelector.Builder().addControlCategory(
-                CastMediaControlIntent.categoryForCast(receiverAppId)).build();
+        if (mediaRouteActionProvider != null) {
+            mediaRouteActionProvider.setRouteSelector(mediaRouteSelector);
+        }
+
+        if (resumed) {
+            startDiscovery();
+        }
 
-        gameController.setChromecastInteractor(this);
+        if (onInitialized != null) {
+            onInitialized.run();
+        }
+    }
 
-        // install the broadcast receiver to listen for wifi changes
-        WiFiChangeReceiver wiFiChangeReceiver = new WiFiChangeReceiver();
-        IntentFilter wifiChangeIntentFilter = new IntentFilter("android.net.wifi.WIFI_STATE_CHANGED");
-        activity.registerReceiver(wiFiChangeReceiver, wifiChangeIntentFilter);
+    /**
+     * @return true once initialize() has completed
+     */
+    public boolean isInitialized() {
+        return mediaRouter != null;
     }
 
     /**
@@ -121,9 +341,89 @@ public class ChromecastInteractor {
 
         Log.d(LOG_TAG, "New ChromeCast State = " + newState + ", Previous State = " + state);
         state = newState;
+        measureTimeToReady();
+        if (recording) {
+            recordState(newState);
+        }
+
         gameController.newChromecastState(state);
     }
 
+    /**
+     * Hand a state to the messaging thread to record, with the time it changed
+     */
+    private void recordState(@NonNull final CHROMECAST_STATE recordedState) {
+        final long time = SystemClock.uptimeMillis();
+        messagingHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (messagingRecorder != null) {
+                    messagingRecorder.recordState(time, recordedState);
+                }
+            }
+        });
+    }
+
+    /**
+     * Start recording the primary session's messages and states, starting with the current state, or stop
+     * recording. The recorder in use before is closed. While recording, what has been recorded is written out
+     * every RECORDER_FLUSH_MILLIS.
+     *
+     * @param recorder to record with, or null to stop recording
+     */
+    public void setRecorder(@Nullable final SessionRecorder recorder) {
+        if (!recording && recorder == null) {
+            return;
+        }
+        recording = (recorder != null);
+
+        messagingHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (messagingRecorder != null && messagingRecorder != recorder) {
+                    messagingRecorder.close();
+                }
+                messagingRecorder = recorder;
+                messagingHandler.removeCallbacks(recorderFlushRunnable);
+                if (recorder != null) {
+                    messagingHandler.postDelayed(recorderFlushRunnable, RECORDER_FLUSH_MILLIS);
+                }
+            }
+        });
+        if (recorder != null) {
+            recordState(state);
+        }
+    }
+
+    /**
+     * Time how long it takes from starting to connect, or losing the connection, until the receiver is ready
+     */
+    private void measureTimeToReady() {
+        switch (state) {
+            case CONNECTING:
+            case CONNECTION_SUSPENDED:
+            case CONNECTED:
+                if (connectingSince < 0) {
+                    connectingSince = SystemClock.uptimeMillis();
+                }
+                break;
+
+            case RECEIVER_READY:
+                if (connectingSince >= 0) {
+                    lastTimeToReady = SystemClock.uptimeMillis() - connectingSince;
+                    timeToReadyHistogram.record(lastTimeToReady);
+                    Log.i(LOG_TAG, "Receiver ready after " + lastTimeToReady + "ms");
+                    connectingSince = -1;
+                }
+                break;
+
+            default:
+                // gave up on connecting
+                connectingSince = -1;
+                break;
+        }
+    }
+
     /**
      * Called on start and on every resume
      * Check the wifi state, if on check there is a chromecast route.
@@ -132,8 +432,17 @@ public class ChromecastInteractor {
      */
     public void resume() {
         Log.i(LOG_TAG, "resume() called");
+        resumed = true;
+        if (isInitialized()) {
+            startDiscovery();
+        }
+    }
 
-        checkRouteStatus();
+    /**
+     * Check the route status, and look for routes to chromecasts while resumed
+     */
+    private void startDiscovery() {
+        routeMonitor.reset(mediaRouter.getRoutes(), mediaRouteSelector);
 
         mediaRouter.addCallback(mediaRouteSelector, mediaRouterCallback,
                 MediaRouter.CALLBACK_FLAG_REQUEST_DISCOVERY);
@@ -144,8 +453,12 @@ public class ChromecastInteractor {
      */
     public void pause() {
         Log.i(LOG_TAG, "pause() called");
+        resumed = false;
+        routeMonitor.cancel();
         // End media router discovery
-        mediaRouter.removeCallback(mediaRouterCallback);
+        if (isInitialized()) {
+            mediaRouter.removeCallback(mediaRouterCallback);
+        }
     }
 
     /**
@@ -155,40 +468,45 @@ public class ChromecastInteractor {
      */
     public void setMediaRouteSelector(final Menu menu) {
         MenuItem mediaRouteMenuItem = menu.findItem(R.id.media_route_menu_item);
-        MediaRouteActionProvider mediaRouteActionProvider =
-                (MediaRouteActionProvider) MenuItemCompat.getActionProvider(mediaRouteMenuItem);
-        mediaRouteActionProvider.setRouteSelector(mediaRouteSelector);
+        mediaRouteActionProvider = (MediaRouteActionProvider) MenuItemCompat.getActionProvider(mediaRouteMenuItem);
+        // if not initialized yet, it will be set when it is
+        if (isInitialized()) {
+            mediaRouteActionProvider.setRouteSelector(mediaRouteSelector);
+        }
     }
 
 
     /**
-     * Check if it is possible to find a chromecast
+     * Receives the result of checking if it is possible to find a chromecast
      * - no wifi
      * - wifi, but no chromecasts found
      * - wifi, and chromecast(s) found
+     * <p/>
+     * Once connecting to one has started the session reports its own state, so a route that goes away for a moment
+     * while it is open doesn't end the game.
      */
-    private void checkRouteStatus() {
-        Log.i(LOG_TAG, "Checking Route Status");
-
-        ConnectivityManager connManager = (ConnectivityManager) activity.getSystemService(Context.CONNECTIVITY_SERVICE);
-        NetworkInfo wifi = connManager.getNetworkInfo(ConnectivityManager.TYPE_WIFI);
-
-        if (wifi.isConnectedOrConnecting()) {
-            List<MediaRouter.RouteInfo> routes = mediaRouter.getRoutes();
-
-            if (routes.isEmpty()) {
-                Log.i(LOG_TAG, "No Routes found ");
-                setState(CHROMECAST_STATE.NO_ROUTE_AVAILABLE);
-            } else {
-                Log.i(LOG_TAG, "Routes found ");
+    private class RouteStatusListener implements RouteMonitor.Listener {
+        @Override
+        public void onRouteStatus(final boolean wifiConnected, final int routeCount) {
+            // filter out route states if already in a more progressed state
+            if (state.compareTo(CHROMECAST_STATE.ROUTE_AVAILABLE) > 0) {
+                Log.i(LOG_TAG, "WiFi " + (wifiConnected ? "on" : "off") + ", " + routeCount
+                        + " Routes found, ignored in state " + state);
+                return;
+            }
 
-                // filter our ROUTE_AVAILABLE state if already in a more progressed state
-                if (state == CHROMECAST_STATE.NO_WIFI || state == CHROMECAST_STATE.NO_ROUTE_AVAILABLE)
+            if (wifiConnected) {
+                if (routeCount == 0) {
+                    Log.i(LOG_TAG, "No Routes found ");
+                    setState(CHROMECAST_STATE.NO_ROUTE_AVAILABLE);
+                } else {
+                    Log.i(LOG_TAG, routeCount + " Routes found ");
                     setState(CHROMECAST_STATE.ROUTE_AVAILABLE);
+                }
+            } else {
+                Log.i(LOG_TAG, "WiFi is switched off");
+                setState(CHROMECAST_STATE.NO_WIFI);
             }
-        } else {
-            Log.i(LOG_TAG, "WiFi is switched off");
-            setState(CHROMECAST_STATE.NO_WIFI);
         }
     }
 
@@ -199,20 +517,25 @@ public class ChromecastInteractor {
         @Override
         public void onRouteAdded(MediaRouter router, MediaRouter.RouteInfo route) {
             Log.d(LOG_TAG, "Route Added: " + route);
-            checkRouteStatus();
+            routeMonitor.routeAdded(route);
         }
 
         @Override
         public void onRouteRemoved(MediaRouter router, MediaRouter.RouteInfo route) {
             Log.d(LOG_TAG, "Route Removed: " + route);
-            checkRouteStatus();
+            routeMonitor.routeRemoved(route);
         }
 
         @Override
         public void onRouteSelected(MediaRouter router, MediaRouter.RouteInfo info) {
             Log.d(LOG_TAG, "onRouteSelected");
-            // connect to cast device via the selected route
-            connect(CastDevice.getFromBundle(info.getExtras()));
+            CastDevice castDevice = CastDevice.getFromBundle(info.getExtras());
+
+            // connect to cast device via the selected route, rejoining the receiver we used on it last if we can
+            String sessionId = castDevice.getDeviceId().equals(lastCastDeviceId) ? lastSessionId : null;
+            lastCastDeviceId = castDevice.getDeviceId();
+            connect(castDevice.getFriendlyName(),
+                    new CastTransport(activity, castDevice, receiverAppId, nameSpace, sessionId));
         }
 
         @Override
@@ -223,230 +546,522 @@ public class ChromecastInteractor {
     }
 
     /**
-     * connect to Google Play services.
-     * in the ConnectionCallbacks we will launch the chromecast receiver and create the channel to talk to it
+     * Connect to a receiver using the given transport as the primary session, dropping any existing one first
      *
-     * @param selectedDevice the chromecast selected by the user to connect to
+     * @param newTransport to use to reach the receiver, which will be used on the messaging thread
+     * @return the new primary session
      */
-    private void connect(final CastDevice selectedDevice) {
+    public ReceiverSession connect(@NonNull final Transport newTransport) {
+        return connect(PRIMARY_SESSION_NAME, newTransport);
+    }
+
+    /**
+     * Connect to a receiver using the given transport as the primary session, dropping any existing one first
+     *
+     * @param name         of the receiver
+     * @param newTransport to use to reach the receiver, which will be used on the messaging thread
+     * @return the new primary session
+     */
+    public ReceiverSession connect(@NonNull final String name, @NonNull final Transport newTransport) {
         Log.i(LOG_TAG, "connect() called");
-        try {
-            setState(CHROMECAST_STATE.CONNECTING);
-            Cast.CastOptions.Builder apiOptionsBuilder = Cast.CastOptions.builder(selectedDevice, castListener);
+        if (primarySession != null) {
+            sessionRemoved(primarySession);
+            messagingHandler.post(disconnectPrimaryRunnable);
+        }
+
+        final ReceiverSession session = newSession(name, newTransport);
+        primarySession = session;
+        lastPrimarySession = session;
+        sessions.add(session);
+        messagingHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                messagingPrimary = session;
+                connectSession(session);
+            }
+        });
+        return session;
+    }
 
-            apiClient = new GoogleApiClient.Builder(activity)
-                    .addApi(Cast.API, apiOptionsBuilder.build())
-                    .addConnectionCallbacks(connectionCallbacks)
-                    .addOnConnectionFailedListener(connectionFailedListener)
-                    .build();
+    /**
+     * Connect to another receiver at the same time as the primary session and any others
+     *
+     * @param name      of the receiver
+     * @param transport to use to reach the receiver, which will be used on the messaging thread
+     * @return the new session
+     */
+    public ReceiverSession addSession(@NonNull final String name, @NonNull final Transport transport) {
+        Log.i(LOG_TAG, "addSession() called for " + name);
+        final ReceiverSession session = newSession(name, transport);
+        sessions.add(session);
+        messagingHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                connectSession(session);
+            }
+        });
+        return session;
+    }
+
+    /**
+     * Make a session with its own outbound queue and latency histogram
+     */
+    private ReceiverSession newSession(@NonNull final String name, @NonNull final Transport transport) {
+        return new ReceiverSession(this, name, transport,
+                new OutboundQueue(OUTBOUND_QUEUE_CAPACITY, MIN_MESSAGES_IN_FLIGHT, MAX_MESSAGES_IN_FLIGHT),
+                new LatencyHistogram());
+    }
 
-            apiClient.connect();
-            // the onConnected() callback will be called when the connect() call succeeds
-            // or onConnectionFailed() if fails.
-        } catch (Exception e) {
-            Log.e(LOG_TAG, "Failed to connect", e);
+    /**
+     * Connect to the receiver on another Chromecast, without selecting its route, at the same time as the primary
+     * session and any others
+     *
+     * @param route to the Chromecast, e.g. one of getCastRoutes()
+     * @return the new session
+     */
+    public ReceiverSession addCastSession(@NonNull final MediaRouter.RouteInfo route) {
+        CastDevice castDevice = CastDevice.getFromBundle(route.getExtras());
+        return addSession(castDevice.getFriendlyName(),
+                new CastTransport(activity, castDevice, receiverAppId, nameSpace));
+    }
+
+    /**
+     * Disconnect a session, which if it is the primary session is the same as disconnect()
+     *
+     * @param session to disconnect
+     */
+    public void removeSession(@NonNull final ReceiverSession session) {
+        if (session == primarySession) {
+            disconnect();
+        } else if (session.isOpen()) {
+            sessionRemoved(session);
+            messagingHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    disconnectSession(session);
+                }
+            });
         }
     }
 
     /**
-     * remove callbacks from chromecast
-     * disconnect from Google Play services
+     * Disconnect the primary session from its receiver, whatever the transport used to reach it
      */
     public void disconnect() {
         Log.i(LOG_TAG, "disconnect() called");
-        if (apiClient != null) {
-            removeCastCallbacks();
+        if (primarySession != null) {
+            sessionRemoved(primarySession);
+            messagingHandler.post(disconnectPrimaryRunnable);
+        }
+
+        transportClosed();
+    }
+
+    /**
+     * On the messaging thread, start a session connecting to its receiver
+     */
+    private void connectSession(@NonNull final ReceiverSession session) {
+        messagingSessions.add(session);
+        session.connect();
+    }
 
-            if (apiClient.isConnected()) {
-                apiClient.disconnect();
+    /**
+     * On the messaging thread, disconnect a session from its receiver
+     */
+    private void disconnectSession(@NonNull final ReceiverSession session) {
+        if (session == messagingPrimary) {
+            rememberSession(session);
+            messagingPrimary = null;
+        }
+        messagingSessions.remove(session);
+        session.disconnect();
+    }
+
+    /**
+     * On the messaging thread, remember the session of the receiver the primary session's transport is using, if
+     * it is to a Chromecast, to rejoin it later
+     */
+    private void rememberSession(@NonNull final ReceiverSession session) {
+        if (session.getTransport() instanceof CastTransport) {
+            lastSessionId = ((CastTransport) session.getTransport()).getSessionId();
+        }
+    }
+
+    /**
+     * On the UI thread, forget a session, dropping any of its events still to arrive
+     */
+    private void sessionRemoved(@NonNull final ReceiverSession session) {
+        session.closed();
+        sessions.remove(session);
+        if (session == primarySession) {
+            primarySession = null;
+        }
+
+        if (sessionListener != null) {
+            sessionListener.sessionClosed(session);
+        }
+    }
+
+    /**
+     * Tidy up after the connection to the receiver has gone, and go back to looking for routes to one
+     */
+    private void transportClosed() {
+        // drop back from any connected state, so that the route monitor will report the route state
+        if (state.compareTo(CHROMECAST_STATE.ROUTE_AVAILABLE) > 0) {
+            setState(CHROMECAST_STATE.ROUTE_AVAILABLE);
+        }
+        routeMonitor.checkNow();
+    }
+
+    /**
+     * On the messaging thread, a session's transport has changed state, pass it to the UI thread
+     */
+    void sessionStateChanged(@NonNull final ReceiverSession session, @NonNull final CHROMECAST_STATE newState) {
+        uiHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!session.isOpen()) {
+                    return;
+                }
+
+                session.setState(newState);
+                if (session == primarySession) {
+                    setState(newState);
+                }
+                if (sessionListener != null) {
+                    sessionListener.sessionState(session, newState);
+                }
             }
-            apiClient = null;
+        });
+    }
+
+    /**
+     * On the messaging thread, a message has been received by a session, hand it to the UI thread
+     */
+    void sessionMessage(@NonNull final ReceiverSession session, @NonNull final String message) {
+        if (messagingRecorder != null && session == messagingPrimary) {
+            messagingRecorder.recordInbound(SystemClock.uptimeMillis(), message);
         }
 
-        checkRouteStatus();
-        waitingForReconnect = false;
+        if (session.coalesceMessage(message)) {
+            return;
+        }
+
+        Inbound inbound = inboundHandoff.claim();
+        if (inbound == null) {
+            Log.w(LOG_TAG, "UI thread is not keeping up, message posted: " + message);
+            inboundHandoff.overflow(new Runnable() {
+                @Override
+                public void run() {
+                    deliverMessage(session, message);
+                }
+            });
+            return;
+        }
+        inbound.from = session;
+        inbound.message = message;
+        inboundHandoff.publish();
     }
 
     /**
-     * Google Play services callbacks
+     * On the messaging thread, a session has measured the round trip time to its receiver, record it on the UI
+     * thread and pass it to the GameController if it is the primary session's
      */
-    private class ConnectionCallbacks implements GoogleApiClient.ConnectionCallbacks {
-        @Override
-        public void onConnected(Bundle connectionHint) {
-            Log.d(LOG_TAG, "onConnected() called");
+    void sessionLatencyMeasured(@NonNull final ReceiverSession session, final long roundTrip) {
+        uiHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!session.isOpen()) {
+                    return;
+                }
 
-            if (apiClient == null) {
-                // We got disconnected while this runnable was pending execution.
-                Log.d(LOG_TAG, "We got disconnected while trying to connect");
-                checkRouteStatus();
-                return;
+                session.getLatencyHistogram().record(roundTrip);
+                if (session == primarySession) {
+                    gameController.latencyMeasured(roundTrip, session.getLatencyHistogram());
+                }
             }
+        });
+    }
 
-            if (waitingForReconnect) {
-                waitingForReconnect = false;
-                setState(CHROMECAST_STATE.CONNECTING); // reconnecting
+    /**
+     * On the messaging thread, a session's transport has lost its connection and can't be used any more
+     */
+    void sessionTransportClosed(@NonNull final ReceiverSession session) {
+        if (session == messagingPrimary) {
+            rememberSession(session);
+            messagingPrimary = null;
+        }
+        messagingSessions.remove(session);
 
-                // Check if the receiver app is still running
-                if (connectionHint != null && connectionHint.getBoolean(Cast.EXTRA_APP_NO_LONGER_RUNNING)) {
-                    // It was running when we lost the connection, now that we have reconnected - see if still running
-                    Log.d(LOG_TAG, "Receiver is no longer running - try restarting it");
-                    launchReceiver();
-                } else {
-                    Log.d(LOG_TAG, "Receiver is running - setup the message channel to it");
-                    createCastMessageChannel();
+        uiHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!session.isOpen()) {
+                    return;
                 }
-            } else {
-                setState(CHROMECAST_STATE.CONNECTED);
 
-                Log.d(LOG_TAG, "New connection");
-                launchReceiver();
+                boolean primary = (session == primarySession);
+                sessionRemoved(session);
+                if (primary) {
+                    transportClosed();
+                }
             }
+        });
+    }
+
+    /**
+     * On the UI thread, pass a message from a receiver to the GameController and SessionListener, unless from a
+     * session that has been removed
+     */
+    void deliverMessage(@NonNull final ReceiverSession session, @NonNull final String message) {
+        if (!session.isOpen()) {
+            return;
         }
 
-        @Override
-        public void onConnectionSuspended(int cause) {
-            Log.d(LOG_TAG, "onConnectionSuspended()");
-            setState(CHROMECAST_STATE.CONNECTION_SUSPENDED);
-            waitingForReconnect = true;
+        Log.d(LOG_TAG, "onMessageReceived(): " + message);
+        if (session == primarySession) {
+            gameController.receiverMessage(message);
+        }
+        if (sessionListener != null) {
+            sessionListener.sessionMessage(session, message);
         }
     }
 
     /**
-     * Google Play services callbacks
+     * Passes messages handed over from the messaging thread on, on the UI thread
      */
-    private class ConnectionFailedListener implements GoogleApiClient.OnConnectionFailedListener {
+    private class InboundConsumer implements Handoff.Consumer<Inbound> {
         @Override
-        public void onConnectionFailed(@NonNull ConnectionResult result) {
-            Log.e(LOG_TAG, "onConnectionFailed()");
-            // Make sure and remove all callbacks etc
-            disconnect();
+        public void consume(@NonNull final Inbound inbound) {
+            ReceiverSession session = inbound.from;
+            String message = inbound.message;
+            inbound.from = null;
+            inbound.message = null;
+
+            deliverMessage(session, message);
         }
     }
 
     /**
-     * Try and start our receiver on the chromecast
+     * Queues messages handed over from the UI thread, on the messaging thread
      */
-    private void launchReceiver() {
-        try {
-            Log.d(LOG_TAG, "Trying to launch receiver on chromecast");
-            // receiver is not running - try and launch the receiver
-            Cast.CastApi.launchApplication(apiClient, receiverAppId, false)
-                    .setResultCallback(new CastReceiverLaunchCallback());
-        } catch (Exception e) {
-            Log.e(LOG_TAG, "Failed to launch application", e);
+    private class OutboundConsumer implements Handoff.Consumer<Outbound> {
+        @Override
+        public void consume(@NonNull final Outbound outbound) {
+            ReceiverSession to = outbound.to;
+            String message = outbound.message;
+            outbound.to = null;
+            outbound.message = null;
+
+            queueOutbound(to, message, outbound.policy);
         }
     }
 
     /**
-     * This is the callback class that handles the result on attempt to start the receiver from scratch
-     * <p/>
-     * ApplicationConnectionResult can be used to:
-     * Status getStatus();
-     * ApplicationMetadata getApplicationMetadata();
-     * String getApplicationStatus();
-     * String getSessionId();
-     * boolean getWasLaunched();
-     */
-    private class CastReceiverLaunchCallback implements ResultCallback<Cast.ApplicationConnectionResult> {
-        @Override
-        public void onResult(Cast.ApplicationConnectionResult result) {
-            if (result.getStatus().isSuccess()) {
-                Log.d(LOG_TAG, "Receiver was successfully launched");
-                createCastMessageChannel();
-            } else {
-                Log.e(LOG_TAG, "Receiver launch failed - retrying");
-                launchReceiver();
+     * On the messaging thread, record and queue a message handed over from the UI thread
+     *
+     * @param to      session to send it to, or null for all of them
+     * @param message String to send
+     * @param policy  what to do if the outbound queue is full
+     */
+    private void queueOutbound(@Nullable final ReceiverSession to, @NonNull final String message,
+                               @NonNull final OutboundQueue.DROP_POLICY policy) {
+        if (messagingRecorder != null && (to == null || to == messagingPrimary)) {
+            messagingRecorder.recordOutbound(SystemClock.uptimeMillis(), message, policy);
+        }
+
+        if (to != null) {
+            to.queueMessage(message, policy);
+        } else {
+            for (int i = 0; i < messagingSessions.size(); i++) {
+                messagingSessions.get(i).queueMessage(message, policy);
             }
         }
     }
 
     /**
-     * Remove previously set callbacks on messages from the chromecast
+     * Send a control message to the receiver of the primary session, it will never be dropped
+     *
+     * @param message String to send to the cast device
      */
-    private void removeCastCallbacks() {
-        try {
-            Cast.CastApi.removeMessageReceivedCallbacks(apiClient, castMessageCallbacks.getNamespace());
-        } catch (IOException e) {
-            Log.e(LOG_TAG, "Exception while removing callbacks", e);
-        }
+    public void sendMessage(String message) {
+        sendMessage(message, OutboundQueue.DROP_POLICY.NEVER_DROP);
     }
 
     /**
-     * Setup the callbacks that will be called when a message is received
+     * Send a message to the receiver of the primary session. Only a few messages are sent at a time, the rest
+     * wait in a bounded queue and the policy decides what to do with this message if that queue is full.
+     *
+     * @param message String to send to the cast device
+     * @param policy  what to do if the outbound queue is full
      */
-    private void setCastCallbacks() {
-        try {
-            Cast.CastApi.setMessageReceivedCallbacks(apiClient, castMessageCallbacks.getNamespace(), castMessageCallbacks);
-            setState(CHROMECAST_STATE.RECEIVER_READY);
-        } catch (IOException e) {
-            Log.e(LOG_TAG, "Exception while setting messageReceived callbacks channel", e);
+    public void sendMessage(String message, OutboundQueue.DROP_POLICY policy) {
+        if (primarySession == null) {
+            Log.e(LOG_TAG, "No transport to the receiver");
+            return;
         }
+        sendMessage(primarySession, message, policy);
     }
 
     /**
-     * Listener for events from the Chromecast device
-     * We only react to the application disconnected event
+     * Send a message to the receiver of one session
+     *
+     * @param session to send it to
+     * @param message String to send to the receiver
+     * @param policy  what to do if the session's outbound queue is full
      */
-    private class CastListener extends Cast.Listener {
-        @Override
-        public void onApplicationDisconnected(int errorCode) {
-            Log.i(LOG_TAG, "onApplicationDisconnected()");
-            disconnect();
-        }
+    public void sendMessage(@NonNull ReceiverSession session, String message, OutboundQueue.DROP_POLICY policy) {
+        handOff(session, message, policy);
     }
 
     /**
-     * Create a chromecast message channel between this app and the receiver to pass message about game events
-     * and requests back and fore.
+     * Send a message to the receivers of all sessions
+     *
+     * @param message String to send to the receivers
+     * @param policy  what to do if a session's outbound queue is full
      */
-    private void createCastMessageChannel() {
-        setCastCallbacks();
+    public void broadcastMessage(String message, OutboundQueue.DROP_POLICY policy) {
+        handOff(null, message, policy);
     }
 
     /**
-     * Callback receive messages from the chromecast
+     * Hand a message to the messaging thread to be queued for sending. If it is not keeping up, messages that may
+     * be dropped are dropped here, and those that may not are posted to it.
+     *
+     * @param to      session to send it to, or null for all of them
+     * @param message String to send
+     * @param policy  what to do if the outbound queue is full
      */
-    private class CastMessageCallbacks implements Cast.MessageReceivedCallback {
-        /**
-         * @return custom namespace
-         */
-        public String getNamespace() {
-            return nameSpace;
+    private void handOff(@Nullable final ReceiverSession to, final String message,
+                         final OutboundQueue.DROP_POLICY policy) {
+        Outbound outbound = outboundHandoff.claim();
+        if (outbound == null) {
+            if (policy != OutboundQueue.DROP_POLICY.NEVER_DROP) {
+                Log.w(LOG_TAG, "Messaging thread is not keeping up, message dropped");
+                return;
+            }
+            outboundHandoff.overflow(new Runnable() {
+                @Override
+                public void run() {
+                    queueOutbound(to, message, policy);
+                }
+            });
+            return;
         }
 
-        /**
-         * Receive message from the receiver app that is running on a Chromecast
-         */
-        @Override
-        public void onMessageReceived(CastDevice castDevice, String namespace, String message) {
-            Log.d(LOG_TAG, "onMessageReceived(): " + message);
-            gameController.receiverMessage(message);
-        }
+        outbound.to = to;
+        outbound.message = message;
+        outbound.policy = policy;
+        outboundHandoff.publish();
     }
 
     /**
-     * Send a message to the chromecast receiver
+     * On the messaging thread, queue a message to be sent to the receiver of the primary session
      *
      * @param message String to send to the cast device
+     * @param policy  what to do if the outbound queue is full
      */
-    public void sendMessage(String message) {
-        Log.d(LOG_TAG, "sendMessage(): " + message);
-        if (apiClient != null) {
-            try {
-                Cast.CastApi.sendMessage(apiClient, castMessageCallbacks.getNamespace(), message)
-                        .setResultCallback(new ResultCallback<Status>() {
-                            @Override
-                            public void onResult(@NonNull Status result) {
-                                if (!result.isSuccess()) {
-                                    Log.e(LOG_TAG, "Sending message failed");
-                                }
-                            }
-                        });
-            } catch (Exception e) {
-                Log.e(LOG_TAG, "Exception while sending message", e);
+    void queueMessage(String message, OutboundQueue.DROP_POLICY policy) {
+        if (messagingPrimary == null) {
+            Log.e(LOG_TAG, "No transport to the receiver");
+            return;
+        }
+        if (messagingRecorder != null) {
+            messagingRecorder.recordOutbound(SystemClock.uptimeMillis(), message, policy);
+        }
+        messagingPrimary.queueMessage(message, policy);
+    }
+
+    /**
+     * Set the messages from receivers that carry the latest of a stream of values, e.g. snapshots of the game, of
+     * which only the latest is wanted. Each session keeps only the latest message with each prefix until the UI
+     * thread takes it, rather than queueing them all, so when the UI thread is held up they don't crowd out other
+     * messages, and it catches up with one of each. They may overtake other messages from the same receiver.
+     * <p/>
+     * Sessions made before this is called are not affected, so it should be called before connecting.
+     *
+     * @param prefixes that the messages start with
+     */
+    public void setCoalescedMessages(@NonNull final String... prefixes) {
+        coalescedPrefixes = prefixes.clone();
+    }
+
+    /**
+     * @return the prefixes of messages that only the latest of is wanted, not to be changed
+     */
+    @NonNull
+    String[] getCoalescedPrefixes() {
+        return coalescedPrefixes;
+    }
+
+    /**
+     * @param listener to pass the events of all sessions to, or null
+     */
+    public void setSessionListener(@Nullable final SessionListener listener) {
+        sessionListener = listener;
+    }
+
+    /**
+     * @return the sessions connected or connecting to receivers, including the primary session
+     */
+    public List<ReceiverSession> getSessions() {
+        return Collections.unmodifiableList(sessions);
+    }
+
+    /**
+     * @return the session to the selected Chromecast, or to the transport passed to connect(), or null if none
+     */
+    @Nullable
+    public ReceiverSession getPrimarySession() {
+        return primarySession;
+    }
+
+    /**
+     * @return the routes to Chromecasts found, any of which can be passed to addCastSession()
+     */
+    public List<MediaRouter.RouteInfo> getCastRoutes() {
+        ArrayList<MediaRouter.RouteInfo> routes = new ArrayList<>();
+        if (isInitialized()) {
+            for (MediaRouter.RouteInfo route : mediaRouter.getRoutes()) {
+                if (!route.isDefault() && route.matchesSelector(mediaRouteSelector)) {
+                    routes.add(route);
+                }
             }
-        } else {
-            Log.e(LOG_TAG, "No Cast Client API");
         }
+        return routes;
+    }
+
+    /**
+     * @return the histogram of round trip times to the receiver of the primary session, or the last one once it
+     * has been disconnected, measured since it was last ready, or null if there hasn't been one
+     */
+    @Nullable
+    public LatencyHistogram getLatencyHistogram() {
+        return lastPrimarySession != null ? lastPrimarySession.getLatencyHistogram() : null;
+    }
+
+    /**
+     * @return the histogram of times taken to get from starting to connect, or losing the connection, until the
+     * receiver was ready
+     */
+    public LatencyHistogram getTimeToReadyHistogram() {
+        return timeToReadyHistogram;
+    }
+
+    /**
+     * @return the time taken until the receiver was last ready, or -1 if it hasn't been
+     */
+    public long getLastTimeToReady() {
+        return lastTimeToReady;
+    }
+
+    /**
+     * @return the queue of messages being sent to the receiver of the primary session, or the last one once it has
+     * been disconnected, with its counters of messages queued, sent, dropped and failed, or null if there hasn't
+     * been one. It is used on the messaging thread, so the counters may be slightly out of date.
+     */
+    @Nullable
+    public OutboundQueue getOutboundQueue() {
+        return lastPrimarySession != null ? lastPrimarySession.getOutboundQueue() : null;
     }
 }
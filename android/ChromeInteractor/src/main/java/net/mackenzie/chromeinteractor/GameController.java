@@ -16,4 +16,5 @@ public interface GameController {
     void setChromecastInteractor(@NonNull final ChromecastInteractor chromecastInteractor);
     void newChromecastState(@NonNull final ChromecastInteractor.CHROMECAST_STATE event);
     void receiverMessage(@NonNull final String message);
+    void latencyMeasured(final long roundTripMillis, @NonNull final LatencyHistogram histogram);
 }
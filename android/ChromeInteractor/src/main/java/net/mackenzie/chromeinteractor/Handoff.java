@@ -0,0 +1,114 @@
+package net.mackenzie.chromeinteractor;
+
+import android.os.Handler;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Passes items from one thread to the Looper of another through a SpscQueue, and has them consumed there.
+ * <p/>
+ * The consuming thread is only woken when there is something for it: the first item published after the queue was
+ * drained posts a single runnable to its Handler, which consumes everything waiting. So a burst of items costs one
+ * post, and neither thread ever blocks on the other.
+ * <p/>
+ * Items that must not be dropped when the queue is full are passed by overflow() instead, which posts a Runnable
+ * to the consuming thread. While any of those are waiting claim() returns null, so items are consumed in the order
+ * they were handed off whichever way they went.
+ *
+ * @param <E> type of the slots, whose fields hold an item
+ */
+class Handoff<E> {
+    /**
+     * Interface for consuming items, called on the consuming thread
+     */
+    interface Consumer<E> {
+        void consume(@NonNull E item);
+    }
+
+    // IMMUTABLES
+    private final SpscQueue<E> queue;
+    private final Handler consumerHandler;
+    private final Consumer<E> consumer;
+
+    // INITIALIZED IMMUTABLES
+    private final AtomicBoolean wakeUpPosted = new AtomicBoolean();
+    // Runnables posted by overflow() and not run yet
+    private final AtomicInteger overflowing = new AtomicInteger();
+    private final Runnable drainRunnable = new Runnable() {
+        @Override
+        public void run() {
+            // cleared before draining, so an item published after the last peek() posts another wake up
+            wakeUpPosted.set(false);
+            drain();
+        }
+    };
+
+    /**
+     * @param capacity        number of items that can be waiting to be consumed
+     * @param factory         to create the slots with
+     * @param consumerHandler of the thread to consume items on
+     * @param consumer        of the items
+     */
+    Handoff(final int capacity, @NonNull final SpscQueue.Factory<E> factory, @NonNull final Handler consumerHandler,
+            @NonNull final Consumer<E> consumer) {
+        this.queue = new SpscQueue<>(capacity, factory);
+        this.consumerHandler = consumerHandler;
+        this.consumer = consumer;
+    }
+
+    /**
+     * Producer: get a slot to fill in and then publish()
+     *
+     * @return the slot, or null if the consumer has fallen so far behind that the queue is full, or items are
+     * still waiting to be consumed after overflowing it
+     */
+    @Nullable
+    E claim() {
+        return overflowing.get() > 0 ? null : queue.claim();
+    }
+
+    /**
+     * Producer: when claim() returned null, have an item that must not be dropped consumed by a Runnable posted to
+     * the consuming thread instead. This creates garbage, so is only for when the consumer has fallen behind.
+     *
+     * @param consume runs the consumer on the item
+     */
+    void overflow(@NonNull final Runnable consume) {
+        overflowing.incrementAndGet();
+        consumerHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    consume.run();
+                } finally {
+                    overflowing.decrementAndGet();
+                }
+            }
+        });
+    }
+
+    /**
+     * Producer: pass the slot from the last claim() to the consumer, waking it if it isn't already due to run
+     */
+    void publish() {
+        queue.publish();
+        if (wakeUpPosted.compareAndSet(false, true)) {
+            consumerHandler.post(drainRunnable);
+        }
+    }
+
+    /**
+     * Consumer: consume everything waiting
+     */
+    void drain() {
+        E item;
+        while ((item = queue.peek()) != null) {
+            consumer.consume(item);
+            queue.release();
+        }
+    }
+}
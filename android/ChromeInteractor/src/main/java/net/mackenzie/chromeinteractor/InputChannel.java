@@ -0,0 +1,202 @@
+package net.mackenzie.chromeinteractor;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Carries a player's paddle inputs from the UI thread to the receiver on the ChromecastInteractor's messaging
+ * thread, so they reach the wire on time even while the UI thread is busy, e.g. showing a Toast or laying out.
+ * <p/>
+ * Inputs are handed to the messaging thread through a lock-free queue. There, movements are coalesced by an
+ * InputScheduler ticking on that thread's Looper, and each input is given the next sequence number, encoded as an
+ * InputFrame and queued for sending. Each input sent is then reported back to the Listener on the UI thread, so
+ * it can e.g. predict where the paddle is.
+ * <p/>
+ * move(), position(), replay() and cancel() must only be called on the thread that created it, normally the UI
+ * thread.
+ */
+public class InputChannel {
+    /**
+     * Interface that is told of each input sent, on the thread that created the InputChannel
+     */
+    public interface Listener {
+        void inputSent(int sequence, int type, int value);
+    }
+
+    // CONSTANTS
+    private static final String LOG_TAG = "InputChannel";
+    private static final int HANDOFF_CAPACITY = 64;
+    // Inputs handed to the messaging thread are InputFrame.TYPE_MOVE, TYPE_POSITION, or these to cancel or to send
+    // a movement straight away
+    private static final int TYPE_CANCEL = 0;
+    private static final int TYPE_REPLAY_MOVE = -1;
+
+    // IMMUTABLES
+    private final ChromecastInteractor chromecastInteractor;
+    private final Listener listener;
+    private final Handoff<Input> toMessaging;
+    private final Handoff<Input> toListener;
+
+    // INITIALIZED IMMUTABLES
+    // Only used on the messaging thread
+    private final InputFrame inputFrame = new InputFrame();
+
+    // MUTABLES
+    // Only used on the messaging thread
+    private InputScheduler inputScheduler;
+    private int inputSequence = 0;
+
+    /**
+     * A slot for an input in the queues between the threads
+     */
+    private static class Input {
+        int type;
+        int value;
+        int sequence;
+    }
+
+    private static final SpscQueue.Factory<Input> INPUT_FACTORY = new SpscQueue.Factory<Input>() {
+        @Override
+        public Input create() {
+            return new Input();
+        }
+    };
+
+    /**
+     * @param chromecastInteractor to send the inputs through
+     * @param tickMillis           minimum time between movements sent
+     * @param alignToVsync         if true then movements are sent on display frames, see InputScheduler
+     * @param listener             to tell of each input sent, on the thread calling this
+     */
+    public InputChannel(@NonNull final ChromecastInteractor chromecastInteractor, final int tickMillis,
+                        final boolean alignToVsync, @NonNull final Listener listener) {
+        this.chromecastInteractor = chromecastInteractor;
+        this.listener = listener;
+
+        Handler messagingHandler = chromecastInteractor.getMessagingHandler();
+        toMessaging = new Handoff<>(HANDOFF_CAPACITY, INPUT_FACTORY, messagingHandler, new Handoff.Consumer<Input>() {
+            @Override
+            public void consume(@NonNull final Input input) {
+                inputReceived(input.type, input.value);
+            }
+        });
+        toListener = new Handoff<>(HANDOFF_CAPACITY, INPUT_FACTORY, new Handler(), new Handoff.Consumer<Input>() {
+            @Override
+            public void consume(@NonNull final Input input) {
+                listener.inputSent(input.sequence, input.type, input.value);
+            }
+        });
+
+        // The scheduler ticks on the Looper of the thread it is created on
+        messagingHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                inputScheduler = new InputScheduler(tickMillis, alignToVsync, new InputScheduler.Sender() {
+                    @Override
+                    public void sendInput(int netInput) {
+                        send(InputFrame.TYPE_MOVE, netInput);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Move the paddle a number of steps, added to other movements until the next tick
+     *
+     * @param steps to move, positive is up
+     */
+    public void move(final int steps) {
+        handOff(InputFrame.TYPE_MOVE, steps);
+    }
+
+    /**
+     * Move the paddle to an absolute position straight away, dropping movements not sent yet
+     *
+     * @param position from 0 (top) to InputFrame.POSITION_MAX (bottom)
+     */
+    public void position(final int position) {
+        handOff(InputFrame.TYPE_POSITION, position);
+    }
+
+    /**
+     * Send an input that was sent before, e.g. by a SessionReplay, as it was: a movement is sent straight away rather
+     * than coalesced again. It gets the next sequence number, so the receiver takes it in order with the inputs
+     * sent live.
+     *
+     * @param type  InputFrame.TYPE_MOVE or TYPE_POSITION
+     * @param value of the input
+     */
+    public void replay(final int type, final int value) {
+        handOff(type == InputFrame.TYPE_MOVE ? TYPE_REPLAY_MOVE : type, value);
+    }
+
+    /**
+     * Drop movements not sent yet
+     */
+    public void cancel() {
+        handOff(TYPE_CANCEL, 0);
+    }
+
+    private void handOff(final int type, final int value) {
+        Input input = toMessaging.claim();
+        if (input == null) {
+            Log.w(LOG_TAG, "Messaging thread is not keeping up, input dropped");
+            return;
+        }
+
+        input.type = type;
+        input.value = value;
+        toMessaging.publish();
+    }
+
+    /**
+     * An input from the UI thread has arrived on the messaging thread
+     */
+    private void inputReceived(final int type, final int value) {
+        switch (type) {
+            case InputFrame.TYPE_MOVE:
+                inputScheduler.add(value);
+                break;
+
+            case InputFrame.TYPE_POSITION:
+                // Don't let movements still waiting to be sent move the paddle away from this position
+                inputScheduler.cancel();
+                send(type, value);
+                break;
+
+            case TYPE_CANCEL:
+                inputScheduler.cancel();
+                break;
+
+            case TYPE_REPLAY_MOVE:
+                send(InputFrame.TYPE_MOVE, value);
+                break;
+        }
+    }
+
+    /**
+     * On the messaging thread, send an input to the receiver as a compact InputFrame with the next sequence number,
+     * and tell the listener about it
+     *
+     * @param type  of the InputFrame
+     * @param value of the input
+     */
+    private void send(final int type, final int value) {
+        inputSequence = (inputSequence + 1) & InputFrame.SEQUENCE_MASK;
+        inputFrame.set(type, value, inputSequence, SystemClock.uptimeMillis());
+        // If inputs back up behind a slow connection, the oldest are the least useful
+        chromecastInteractor.queueMessage(inputFrame.encode(), OutboundQueue.DROP_POLICY.DROP_OLDEST);
+
+        Input sent = toListener.claim();
+        if (sent != null) {
+            sent.sequence = inputSequence;
+            sent.type = type;
+            sent.value = value;
+            toListener.publish();
+        }
+    }
+}
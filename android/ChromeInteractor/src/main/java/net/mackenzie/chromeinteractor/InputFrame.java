@@ -0,0 +1,180 @@
+package net.mackenzie.chromeinteractor;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A compact, versioned frame used to send a player's input to the receiver in a single small message,
+ * instead of one text message per button press.
+ * <p/>
+ * The 9 byte binary frame is sent as a 13 character string: a '#' marker (so the receiver can tell it apart
+ * from text messages) followed by the frame in base64.
+ * <pre>
+ * byte  0    : protocol version (high nibble) | frame type (low nibble)
+ * bytes 1-2  : value - signed 16 bit, big endian
+ * bytes 3-4  : sequence number - unsigned 16 bit, big endian, wraps around
+ * bytes 5-8  : timestamp in milliseconds of the sender's clock - unsigned 32 bit, big endian, wraps around
+ * </pre>
+ * An instance can be reused for encoding and decoding to avoid creating garbage for every input.
+ */
+public class InputFrame {
+    // CONSTANTS
+    public static final int VERSION = 1;
+    public static final char MARKER = '#';
+    public static final int FRAME_BYTES = 9;
+    public static final int ENCODED_LENGTH = 1 + (FRAME_BYTES / 3) * 4;
+
+    // Frame types
+    public static final int TYPE_MOVE = 1;      // value is a relative movement, positive is up
+    public static final int TYPE_POSITION = 2;  // value is an absolute position, 0 (top) to POSITION_MAX (bottom)
+
+    public static final int POSITION_MAX = 1000;
+
+    public static final int MIN_VALUE = Short.MIN_VALUE;
+    public static final int MAX_VALUE = Short.MAX_VALUE;
+    public static final int SEQUENCE_MASK = 0xFFFF;
+
+    private static final char[] BASE64 =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    private static final byte[] BASE64_VALUES = new byte[128];
+
+    static {
+        for (int i = 0; i < BASE64_VALUES.length; i++) {
+            BASE64_VALUES[i] = -1;
+        }
+        for (int i = 0; i < BASE64.length; i++) {
+            BASE64_VALUES[BASE64[i]] = (byte) i;
+        }
+    }
+
+    // MUTABLES
+    private int type;
+    private int value;
+    private int sequence;
+    private long timestamp;
+    private final byte[] bytes = new byte[FRAME_BYTES];
+    private final char[] chars = new char[ENCODED_LENGTH];
+
+    public int getType() {
+        return type;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Set the contents of the frame, ready to be encoded
+     *
+     * @param type      of the frame, one of the TYPE_ constants
+     * @param value     signed value, clamped to 16 bits
+     * @param sequence  sequence number, only the lower 16 bits are sent
+     * @param timestamp time in milliseconds the input was generated, only the lower 32 bits are sent
+     * @return this frame, for chaining
+     */
+    public InputFrame set(final int type, final int value, final int sequence, final long timestamp) {
+        this.type = type & 0x0F;
+        this.value = Math.max(MIN_VALUE, Math.min(MAX_VALUE, value));
+        this.sequence = sequence & SEQUENCE_MASK;
+        this.timestamp = timestamp & 0xFFFFFFFFL;
+        return this;
+    }
+
+    /**
+     * Encode the current contents of the frame into the string to send to the receiver
+     *
+     * @return the encoded frame
+     */
+    @NonNull
+    public String encode() {
+        bytes[0] = (byte) ((VERSION << 4) | type);
+        bytes[1] = (byte) (value >> 8);
+        bytes[2] = (byte) value;
+        bytes[3] = (byte) (sequence >> 8);
+        bytes[4] = (byte) sequence;
+        bytes[5] = (byte) (timestamp >> 24);
+        bytes[6] = (byte) (timestamp >> 16);
+        bytes[7] = (byte) (timestamp >> 8);
+        bytes[8] = (byte) timestamp;
+
+        chars[0] = MARKER;
+        int c = 1;
+        for (int b = 0; b < FRAME_BYTES; b += 3) {
+            int triple = ((bytes[b] & 0xFF) << 16) | ((bytes[b + 1] & 0xFF) << 8) | (bytes[b + 2] & 0xFF);
+            chars[c++] = BASE64[(triple >> 18) & 0x3F];
+            chars[c++] = BASE64[(triple >> 12) & 0x3F];
+            chars[c++] = BASE64[(triple >> 6) & 0x3F];
+            chars[c++] = BASE64[triple & 0x3F];
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * Check if a message is an encoded frame, without decoding it
+     *
+     * @param message received
+     * @return true if it looks like an encoded frame
+     */
+    public static boolean isFrame(@NonNull final String message) {
+        return message.length() == ENCODED_LENGTH && message.charAt(0) == MARKER;
+    }
+
+    /**
+     * Decode a frame into this instance
+     *
+     * @param message the encoded frame
+     * @return true if the message was a valid frame of a version we understand, false otherwise
+     */
+    public boolean decode(@NonNull final String message) {
+        if (!isFrame(message)) {
+            return false;
+        }
+
+        int b = 0;
+        for (int c = 1; c < ENCODED_LENGTH; c += 4) {
+            int triple = 0;
+            for (int i = 0; i < 4; i++) {
+                char ch = message.charAt(c + i);
+                int sextet = ch < BASE64_VALUES.length ? BASE64_VALUES[ch] : -1;
+                if (sextet < 0) {
+                    return false;
+                }
+                triple = (triple << 6) | sextet;
+            }
+            bytes[b++] = (byte) (triple >> 16);
+            bytes[b++] = (byte) (triple >> 8);
+            bytes[b++] = (byte) triple;
+        }
+
+        if (((bytes[0] & 0xFF) >> 4) != VERSION) {
+            return false;
+        }
+
+        type = bytes[0] & 0x0F;
+        value = (short) (((bytes[1] & 0xFF) << 8) | (bytes[2] & 0xFF));
+        sequence = ((bytes[3] & 0xFF) << 8) | (bytes[4] & 0xFF);
+        timestamp = (((long) (bytes[5] & 0xFF)) << 24) | ((bytes[6] & 0xFF) << 16) | ((bytes[7] & 0xFF) << 8)
+                | (bytes[8] & 0xFF);
+        return true;
+    }
+
+    /**
+     * Compare two sequence numbers, allowing for them wrapping around
+     *
+     * @param a sequence number
+     * @param b sequence number
+     * @return true if a is later in the sequence than b
+     */
+    public static boolean isNewer(final int a, final int b) {
+        int diff = (a - b) & SEQUENCE_MASK;
+        return diff != 0 && diff < (SEQUENCE_MASK + 1) / 2;
+    }
+}
@@ -0,0 +1,149 @@
+package net.mackenzie.chromeinteractor;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Coalesces player inputs and sends them at a fixed rate, so that many small inputs (e.g. from a
+ * RepeatListener on a held button) become a single message with the net movement once per tick.
+ * <p/>
+ * Ticks are either aligned to the display's vsync using the Choreographer, or scheduled at absolute times
+ * with a Handler so they don't drift. No message is sent on a tick if the net movement is zero, and the
+ * scheduler stops ticking until there is new input, so it costs nothing while the player is not moving.
+ * <p/>
+ * Must be created and used on a thread with a Looper, normally the UI thread.
+ */
+public class InputScheduler {
+    /**
+     * Interface that receives the net input accumulated over a tick
+     */
+    public interface Sender {
+        void sendInput(int netInput);
+    }
+
+    // IMMUTABLES
+    private final long tickNanos;
+    private final Sender sender;
+    private final Choreographer choreographer;
+    private final Handler handler;
+
+    // INITIALIZED IMMUTABLES
+    private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            scheduled = false;
+            if (frameTimeNanos >= nextTickNanos) {
+                tick(frameTimeNanos);
+            } else {
+                schedule();
+            }
+        }
+    };
+
+    private final Runnable tickRunnable = new Runnable() {
+        @Override
+        public void run() {
+            scheduled = false;
+            tick(SystemClock.uptimeMillis() * 1000000L);
+        }
+    };
+
+    // MUTABLES
+    private int pending = 0;
+    private boolean running = false;
+    private boolean scheduled = false;
+    private long nextTickNanos;
+
+    /**
+     * @param tickMillis    minimum time between messages sent
+     * @param alignToVsync  if true then ticks happen on the first display frame after the tick time,
+     *                      otherwise they are scheduled at exact intervals
+     * @param sender        that will be passed the net input on each tick
+     */
+    public InputScheduler(final int tickMillis, final boolean alignToVsync, @NonNull final Sender sender) {
+        if (tickMillis <= 0)
+            throw new IllegalArgumentException("tick must be positive");
+
+        this.tickNanos = tickMillis * 1000000L;
+        this.sender = sender;
+        if (alignToVsync) {
+            choreographer = Choreographer.getInstance();
+            handler = null;
+        } else {
+            choreographer = null;
+            handler = new Handler();
+        }
+    }
+
+    /**
+     * Add an input to be sent on the next tick. If the scheduler is idle the input is sent on the next frame
+     * (or immediately) so that the first movement has no added latency.
+     *
+     * @param input to add to the total since the last tick
+     */
+    public void add(final int input) {
+        pending += input;
+
+        if (!running) {
+            running = true;
+            nextTickNanos = 0;
+            schedule();
+        }
+    }
+
+    /**
+     * Discard any pending input and stop ticking
+     */
+    public void cancel() {
+        pending = 0;
+        running = false;
+        if (scheduled) {
+            if (choreographer != null) {
+                choreographer.removeFrameCallback(frameCallback);
+            } else {
+                handler.removeCallbacks(tickRunnable);
+            }
+            scheduled = false;
+        }
+    }
+
+    /**
+     * Send the net input if there is any, and schedule the next tick. If there was none, go idle.
+     *
+     * @param nowNanos the time of this tick
+     */
+    private void tick(final long nowNanos) {
+        if (pending == 0) {
+            running = false;
+            return;
+        }
+
+        int netInput = pending;
+        pending = 0;
+
+        // Keep to a fixed rate, but don't try to catch up on ticks missed while we were late
+        nextTickNanos += tickNanos;
+        if (nextTickNanos <= nowNanos) {
+            nextTickNanos = nowNanos + tickNanos;
+        }
+        schedule();
+
+        sender.sendInput(netInput);
+    }
+
+    private void schedule() {
+        if (scheduled || !running) {
+            return;
+        }
+
+        scheduled = true;
+        if (choreographer != null) {
+            choreographer.postFrameCallback(frameCallback);
+        } else {
+            handler.postAtTime(tickRunnable, nextTickNanos / 1000000L);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package net.mackenzie.chromeinteractor;
+
+/**
+ * A histogram of latencies in milliseconds that uses a fixed amount of memory however many values are recorded.
+ * <p/>
+ * Values below 64ms are counted exactly. Above that each power of two range is split into 32 buckets, so
+ * values are within about 3% of their real value, up to MAX_VALUE, above which they are counted as MAX_VALUE.
+ * <p/>
+ * It is not thread safe.
+ */
+public class LatencyHistogram {
+    // CONSTANTS
+    public static final long MAX_VALUE = 65535;
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_BUCKETS = 2 * SUB_BUCKETS;
+    private static final int NUM_BUCKETS = bucketIndex(MAX_VALUE) + 1;
+
+    // IMMUTABLES
+    private final int[] counts = new int[NUM_BUCKETS];
+
+    // MUTABLES
+    private long count = 0;
+    private long total = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = 0;
+
+    /**
+     * Record a latency
+     *
+     * @param millis latency in milliseconds, negative values are ignored
+     */
+    public void record(final long millis) {
+        if (millis < 0) {
+            return;
+        }
+
+        long value = Math.min(millis, MAX_VALUE);
+        counts[bucketIndex(value)]++;
+        count++;
+        total += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Forget all values recorded so far
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+        count = 0;
+        total = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public long getMean() {
+        return count == 0 ? 0 : total / count;
+    }
+
+    /**
+     * Get the value below which the given percentage of recorded values fall
+     *
+     * @param percentile between 0 and 100
+     * @return the latency in milliseconds, or 0 if nothing has been recorded
+     */
+    public long getPercentile(final double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+
+        long target = (long) Math.ceil((Math.max(0.0, Math.min(100.0, percentile)) / 100.0) * count);
+        if (target < 1) {
+            target = 1;
+        }
+
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.max(min, Math.min(max, bucketValue(i)));
+            }
+        }
+        return max;
+    }
+
+    public long getP50() {
+        return getPercentile(50.0);
+    }
+
+    public long getP95() {
+        return getPercentile(95.0);
+    }
+
+    public long getP99() {
+        return getPercentile(99.0);
+    }
+
+    /**
+     * @param value to find the bucket for
+     * @return the index of the bucket that counts the value
+     */
+    private static int bucketIndex(final long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) ((value >> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     * @param index of a bucket
+     * @return the value in the middle of the range counted by that bucket
+     */
+    private static long bucketValue(final int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+
+        int shift = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+        long subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return (subBucket << shift) + (1L << (shift - 1));
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + " p50=" + getP50() + "ms p95=" + getP95() + "ms p99=" + getP99() + "ms max=" + max + "ms";
+    }
+}
@@ -0,0 +1,275 @@
+package net.mackenzie.chromeinteractor;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * A bounded queue of messages waiting to be sent to the receiver, that also limits how many messages can be
+ * in flight at one time and keeps counters of what happened to them.
+ * <p/>
+ * The number allowed in flight, the window, adapts to the connection: it is the time sends take to complete
+ * divided by the time between messages offered, both smoothed, so that messages can be sent as fast as they are
+ * offered over a slow connection, between a minimum and a maximum. Once the maximum is reached the queue fills
+ * and drops old inputs, rather than let them pile up out of reach in the transport.
+ * <p/>
+ * When the queue is full, what happens depends on the DROP_POLICY of the new message:
+ * <ul>
+ * <li>DROP_OLDEST - the oldest queued message that may be dropped is removed to make space, so that stale
+ * inputs don't pile up behind a slow connection. If none can be dropped the new message is.</li>
+ * <li>DROP_NEWEST - the new message is dropped</li>
+ * <li>NEVER_DROP - the oldest message that may be dropped is removed, but if there is none the queue
+ * grows so that control messages are never lost</li>
+ * </ul>
+ * The queue is a ring buffer, so it does not allocate in normal use. It is not thread safe.
+ */
+public class OutboundQueue {
+    public enum DROP_POLICY {
+        DROP_OLDEST,
+        DROP_NEWEST,
+        NEVER_DROP
+    }
+
+    // CONSTANTS
+    // Weight of each new sample in the smoothed times, 1/8 as TCP uses for its round trip time
+    private static final double SMOOTHING = 0.125;
+    // Longest gap between messages counted, so a pause in play doesn't hold the window down afterwards
+    private static final long MAX_INTERVAL_MILLIS = 250;
+
+    // IMMUTABLES
+    private final int minInFlight;
+    private final int maxInFlight;
+    private final long[] sentAt;
+
+    // MUTABLES
+    private String[] messages;
+    private DROP_POLICY[] policies;
+    private int head = 0;   // index of oldest message
+    private int size = 0;
+    private int inFlight = 0;
+    private int sentHead = 0;   // index in sentAt of the time the oldest message in flight was sent
+    private int window;
+    private long lastOfferedAt = -1;
+    private double smoothedIntervalMillis = -1;
+    private double smoothedCompletionMillis = -1;
+
+    // Counters
+    private long queued = 0;
+    private long sent = 0;
+    private long dropped = 0;
+    private long failed = 0;
+
+    /**
+     * @param capacity    number of messages that can be waiting to be sent
+     * @param minInFlight number of messages that can always be sent without knowing the result
+     * @param maxInFlight most messages that can be sent without knowing the result, however slow the connection
+     */
+    public OutboundQueue(final int capacity, final int minInFlight, final int maxInFlight) {
+        if (capacity <= 0 || minInFlight <= 0 || maxInFlight < minInFlight)
+            throw new IllegalArgumentException("capacity and minInFlight must be positive, maxInFlight at least min");
+
+        this.minInFlight = minInFlight;
+        this.maxInFlight = maxInFlight;
+        sentAt = new long[maxInFlight];
+        window = minInFlight;
+        messages = new String[capacity];
+        policies = new DROP_POLICY[capacity];
+    }
+
+    /**
+     * Add a message to the end of the queue
+     *
+     * @param message to queue
+     * @param policy  to apply to this message if the queue is full
+     * @return true if the message was queued, false if it was dropped
+     */
+    public boolean offer(@NonNull final String message, @NonNull final DROP_POLICY policy) {
+        long now = SystemClock.uptimeMillis();
+        if (lastOfferedAt >= 0) {
+            smoothedIntervalMillis = smooth(smoothedIntervalMillis,
+                    Math.max(1, Math.min(MAX_INTERVAL_MILLIS, now - lastOfferedAt)));
+            updateWindow();
+        }
+        lastOfferedAt = now;
+
+        if (size == messages.length) {
+            if (policy == DROP_POLICY.DROP_NEWEST || !dropOldest()) {
+                if (policy == DROP_POLICY.NEVER_DROP) {
+                    grow();
+                } else {
+                    dropped++;
+                    return false;
+                }
+            }
+        }
+
+        int tail = (head + size) % messages.length;
+        messages[tail] = message;
+        policies[tail] = policy;
+        size++;
+        queued++;
+        return true;
+    }
+
+    /**
+     * Take the next message to send off the queue, if there is one and the window isn't full.
+     * The caller must call sendCompleted() once the result of sending it is known.
+     *
+     * @return the next message to send, or null if none should be sent now
+     */
+    @Nullable
+    public String poll() {
+        if (size == 0 || inFlight >= window) {
+            return null;
+        }
+
+        String message = messages[head];
+        messages[head] = null;
+        policies[head] = null;
+        head = (head + 1) % messages.length;
+        size--;
+        sentAt[(sentHead + inFlight) % maxInFlight] = SystemClock.uptimeMillis();
+        inFlight++;
+        return message;
+    }
+
+    /**
+     * Record the result of sending a message previously taken with poll(). Results are taken to arrive in the
+     * order the messages were sent, for timing them.
+     *
+     * @param success true if the message was sent successfully
+     */
+    public void sendCompleted(final boolean success) {
+        if (inFlight > 0) {
+            smoothedCompletionMillis = smooth(smoothedCompletionMillis,
+                    SystemClock.uptimeMillis() - sentAt[sentHead]);
+            sentHead = (sentHead + 1) % maxInFlight;
+            inFlight--;
+            updateWindow();
+        }
+
+        if (success) {
+            sent++;
+        } else {
+            failed++;
+        }
+    }
+
+    /**
+     * Discard all queued messages, for example when the connection to the receiver is lost.
+     * Results of messages in flight will no longer be waited for.
+     */
+    public void clear() {
+        while (size > 0) {
+            messages[head] = null;
+            policies[head] = null;
+            head = (head + 1) % messages.length;
+            size--;
+            dropped++;
+        }
+        head = 0;
+        inFlight = 0;
+        sentHead = 0;
+        // the next connection may be nothing like the last
+        window = minInFlight;
+        lastOfferedAt = -1;
+        smoothedIntervalMillis = -1;
+        smoothedCompletionMillis = -1;
+    }
+
+    /**
+     * @return the smoothed value with a new sample added, or the sample if there is no value yet
+     */
+    private static double smooth(final double smoothed, final long sample) {
+        if (smoothed < 0) {
+            return sample;
+        }
+        return smoothed + (sample - smoothed) * SMOOTHING;
+    }
+
+    /**
+     * Allow as many messages in flight as are offered in the time a send takes to complete, plus one so sending
+     * doesn't stall waiting for the oldest result
+     */
+    private void updateWindow() {
+        if (smoothedIntervalMillis <= 0 || smoothedCompletionMillis < 0) {
+            return;
+        }
+        int needed = (int) Math.ceil(smoothedCompletionMillis / smoothedIntervalMillis) + 1;
+        window = Math.max(minInFlight, Math.min(maxInFlight, needed));
+    }
+
+    /**
+     * Remove the oldest message that can be dropped from the queue, closing up the gap
+     *
+     * @return true if one was removed
+     */
+    private boolean dropOldest() {
+        for (int i = 0; i < size; i++) {
+            int index = (head + i) % messages.length;
+            if (policies[index] != DROP_POLICY.NEVER_DROP) {
+                // shuffle the older messages up one place into the gap
+                for (int j = i; j > 0; j--) {
+                    int to = (head + j) % messages.length;
+                    int from = (head + j - 1) % messages.length;
+                    messages[to] = messages[from];
+                    policies[to] = policies[from];
+                }
+                messages[head] = null;
+                policies[head] = null;
+                head = (head + 1) % messages.length;
+                size--;
+                dropped++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Double the size of the queue, only done when it is full of messages that must not be dropped
+     */
+    private void grow() {
+        String[] newMessages = new String[messages.length * 2];
+        DROP_POLICY[] newPolicies = new DROP_POLICY[messages.length * 2];
+        for (int i = 0; i < size; i++) {
+            newMessages[i] = messages[(head + i) % messages.length];
+            newPolicies[i] = policies[(head + i) % messages.length];
+        }
+        messages = newMessages;
+        policies = newPolicies;
+        head = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return the number of messages allowed in flight now
+     */
+    public int getWindow() {
+        return window;
+    }
+
+    public long getQueued() {
+        return queued;
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+}
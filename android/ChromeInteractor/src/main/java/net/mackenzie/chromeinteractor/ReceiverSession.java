@@ -0,0 +1,313 @@
+package net.mackenzie.chromeinteractor;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A connection to one receiver through its own Transport, with its own state, queue of messages to send and
+ * measurement of the round trip time to it.
+ * <p/>
+ * A ChromecastInteractor has a primary session, to the Chromecast selected with the cast button or the transport
+ * passed to connect(), whose events go to the GameController. It can have more sessions to other receivers at the
+ * same time, e.g. to run a tournament on several courts from one phone, whose events go to a SessionListener, as
+ * do the primary session's.
+ * <p/>
+ * The transport and the outbound queue are used on the interactor's messaging thread, and the state and
+ * latency histogram on the UI thread.
+ */
+public class ReceiverSession implements Transport.Listener {
+    // CONSTANTS
+    private static final String LOG_TAG = "ReceiverSession";
+    // Logging every message sent creates garbage for each one, so it is off by default
+    private static final boolean LOG_MESSAGES = false;
+    // Round trip latency is measured by sending a ping to the receiver, which it echoes back as a pong
+    static final String PING_MESSAGE_PREFIX = "Ping ";
+    static final String PONG_MESSAGE_PREFIX = "PONG ";
+    private static final long PING_INTERVAL_MILLIS = 2000;
+
+    // IMMUTABLES
+    private final ChromecastInteractor chromecastInteractor;
+    private final String name;
+    private final Transport transport;
+    private final OutboundQueue outboundQueue;
+    private final LatencyHistogram latencyHistogram;
+    private final Handler messagingHandler;
+    private final Handler uiHandler;
+    private final String[] coalescedPrefixes;
+    // The latest message with each of coalescedPrefixes not yet taken by the UI thread, or null
+    private final AtomicReferenceArray<String> latestMessages;
+
+    // INITIALIZED IMMUTABLES
+    private final AtomicBoolean latestPosted = new AtomicBoolean();
+    private final Runnable deliverLatestRunnable = new Runnable() {
+        @Override
+        public void run() {
+            // cleared before taking them, so a message set after it was taken posts this again
+            latestPosted.set(false);
+            for (int i = 0; i < coalescedPrefixes.length; i++) {
+                String message = latestMessages.getAndSet(i, null);
+                if (message != null) {
+                    chromecastInteractor.deliverMessage(ReceiverSession.this, message);
+                }
+            }
+        }
+    };
+    private final Runnable pingRunnable = new Runnable() {
+        @Override
+        public void run() {
+            sendPing();
+            messagingHandler.postDelayed(this, PING_INTERVAL_MILLIS);
+        }
+    };
+    // Pings are started and stopped from the UI thread through these, so that only the messaging thread touches
+    // pingRunnable, which posts itself again there
+    private final Runnable startPingsRunnable = new Runnable() {
+        @Override
+        public void run() {
+            messagingHandler.removeCallbacks(pingRunnable);
+            messagingHandler.post(pingRunnable);
+        }
+    };
+    private final Runnable stopPingsRunnable = new Runnable() {
+        @Override
+        public void run() {
+            messagingHandler.removeCallbacks(pingRunnable);
+        }
+    };
+
+    // MUTABLES
+    // Only used on the UI thread
+    private ChromecastInteractor.CHROMECAST_STATE state = ChromecastInteractor.CHROMECAST_STATE.INITIAL;
+    private boolean open = true;
+    // Only used on the messaging thread
+    private boolean connected = false;
+
+    /**
+     * @param chromecastInteractor that the session belongs to
+     * @param name                 to show for the receiver, e.g. the name of the Chromecast
+     * @param transport            to reach the receiver through
+     * @param outboundQueue        to queue messages to send in
+     * @param latencyHistogram     to record round trip times in
+     */
+    ReceiverSession(@NonNull final ChromecastInteractor chromecastInteractor, @NonNull final String name,
+                    @NonNull final Transport transport, @NonNull final OutboundQueue outboundQueue,
+                    @NonNull final LatencyHistogram latencyHistogram) {
+        this.chromecastInteractor = chromecastInteractor;
+        this.name = name;
+        this.transport = transport;
+        this.outboundQueue = outboundQueue;
+        this.latencyHistogram = latencyHistogram;
+        this.messagingHandler = chromecastInteractor.getMessagingHandler();
+        this.uiHandler = chromecastInteractor.getUiHandler();
+        this.coalescedPrefixes = chromecastInteractor.getCoalescedPrefixes();
+        this.latestMessages = new AtomicReferenceArray<>(coalescedPrefixes.length);
+    }
+
+    /**
+     * On the messaging thread, start connecting to the receiver
+     */
+    void connect() {
+        connected = true;
+        transport.connect(this);
+    }
+
+    /**
+     * On the messaging thread, disconnect from the receiver and drop the messages waiting to be sent
+     */
+    void disconnect() {
+        messagingHandler.removeCallbacks(pingRunnable);
+        if (connected) {
+            connected = false;
+            transport.disconnect();
+        }
+        outboundQueue.clear();
+    }
+
+    @Override
+    public void onTransportState(@NonNull final ChromecastInteractor.CHROMECAST_STATE newState) {
+        chromecastInteractor.sessionStateChanged(this, newState);
+    }
+
+    /**
+     * Receive message from the receiver app
+     */
+    @Override
+    public void onMessage(@NonNull final String message) {
+        if (message.startsWith(PONG_MESSAGE_PREFIX)) {
+            receivePong(message);
+            return;
+        }
+
+        chromecastInteractor.sessionMessage(this, message);
+    }
+
+    /**
+     * On the messaging thread, if a message is one that only the latest of is wanted, hand it to the UI thread in
+     * place of any earlier one it hasn't taken yet
+     *
+     * @param message received from the receiver
+     * @return true if it was handed over, false if it should be queued like other messages
+     */
+    boolean coalesceMessage(@NonNull final String message) {
+        for (int i = 0; i < coalescedPrefixes.length; i++) {
+            if (message.startsWith(coalescedPrefixes[i])) {
+                latestMessages.set(i, message);
+                if (latestPosted.compareAndSet(false, true)) {
+                    uiHandler.post(deliverLatestRunnable);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void onSendResult(final boolean success) {
+        outboundQueue.sendCompleted(success);
+        sendQueuedMessages();
+    }
+
+    @Override
+    public void onTransportClosed() {
+        messagingHandler.removeCallbacks(pingRunnable);
+        connected = false;
+        outboundQueue.clear();
+        chromecastInteractor.sessionTransportClosed(this);
+    }
+
+    /**
+     * On the messaging thread, queue a message to be sent to the receiver. Only a few messages are sent at a time,
+     * the rest wait in a bounded queue and the policy decides what to do with this message if that queue is full.
+     *
+     * @param message String to send to the receiver
+     * @param policy  what to do if the outbound queue is full
+     */
+    void queueMessage(@NonNull final String message, @NonNull final OutboundQueue.DROP_POLICY policy) {
+        if (LOG_MESSAGES) {
+            Log.d(LOG_TAG, name + " sendMessage(): " + message);
+        }
+
+        if (!connected) {
+            Log.e(LOG_TAG, "No transport to the receiver " + name);
+            return;
+        }
+
+        if (!outboundQueue.offer(message, policy) && LOG_MESSAGES) {
+            Log.w(LOG_TAG, "Outbound queue full, message dropped");
+        }
+
+        sendQueuedMessages();
+    }
+
+    /**
+     * Send messages from the outbound queue, while there are some and not too many are in flight
+     */
+    private void sendQueuedMessages() {
+        String message;
+        while (connected && (message = outboundQueue.poll()) != null) {
+            transport.send(message);
+        }
+    }
+
+    /**
+     * On the UI thread, keep track of the state of the connection, and only measure latency while the receiver
+     * is there to answer
+     */
+    void setState(@NonNull final ChromecastInteractor.CHROMECAST_STATE newState) {
+        state = newState;
+        if (state == ChromecastInteractor.CHROMECAST_STATE.RECEIVER_READY) {
+            latencyHistogram.reset();
+            messagingHandler.post(startPingsRunnable);
+        } else {
+            messagingHandler.post(stopPingsRunnable);
+        }
+    }
+
+    /**
+     * Send a ping with the current time, the receiver will echo it back in a pong message.
+     * It is sent through the outbound queue like inputs so that the round trip includes any queueing delay,
+     * but it is dropped rather than displace inputs if the queue is full.
+     */
+    private void sendPing() {
+        queueMessage(PING_MESSAGE_PREFIX + SystemClock.uptimeMillis(), OutboundQueue.DROP_POLICY.DROP_NEWEST);
+    }
+
+    /**
+     * Measure the round trip time of a pong received from the receiver on the messaging thread, so it doesn't
+     * include time waiting for the UI thread, then record it on the UI thread
+     *
+     * @param message the pong message with the time the ping was sent
+     */
+    private void receivePong(@NonNull final String message) {
+        try {
+            long sent = Long.parseLong(message.substring(PONG_MESSAGE_PREFIX.length()));
+            chromecastInteractor.sessionLatencyMeasured(this, SystemClock.uptimeMillis() - sent);
+        } catch (NumberFormatException e) {
+            Log.w(LOG_TAG, "Malformed pong message: " + message);
+        }
+    }
+
+    /**
+     * On the UI thread, the session has been removed from the interactor, and its events are no longer wanted
+     */
+    void closed() {
+        open = false;
+        messagingHandler.post(stopPingsRunnable);
+    }
+
+    /**
+     * @return false once the session has been disconnected, or its transport has closed
+     */
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * @return the name of the receiver, e.g. of the Chromecast
+     */
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the state of the connection to the receiver, as last reported by the transport
+     */
+    @NonNull
+    public ChromecastInteractor.CHROMECAST_STATE getState() {
+        return state;
+    }
+
+    @NonNull
+    Transport getTransport() {
+        return transport;
+    }
+
+    /**
+     * @return the histogram of round trip times to the receiver measured since it was last ready
+     */
+    @NonNull
+    public LatencyHistogram getLatencyHistogram() {
+        return latencyHistogram;
+    }
+
+    /**
+     * @return the queue of messages being sent, with its counters of messages queued, sent, dropped and failed.
+     * It is used on the messaging thread, so the counters may be slightly out of date.
+     */
+    @NonNull
+    public OutboundQueue getOutboundQueue() {
+        return outboundQueue;
+    }
+
+    @Override
+    public String toString() {
+        return "ReceiverSession{" + name + ", " + state + "}";
+    }
+}
@@ -1,6 +1,7 @@
 package net.mackenzie.chromeinteractor;
 
 import android.os.Handler;
+import android.os.SystemClock;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.View.OnClickListener;
@@ -12,8 +13,8 @@ import android.view.View.OnTouchListener;
  * click is fired immediately, next after initialInterval, and subsequent after
  * normalInterval.
  * <p/>
- * <p>Interval is scheduled after the onClick completes, so it has to run fast.
- * If it runs slow, it does not generate skipped onClicks.
+ * <p>Clicks are scheduled at absolute times so that the interval does not drift.
+ * If onClick runs slow, it does not generate skipped onClicks.
  */
 public class RepeatListener implements OnTouchListener {
 
@@ -26,12 +27,18 @@ public class RepeatListener implements OnTouchListener {
     private final Runnable handlerRunnable = new Runnable() {
         @Override
         public void run() {
-            handler.postDelayed(this, normalInterval);
+            nextClickTime += normalInterval;
+            long now = SystemClock.uptimeMillis();
+            if (nextClickTime <= now) {
+                nextClickTime = now + normalInterval;
+            }
+            handler.postAtTime(this, nextClickTime);
             clickListener.onClick(downView);
         }
     };
 
     private View downView;
+    private long nextClickTime;
 
     /**
      * @param initialInterval The interval after first click event
@@ -57,7 +64,8 @@ public class RepeatListener implements OnTouchListener {
         switch (motionEvent.getAction()) {
             case MotionEvent.ACTION_DOWN:
                 handler.removeCallbacks(handlerRunnable);
-                handler.postDelayed(handlerRunnable, initialInterval);
+                nextClickTime = SystemClock.uptimeMillis() + initialInterval;
+                handler.postAtTime(handlerRunnable, nextClickTime);
                 downView = view;
                 view.setPressed(true);
                 clickListener.onClick(view);
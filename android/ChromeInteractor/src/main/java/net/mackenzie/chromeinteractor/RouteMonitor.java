@@ -0,0 +1,141 @@
+package net.mackenzie.chromeinteractor;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Handler;
+
+import androidx.annotation.NonNull;
+import androidx.mediarouter.media.MediaRouteSelector;
+import androidx.mediarouter.media.MediaRouter;
+
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Keeps track of whether there is wifi and of the routes to Chromecasts that have been found, and reports them
+ * to a Listener.
+ * <p/>
+ * Discovery on a network with many devices produces bursts of route and wifi events. Rather than look up the
+ * routes and the wifi state for each one, route events update a set of the routes known, and all the events in a
+ * burst are coalesced into one check of the wifi state, DEBOUNCE_MILLIS after the first of them, which reports
+ * the result once.
+ * <p/>
+ * It must only be used on the main thread.
+ */
+class RouteMonitor {
+    // CONSTANTS
+    private static final long DEBOUNCE_MILLIS = 150;
+
+    // IMMUTABLES
+    private final Context context;
+    private final Listener listener;
+    private final HashSet<String> routeIds = new HashSet<>();
+
+    // INITIALIZED IMMUTABLES
+    private final Handler handler = new Handler();
+    private final Runnable checkRunnable = new Runnable() {
+        @Override
+        public void run() {
+            checkPending = false;
+            check();
+        }
+    };
+
+    // MUTABLES
+    private MediaRouteSelector selector;
+    private boolean checkPending = false;
+
+    /**
+     * Receives the state of wifi and the routes after each check
+     */
+    interface Listener {
+        void onRouteStatus(boolean wifiConnected, int routeCount);
+    }
+
+    /**
+     * @param context  to look up the wifi state with
+     * @param listener to report the state to
+     */
+    RouteMonitor(@NonNull final Context context, @NonNull final Listener listener) {
+        this.context = context;
+        this.listener = listener;
+    }
+
+    /**
+     * Start again from the routes the MediaRouter knows about now, and check straight away. Nothing is reported
+     * before this has been called.
+     *
+     * @param routes   known to the MediaRouter
+     * @param selector that routes must match to be counted
+     */
+    void reset(@NonNull final List<MediaRouter.RouteInfo> routes, @NonNull final MediaRouteSelector selector) {
+        this.selector = selector;
+        routeIds.clear();
+        for (MediaRouter.RouteInfo route : routes) {
+            if (isChromecast(route)) {
+                routeIds.add(route.getId());
+            }
+        }
+        checkNow();
+    }
+
+    void routeAdded(@NonNull final MediaRouter.RouteInfo route) {
+        if (isChromecast(route)) {
+            routeIds.add(route.getId());
+        }
+        scheduleCheck();
+    }
+
+    void routeRemoved(@NonNull final MediaRouter.RouteInfo route) {
+        routeIds.remove(route.getId());
+        scheduleCheck();
+    }
+
+    void wifiChanged() {
+        scheduleCheck();
+    }
+
+    /**
+     * Check now, rather than wait for the end of a burst, e.g. when the state has to be known straight away
+     */
+    void checkNow() {
+        cancel();
+        check();
+    }
+
+    /**
+     * Forget any check waiting to be made
+     */
+    void cancel() {
+        handler.removeCallbacks(checkRunnable);
+        checkPending = false;
+    }
+
+    /**
+     * Check once the events that come with this one have arrived, unless a check is already waiting for them
+     */
+    private void scheduleCheck() {
+        if (!checkPending) {
+            checkPending = true;
+            handler.postDelayed(checkRunnable, DEBOUNCE_MILLIS);
+        }
+    }
+
+    private void check() {
+        if (selector == null) {
+            return;
+        }
+
+        ConnectivityManager connManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo wifi = connManager.getNetworkInfo(ConnectivityManager.TYPE_WIFI);
+        listener.onRouteStatus(wifi != null && wifi.isConnectedOrConnecting(), routeIds.size());
+    }
+
+    /**
+     * @return true if the route is to a device our receiver can run on, not the phone itself
+     */
+    private boolean isChromecast(@NonNull final MediaRouter.RouteInfo route) {
+        return selector != null && !route.isDefault() && route.matchesSelector(selector);
+    }
+}
@@ -0,0 +1,13 @@
+package net.mackenzie.chromeinteractor;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Interface definition for being passed the events of every ReceiverSession of a ChromecastInteractor, e.g. to
+ * drive games on several receivers at once. Called on the UI thread.
+ */
+public interface SessionListener {
+    void sessionState(@NonNull final ReceiverSession session, @NonNull final ChromecastInteractor.CHROMECAST_STATE state);
+    void sessionMessage(@NonNull final ReceiverSession session, @NonNull final String message);
+    void sessionClosed(@NonNull final ReceiverSession session);
+}
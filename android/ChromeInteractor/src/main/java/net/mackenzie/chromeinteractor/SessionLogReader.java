@@ -0,0 +1,195 @@
+package net.mackenzie.chromeinteractor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Reads the records of a log written by a SessionRecorder one at a time, e.g. for a SessionReplay.
+ * <p/>
+ * Times are in milliseconds from the first record. Sessions appended to the same log follow on from each other with
+ * no gap. A log that was cut short, e.g. by the app being killed while recording, ends at its last whole record.
+ * <p/>
+ * The stream should be buffered, as it is read a byte at a time.
+ */
+public class SessionLogReader {
+    // CONSTANTS
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // IMMUTABLES
+    private final InputStream in;
+
+    // MUTABLES
+    private byte[] bytes = new byte[256];
+    private int kind = 0;
+    private long timeMillis = 0;
+    private String message;
+    private OutboundQueue.DROP_POLICY policy;
+    private ChromecastInteractor.CHROMECAST_STATE state;
+
+    /**
+     * @param in to read the log from
+     * @throws IOException if it can't be read or is not a session log
+     */
+    public SessionLogReader(@NonNull final InputStream in) throws IOException {
+        this.in = in;
+        if (readByte() != SessionRecorder.MAGIC[0]) {
+            throw new IOException("Not a session log");
+        }
+        readHeader();
+    }
+
+    /**
+     * Read the rest of a header, after the first byte of MAGIC
+     */
+    private void readHeader() throws IOException {
+        for (int i = 1; i < SessionRecorder.MAGIC.length; i++) {
+            if (readByte() != SessionRecorder.MAGIC[i]) {
+                throw new IOException("Not a session log");
+            }
+        }
+        int version = readByte();
+        if (version != SessionRecorder.VERSION) {
+            throw new IOException("Unsupported session log version: " + version);
+        }
+    }
+
+    /**
+     * Read the next record
+     *
+     * @return false at the end of the log
+     * @throws IOException if it can't be read or is corrupt
+     */
+    public boolean next() throws IOException {
+        try {
+            int next = in.read();
+            while (next == SessionRecorder.MAGIC[0]) {
+                // another session appended to the log
+                readHeader();
+                next = in.read();
+            }
+            if (next < 0) {
+                return false;
+            }
+
+            kind = next;
+            timeMillis += readVarint();
+            message = null;
+            policy = null;
+            state = null;
+
+            switch (kind) {
+                case SessionRecorder.KIND_OUTBOUND:
+                    policy = readOrdinal(OutboundQueue.DROP_POLICY.values());
+                    message = readString();
+                    break;
+
+                case SessionRecorder.KIND_INBOUND:
+                    message = readString();
+                    break;
+
+                case SessionRecorder.KIND_STATE:
+                    state = readOrdinal(ChromecastInteractor.CHROMECAST_STATE.values());
+                    break;
+
+                default:
+                    throw new IOException("Bad record kind: " + kind);
+            }
+            return true;
+        } catch (EOFException e) {
+            // the last record was cut short
+            return false;
+        }
+    }
+
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException();
+        }
+        return b;
+    }
+
+    private long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Bad varint");
+    }
+
+    private <T> T readOrdinal(@NonNull final T[] values) throws IOException {
+        int ordinal = readByte();
+        if (ordinal >= values.length) {
+            throw new IOException("Bad ordinal: " + ordinal);
+        }
+        return values[ordinal];
+    }
+
+    @NonNull
+    private String readString() throws IOException {
+        long length = readVarint();
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Bad string length: " + length);
+        }
+        if (length > bytes.length) {
+            bytes = new byte[(int) length];
+        }
+
+        int read = 0;
+        while (read < length) {
+            int count = in.read(bytes, read, (int) length - read);
+            if (count < 0) {
+                throw new EOFException();
+            }
+            read += count;
+        }
+        return new String(bytes, 0, read, UTF_8);
+    }
+
+    /**
+     * @return SessionRecorder.KIND_OUTBOUND, KIND_INBOUND or KIND_STATE
+     */
+    public int getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the time of the record, in milliseconds from the first one
+     */
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * @return the message sent or received, or null for a state record
+     */
+    @Nullable
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return the drop policy an outbound message was sent with, or null for other records
+     */
+    @Nullable
+    public OutboundQueue.DROP_POLICY getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return the state of a state record, or null for other records
+     */
+    @Nullable
+    public ChromecastInteractor.CHROMECAST_STATE getState() {
+        return state;
+    }
+}
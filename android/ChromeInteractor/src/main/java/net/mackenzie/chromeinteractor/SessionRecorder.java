@@ -0,0 +1,354 @@
+package net.mackenzie.chromeinteractor;
+
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Records the traffic of a ChromecastInteractor's primary session to an append-only binary log, so a session a
+ * player had trouble with can be replayed later by a SessionReplay.
+ * <p/>
+ * Each record is a kind byte, the milliseconds since the previous record as a varint, and then for messages the drop
+ * policy (outbound only) and the message as a varint length and UTF-8 bytes, or for states the state's ordinal.
+ * Times are from SystemClock.uptimeMillis(), so they only go forward. A log starts with MAGIC and VERSION, and a log
+ * appended to after it was closed just has another header in the middle of it, which SessionLogReader skips.
+ * <p/>
+ * Records are encoded into a buffer, which is handed to a background writer thread before it would overflow, and by
+ * flush(), which the ChromecastInteractor calls every second so a crash loses little. The writer thread opens the
+ * log, writes the buffers out and hands them back to be reused, so neither the UI thread nor the messaging thread
+ * ever waits for the storage. Only whole records are ever written, so a log cut short by the app being killed still
+ * ends on a record and can be appended to. Recording a paddle input costs a few bytes of copying and allocates
+ * nothing. If the writer falls behind, records wait in the buffer until it catches up, and if it falls too far
+ * behind, or writing fails, recording stops, and the session is not disturbed.
+ * <p/>
+ * Recording must only be done on the ChromecastInteractor's messaging thread, which all recorded traffic passes
+ * through.
+ */
+public class SessionRecorder {
+    // CONSTANTS
+    static final byte[] MAGIC = {'P', 'C', 'L', 'G'};
+    static final int VERSION = 1;
+    // Kinds of record
+    public static final int KIND_OUTBOUND = 1;
+    public static final int KIND_INBOUND = 2;
+    public static final int KIND_STATE = 3;
+    private static final String LOG_TAG = "SessionRecorder";
+    private static final int BUFFER_SIZE = 4096;
+    // Buffers in use, one being filled and the rest being written or free
+    private static final int BUFFERS = 4;
+    // Recording stops rather than let records waiting for a writer that is stuck use more memory than this
+    private static final int MAX_BUFFER_SIZE = 256 * 1024;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    // Longest record besides its body: kind, time and the length of a message as varints
+    private static final int MAX_HEADER_BYTES = 1 + 10 + 5;
+
+    // Handed to the writer thread after the last buffer to close the log
+    private static final Chunk CLOSE = new Chunk(0);
+
+    // IMMUTABLES
+    private final OutputStream out;
+    private final File file;
+
+    // INITIALIZED IMMUTABLES
+    private final ArrayBlockingQueue<Chunk> free = new ArrayBlockingQueue<>(BUFFERS);
+    // Room for all the buffers and CLOSE, so handing them over never fails
+    private final ArrayBlockingQueue<Chunk> full = new ArrayBlockingQueue<>(BUFFERS + 1);
+    private final Thread writerThread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            writeLog();
+        }
+    }, "SessionLog");
+
+    // MUTABLES
+    // The buffer being filled. Grown to fit a record bigger than it, so every record is written whole
+    private Chunk chunk = new Chunk(BUFFER_SIZE);
+    private byte[] buffer = chunk.bytes;
+    private int length = 0;
+    // The UTF-8 bytes of the message being recorded, or null if it is ASCII and copied straight from the String
+    private byte[] encoded;
+    private long lastTime = -1;
+    private long records = 0;
+    private boolean closed = false;
+    // Set by either thread when recording stops
+    private volatile boolean failed = false;
+    // Only written by the writer thread
+    private volatile long bytesWritten = 0;
+
+    /**
+     * A buffer of records, handed to the writer thread and back
+     */
+    private static class Chunk {
+        byte[] bytes;
+        int length;
+
+        Chunk(final int size) {
+            bytes = new byte[size];
+        }
+    }
+
+    /**
+     * @param file to append the log to, which is opened by the writer thread, and closed by close()
+     */
+    public SessionRecorder(@NonNull final File file) {
+        this(null, file);
+    }
+
+    /**
+     * @param out to append the log to, written to by the writer thread and closed by close()
+     */
+    public SessionRecorder(@NonNull final OutputStream out) {
+        this(out, null);
+    }
+
+    private SessionRecorder(@Nullable final OutputStream out, @Nullable final File file) {
+        this.out = out;
+        this.file = file;
+        for (int i = 1; i < BUFFERS; i++) {
+            free.add(new Chunk(BUFFER_SIZE));
+        }
+        System.arraycopy(MAGIC, 0, buffer, 0, MAGIC.length);
+        length = MAGIC.length;
+        buffer[length++] = (byte) VERSION;
+        writerThread.start();
+    }
+
+    /**
+     * Record a message sent to the receiver
+     */
+    void recordOutbound(final long uptimeMillis, @NonNull final String message,
+                        @NonNull final OutboundQueue.DROP_POLICY policy) {
+        int bytes = encode(message);
+        if (startRecord(KIND_OUTBOUND, uptimeMillis, 1 + bytes)) {
+            buffer[length++] = (byte) policy.ordinal();
+            putString(message, bytes);
+        }
+    }
+
+    /**
+     * Record a message received from the receiver
+     */
+    void recordInbound(final long uptimeMillis, @NonNull final String message) {
+        int bytes = encode(message);
+        if (startRecord(KIND_INBOUND, uptimeMillis, bytes)) {
+            putString(message, bytes);
+        }
+    }
+
+    /**
+     * Record a change of the state of the connection to the receiver
+     */
+    void recordState(final long uptimeMillis, @NonNull final ChromecastInteractor.CHROMECAST_STATE state) {
+        if (startRecord(KIND_STATE, uptimeMillis, 1)) {
+            buffer[length++] = (byte) state.ordinal();
+        }
+    }
+
+    /**
+     * Start a record, making sure there is room in the buffer for all of it, so it is never written in parts
+     *
+     * @param bodyBytes number of bytes of the record after its header
+     * @return false if recording has stopped because of an error
+     */
+    private boolean startRecord(final int kind, final long uptimeMillis, final int bodyBytes) {
+        if (closed || failed) {
+            return false;
+        }
+        int recordBytes = MAX_HEADER_BYTES + bodyBytes;
+        if (length + recordBytes > buffer.length) {
+            flush();
+            if (length + recordBytes > buffer.length) {
+                // the record is bigger than the buffer, or the writer is behind and the records wait for it
+                int size = Math.max(buffer.length * 2, length + recordBytes);
+                if (length > 0 && size > MAX_BUFFER_SIZE) {
+                    fail("the writer is not keeping up");
+                    return false;
+                }
+                buffer = Arrays.copyOf(buffer, size);
+            }
+        }
+
+        // Times handed over from another thread may be a little behind the last one recorded
+        long time = Math.max(uptimeMillis, lastTime);
+        long delta = lastTime < 0 ? 0 : time - lastTime;
+        lastTime = time;
+        records++;
+
+        buffer[length++] = (byte) kind;
+        putVarint(delta);
+        return true;
+    }
+
+    private void putVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[length++] = (byte) value;
+    }
+
+    /**
+     * Find the length of a message in UTF-8. Messages are nearly always ASCII, which is copied without encoding it
+     * first, anything else is encoded now.
+     *
+     * @return the number of bytes it takes
+     */
+    private int encode(@NonNull final String message) {
+        int chars = message.length();
+        for (int i = 0; i < chars; i++) {
+            if (message.charAt(i) >= 0x80) {
+                encoded = message.getBytes(UTF_8);
+                return encoded.length;
+            }
+        }
+        encoded = null;
+        return chars;
+    }
+
+    /**
+     * Put a string as a varint length and UTF-8 bytes, after encode()
+     */
+    private void putString(@NonNull final String message, final int bytes) {
+        putVarint(bytes);
+        if (encoded == null) {
+            for (int i = 0; i < bytes; i++) {
+                buffer[length++] = (byte) message.charAt(i);
+            }
+        } else {
+            System.arraycopy(encoded, 0, buffer, length, bytes);
+            length += bytes;
+            encoded = null;
+        }
+    }
+
+    /**
+     * Hand what has been recorded so far, which is always whole records, to the writer thread to write out. If
+     * the writer still has all the other buffers it is kept, to be handed over with later records.
+     */
+    public void flush() {
+        if (length == 0 || failed) {
+            return;
+        }
+        Chunk next = free.poll();
+        if (next == null) {
+            return;
+        }
+        handOff();
+        chunk = next;
+        buffer = next.bytes;
+        length = 0;
+    }
+
+    private void handOff() {
+        chunk.bytes = buffer;
+        chunk.length = length;
+        full.add(chunk);
+    }
+
+    /**
+     * Hand what has been recorded to the writer thread, which writes it out and closes the log. Nothing more is
+     * recorded after
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (length > 0 && !failed) {
+            handOff();
+        }
+        length = 0;
+        full.add(CLOSE);
+    }
+
+    /**
+     * On the writer thread, open the log and write the buffers handed over until it is closed
+     */
+    private void writeLog() {
+        OutputStream stream = out;
+        if (stream == null) {
+            try {
+                stream = new FileOutputStream(file, true);
+            } catch (IOException e) {
+                fail("could not open " + file + ": " + e.getMessage());
+            }
+        }
+
+        try {
+            Chunk written;
+            while ((written = full.take()) != CLOSE) {
+                if (!failed) {
+                    try {
+                        stream.write(written.bytes, 0, written.length);
+                        stream.flush();
+                        bytesWritten += written.length;
+                    } catch (IOException e) {
+                        fail(e.getMessage());
+                    }
+                }
+                free.add(written);
+            }
+        } catch (InterruptedException e) {
+            Log.w(LOG_TAG, "Session log writer interrupted");
+        }
+
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                Log.w(LOG_TAG, "Could not close session log: " + e.getMessage());
+            }
+        }
+    }
+
+    private void fail(@NonNull final String reason) {
+        Log.e(LOG_TAG, "Could not write session log, recording stopped: " + reason);
+        failed = true;
+    }
+
+    /**
+     * Wait for the writer thread to write out everything recorded and close the log, after close(), e.g. to read
+     * the log back. Not to be called on the UI or messaging threads.
+     *
+     * @param timeoutMillis longest to wait
+     * @return true if the log has been closed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitClosed(final long timeoutMillis) throws InterruptedException {
+        writerThread.join(timeoutMillis);
+        return !writerThread.isAlive();
+    }
+
+    /**
+     * @return true if recording stopped because the log could not be opened or written, or the writer fell behind
+     */
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    /**
+     * @return the number of records made
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * @return the number of bytes written to the log so far, not counting those still to be written. Can be called
+     * on any thread.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+}
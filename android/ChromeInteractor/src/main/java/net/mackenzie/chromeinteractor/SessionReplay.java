@@ -0,0 +1,192 @@
+package net.mackenzie.chromeinteractor;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+
+/**
+ * Plays a log written by a SessionRecorder back through a ChromecastInteractor, at the speed it was recorded or
+ * faster, so a session a player had trouble with can be repeated, or used as a load or latency test.
+ * <p/>
+ * The messages that were sent are sent again to the receiver of the primary session, through the same outbound
+ * queue, at the same times from the start of the replay divided by the speed. Input frames are sent again through
+ * the InputChannel in use, so they carry on from the sequence numbers of the inputs already sent to that receiver,
+ * which accepts them in order and still accepts the live inputs after them, and have timestamps of when they are
+ * sent again, so the latencies measured are those of the replay. The messages received, and the states of the connection, can
+ * also be replayed into a GameController, e.g. to reproduce what the app did without a receiver, or left out when
+ * replaying to a real one.
+ * <p/>
+ * Only one record is read ahead, so a log of any length takes the same small amount of memory.
+ * <p/>
+ * It must only be used on the UI thread.
+ */
+public class SessionReplay {
+    /**
+     * Interface for being told when a replay has finished
+     */
+    public interface Listener {
+        void replayFinished(@NonNull final SessionReplay replay);
+    }
+
+    // CONSTANTS
+    private static final String LOG_TAG = "SessionReplay";
+
+    // IMMUTABLES
+    private final SessionLogReader reader;
+    private final ChromecastInteractor chromecastInteractor;
+    private final InputChannel inputChannel;
+    private final GameController gameController;
+    private final double speed;
+    private final Listener listener;
+
+    // INITIALIZED IMMUTABLES
+    private final Handler handler = new Handler();
+    private final InputFrame inputFrame = new InputFrame();
+    private final Runnable replayRunnable = new Runnable() {
+        @Override
+        public void run() {
+            replayDue();
+        }
+    };
+
+    // MUTABLES
+    private long startedAt = -1;
+    private boolean finished = false;
+    private long outbound = 0;
+    private long inbound = 0;
+    private long states = 0;
+
+    /**
+     * @param reader               of the log to replay, with no records read yet
+     * @param chromecastInteractor to send the messages that were sent through
+     * @param inputChannel         to send the inputs that were sent through, the one the live inputs are sent by
+     * @param gameController       to replay the messages received and the states to, or null not to
+     * @param speed                times as fast as it was recorded, 1 for the same speed
+     * @param listener             to tell when the replay has finished, or null
+     */
+    public SessionReplay(@NonNull final SessionLogReader reader,
+                         @NonNull final ChromecastInteractor chromecastInteractor,
+                         @NonNull final InputChannel inputChannel,
+                         @Nullable final GameController gameController, final double speed,
+                         @Nullable final Listener listener) {
+        if (speed <= 0) {
+            throw new IllegalArgumentException("Speed must be positive: " + speed);
+        }
+        this.reader = reader;
+        this.chromecastInteractor = chromecastInteractor;
+        this.inputChannel = inputChannel;
+        this.gameController = gameController;
+        this.speed = speed;
+        this.listener = listener;
+    }
+
+    /**
+     * Start replaying from the first record, now
+     */
+    public void start() {
+        if (startedAt >= 0) {
+            return;
+        }
+        startedAt = SystemClock.uptimeMillis();
+        readNext();
+    }
+
+    /**
+     * Stop replaying, without telling the listener
+     */
+    public void stop() {
+        handler.removeCallbacks(replayRunnable);
+        finished = true;
+    }
+
+    /**
+     * Read the next record and schedule it, or finish at the end of the log
+     */
+    private void readNext() {
+        boolean more;
+        try {
+            more = reader.next();
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Could not read session log, replay stopped: " + e.getMessage());
+            more = false;
+        }
+
+        if (!more) {
+            finished = true;
+            if (listener != null) {
+                listener.replayFinished(this);
+            }
+            return;
+        }
+
+        handler.postAtTime(replayRunnable, startedAt + Math.round(reader.getTimeMillis() / speed));
+    }
+
+    /**
+     * Replay the record that is due, then read the next
+     */
+    private void replayDue() {
+        switch (reader.getKind()) {
+            case SessionRecorder.KIND_OUTBOUND:
+                String message = reader.getMessage();
+                if (inputFrame.decode(message)) {
+                    inputChannel.replay(inputFrame.getType(), inputFrame.getValue());
+                } else {
+                    chromecastInteractor.sendMessage(message, reader.getPolicy());
+                }
+                outbound++;
+                break;
+
+            case SessionRecorder.KIND_INBOUND:
+                if (gameController != null) {
+                    gameController.receiverMessage(reader.getMessage());
+                }
+                inbound++;
+                break;
+
+            case SessionRecorder.KIND_STATE:
+                if (gameController != null) {
+                    gameController.newChromecastState(reader.getState());
+                }
+                states++;
+                break;
+
+            default:
+                break;
+        }
+        readNext();
+    }
+
+    /**
+     * @return true once the end of the log has been reached, or the replay stopped
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return the number of messages sent to the receiver so far
+     */
+    public long getOutbound() {
+        return outbound;
+    }
+
+    /**
+     * @return the number of messages received that have been replayed so far
+     */
+    public long getInbound() {
+        return inbound;
+    }
+
+    /**
+     * @return the number of states replayed so far
+     */
+    public long getStates() {
+        return states;
+    }
+}
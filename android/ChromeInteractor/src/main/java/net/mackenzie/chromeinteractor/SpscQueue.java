@@ -0,0 +1,121 @@
+package net.mackenzie.chromeinteractor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded queue for passing items from one thread to one other thread without locks or garbage.
+ * <p/>
+ * The queue is a ring of slots created up front. The producer claims the next free slot, fills it in and
+ * publishes it; the consumer peeks at the oldest published slot, reads it and releases it to be reused. The
+ * indexes of the two ends are only written by their own thread, with ordered writes, so neither thread ever waits
+ * for the other, and each keeps a copy of the other's index so it only reads it when the queue looks full or empty.
+ * <p/>
+ * Only one thread may call claim() and publish(), and only one thread may call peek() and release().
+ *
+ * @param <E> type of the slots, whose fields hold an item
+ */
+public class SpscQueue<E> {
+    /**
+     * Interface for creating the slots of the queue
+     */
+    public interface Factory<E> {
+        E create();
+    }
+
+    // IMMUTABLES
+    private final Object[] slots;
+    private final int mask;
+    // index of the next slot to be released, only written by the consumer
+    private final AtomicLong head = new AtomicLong();
+    // index of the next slot to be published, only written by the producer
+    private final AtomicLong tail = new AtomicLong();
+
+    // MUTABLES
+    // producer's copies
+    private long producerIndex = 0;
+    private long producerHeadCache = 0;
+    // consumer's copies
+    private long consumerIndex = 0;
+    private long consumerTailCache = 0;
+
+    /**
+     * @param capacity number of items that can be waiting, rounded up to a power of two
+     * @param factory  to create the slots with
+     */
+    public SpscQueue(final int capacity, @NonNull final Factory<E> factory) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive");
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        slots = new Object[size];
+        mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            slots[i] = factory.create();
+        }
+    }
+
+    /**
+     * Producer: get the next free slot to fill in, which isn't seen by the consumer until publish() is called
+     *
+     * @return the slot, or null if the queue is full
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public E claim() {
+        if (producerIndex - producerHeadCache >= slots.length) {
+            producerHeadCache = head.get();
+            if (producerIndex - producerHeadCache >= slots.length) {
+                return null;
+            }
+        }
+        return (E) slots[(int) (producerIndex & mask)];
+    }
+
+    /**
+     * Producer: pass the slot from the last claim() to the consumer
+     */
+    public void publish() {
+        tail.lazySet(++producerIndex);
+    }
+
+    /**
+     * Consumer: get the oldest published slot, which stays in the queue until release() is called
+     *
+     * @return the slot, or null if the queue is empty
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        if (consumerIndex >= consumerTailCache) {
+            consumerTailCache = tail.get();
+            if (consumerIndex >= consumerTailCache) {
+                return null;
+            }
+        }
+        return (E) slots[(int) (consumerIndex & mask)];
+    }
+
+    /**
+     * Consumer: give the slot from the last peek() back to the producer to reuse
+     */
+    public void release() {
+        head.lazySet(++consumerIndex);
+    }
+
+    /**
+     * @return the number of items waiting, which may already be out of date when called from either thread
+     */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+}
@@ -0,0 +1,56 @@
+package net.mackenzie.chromeinteractor;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Interface for the way ChromecastInteractor reaches a receiver, so that messages can go via the Cast relay
+ * (CastTransport) or directly over the local network (WebSocketTransport).
+ * <p/>
+ * All methods are called, and all Listener methods must be called, on the ChromecastInteractor's messaging
+ * thread, which connect() is called on.
+ */
+public interface Transport {
+    /**
+     * Interface that ChromecastInteractor implements to be told of events on a Transport
+     */
+    interface Listener {
+        /**
+         * The transport's connection to the receiver has changed state, e.g. to CONNECTING or RECEIVER_READY
+         */
+        void onTransportState(@NonNull final ChromecastInteractor.CHROMECAST_STATE state);
+
+        /**
+         * A message was received from the receiver
+         */
+        void onMessage(@NonNull final String message);
+
+        /**
+         * The result of a send() is known. Results are reported in the order messages were sent.
+         */
+        void onSendResult(final boolean success);
+
+        /**
+         * The transport has lost its connection to the receiver and can't be used any more
+         */
+        void onTransportClosed();
+    }
+
+    /**
+     * Start connecting to the receiver, reporting progress to the listener
+     *
+     * @param listener to report events to
+     */
+    void connect(@NonNull final Listener listener);
+
+    /**
+     * Send a message to the receiver. Only called once the transport is RECEIVER_READY.
+     *
+     * @param message to send
+     */
+    void send(@NonNull final String message);
+
+    /**
+     * Close the connection to the receiver. The listener will not be called again.
+     */
+    void disconnect();
+}
@@ -0,0 +1,438 @@
+package net.mackenzie.chromeinteractor;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Transport that reaches a receiver directly over the local network using a WebSocket, without going via
+ * the Cast relay.
+ * <p/>
+ * The browser version of the receiver can't accept connections itself, so senders connect to the relay
+ * in receiver/relay.js, that serves the receiver page to a browser and passes messages between them.
+ * <p/>
+ * Connecting and reading is done on one background thread, and writing on another so that sending never
+ * waits for the network. Events are passed back to the thread connect() was called on.
+ */
+public class WebSocketTransport implements Transport {
+    // CONSTANTS
+    private static final String LOG_TAG = "WebSocketTransport";
+    public static final int DEFAULT_PORT = 8090;
+    private static final String SENDER_PATH = "/sender";
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final int SEND_QUEUE_CAPACITY = 32;
+    // Messages from the receiver are short, anything longer is from something else and the connection is closed
+    // rather than allocate whatever a frame's length says
+    private static final int MAX_MESSAGE_BYTES = 4096;
+    private static final int CLOSE_MESSAGE_TOO_BIG = 1009;
+
+    private static final int OPCODE_CONTINUATION = 0x0;
+    private static final int OPCODE_TEXT = 0x1;
+    private static final int OPCODE_CLOSE = 0x8;
+    private static final int OPCODE_PING = 0x9;
+    private static final int OPCODE_PONG = 0xA;
+
+    // Messages passed from the background threads to the listener's thread
+    private static final int EVENT_STATE = 1;
+    private static final int EVENT_MESSAGE = 2;
+    private static final int EVENT_SEND_RESULT = 3;
+    private static final int EVENT_CLOSED = 4;
+
+    private static final char[] BASE64 =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    // IMMUTABLES
+    private final String host;
+    private final int port;
+
+    // INITIALIZED IMMUTABLES
+    private final ArrayBlockingQueue<String> sendQueue = new ArrayBlockingQueue<>(SEND_QUEUE_CAPACITY);
+    private final Random random = new Random();
+
+    // MUTABLES
+    private Handler handler;
+    private Listener listener;
+    private volatile boolean closed = false;
+    private volatile Socket socket;
+    private OutputStream outputStream;
+    private DataInputStream inputStream;
+    private Thread readerThread;
+    // Started on the reader thread, and interrupted by disconnect()
+    private volatile Thread writerThread;
+    private byte[] writeBuffer = new byte[256];
+    private final byte[] mask = new byte[4];
+
+    /**
+     * Passes events from the background threads to the listener, on the thread connect() was called on
+     */
+    private class EventCallback implements Handler.Callback {
+        @Override
+        public boolean handleMessage(@NonNull Message event) {
+            if (listener == null) {
+                return true;
+            }
+
+            switch (event.what) {
+                case EVENT_STATE:
+                    listener.onTransportState((ChromecastInteractor.CHROMECAST_STATE) event.obj);
+                    break;
+                case EVENT_MESSAGE:
+                    listener.onMessage((String) event.obj);
+                    break;
+                case EVENT_SEND_RESULT:
+                    listener.onSendResult(event.arg1 == 1);
+                    break;
+                case EVENT_CLOSED:
+                    Listener closedListener = listener;
+                    disconnect();
+                    closedListener.onTransportClosed();
+                    break;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @param host name or address of the relay on the local network
+     * @param port the relay is listening on
+     */
+    public WebSocketTransport(@NonNull final String host, final int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    @Override
+    public void connect(@NonNull final Listener listener) {
+        Log.i(LOG_TAG, "connect() to " + host + ":" + port);
+        this.listener = listener;
+        handler = new Handler(Looper.myLooper(), new EventCallback());
+        listener.onTransportState(ChromecastInteractor.CHROMECAST_STATE.CONNECTING);
+
+        readerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    openConnection();
+                    startWriter();
+                    postEvent(EVENT_STATE, ChromecastInteractor.CHROMECAST_STATE.RECEIVER_READY);
+                    readMessages();
+                } catch (IOException e) {
+                    if (!closed) {
+                        Log.e(LOG_TAG, "WebSocket connection failed", e);
+                    }
+                }
+                postEvent(EVENT_CLOSED, null);
+            }
+        }, LOG_TAG + "-reader");
+        readerThread.start();
+    }
+
+    /**
+     * Queue a message for the writer thread to send
+     *
+     * @param message to send
+     */
+    @Override
+    public void send(@NonNull final String message) {
+        if ((closed || !sendQueue.offer(message)) && listener != null) {
+            listener.onSendResult(false);
+        }
+    }
+
+    @Override
+    public void disconnect() {
+        Log.i(LOG_TAG, "disconnect() called");
+        closed = true;
+        listener = null;
+        if (handler != null) {
+            handler.removeCallbacksAndMessages(null);
+        }
+
+        if (writerThread != null) {
+            writerThread.interrupt();
+        }
+
+        Socket s = socket;
+        if (s != null) {
+            try {
+                s.close();
+            } catch (IOException e) {
+                Log.w(LOG_TAG, "Exception closing socket", e);
+            }
+        }
+    }
+
+    private void postEvent(final int what, final Object obj) {
+        if (!closed) {
+            handler.obtainMessage(what, obj).sendToTarget();
+        }
+    }
+
+    /**
+     * Open the TCP connection and upgrade it to a WebSocket
+     */
+    private void openConnection() throws IOException {
+        Socket s = new Socket();
+        s.setTcpNoDelay(true); // don't hold small input messages back to batch them up
+        s.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+        socket = s;
+        if (closed) {
+            s.close();
+            throw new IOException("Closed while connecting");
+        }
+        postEvent(EVENT_STATE, ChromecastInteractor.CHROMECAST_STATE.CONNECTED);
+
+        byte[] keyBytes = new byte[16];
+        random.nextBytes(keyBytes);
+        String key = base64(keyBytes);
+
+        outputStream = s.getOutputStream();
+        String request = "GET " + SENDER_PATH + " HTTP/1.1\r\n" +
+                "Host: " + host + ":" + port + "\r\n" +
+                "Upgrade: websocket\r\n" +
+                "Connection: Upgrade\r\n" +
+                "Sec-WebSocket-Key: " + key + "\r\n" +
+                "Sec-WebSocket-Version: 13\r\n\r\n";
+        outputStream.write(request.getBytes("ISO-8859-1"));
+        outputStream.flush();
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+        String status = readLine(in);
+        if (!status.startsWith("HTTP/1.1 101")) {
+            throw new IOException("WebSocket upgrade refused: " + status);
+        }
+
+        String expectedAccept = acceptKey(key);
+        boolean accepted = false;
+        String header;
+        while (!(header = readLine(in)).isEmpty()) {
+            int colon = header.indexOf(':');
+            if (colon > 0 && header.substring(0, colon).trim().equalsIgnoreCase("Sec-WebSocket-Accept")) {
+                accepted = header.substring(colon + 1).trim().equals(expectedAccept);
+            }
+        }
+        if (!accepted) {
+            throw new IOException("WebSocket upgrade not accepted");
+        }
+
+        inputStream = in;
+    }
+
+    /**
+     * Read frames from the relay until the connection is closed, passing text messages to the listener
+     */
+    private void readMessages() throws IOException {
+        StringBuilder fragments = null;
+
+        while (!closed) {
+            int b0 = inputStream.readUnsignedByte();
+            int b1 = inputStream.readUnsignedByte();
+            boolean fin = (b0 & 0x80) != 0;
+            int opcode = b0 & 0x0F;
+            long length = b1 & 0x7F;
+            if (length == 126) {
+                length = inputStream.readUnsignedShort();
+            } else if (length == 127) {
+                length = inputStream.readLong();
+            }
+            if (length > MAX_MESSAGE_BYTES
+                    || (fragments != null && fragments.length() + length > MAX_MESSAGE_BYTES)) {
+                closeTooBig();
+                throw new IOException("WebSocket message too large: " + length + " bytes");
+            }
+
+            byte[] frameMask = null;
+            if ((b1 & 0x80) != 0) {
+                frameMask = new byte[4];
+                inputStream.readFully(frameMask);
+            }
+
+            byte[] payload = new byte[(int) length];
+            inputStream.readFully(payload);
+            if (frameMask != null) {
+                for (int i = 0; i < payload.length; i++) {
+                    payload[i] ^= frameMask[i & 3];
+                }
+            }
+
+            switch (opcode) {
+                case OPCODE_TEXT:
+                case OPCODE_CONTINUATION:
+                    String text = new String(payload, "UTF-8");
+                    if (fin && fragments == null) {
+                        postEvent(EVENT_MESSAGE, text);
+                    } else {
+                        if (fragments == null) {
+                            fragments = new StringBuilder();
+                        }
+                        fragments.append(text);
+                        if (fin) {
+                            postEvent(EVENT_MESSAGE, fragments.toString());
+                            fragments = null;
+                        }
+                    }
+                    break;
+
+                case OPCODE_PING:
+                    writeFrame(OPCODE_PONG, payload, payload.length);
+                    break;
+
+                case OPCODE_CLOSE:
+                    writeFrame(OPCODE_CLOSE, payload, payload.length);
+                    return;
+
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Tell the relay the connection is being closed because it sent a message that is too big
+     */
+    private void closeTooBig() {
+        try {
+            byte[] status = {(byte) (CLOSE_MESSAGE_TOO_BIG >> 8), (byte) CLOSE_MESSAGE_TOO_BIG};
+            writeFrame(OPCODE_CLOSE, status, status.length);
+        } catch (IOException e) {
+            // it is being closed anyway
+        }
+    }
+
+    /**
+     * Start the thread that sends the messages queued by send(). If disconnect() was called meanwhile it may not
+     * have seen the thread, so it is stopped here.
+     */
+    private void startWriter() {
+        writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (!closed) {
+                        String message = sendQueue.take();
+                        boolean success;
+                        try {
+                            byte[] payload = message.getBytes("UTF-8");
+                            writeFrame(OPCODE_TEXT, payload, payload.length);
+                            success = true;
+                        } catch (IOException e) {
+                            Log.e(LOG_TAG, "Exception while sending message", e);
+                            success = false;
+                        }
+                        if (!closed) {
+                            handler.obtainMessage(EVENT_SEND_RESULT, success ? 1 : 0, 0).sendToTarget();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    // disconnect() was called
+                }
+            }
+        }, LOG_TAG + "-writer");
+        writerThread.start();
+        if (closed) {
+            writerThread.interrupt();
+        }
+    }
+
+    /**
+     * Write a single masked frame, as all frames from a client must be
+     */
+    private synchronized void writeFrame(final int opcode, final byte[] payload, final int length)
+            throws IOException {
+        int headerLength = 2 + (length < 126 ? 0 : (length < 65536 ? 2 : 8)) + 4;
+        if (writeBuffer.length < headerLength + length) {
+            writeBuffer = new byte[headerLength + length];
+        }
+
+        int i = 0;
+        writeBuffer[i++] = (byte) (0x80 | opcode);
+        if (length < 126) {
+            writeBuffer[i++] = (byte) (0x80 | length);
+        } else if (length < 65536) {
+            writeBuffer[i++] = (byte) (0x80 | 126);
+            writeBuffer[i++] = (byte) (length >> 8);
+            writeBuffer[i++] = (byte) length;
+        } else {
+            writeBuffer[i++] = (byte) (0x80 | 127);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                writeBuffer[i++] = (byte) (((long) length) >> shift);
+            }
+        }
+
+        random.nextBytes(mask);
+        for (int m = 0; m < 4; m++) {
+            writeBuffer[i++] = mask[m];
+        }
+        for (int p = 0; p < length; p++) {
+            writeBuffer[i++] = (byte) (payload[p] ^ mask[p & 3]);
+        }
+
+        outputStream.write(writeBuffer, 0, i);
+        outputStream.flush();
+    }
+
+    /**
+     * Read a line of the HTTP response to the upgrade request
+     */
+    private static String readLine(final DataInputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c == -1) {
+                throw new EOFException("Connection closed during WebSocket upgrade");
+            }
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+
+    /**
+     * @return the Sec-WebSocket-Accept value the relay should respond with for our key
+     */
+    private static String acceptKey(final String key) throws UnsupportedEncodingException {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            return base64(sha1.digest((key + WEBSOCKET_GUID).getBytes("ISO-8859-1")));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+
+    private static String base64(final byte[] bytes) {
+        StringBuilder out = new StringBuilder(((bytes.length + 2) / 3) * 4);
+        for (int b = 0; b < bytes.length; b += 3) {
+            int remaining = bytes.length - b;
+            int triple = (bytes[b] & 0xFF) << 16;
+            if (remaining > 1) {
+                triple |= (bytes[b + 1] & 0xFF) << 8;
+            }
+            if (remaining > 2) {
+                triple |= bytes[b + 2] & 0xFF;
+            }
+            out.append(BASE64[(triple >> 18) & 0x3F]);
+            out.append(BASE64[(triple >> 12) & 0x3F]);
+            out.append(remaining > 1 ? BASE64[(triple >> 6) & 0x3F] : '=');
+            out.append(remaining > 2 ? BASE64[triple & 0x3F] : '=');
+        }
+        return out.toString();
+    }
+}
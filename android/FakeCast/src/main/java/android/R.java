@@ -0,0 +1,10 @@
+package android;
+
+/**
+ * Plain JVM stand-in for the Android platform resource ids, for running on a plain JVM.
+ */
+public final class R {
+    public static final class color {
+        public static final int transparent = 0x0106000d;
+    }
+}
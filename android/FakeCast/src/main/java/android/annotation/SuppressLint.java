@@ -0,0 +1,8 @@
+package android.annotation;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, for running on a plain JVM.
+ */
+public @interface SuppressLint {
+    String[] value();
+}
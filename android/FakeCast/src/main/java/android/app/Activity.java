@@ -0,0 +1,17 @@
+package android.app;
+
+import android.content.Context;
+import android.view.View;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, for running on a plain JVM.
+ * Subclasses return the views the code being measured looks up.
+ */
+public class Activity extends Context {
+    public void setContentView(final int layoutId) {
+    }
+
+    public <T extends View> T findViewById(final int id) {
+        return null;
+    }
+}
@@ -0,0 +1,8 @@
+package android.content;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, for running on a plain JVM.
+ */
+public abstract class BroadcastReceiver {
+    public abstract void onReceive(Context context, Intent intent);
+}
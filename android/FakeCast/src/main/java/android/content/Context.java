@@ -0,0 +1,33 @@
+package android.content;
+
+import android.content.res.Resources;
+import android.net.ConnectivityManager;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, for running on a plain JVM.
+ */
+public class Context {
+    public static final String CONNECTIVITY_SERVICE = "connectivity";
+
+    private final Resources resources = new Resources();
+    private final ConnectivityManager connectivityManager = new ConnectivityManager();
+
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    public Object getSystemService(final String name) {
+        return CONNECTIVITY_SERVICE.equals(name) ? connectivityManager : null;
+    }
+
+    public Intent registerReceiver(final BroadcastReceiver receiver, final IntentFilter filter) {
+        return null;
+    }
+
+    public void unregisterReceiver(final BroadcastReceiver receiver) {
+    }
+
+    public Resources getResources() {
+        return resources;
+    }
+}
@@ -0,0 +1,7 @@
+package android.content;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, for running on a plain JVM.
+ */
+public class Intent {
+}
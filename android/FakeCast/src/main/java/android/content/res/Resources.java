@@ -0,0 +1,18 @@
+package android.content.res;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, for running on a plain JVM.
+ */
+public class Resources {
+    public String getString(final int id) {
+        return "string-" + id;
+    }
+
+    public String getString(final int id, final Object... formatArgs) {
+        return "string-" + id + java.util.Arrays.toString(formatArgs);
+    }
+
+    public int getColor(final int id) {
+        return 0;
+    }
+}
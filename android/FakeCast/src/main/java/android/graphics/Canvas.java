@@ -0,0 +1,10 @@
+package android.graphics;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, for running on a plain JVM.
+ */
+public class Canvas {
+    public void drawRect(final float left, final float top, final float right, final float bottom,
+                         final Paint paint) {
+    }
+}
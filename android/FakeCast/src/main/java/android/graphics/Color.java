@@ -0,0 +1,12 @@
+package android.graphics;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, for running on a plain JVM.
+ */
+public class Color {
+    public static final int WHITE = 0xFFFFFFFF;
+
+    public static int parseColor(final String colorString) {
+        return (int) Long.parseLong(colorString.substring(1), 16) | 0xFF000000;
+    }
+}
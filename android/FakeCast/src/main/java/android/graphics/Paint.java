@@ -0,0 +1,16 @@
+package android.graphics;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, for running on a plain JVM.
+ */
+public class Paint {
+    private int color;
+
+    public void setColor(final int color) {
+        this.color = color;
+    }
+
+    public int getColor() {
+        return color;
+    }
+}
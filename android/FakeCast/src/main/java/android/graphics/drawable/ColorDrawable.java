@@ -0,0 +1,9 @@
+package android.graphics.drawable;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, for running on a plain JVM.
+ */
+public class ColorDrawable {
+    public ColorDrawable(final int color) {
+    }
+}
@@ -0,0 +1,14 @@
+package android.net;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, for running on a plain JVM. WiFi is always connected.
+ */
+public class ConnectivityManager {
+    public static final int TYPE_WIFI = 1;
+
+    private final NetworkInfo wifi = new NetworkInfo();
+
+    public NetworkInfo getNetworkInfo(final int networkType) {
+        return wifi;
+    }
+}
@@ -0,0 +1,15 @@
+package android.os;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, for running on a plain JVM.
+ * It is the version the app targets.
+ */
+public class Build {
+    public static class VERSION {
+        public static final int SDK_INT = 30;
+    }
+
+    public static class VERSION_CODES {
+        public static final int N = 24;
+    }
+}
@@ -0,0 +1,28 @@
+package android.os;
+
+import java.util.HashMap;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, for running on a plain JVM.
+ */
+public class Bundle {
+    private final HashMap<String, Object> values = new HashMap<>();
+
+    public void putBoolean(final String key, final boolean value) {
+        values.put(key, value);
+    }
+
+    public boolean getBoolean(final String key) {
+        Object value = values.get(key);
+        return value instanceof Boolean && (Boolean) value;
+    }
+
+    public void putParcelable(final String key, final Parcelable value) {
+        values.put(key, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Parcelable> T getParcelable(final String key) {
+        return (T) values.get(key);
+    }
+}
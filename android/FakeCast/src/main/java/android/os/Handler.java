@@ -0,0 +1,117 @@
+package android.os;
+
+import java.util.ArrayList;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, for running on a plain JVM.
+ * All handlers post to the main Looper, which runs in virtual time.
+ * <p/>
+ * Messages can be sent to it from any thread, and are handled on the thread that runs the Looper, by the Callback
+ * or handleMessage(). removeCallbacksAndMessages(null) removes its messages, but not its runnables, which nothing
+ * that uses it needs.
+ */
+public class Handler {
+    /**
+     * Interface for handling messages without subclassing Handler
+     */
+    public interface Callback {
+        boolean handleMessage(Message msg);
+    }
+
+    // IMMUTABLES
+    private final Looper looper;
+    private final Callback callback;
+    // Messages sent and not handled yet, so they can be removed
+    private final ArrayList<Runnable> pendingMessages = new ArrayList<>();
+
+    public Handler() {
+        this(Looper.getMainLooper());
+    }
+
+    public Handler(final Looper looper) {
+        this(looper, null);
+    }
+
+    public Handler(final Looper looper, final Callback callback) {
+        this.looper = looper;
+        this.callback = callback;
+    }
+
+    public boolean post(final Runnable runnable) {
+        looper.post(runnable, looper.uptimeMillis());
+        return true;
+    }
+
+    public boolean postDelayed(final Runnable runnable, final long delayMillis) {
+        looper.post(runnable, looper.uptimeMillis() + delayMillis);
+        return true;
+    }
+
+    public boolean postAtTime(final Runnable runnable, final long uptimeMillis) {
+        looper.post(runnable, uptimeMillis);
+        return true;
+    }
+
+    public void removeCallbacks(final Runnable runnable) {
+        looper.remove(runnable);
+    }
+
+    public final Message obtainMessage(final int what, final Object obj) {
+        Message message = new Message();
+        message.what = what;
+        message.obj = obj;
+        message.target = this;
+        return message;
+    }
+
+    public final Message obtainMessage(final int what, final int arg1, final int arg2) {
+        Message message = obtainMessage(what, null);
+        message.arg1 = arg1;
+        message.arg2 = arg2;
+        return message;
+    }
+
+    public final boolean sendMessage(final Message message) {
+        Runnable delivery = new Runnable() {
+            @Override
+            public void run() {
+                synchronized (pendingMessages) {
+                    pendingMessages.remove(this);
+                }
+                dispatchMessage(message);
+            }
+        };
+        synchronized (pendingMessages) {
+            pendingMessages.add(delivery);
+        }
+        looper.post(delivery, looper.uptimeMillis());
+        return true;
+    }
+
+    public void dispatchMessage(final Message message) {
+        if (callback == null || !callback.handleMessage(message)) {
+            handleMessage(message);
+        }
+    }
+
+    public void handleMessage(final Message message) {
+    }
+
+    /**
+     * Remove the messages sent that haven't been handled yet. Only a null token, for all of them, is supported.
+     */
+    public final void removeCallbacksAndMessages(final Object token) {
+        ArrayList<Runnable> removed;
+        synchronized (pendingMessages) {
+            removed = new ArrayList<>(pendingMessages);
+            pendingMessages.clear();
+        }
+        for (Runnable delivery : removed) {
+            looper.remove(delivery);
+        }
+    }
+
+    public Looper getLooper() {
+        return looper;
+    }
+}
@@ -0,0 +1,31 @@
+package android.os;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, for running on a plain JVM.
+ * <p/>
+ * No thread is started: its Looper is the main Looper, so everything posted to it runs in the same virtual time,
+ * in order with everything else.
+ */
+public class HandlerThread {
+    // IMMUTABLES
+    private final String name;
+
+    public HandlerThread(final String name, final int priority) {
+        this.name = name;
+    }
+
+    public void start() {
+    }
+
+    public Looper getLooper() {
+        return Looper.getMainLooper();
+    }
+
+    public boolean quit() {
+        return true;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
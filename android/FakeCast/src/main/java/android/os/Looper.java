@@ -0,0 +1,187 @@
+package android.os;
+
+import java.util.ArrayList;
+import java.util.PriorityQueue;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, for running on a plain JVM.
+ * <p/>
+ * There is only the main looper, and it runs in virtual time: nothing runs until runUntil() is called, which
+ * runs everything due in time order, moving SystemClock.uptimeMillis() on to when each is due. So runs with
+ * simulated delays of seconds take milliseconds, and always run the same way.
+ * <p/>
+ * Entries are pooled, like Android's Messages, so posting doesn't make garbage. Like Android's, runnables can be
+ * posted to it from any thread, but it is only run on the thread that calls runUntil() or runPending().
+ */
+public final class Looper {
+    // CONSTANTS
+    private static final Looper MAIN = new Looper();
+
+    // IMMUTABLES
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+    private final ArrayList<Entry> batch = new ArrayList<>();
+    private final ArrayList<Entry> pool = new ArrayList<>();
+
+    // MUTABLES
+    private long now = 0;
+    private long sequence = 0;
+
+    /**
+     * A runnable waiting to run at a time, in the order they were posted for the same time
+     */
+    private static final class Entry implements Comparable<Entry> {
+        Runnable runnable;
+        long when;
+        long sequence;
+        boolean cancelled;
+
+        @Override
+        public int compareTo(final Entry other) {
+            if (when != other.when) {
+                return when < other.when ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+
+    private Looper() {
+    }
+
+    public static Looper getMainLooper() {
+        return MAIN;
+    }
+
+    public static Looper myLooper() {
+        return MAIN;
+    }
+
+    /**
+     * Not part of the Android API: the virtual time, used by SystemClock
+     */
+    public synchronized long uptimeMillis() {
+        return now;
+    }
+
+    /**
+     * Not part of the Android API: used by Handler to post a runnable to run at a time
+     */
+    synchronized void post(final Runnable runnable, final long when) {
+        Entry entry = pool.isEmpty() ? new Entry() : pool.remove(pool.size() - 1);
+        entry.runnable = runnable;
+        entry.when = Math.max(when, now);
+        entry.sequence = sequence++;
+        entry.cancelled = false;
+        queue.add(entry);
+    }
+
+    /**
+     * Not part of the Android API: used by Handler to remove all posts of a runnable
+     */
+    synchronized void remove(final Runnable runnable) {
+        for (Entry entry : batch) {
+            if (entry.runnable == runnable) {
+                entry.cancelled = true;
+            }
+        }
+
+        Entry found;
+        do {
+            found = null;
+            for (Entry entry : queue) {
+                if (entry.runnable == runnable) {
+                    found = entry;
+                    break;
+                }
+            }
+            if (found != null) {
+                queue.remove(found);
+                recycle(found);
+            }
+        } while (found != null);
+    }
+
+    private void recycle(final Entry entry) {
+        entry.runnable = null;
+        pool.add(entry);
+    }
+
+    /**
+     * Not part of the Android API: run everything due up to a time, in time order, moving the time on to when
+     * each one is due, then to the time given
+     *
+     * @param uptimeMillis to run until
+     */
+    public void runUntil(final long uptimeMillis) {
+        Runnable runnable;
+        while ((runnable = next(uptimeMillis)) != null) {
+            runnable.run();
+        }
+
+        synchronized (this) {
+            now = Math.max(now, uptimeMillis);
+        }
+    }
+
+    /**
+     * @return the next runnable due by a time, having moved the time on to when it is due, or null if none are
+     */
+    private synchronized Runnable next(final long uptimeMillis) {
+        Entry entry = queue.peek();
+        if (entry == null || entry.when > uptimeMillis) {
+            return null;
+        }
+
+        queue.poll();
+        now = entry.when;
+        Runnable runnable = entry.runnable;
+        recycle(entry);
+        return runnable;
+    }
+
+    /**
+     * Not part of the Android API: run everything posted so far straight away, whenever it is due, without
+     * moving the time on. Anything they post is left for later.
+     *
+     * @return the number run
+     */
+    public int runPending() {
+        synchronized (this) {
+            while (!queue.isEmpty()) {
+                batch.add(queue.poll());
+            }
+        }
+
+        int count = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Runnable runnable = runnableOf(batch.get(i));
+            if (runnable != null) {
+                runnable.run();
+                count++;
+            }
+        }
+
+        synchronized (this) {
+            for (Entry entry : batch) {
+                recycle(entry);
+            }
+            batch.clear();
+        }
+        return count;
+    }
+
+    /**
+     * @return the runnable of an entry, or null if it has been cancelled
+     */
+    private synchronized Runnable runnableOf(final Entry entry) {
+        return entry.cancelled ? null : entry.runnable;
+    }
+
+    /**
+     * Not part of the Android API: forget everything posted so far without running it
+     */
+    public synchronized void clearPending() {
+        while (!queue.isEmpty()) {
+            recycle(queue.poll());
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package android.os;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, for running on a plain JVM.
+ * Messages are not pooled, as only WebSocketTransport's background threads send them.
+ */
+public final class Message {
+    // MUTABLES
+    public int what;
+    public int arg1;
+    public int arg2;
+    public Object obj;
+    Handler target;
+
+    public void sendToTarget() {
+        target.sendMessage(this);
+    }
+}
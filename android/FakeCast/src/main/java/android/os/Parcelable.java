@@ -0,0 +1,7 @@
+package android.os;
+
+/**
+ * Plain JVM stand-in for the Android interface of the same name, for running on a plain JVM.
+ */
+public interface Parcelable {
+}
@@ -0,0 +1,17 @@
+package android.os;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, for running on a plain JVM.
+ * The process starts at the start of the main Looper's virtual time.
+ */
+public class Process {
+    public static final int THREAD_PRIORITY_DISPLAY = -4;
+    public static final int THREAD_PRIORITY_BACKGROUND = 10;
+
+    public static long getStartUptimeMillis() {
+        return 0;
+    }
+
+    public static void setThreadPriority(final int priority) {
+    }
+}
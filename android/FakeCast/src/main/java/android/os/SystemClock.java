@@ -0,0 +1,11 @@
+package android.os;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, for running on a plain JVM.
+ * The time is the main Looper's virtual time.
+ */
+public class SystemClock {
+    public static long uptimeMillis() {
+        return Looper.getMainLooper().uptimeMillis();
+    }
+}
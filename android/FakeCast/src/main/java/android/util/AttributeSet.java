@@ -0,0 +1,7 @@
+package android.util;
+
+/**
+ * Plain JVM stand-in for the Android interface of the same name, for running on a plain JVM.
+ */
+public interface AttributeSet {
+}
@@ -0,0 +1,32 @@
+package android.util;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, for running on a plain JVM.
+ * Messages are built by the callers
+ * as they would be on a device, but are not written anywhere.
+ */
+public class Log {
+    public static int d(final String tag, final String message) {
+        return 0;
+    }
+
+    public static int i(final String tag, final String message) {
+        return 0;
+    }
+
+    public static int w(final String tag, final String message) {
+        return 0;
+    }
+
+    public static int w(final String tag, final String message, final Throwable throwable) {
+        return 0;
+    }
+
+    public static int e(final String tag, final String message) {
+        return 0;
+    }
+
+    public static int e(final String tag, final String message, final Throwable throwable) {
+        return 0;
+    }
+}
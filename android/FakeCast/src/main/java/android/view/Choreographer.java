@@ -0,0 +1,55 @@
+package android.view;
+
+import android.os.Handler;
+
+import java.util.IdentityHashMap;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, for running on a plain JVM.
+ * Frames are every FRAME_MILLIS of the main Looper's virtual time.
+ */
+public class Choreographer {
+    // CONSTANTS
+    public static final long FRAME_MILLIS = 16;
+    private static final Choreographer INSTANCE = new Choreographer();
+
+    // IMMUTABLES
+    private final Handler handler = new Handler();
+    private final IdentityHashMap<FrameCallback, Runnable> posted = new IdentityHashMap<>();
+
+    public interface FrameCallback {
+        void doFrame(long frameTimeNanos);
+    }
+
+    public static Choreographer getInstance() {
+        return INSTANCE;
+    }
+
+    public void postFrameCallback(final FrameCallback callback) {
+        postFrameCallbackDelayed(callback, 0);
+    }
+
+    public void postFrameCallbackDelayed(final FrameCallback callback, final long delayMillis) {
+        Runnable runnable = posted.get(callback);
+        if (runnable == null) {
+            runnable = new Runnable() {
+                @Override
+                public void run() {
+                    callback.doFrame(handler.getLooper().uptimeMillis() * 1000000L);
+                }
+            };
+            posted.put(callback, runnable);
+        }
+
+        // the first frame after the delay
+        long after = handler.getLooper().uptimeMillis() + delayMillis;
+        handler.postAtTime(runnable, ((after / FRAME_MILLIS) + 1) * FRAME_MILLIS);
+    }
+
+    public void removeFrameCallback(final FrameCallback callback) {
+        Runnable runnable = posted.get(callback);
+        if (runnable != null) {
+            handler.removeCallbacks(runnable);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package android.view;
+
+/**
+ * Plain JVM stand-in for the Android interface of the same name, for running on a plain JVM.
+ */
+public interface Menu {
+    MenuItem findItem(int id);
+}
@@ -0,0 +1,107 @@
+package android.view;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.util.AttributeSet;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, for running on a plain JVM.
+ */
+public class View {
+    public static final int VISIBLE = 0;
+    public static final int INVISIBLE = 4;
+    public static final int GONE = 8;
+
+    public interface OnClickListener {
+        void onClick(View view);
+    }
+
+    public interface OnTouchListener {
+        boolean onTouch(View view, MotionEvent event);
+    }
+
+    private int visibility = VISIBLE;
+    private int width;
+    private int height;
+    private boolean pressed;
+
+    public View(final Context context) {
+    }
+
+    public View(final Context context, final AttributeSet attrs) {
+    }
+
+    public View(final Context context, final AttributeSet attrs, final int defStyleAttr) {
+    }
+
+    public <T extends View> T findViewById(final int id) {
+        return null;
+    }
+
+    public void setOnClickListener(final OnClickListener listener) {
+    }
+
+    public void setOnTouchListener(final OnTouchListener listener) {
+    }
+
+    public boolean performClick() {
+        return true;
+    }
+
+    public void setPressed(final boolean pressed) {
+        this.pressed = pressed;
+    }
+
+    public boolean isPressed() {
+        return pressed;
+    }
+
+    public void setVisibility(final int visibility) {
+        this.visibility = visibility;
+    }
+
+    public int getVisibility() {
+        return visibility;
+    }
+
+    /**
+     * Not part of the Android API: set the size layout would have given the view
+     */
+    public void setSize(final int width, final int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getPaddingLeft() {
+        return 0;
+    }
+
+    public int getPaddingRight() {
+        return 0;
+    }
+
+    public int getPaddingTop() {
+        return 0;
+    }
+
+    public int getPaddingBottom() {
+        return 0;
+    }
+
+    public void invalidate() {
+    }
+
+    public void postInvalidateOnAnimation() {
+    }
+
+    protected void onDraw(final Canvas canvas) {
+    }
+}
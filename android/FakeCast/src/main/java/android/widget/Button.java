@@ -0,0 +1,12 @@
+package android.widget;
+
+import android.content.Context;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, for running on a plain JVM.
+ */
+public class Button extends TextView {
+    public Button(final Context context) {
+        super(context);
+    }
+}
@@ -0,0 +1,27 @@
+package android.widget;
+
+import android.content.Context;
+import android.view.View;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, for running on a plain JVM.
+ */
+public class TextView extends View {
+    private CharSequence text;
+
+    public TextView(final Context context) {
+        super(context);
+    }
+
+    public void setText(final int resId) {
+        this.text = null;
+    }
+
+    public void setText(final CharSequence text) {
+        this.text = text;
+    }
+
+    public CharSequence getText() {
+        return text;
+    }
+}
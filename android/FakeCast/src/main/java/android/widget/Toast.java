@@ -0,0 +1,18 @@
+package android.widget;
+
+import android.content.Context;
+
+/**
+ * Plain JVM stand-in for the Android class of the same name, for running on a plain JVM. Toasts are never shown.
+ */
+public class Toast {
+    public static final int LENGTH_SHORT = 0;
+    public static final int LENGTH_LONG = 1;
+
+    public static Toast makeText(final Context context, final CharSequence text, final int duration) {
+        return new Toast();
+    }
+
+    public void show() {
+    }
+}
@@ -0,0 +1,7 @@
+package androidx.annotation;
+
+/**
+ * Plain JVM stand-in for the AndroidX annotation of the same name, for running on a plain JVM.
+ */
+public @interface NonNull {
+}
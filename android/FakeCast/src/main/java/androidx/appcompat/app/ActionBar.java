@@ -0,0 +1,11 @@
+package androidx.appcompat.app;
+
+import android.graphics.drawable.ColorDrawable;
+
+/**
+ * Plain JVM stand-in for the AndroidX class of the same name, for running on a plain JVM.
+ */
+public class ActionBar {
+    public void setBackgroundDrawable(final ColorDrawable drawable) {
+    }
+}
@@ -0,0 +1,12 @@
+package androidx.appcompat.app;
+
+import android.app.Activity;
+
+/**
+ * Plain JVM stand-in for the AndroidX class of the same name, for running on a plain JVM.
+ */
+public class AppCompatActivity extends Activity {
+    public ActionBar getSupportActionBar() {
+        return null;
+    }
+}
@@ -0,0 +1,12 @@
+package androidx.core.view;
+
+import android.view.MenuItem;
+
+/**
+ * Plain JVM stand-in for the AndroidX class of the same name, for running on a plain JVM.
+ */
+public class MenuItemCompat {
+    public static Object getActionProvider(final MenuItem item) {
+        return null;
+    }
+}
@@ -0,0 +1,11 @@
+package androidx.mediarouter.app;
+
+import androidx.mediarouter.media.MediaRouteSelector;
+
+/**
+ * Plain JVM stand-in for the AndroidX class of the same name, for running on a plain JVM.
+ */
+public class MediaRouteActionProvider {
+    public void setRouteSelector(final MediaRouteSelector selector) {
+    }
+}
@@ -0,0 +1,16 @@
+package androidx.mediarouter.media;
+
+/**
+ * Plain JVM stand-in for the AndroidX class of the same name, for running on a plain JVM.
+ */
+public class MediaRouteSelector {
+    public static class Builder {
+        public Builder addControlCategory(final String category) {
+            return this;
+        }
+
+        public MediaRouteSelector build() {
+            return new MediaRouteSelector();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package androidx.mediarouter.media;
+
+import android.content.Context;
+import android.os.Bundle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Plain JVM stand-in for the AndroidX class of the same name, for running on a plain JVM.
+ * <p/>
+ * There is one router, with no routes until they are added with addRoute(), e.g. a FakeCastDevice's route,
+ * which is then "discovered" by the callbacks. selectRoute() does what the user picking it from the cast
+ * button's dialog would.
+ */
+public class MediaRouter {
+    public static final int CALLBACK_FLAG_REQUEST_DISCOVERY = 4;
+
+    private static final MediaRouter INSTANCE = new MediaRouter();
+
+    private final List<RouteInfo> routes = new ArrayList<>();
+    private final List<Callback> callbacks = new ArrayList<>();
+
+    public static MediaRouter getInstance(final Context context) {
+        return INSTANCE;
+    }
+
+    public void addCallback(final MediaRouteSelector selector, final Callback callback, final int flags) {
+        if (!callbacks.contains(callback)) {
+            callbacks.add(callback);
+        }
+    }
+
+    public void removeCallback(final Callback callback) {
+        callbacks.remove(callback);
+    }
+
+    public List<RouteInfo> getRoutes() {
+        return Collections.unmodifiableList(routes);
+    }
+
+    /**
+     * Not part of the Android API: a route has been discovered
+     */
+    public void addRoute(final RouteInfo route) {
+        routes.add(route);
+        for (Callback callback : new ArrayList<>(callbacks)) {
+            callback.onRouteAdded(this, route);
+        }
+    }
+
+    /**
+     * Not part of the Android API: a route has gone
+     */
+    public void removeRoute(final RouteInfo route) {
+        if (routes.remove(route)) {
+            for (Callback callback : new ArrayList<>(callbacks)) {
+                callback.onRouteRemoved(this, route);
+            }
+        }
+    }
+
+    /**
+     * Not part of the Android API: the user has selected a route
+     */
+    public void selectRoute(final RouteInfo route) {
+        for (Callback callback : new ArrayList<>(callbacks)) {
+            callback.onRouteSelected(this, route);
+        }
+    }
+
+    /**
+     * Not part of the Android API: the user has unselected a route
+     */
+    public void unselectRoute(final RouteInfo route) {
+        for (Callback callback : new ArrayList<>(callbacks)) {
+            callback.onRouteUnselected(this, route);
+        }
+    }
+
+    public static class RouteInfo {
+        private final String id;
+        private final String name;
+        private final Bundle extras;
+
+        /**
+         * Not part of the Android API, where the router creates them
+         */
+        public RouteInfo(final String id, final String name, final Bundle extras) {
+            this.id = id;
+            this.name = name;
+            this.extras = extras;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Bundle getExtras() {
+            return extras;
+        }
+
+        /**
+         * All routes are to cast devices, the router has no route for the phone itself
+         */
+        public boolean isDefault() {
+            return false;
+        }
+
+        public boolean matchesSelector(final MediaRouteSelector selector) {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "RouteInfo{id=" + id + ", name=" + name + "}";
+        }
+    }
+
+    public abstract static class Callback {
+        public void onRouteAdded(final MediaRouter router, final RouteInfo route) {
+        }
+
+        public void onRouteRemoved(final MediaRouter router, final RouteInfo route) {
+        }
+
+        public void onRouteSelected(final MediaRouter router, final RouteInfo route) {
+        }
+
+        public void onRouteUnselected(final MediaRouter router, final RouteInfo route) {
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.google.android.gms.cast;
+
+import com.google.android.gms.common.api.Api;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.Result;
+import com.google.android.gms.common.api.Status;
+
+import net.mackenzie.fakecast.FakeCastApi;
+
+import java.io.IOException;
+
+/**
+ * Plain JVM stand-in for the Google Play services class of the same name, for running on a plain JVM.
+ * CastApi is a FakeCastApi, which talks to the FakeCastDevice the client was built for.
+ */
+public class Cast {
+    public static final Api<CastOptions> API = new Api<>();
+    public static final String EXTRA_APP_NO_LONGER_RUNNING = "com.google.android.gms.cast.EXTRA_APP_NO_LONGER_RUNNING";
+    public static final CastApi CastApi = new FakeCastApi();
+
+    public static class CastOptions implements Api.ApiOptions.HasOptions {
+        private final CastDevice castDevice;
+        private final Listener listener;
+
+        private CastOptions(final CastDevice castDevice, final Listener listener) {
+            this.castDevice = castDevice;
+            this.listener = listener;
+        }
+
+        public static Builder builder(final CastDevice castDevice, final Listener listener) {
+            return new Builder(castDevice, listener);
+        }
+
+        /**
+         * Not part of the API: the device the client is for
+         */
+        public CastDevice getCastDevice() {
+            return castDevice;
+        }
+
+        /**
+         * Not part of the API: the listener for events from the device
+         */
+        public Listener getListener() {
+            return listener;
+        }
+
+        public static class Builder {
+            private final CastDevice castDevice;
+            private final Listener listener;
+
+            Builder(final CastDevice castDevice, final Listener listener) {
+                this.castDevice = castDevice;
+                this.listener = listener;
+            }
+
+            public CastOptions build() {
+                return new CastOptions(castDevice, listener);
+            }
+        }
+    }
+
+    public static class Listener {
+        public void onApplicationDisconnected(final int statusCode) {
+        }
+    }
+
+    public interface MessageReceivedCallback {
+        void onMessageReceived(CastDevice castDevice, String namespace, String message);
+    }
+
+    public interface ApplicationConnectionResult extends Result {
+        String getSessionId();
+    }
+
+    public interface CastApi {
+        PendingResult<ApplicationConnectionResult> launchApplication(GoogleApiClient client, String applicationId,
+                                                                     boolean relaunchIfRunning);
+
+        PendingResult<ApplicationConnectionResult> joinApplication(GoogleApiClient client, String applicationId,
+                                                                   String sessionId);
+
+        void setMessageReceivedCallbacks(GoogleApiClient client, String namespace,
+                                         MessageReceivedCallback callbacks) throws IOException;
+
+        void removeMessageReceivedCallbacks(GoogleApiClient client, String namespace) throws IOException;
+
+        PendingResult<Status> sendMessage(GoogleApiClient client, String namespace, String message);
+    }
+}
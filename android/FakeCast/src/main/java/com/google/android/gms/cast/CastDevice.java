@@ -0,0 +1,41 @@
+package com.google.android.gms.cast;
+
+import android.os.Bundle;
+import android.os.Parcelable;
+
+/**
+ * Plain JVM stand-in for the Google Play services class of the same name, for running on a plain JVM.
+ * The devices are FakeCastDevices, which put themselves in the extras of their MediaRouter route.
+ */
+public class CastDevice implements Parcelable {
+    private static final String EXTRA_CAST_DEVICE = "com.google.android.gms.cast.EXTRA_CAST_DEVICE";
+
+    private final String deviceId;
+    private final String friendlyName;
+
+    protected CastDevice(final String deviceId, final String friendlyName) {
+        this.deviceId = deviceId;
+        this.friendlyName = friendlyName;
+    }
+
+    public static CastDevice getFromBundle(final Bundle bundle) {
+        return bundle == null ? null : bundle.<CastDevice>getParcelable(EXTRA_CAST_DEVICE);
+    }
+
+    public void putInBundle(final Bundle bundle) {
+        bundle.putParcelable(EXTRA_CAST_DEVICE, this);
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public String getFriendlyName() {
+        return friendlyName;
+    }
+
+    @Override
+    public String toString() {
+        return "\"" + friendlyName + "\" (" + deviceId + ")";
+    }
+}
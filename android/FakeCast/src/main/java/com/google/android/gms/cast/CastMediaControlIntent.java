@@ -0,0 +1,10 @@
+package com.google.android.gms.cast;
+
+/**
+ * Plain JVM stand-in for the Google Play services class of the same name, for running on a plain JVM.
+ */
+public class CastMediaControlIntent {
+    public static String categoryForCast(final String applicationId) {
+        return "com.google.android.gms.cast.CATEGORY_CAST/" + applicationId;
+    }
+}
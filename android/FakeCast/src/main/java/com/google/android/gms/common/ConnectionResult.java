@@ -0,0 +1,24 @@
+package com.google.android.gms.common;
+
+/**
+ * Plain JVM stand-in for the Google Play services class of the same name, for running on a plain JVM.
+ */
+public class ConnectionResult {
+    public static final int NETWORK_ERROR = 7;
+    public static final int TIMEOUT = 14;
+
+    private final int errorCode;
+
+    public ConnectionResult(final int errorCode) {
+        this.errorCode = errorCode;
+    }
+
+    public int getErrorCode() {
+        return errorCode;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionResult{errorCode=" + errorCode + "}";
+    }
+}
@@ -0,0 +1,11 @@
+package com.google.android.gms.common.api;
+
+/**
+ * Plain JVM stand-in for the Google Play services class of the same name, for running on a plain JVM.
+ */
+public class Api<O extends Api.ApiOptions> {
+    public interface ApiOptions {
+        interface HasOptions extends ApiOptions {
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.google.android.gms.common.api;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+
+import com.google.android.gms.cast.Cast;
+import com.google.android.gms.common.ConnectionResult;
+
+import net.mackenzie.fakecast.FakeApiClient;
+
+/**
+ * Plain JVM stand-in for the Google Play services class of the same name, for running on a plain JVM.
+ * The Builder builds a FakeApiClient for the device in the Cast options.
+ */
+public abstract class GoogleApiClient {
+    public abstract void connect();
+
+    public abstract void disconnect();
+
+    public abstract boolean isConnected();
+
+    public interface ConnectionCallbacks {
+        int CAUSE_SERVICE_DISCONNECTED = 1;
+        int CAUSE_NETWORK_LOST = 2;
+
+        void onConnected(Bundle connectionHint);
+
+        void onConnectionSuspended(int cause);
+    }
+
+    public interface OnConnectionFailedListener {
+        void onConnectionFailed(ConnectionResult result);
+    }
+
+    public static class Builder {
+        private Cast.CastOptions castOptions;
+        private ConnectionCallbacks connectionCallbacks;
+        private OnConnectionFailedListener connectionFailedListener;
+
+        public Builder(final Context context) {
+        }
+
+        public <O extends Api.ApiOptions.HasOptions> Builder addApi(final Api<O> api, final O options) {
+            if (options instanceof Cast.CastOptions) {
+                castOptions = (Cast.CastOptions) options;
+            }
+            return this;
+        }
+
+        public Builder addConnectionCallbacks(final ConnectionCallbacks callbacks) {
+            connectionCallbacks = callbacks;
+            return this;
+        }
+
+        public Builder addOnConnectionFailedListener(final OnConnectionFailedListener listener) {
+            connectionFailedListener = listener;
+            return this;
+        }
+
+        /**
+         * Callbacks are always run on the main Looper, the only one there is
+         */
+        public Builder setHandler(final Handler handler) {
+            return this;
+        }
+
+        public GoogleApiClient build() {
+            if (castOptions == null) {
+                throw new UnsupportedOperationException("Only the Cast API is available on a plain JVM");
+            }
+            return new FakeApiClient(castOptions, connectionCallbacks, connectionFailedListener);
+        }
+    }
+}
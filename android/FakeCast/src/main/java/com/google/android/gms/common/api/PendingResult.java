@@ -0,0 +1,8 @@
+package com.google.android.gms.common.api;
+
+/**
+ * Plain JVM stand-in for the Google Play services class of the same name, for running on a plain JVM.
+ */
+public abstract class PendingResult<R extends Result> {
+    public abstract void setResultCallback(ResultCallback<? super R> callback);
+}
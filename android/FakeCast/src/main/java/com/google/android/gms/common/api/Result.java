@@ -0,0 +1,8 @@
+package com.google.android.gms.common.api;
+
+/**
+ * Plain JVM stand-in for the Google Play services interface of the same name, for running on a plain JVM.
+ */
+public interface Result {
+    Status getStatus();
+}
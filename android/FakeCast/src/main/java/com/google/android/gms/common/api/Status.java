@@ -0,0 +1,27 @@
+package com.google.android.gms.common.api;
+
+/**
+ * Plain JVM stand-in for the Google Play services class of the same name, for running on a plain JVM.
+ */
+public class Status implements Result {
+    public static final Status RESULT_SUCCESS = new Status(0);
+
+    private final int statusCode;
+
+    public Status(final int statusCode) {
+        this.statusCode = statusCode;
+    }
+
+    public boolean isSuccess() {
+        return statusCode <= 0;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    @Override
+    public Status getStatus() {
+        return this;
+    }
+}
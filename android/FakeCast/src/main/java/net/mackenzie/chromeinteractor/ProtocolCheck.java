@@ -0,0 +1,394 @@
+package net.mackenzie.chromeinteractor;
+
+import net.mackenzie.pongcast.CourtState;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Checks the formats the sender shares with the receiver and with itself, on a plain JVM, and exits with status 1
+ * if any check fails:
+ * <ul>
+ * <li>InputFrame encoding, decoding and sequence number wraparound, against fixed vectors that decodeInputFrame()
+ * and isNewerSequence() in receiver/castReceiverController.js decode and compare the same way</li>
+ * <li>CourtState decoding of complete and delta encoded snapshots, as made by the receiver's StatePublisher</li>
+ * <li>SessionRecorder to SessionLogReader round trips, of whole logs, logs cut short at every write and byte, logs
+ * that were appended to, and logs written by a writer that is held up or stuck</li>
+ * </ul>
+ * It is in the chromeinteractor package to record with SessionRecorder's package private methods, as the
+ * ChromecastInteractor does.
+ * <p/>
+ * Usage: ProtocolCheck
+ */
+public class ProtocolCheck {
+    // CONSTANTS
+    private static final int MAGIC_AND_VERSION = SessionRecorder.MAGIC.length + 1;
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+    // How long the writer is held up for, far longer than recording takes
+    private static final long HOLD_MILLIS = 500;
+    // Encoded frame, type, value, sequence, timestamp. If these change, check them against the receiver too.
+    private static final Object[][] INPUT_FRAMES = {
+            {"#EQABAAAAAAAA", InputFrame.TYPE_MOVE, 1, 0, 0L},
+            {"#Ef//////////", InputFrame.TYPE_MOVE, -1, 65535, 4294967295L},
+            {"#EgPoAAEHW80V", InputFrame.TYPE_POSITION, 1000, 1, 123456789L},
+            {"#EYAAgACAAAAA", InputFrame.TYPE_MOVE, -32768, 32768, 2147483648L},
+            {"#EgAAEjSJq83v", InputFrame.TYPE_POSITION, 0, 4660, 2309737967L},
+            {"#EX//f/8AAAAB", InputFrame.TYPE_MOVE, 32767, 32767, 1L},
+    };
+    // Messages that are not frames we understand: another version, bad base64, too short and too long
+    private static final String[] NOT_INPUT_FRAMES = {
+            "#IQABAAAAAAAA", "#EQAB*AAAAAAA", "#EQABAAAAAAA", "#EQABAAAAAAAAA", "MoveUp"
+    };
+    // Snapshots as the receiver's StatePublisher encodes them, acknowledged up to 1 then 3, and the values after each
+    private static final String[] STATE_MESSAGES = {
+            "STATE 1 0 1000 640,360,300,-200,500,500,0,0,150,20,30,15,1778",
+            "STATE 2 1 1033 10,-7,,,-20,,1,,,,,,",
+            "STATE 3 1 1066 20,-7,,400,-20,10,1,,,,,,",
+            "STATE 4 3 1100 -60,,-600,,,,,2,,,,,",
+    };
+    private static final int[][] STATE_VALUES = {
+            {640, 360, 300, -200, 500, 500, 0, 0, 150, 20, 30, 15, 1778},
+            {650, 353, 300, -200, 480, 500, 1, 0, 150, 20, 30, 15, 1778},
+            {660, 353, 300, 200, 480, 510, 1, 0, 150, 20, 30, 15, 1778},
+            {600, 353, -300, 200, 480, 510, 1, 2, 150, 20, 30, 15, 1778},
+    };
+
+    // MUTABLES
+    private int checks = 0;
+    private int failures = 0;
+
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        ProtocolCheck check = new ProtocolCheck();
+        check.inputFrames();
+        check.courtState();
+        check.sessionLog();
+
+        System.out.println("checks=" + check.checks + " failures=" + check.failures);
+        if (check.failures > 0) {
+            System.out.println("FAILED");
+            System.exit(1);
+        }
+        System.out.println("PASSED");
+    }
+
+    private void inputFrames() {
+        InputFrame frame = new InputFrame();
+        for (Object[] vector : INPUT_FRAMES) {
+            String encoded = (String) vector[0];
+            int type = (Integer) vector[1];
+            int value = (Integer) vector[2];
+            int sequence = (Integer) vector[3];
+            long timestamp = (Long) vector[4];
+
+            check(frame.set(type, value, sequence, timestamp).encode().equals(encoded), "InputFrame encode " + encoded);
+            InputFrame decoded = new InputFrame();
+            check(decoded.decode(encoded), "InputFrame decode " + encoded);
+            check(decoded.getType() == type && decoded.getValue() == value && decoded.getSequence() == sequence
+                    && decoded.getTimestamp() == timestamp, "InputFrame decoded fields of " + encoded);
+        }
+
+        for (String message : NOT_INPUT_FRAMES) {
+            check(!frame.decode(message), "InputFrame rejects " + message);
+        }
+
+        // Values are clamped to 16 bits, and sequence numbers and timestamps wrap around
+        check(frame.set(InputFrame.TYPE_MOVE, 70000, 65536 + 5, (1L << 32) + 7).encode().equals("#EX//AAUAAAAH"),
+                "InputFrame clamps and wraps");
+        check(frame.getValue() == InputFrame.MAX_VALUE && frame.getSequence() == 5 && frame.getTimestamp() == 7,
+                "InputFrame clamped and wrapped fields");
+
+        check(InputFrame.isNewer(0, 65535), "sequence 0 is newer than 65535");
+        check(!InputFrame.isNewer(65535, 0), "sequence 65535 is not newer than 0");
+        check(InputFrame.isNewer(0x7FFF, 0), "sequence 0x7FFF is newer than 0");
+        check(!InputFrame.isNewer(0x8000, 0), "sequence 0x8000 is not newer than 0");
+        check(!InputFrame.isNewer(5, 5), "sequence 5 is not newer than itself");
+    }
+
+    private void courtState() {
+        CourtState courtState = new CourtState();
+        for (int i = 0; i < STATE_MESSAGES.length; i++) {
+            check(courtState.decode(STATE_MESSAGES[i]), "CourtState decode " + STATE_MESSAGES[i]);
+            check(courtState.getSequence() == i + 1 && hasValues(courtState, STATE_VALUES[i]),
+                    "CourtState values of " + STATE_MESSAGES[i]);
+        }
+
+        // A late snapshot is ignored, and one that can't be decoded leaves the last one in place
+        check(courtState.decode(STATE_MESSAGES[1]) && courtState.getSequence() == 4,
+                "CourtState ignores late snapshot");
+        check(!courtState.decode("STATE 5 40 1133 1,,,,,,,,,,,,"), "CourtState rejects delta on unknown base");
+        check(!courtState.decode("STATE 5 4 1133 1,2"), "CourtState rejects short snapshot");
+        check(courtState.getSequence() == 4 && hasValues(courtState, STATE_VALUES[3]),
+                "CourtState keeps last snapshot after bad ones");
+        check(courtState.decode("STATE 5 4 1133 ,,,,,,,,,,,,") && courtState.getSequence() == 5
+                && hasValues(courtState, STATE_VALUES[3]), "CourtState decode unchanged delta");
+
+        courtState.reset();
+        check(!courtState.decode(STATE_MESSAGES[1]) && !courtState.hasState(), "CourtState rejects delta after reset");
+    }
+
+    private static boolean hasValues(final CourtState courtState, final int[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (courtState.get(i) != values[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void sessionLog() throws IOException, InterruptedException {
+        // A session flushed every few records, with a non-ASCII message, one bigger than the buffer and a time that
+        // goes backwards, as times handed over from the UI thread can
+        WriteLog out = new WriteLog();
+        ArrayList<String> expected = new ArrayList<>();
+        SessionRecorder recorder = new SessionRecorder(out);
+        long time = 5000;
+        char[] big = new char[10000];
+        Arrays.fill(big, 'x');
+        String[] inbound = {"PADDLE YES LEFT", "GAME STARTED", "INPUT 12 480 20", "Caf\u00e9 \u26bd", new String(big)};
+
+        for (int i = 0; i < 40; i++) {
+            // every fourth record goes back a little, to just before the one before it
+            time += (i % 4) == 3 ? 0 : i * 7;
+            int ordinal = i % ChromecastInteractor.CHROMECAST_STATE.values().length;
+            switch (i % 4) {
+                case 0:
+                    recorder.recordState(time, ChromecastInteractor.CHROMECAST_STATE.values()[ordinal]);
+                    expected.add(record(SessionRecorder.KIND_STATE, time - 5000, null, null,
+                            ChromecastInteractor.CHROMECAST_STATE.values()[ordinal]));
+                    break;
+                case 1:
+                    String input = new InputFrame().set(InputFrame.TYPE_POSITION, i * 10, i, time).encode();
+                    recorder.recordOutbound(time, input, OutboundQueue.DROP_POLICY.DROP_OLDEST);
+                    expected.add(record(SessionRecorder.KIND_OUTBOUND, time - 5000, input,
+                            OutboundQueue.DROP_POLICY.DROP_OLDEST, null));
+                    break;
+                case 2:
+                    String message = inbound[(i / 4) % inbound.length];
+                    recorder.recordInbound(time, message);
+                    expected.add(record(SessionRecorder.KIND_INBOUND, time - 5000, message, null, null));
+                    break;
+                default:
+                    // recorded at the same time as the one before it
+                    recorder.recordOutbound(time - 3, "StartPlay", OutboundQueue.DROP_POLICY.DROP_NEWEST);
+                    expected.add(record(SessionRecorder.KIND_OUTBOUND, time - 5000, "StartPlay",
+                            OutboundQueue.DROP_POLICY.DROP_NEWEST, null));
+                    recorder.flush();
+                    break;
+            }
+        }
+        recorder.close();
+        check(recorder.awaitClosed(CLOSE_TIMEOUT_MILLIS) && out.closed, "SessionRecorder closes the log");
+        byte[] log = out.toByteArray();
+        check(recorder.getRecords() == expected.size() && recorder.getBytesWritten() == log.length,
+                "SessionRecorder counts records and bytes");
+        check(read(log, log.length).equals(expected), "SessionLogReader reads whole log");
+
+        // Cut short at each write, which always ends on a record, only whole records are read
+        ArrayList<Integer> recordEnds = recordEnds(log);
+        ArrayList<Integer> writeEnds = out.getWriteEnds();
+        check(writeEnds.size() > 3, "SessionRecorder writes as it is flushed");
+        for (int i = 0; i < writeEnds.size(); i++) {
+            int records = recordsBefore(recordEnds, writeEnds.get(i));
+            check(writeEnds.get(i) == (records == 0 ? MAGIC_AND_VERSION : recordEnds.get(records - 1)),
+                    "SessionRecorder write " + i + " ends on a record");
+            check(read(log, writeEnds.get(i)).equals(expected.subList(0, records)),
+                    "SessionLogReader reads log cut at write " + i);
+        }
+
+        // Cut short anywhere, the records read are those before the cut
+        boolean prefixes = true;
+        int lastCount = 0;
+        for (int cut = MAGIC_AND_VERSION; cut <= log.length; cut++) {
+            ArrayList<String> records = read(log, cut);
+            prefixes &= records.size() >= lastCount && records.equals(expected.subList(0, records.size()));
+            lastCount = records.size();
+        }
+        check(prefixes && lastCount == expected.size(), "SessionLogReader reads log cut at every byte");
+        boolean rejected = true;
+        for (int cut = 0; cut < MAGIC_AND_VERSION; cut++) {
+            try {
+                read(log, cut);
+                rejected = false;
+            } catch (IOException e) {
+                // not a session log
+            }
+        }
+        check(rejected, "SessionLogReader rejects log cut in its header");
+
+        // Appended to after being cut short at a write, e.g. when the app was killed and recorded again later.
+        // The appended session follows on from the last record with no gap.
+        int cut = writeEnds.get(3);
+        int kept = recordsBefore(recordEnds, cut);
+        ByteArrayOutputStream appended = new ByteArrayOutputStream();
+        appended.write(log, 0, cut);
+        SessionRecorder second = new SessionRecorder(appended);
+        second.recordState(90000, ChromecastInteractor.CHROMECAST_STATE.CONNECTING);
+        second.recordInbound(90250, "PADDLE YES RIGHT");
+        second.close();
+        second.awaitClosed(CLOSE_TIMEOUT_MILLIS);
+
+        ArrayList<String> expectedAppended = new ArrayList<>(expected.subList(0, kept));
+        long lastTime = timeOf(expected.get(kept - 1));
+        expectedAppended.add(record(SessionRecorder.KIND_STATE, lastTime, null, null,
+                ChromecastInteractor.CHROMECAST_STATE.CONNECTING));
+        expectedAppended.add(record(SessionRecorder.KIND_INBOUND, lastTime + 250, "PADDLE YES RIGHT", null, null));
+        byte[] appendedLog = appended.toByteArray();
+        check(read(appendedLog, appendedLog.length).equals(expectedAppended), "SessionLogReader reads appended log");
+
+        // And an appended session that recorded nothing is just a header
+        ByteArrayOutputStream empty = new ByteArrayOutputStream();
+        empty.write(appendedLog);
+        SessionRecorder third = new SessionRecorder(empty);
+        third.close();
+        third.awaitClosed(CLOSE_TIMEOUT_MILLIS);
+        check(read(empty.toByteArray(), empty.size()).equals(expectedAppended),
+                "SessionLogReader skips empty appended session");
+
+        slowWriter();
+    }
+
+    /**
+     * Record while the writer is held up, as it would be by slow storage, and check recording never waits for it
+     */
+    private void slowWriter() throws IOException, InterruptedException {
+        // Held up for a while: the records wait for the writer, and are all written once it catches up
+        WriteLog out = new WriteLog();
+        out.hold();
+        SessionRecorder recorder = new SessionRecorder(out);
+        ArrayList<String> expected = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < 2000; i++) {
+            recorder.recordInbound(i, "INPUT " + i + " 500 20");
+            expected.add(record(SessionRecorder.KIND_INBOUND, i, "INPUT " + i + " 500 20", null, null));
+            if ((i % 100) == 0) {
+                recorder.flush();
+            }
+        }
+        recorder.close();
+        long recordingMillis = (System.nanoTime() - start) / 1000000;
+        check(recordingMillis < HOLD_MILLIS, "SessionRecorder does not wait for a slow writer");
+        Thread.sleep(HOLD_MILLIS);
+        out.release();
+        check(recorder.awaitClosed(CLOSE_TIMEOUT_MILLIS) && !recorder.hasFailed(),
+                "SessionRecorder catches up with a slow writer");
+        check(read(out.toByteArray(), out.size()).equals(expected), "SessionLogReader reads log of slow writer");
+
+        // Stuck: recording stops rather than keep records for it without limit, and the log still ends on a record
+        WriteLog stuck = new WriteLog();
+        stuck.hold();
+        SessionRecorder stuckRecorder = new SessionRecorder(stuck);
+        for (int i = 0; i < 100000 && !stuckRecorder.hasFailed(); i++) {
+            stuckRecorder.recordInbound(i, "INPUT " + i + " 500 20");
+        }
+        check(stuckRecorder.hasFailed(), "SessionRecorder stops when the writer is stuck");
+        stuckRecorder.close();
+        stuck.release();
+        check(stuckRecorder.awaitClosed(CLOSE_TIMEOUT_MILLIS), "SessionRecorder closes after writer was stuck");
+        ArrayList<String> records = read(stuck.toByteArray(), stuck.size());
+        check(recordEnds(stuck.toByteArray()).size() == records.size() && !records.isEmpty()
+                        && records.get(records.size() - 1).equals(record(SessionRecorder.KIND_INBOUND,
+                        records.size() - 1, "INPUT " + (records.size() - 1) + " 500 20", null, null)),
+                "SessionLogReader reads log of stuck writer");
+    }
+
+    /**
+     * A log in memory that keeps where each write ended, and can hold writes up as slow storage would
+     */
+    private static class WriteLog extends ByteArrayOutputStream {
+        private final ArrayList<Integer> writeEnds = new ArrayList<>();
+        private final CountDownLatch held = new CountDownLatch(1);
+        private volatile boolean holding = false;
+        private volatile boolean closed = false;
+
+        void hold() {
+            holding = true;
+        }
+
+        void release() {
+            held.countDown();
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int offset, final int length) {
+            if (holding) {
+                try {
+                    held.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            synchronized (this) {
+                super.write(bytes, offset, length);
+                writeEnds.add(size());
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        synchronized ArrayList<Integer> getWriteEnds() {
+            return new ArrayList<>(writeEnds);
+        }
+    }
+
+    /**
+     * @return the offset of the end of each record in a log
+     */
+    private static ArrayList<Integer> recordEnds(final byte[] log) throws IOException {
+        ByteArrayInputStream in = new ByteArrayInputStream(log);
+        SessionLogReader reader = new SessionLogReader(in);
+        ArrayList<Integer> ends = new ArrayList<>();
+        while (reader.next()) {
+            ends.add(log.length - in.available());
+        }
+        return ends;
+    }
+
+    /**
+     * @return the number of records that end at or before an offset
+     */
+    private static int recordsBefore(final ArrayList<Integer> recordEnds, final int offset) {
+        int records = 0;
+        while (records < recordEnds.size() && recordEnds.get(records) <= offset) {
+            records++;
+        }
+        return records;
+    }
+
+    /**
+     * Read the records of the first bytes of a log, as strings that are easy to compare
+     */
+    private static ArrayList<String> read(final byte[] log, final int length) throws IOException {
+        SessionLogReader reader = new SessionLogReader(new ByteArrayInputStream(log, 0, length));
+        ArrayList<String> records = new ArrayList<>();
+        while (reader.next()) {
+            records.add(record(reader.getKind(), reader.getTimeMillis(), reader.getMessage(), reader.getPolicy(),
+                    reader.getState()));
+        }
+        return records;
+    }
+
+    private static String record(final int kind, final long timeMillis, final String message,
+                                 final OutboundQueue.DROP_POLICY policy,
+                                 final ChromecastInteractor.CHROMECAST_STATE state) {
+        return timeMillis + " " + kind + " " + policy + " " + state + " " + message;
+    }
+
+    private static long timeOf(final String record) {
+        return Long.parseLong(record.substring(0, record.indexOf(' ')));
+    }
+
+    private void check(final boolean passed, final String what) {
+        checks++;
+        if (!passed) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package net.mackenzie.chromeinteractor;
+
+/**
+ * Plain JVM stand-in for the resource ids generated for the ChromeInteractor module, for running on a plain JVM.
+ */
+public final class R {
+    public static final class id {
+        public static final int media_route_menu_item = 1;
+    }
+}
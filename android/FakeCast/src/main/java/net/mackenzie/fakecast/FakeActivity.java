@@ -0,0 +1,66 @@
+package net.mackenzie.fakecast;
+
+import android.view.View;
+import android.widget.Button;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import net.mackenzie.pongcast.CourtMirrorView;
+import net.mackenzie.pongcast.R;
+
+/**
+ * Activity that provides the views PongControllerView looks up from its layout, as inflating it would
+ */
+public class FakeActivity extends AppCompatActivity {
+    // INITIALIZED IMMUTABLES
+    private final Button playButton = new Button(this);
+    private final TextView messageView = new TextView(this);
+    private final View paddleControl = new PaddleControl();
+    private final View touchControl = new View(this);
+    private final CourtMirrorView courtMirror = new CourtMirrorView(this);
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends View> T findViewById(final int id) {
+        switch (id) {
+            case R.id.playButton:
+                return (T) playButton;
+            case R.id.messageView:
+                return (T) messageView;
+            case R.id.paddleControl:
+                return (T) paddleControl;
+            case R.id.touchControl:
+                return (T) touchControl;
+            case R.id.courtMirror:
+                return (T) courtMirror;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * The layout holding the up and down buttons
+     */
+    private class PaddleControl extends View {
+        private final Button upButton = new Button(FakeActivity.this);
+        private final Button downButton = new Button(FakeActivity.this);
+
+        PaddleControl() {
+            super(FakeActivity.this);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T extends View> T findViewById(final int id) {
+            switch (id) {
+                case R.id.upButton:
+                    return (T) upButton;
+                case R.id.downButton:
+                    return (T) downButton;
+                default:
+                    return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package net.mackenzie.fakecast;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.android.gms.cast.Cast;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.Status;
+
+import java.util.HashMap;
+
+/**
+ * A connection from a sender to a FakeCastDevice, built by the GoogleApiClient.Builder stand-in for the device
+ * in the Cast options. Everything that crosses the network, in either direction, takes the time the device's
+ * NetworkConditions say it does, and is only delivered if the connection it was sent on is still up.
+ */
+public class FakeApiClient extends GoogleApiClient {
+    // CONSTANTS
+    private static final String LOG_TAG = "FakeApiClient";
+    // Status codes used by Google Play services
+    static final int STATUS_NETWORK_ERROR = 7;
+    static final int STATUS_TIMEOUT = 15;
+    static final int STATUS_APPLICATION_NOT_FOUND = 2004;
+    static final int STATUS_APPLICATION_NOT_RUNNING = 2005;
+
+    // IMMUTABLES
+    private final FakeCastDevice device;
+    private final Cast.Listener castListener;
+    private final ConnectionCallbacks connectionCallbacks;
+    private final OnConnectionFailedListener connectionFailedListener;
+    private final Handler handler = new Handler();
+    private final HashMap<String, Cast.MessageReceivedCallback> messageCallbacks = new HashMap<>();
+
+    // MUTABLES
+    private boolean connecting = false;
+    private boolean connected = false;
+    private boolean suspended = false;
+    // Changes each time the connection goes, so things in flight on the old connection can be dropped
+    private int connection = 0;
+    private long lastArrivalAtReceiver = 0;
+    private long lastArrivalAtSender = 0;
+
+    public FakeApiClient(final Cast.CastOptions castOptions, final ConnectionCallbacks connectionCallbacks,
+                         final OnConnectionFailedListener connectionFailedListener) {
+        this.device = (FakeCastDevice) castOptions.getCastDevice();
+        this.castListener = castOptions.getListener();
+        this.connectionCallbacks = connectionCallbacks;
+        this.connectionFailedListener = connectionFailedListener;
+    }
+
+    /**
+     * Connect to the device, which takes a round trip
+     */
+    @Override
+    public void connect() {
+        if (connecting || connected) {
+            return;
+        }
+
+        connecting = true;
+        final int connectingOn = connection;
+        handler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                if (connection != connectingOn) {
+                    return;
+                }
+
+                connecting = false;
+                if (device.isReachable()) {
+                    connected = true;
+                    device.clientConnected(FakeApiClient.this);
+                    connectionCallbacks.onConnected(null);
+                } else {
+                    Log.i(LOG_TAG, "Device not reachable");
+                    connectionFailedListener.onConnectionFailed(new ConnectionResult(ConnectionResult.TIMEOUT));
+                }
+            }
+        }, roundTrip());
+    }
+
+    @Override
+    public void disconnect() {
+        connection++;
+        connecting = false;
+        connected = false;
+        suspended = false;
+        messageCallbacks.clear();
+        device.clientDisconnected(this);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Launch the receiver app on the device, and join it
+     */
+    PendingResult<Cast.ApplicationConnectionResult> launchApplication(final String applicationId) {
+        final int launchingOn = connection;
+        return new FakePendingResult<>(roundTrip(), new FakePendingResult.Supplier<Cast.ApplicationConnectionResult>() {
+            @Override
+            public Cast.ApplicationConnectionResult get() {
+                if (!connected || connection != launchingOn) {
+                    return new LaunchResult(new Status(STATUS_NETWORK_ERROR), null);
+                }
+
+                FakeCourt court = device.launch();
+                if (court == null) {
+                    return new LaunchResult(new Status(STATUS_APPLICATION_NOT_FOUND), null);
+                }
+
+                Log.i(LOG_TAG, "Launched " + applicationId);
+                court.senderConnected(FakeApiClient.this);
+                return new LaunchResult(Status.RESULT_SUCCESS, court.getSessionId());
+            }
+        });
+    }
+
+    /**
+     * Join the receiver app on the device, if it is still running the session given
+     */
+    PendingResult<Cast.ApplicationConnectionResult> joinApplication(final String applicationId,
+                                                                   final String sessionId) {
+        final int joiningOn = connection;
+        return new FakePendingResult<>(roundTrip(), new FakePendingResult.Supplier<Cast.ApplicationConnectionResult>() {
+            @Override
+            public Cast.ApplicationConnectionResult get() {
+                if (!connected || connection != joiningOn) {
+                    return new LaunchResult(new Status(STATUS_NETWORK_ERROR), null);
+                }
+
+                FakeCourt court = device.getCourt();
+                if (court == null || !court.getSessionId().equals(sessionId)) {
+                    return new LaunchResult(new Status(STATUS_APPLICATION_NOT_RUNNING), null);
+                }
+
+                Log.i(LOG_TAG, "Joined " + applicationId + " session " + sessionId);
+                court.senderConnected(FakeApiClient.this);
+                return new LaunchResult(Status.RESULT_SUCCESS, sessionId);
+            }
+        });
+    }
+
+    void setMessageReceivedCallbacks(final String namespace, final Cast.MessageReceivedCallback callbacks) {
+        if (!connected) {
+            throw new IllegalStateException("Not connected to a device");
+        }
+        messageCallbacks.put(namespace, callbacks);
+    }
+
+    void removeMessageReceivedCallbacks(final String namespace) {
+        messageCallbacks.remove(namespace);
+    }
+
+    /**
+     * Send a message to the receiver. The result arrives once the receiver would have acknowledged it, and is a
+     * failure if the message was lost, or if it arrived after the connection went or the receiver had gone.
+     */
+    PendingResult<Status> sendMessage(final String namespace, final String message) {
+        if (!connected) {
+            return new FakePendingResult<>(0, new Delivery(namespace, message));
+        }
+
+        NetworkConditions conditions = device.getNetworkConditions();
+        Delivery delivery = new Delivery(namespace, message);
+        long resultDelay;
+        if (conditions.isLost(device.getRandom())) {
+            // the sender only finds out when it gives up waiting for the acknowledgement
+            resultDelay = 2 * conditions.getMaxDelay() + 1;
+        } else {
+            long arrival = arrivalTime(lastArrivalAtReceiver);
+            lastArrivalAtReceiver = Math.max(lastArrivalAtReceiver, arrival);
+            handler.postAtTime(delivery, arrival);
+            resultDelay = (arrival - SystemClock.uptimeMillis()) + conditions.delay(device.getRandom());
+        }
+        return new FakePendingResult<>(resultDelay, delivery);
+    }
+
+    /**
+     * A message to the receiver, which knows if it was delivered
+     */
+    private class Delivery implements Runnable, FakePendingResult.Supplier<Status> {
+        private final String namespace;
+        private final String message;
+        private final int sentOn = connection;
+        private boolean delivered = false;
+
+        Delivery(final String namespace, final String message) {
+            this.namespace = namespace;
+            this.message = message;
+        }
+
+        @Override
+        public void run() {
+            FakeCourt court = device.getCourt();
+            delivered = connected && connection == sentOn && court != null
+                    && court.receive(FakeApiClient.this, namespace, message);
+        }
+
+        @Override
+        public Status get() {
+            if (delivered) {
+                return Status.RESULT_SUCCESS;
+            }
+            return new Status(connected && connection == sentOn ? STATUS_TIMEOUT : STATUS_NETWORK_ERROR);
+        }
+    }
+
+    /**
+     * Deliver a message from the receiver to this sender, if it isn't lost on the way
+     */
+    void receiverMessage(final String namespace, final String message) {
+        if (!connected || device.getNetworkConditions().isLost(device.getRandom())) {
+            return;
+        }
+
+        final int sentOn = connection;
+        long arrival = arrivalTime(lastArrivalAtSender);
+        lastArrivalAtSender = Math.max(lastArrivalAtSender, arrival);
+        handler.postAtTime(new Runnable() {
+            @Override
+            public void run() {
+                Cast.MessageReceivedCallback callback = messageCallbacks.get(namespace);
+                if (connected && connection == sentOn && callback != null) {
+                    callback.onMessageReceived(device, namespace, message);
+                }
+            }
+        }, arrival);
+    }
+
+    /**
+     * The receiver app has stopped, tell the listener once the news arrives
+     */
+    void applicationDisconnected(final int statusCode) {
+        if (!connected) {
+            return;
+        }
+
+        final int sentOn = connection;
+        handler.postAtTime(new Runnable() {
+            @Override
+            public void run() {
+                if (connected && connection == sentOn) {
+                    castListener.onApplicationDisconnected(statusCode);
+                }
+            }
+        }, arrivalTime(lastArrivalAtSender));
+    }
+
+    /**
+     * The connection has been lost for a while
+     */
+    void suspend() {
+        connection++;
+        connected = false;
+        suspended = true;
+        connectionCallbacks.onConnectionSuspended(ConnectionCallbacks.CAUSE_NETWORK_LOST);
+    }
+
+    /**
+     * The connection is back after being suspended
+     *
+     * @param applicationStopped true if the receiver app stopped while the connection was suspended
+     * @return true if it was suspended, and now it is connected again
+     */
+    boolean resume(final boolean applicationStopped) {
+        if (!suspended) {
+            return false;
+        }
+
+        suspended = false;
+        connected = true;
+        Bundle connectionHint = new Bundle();
+        connectionHint.putBoolean(Cast.EXTRA_APP_NO_LONGER_RUNNING, applicationStopped);
+        connectionCallbacks.onConnected(connectionHint);
+        return true;
+    }
+
+    /**
+     * @param lastArrival time of the last message to arrive in the same direction
+     * @return time the next message will arrive, which is not before the last unless it is reordered
+     */
+    private long arrivalTime(final long lastArrival) {
+        NetworkConditions conditions = device.getNetworkConditions();
+        long arrival = SystemClock.uptimeMillis() + conditions.delay(device.getRandom());
+        if (conditions.isReordered(device.getRandom())) {
+            return arrival;
+        }
+        return Math.max(arrival, lastArrival);
+    }
+
+    private long roundTrip() {
+        NetworkConditions conditions = device.getNetworkConditions();
+        return conditions.delay(device.getRandom()) + conditions.delay(device.getRandom());
+    }
+
+    /**
+     * Result of launching or joining the receiver app
+     */
+    private static class LaunchResult implements Cast.ApplicationConnectionResult {
+        private final Status status;
+        private final String sessionId;
+
+        LaunchResult(final Status status, final String sessionId) {
+            this.status = status;
+            this.sessionId = sessionId;
+        }
+
+        @Override
+        public Status getStatus() {
+            return status;
+        }
+
+        @Override
+        public String getSessionId() {
+            return sessionId;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FakeApiClient@" + Integer.toHexString(hashCode()) + " to " + device;
+    }
+}
@@ -0,0 +1,42 @@
+package net.mackenzie.fakecast;
+
+import com.google.android.gms.cast.Cast;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.Status;
+
+/**
+ * The Cast API on a plain JVM, which passes each call on to the FakeApiClient it is made with
+ */
+public class FakeCastApi implements Cast.CastApi {
+    @Override
+    public PendingResult<Cast.ApplicationConnectionResult> launchApplication(final GoogleApiClient client,
+                                                                            final String applicationId,
+                                                                            final boolean relaunchIfRunning) {
+        return ((FakeApiClient) client).launchApplication(applicationId);
+    }
+
+    @Override
+    public PendingResult<Cast.ApplicationConnectionResult> joinApplication(final GoogleApiClient client,
+                                                                          final String applicationId,
+                                                                          final String sessionId) {
+        return ((FakeApiClient) client).joinApplication(applicationId, sessionId);
+    }
+
+    @Override
+    public void setMessageReceivedCallbacks(final GoogleApiClient client, final String namespace,
+                                            final Cast.MessageReceivedCallback callbacks) {
+        ((FakeApiClient) client).setMessageReceivedCallbacks(namespace, callbacks);
+    }
+
+    @Override
+    public void removeMessageReceivedCallbacks(final GoogleApiClient client, final String namespace) {
+        ((FakeApiClient) client).removeMessageReceivedCallbacks(namespace);
+    }
+
+    @Override
+    public PendingResult<Status> sendMessage(final GoogleApiClient client, final String namespace,
+                                             final String message) {
+        return ((FakeApiClient) client).sendMessage(namespace, message);
+    }
+}
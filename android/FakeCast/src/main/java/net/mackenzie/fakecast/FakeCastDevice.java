@@ -0,0 +1,210 @@
+package net.mackenzie.fakecast;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.util.Log;
+
+import androidx.mediarouter.media.MediaRouter;
+
+import com.google.android.gms.cast.CastDevice;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * A Chromecast on the end of a simulated network, that runs a FakeCourt as its receiver app.
+ * <p/>
+ * Add its route to the MediaRouter for it to be discovered, and select it to connect to it, as the user would.
+ * Messages between it and the senders connected to it are delayed, reordered and lost according to its
+ * NetworkConditions, with random choices from a seeded Random so runs can be repeated exactly.
+ * <p/>
+ * Failures can be injected: the connection can be suspended for a while, the receiver app can be stopped, and
+ * launches of it or connections to the device can be made to fail.
+ */
+public class FakeCastDevice extends CastDevice {
+    // CONSTANTS
+    private static final String LOG_TAG = "FakeCastDevice";
+
+    // IMMUTABLES
+    private final Random random;
+    private final MediaRouter.RouteInfo route;
+    private final Handler handler = new Handler();
+    private final ArrayList<FakeApiClient> clients = new ArrayList<>();
+
+    // MUTABLES
+    private NetworkConditions networkConditions;
+    private FakeCourt court;
+    private boolean reachable = true;
+    private int launchFailures = 0;
+    private int launchCount = 0;
+    private int failedLaunchCount = 0;
+
+    /**
+     * @param deviceId          unique id of the device
+     * @param friendlyName      name shown to the user
+     * @param networkConditions on the network between senders and the device
+     * @param seed              for the random choices of delays and losses
+     */
+    public FakeCastDevice(final String deviceId, final String friendlyName,
+                          final NetworkConditions networkConditions, final long seed) {
+        super(deviceId, friendlyName);
+        this.networkConditions = networkConditions;
+        this.random = new Random(seed);
+
+        Bundle extras = new Bundle();
+        putInBundle(extras);
+        route = new MediaRouter.RouteInfo(deviceId, friendlyName, extras);
+    }
+
+    /**
+     * @return the route to this device, to add to or select in the MediaRouter
+     */
+    public MediaRouter.RouteInfo getRoute() {
+        return route;
+    }
+
+    public NetworkConditions getNetworkConditions() {
+        return networkConditions;
+    }
+
+    /**
+     * Change the conditions on the network, for messages sent from now on
+     */
+    public void setNetworkConditions(final NetworkConditions networkConditions) {
+        this.networkConditions = networkConditions;
+    }
+
+    /**
+     * @param reachable false for attempts to connect to the device to fail
+     */
+    public void setReachable(final boolean reachable) {
+        this.reachable = reachable;
+    }
+
+    /**
+     * Make the next launches of the receiver app fail
+     *
+     * @param count of launches to fail
+     */
+    public void failLaunches(final int count) {
+        launchFailures = count;
+    }
+
+    /**
+     * Suspend the connection of all the senders connected for a while, as when the phone's WiFi drops out.
+     * The receiver sees them leave, and if it closes while they are away they are told it is no longer running
+     * when they reconnect, otherwise the receiver sees them join again.
+     *
+     * @param millis how long the connection is lost for
+     */
+    public void suspendConnections(final long millis) {
+        final ArrayList<FakeApiClient> suspended = new ArrayList<>();
+        for (FakeApiClient client : new ArrayList<>(clients)) {
+            if (client.isConnected()) {
+                Log.i(LOG_TAG, "Suspending connection of " + client);
+                suspended.add(client);
+                client.suspend();
+                if (court != null) {
+                    court.senderDisconnected(client);
+                }
+            }
+        }
+
+        handler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                for (FakeApiClient client : suspended) {
+                    if (client.resume(court == null) && court != null) {
+                        court.senderConnected(client);
+                    }
+                }
+            }
+        }, millis);
+    }
+
+    /**
+     * Stop the receiver app, as when another sender stops casting, and tell the senders connected
+     */
+    public void stopReceiver() {
+        if (court == null) {
+            return;
+        }
+
+        Log.i(LOG_TAG, "Stopping receiver");
+        court.close();
+        for (FakeApiClient client : clients) {
+            client.applicationDisconnected(FakeApiClient.STATUS_APPLICATION_NOT_RUNNING);
+        }
+    }
+
+    /**
+     * @return the receiver app running on the device, or null if it is not running
+     */
+    public FakeCourt getCourt() {
+        return court;
+    }
+
+    /**
+     * @return the number of times the receiver app has been started
+     */
+    public int getLaunchCount() {
+        return launchCount;
+    }
+
+    /**
+     * @return the number of launches of the receiver app that were made to fail
+     */
+    public int getFailedLaunchCount() {
+        return failedLaunchCount;
+    }
+
+    Random getRandom() {
+        return random;
+    }
+
+    boolean isReachable() {
+        return reachable;
+    }
+
+    void clientConnected(final FakeApiClient client) {
+        if (!clients.contains(client)) {
+            clients.add(client);
+        }
+    }
+
+    void clientDisconnected(final FakeApiClient client) {
+        clients.remove(client);
+        if (court != null) {
+            court.senderDisconnected(client);
+        }
+    }
+
+    /**
+     * Start the receiver app if it is not already running
+     *
+     * @return the receiver app, or null if it failed to start
+     */
+    FakeCourt launch() {
+        if (launchFailures > 0) {
+            launchFailures--;
+            failedLaunchCount++;
+            Log.i(LOG_TAG, "Failing launch");
+            return null;
+        }
+
+        if (court == null) {
+            launchCount++;
+            court = new FakeCourt(this, getDeviceId() + "-session-" + launchCount);
+        }
+        return court;
+    }
+
+    /**
+     * The receiver app has closed
+     */
+    void courtClosed(final FakeCourt closed) {
+        if (court == closed) {
+            court = null;
+        }
+    }
+}
@@ -0,0 +1,394 @@
+package net.mackenzie.fakecast;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import net.mackenzie.chromeinteractor.InputFrame;
+import net.mackenzie.chromeinteractor.LatencyHistogram;
+import net.mackenzie.pongsimulation.Paddle;
+import net.mackenzie.pongsimulation.Simulation;
+
+import java.util.ArrayList;
+
+/**
+ * A stand-in for the receiver app in receiver/, that speaks the same protocol to senders over a FakeCastDevice:
+ * it gives them paddles ("PADDLE YES LEFT"), starts and pauses the game ("GAME STARTED"), echoes latency probes,
+ * applies their input frames once per frame of a Simulation of the court, and acknowledges them ("INPUT ...").
+ * Court state snapshots are not streamed.
+ * <p/>
+ * It also measures what arrives: how many inputs were applied and how many were dropped for arriving after a
+ * newer one, and how long they took to arrive.
+ */
+public class FakeCourt {
+    // CONSTANTS
+    public static final String NAMESPACE = "urn:x-cast:net.mackenzie.pongcast";
+    private static final String LOG_TAG = "FakeCourt";
+    // The size and speed of the court on a Chromecast
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+    private static final double SPEED = 1.3;
+    // Like the receiver, wait a little after a sender connects before telling it about its paddle
+    private static final long PADDLE_MESSAGE_DELAY_MILLIS = 500;
+    // Like the receiver, close a while after the last sender leaves
+    private static final long CLOSE_DELAY_MILLIS = 3000;
+
+    // IMMUTABLES
+    private final FakeCastDevice device;
+    private final String sessionId;
+    private final Simulation simulation = new Simulation(WIDTH, HEIGHT, SPEED);
+    private final Handler handler = new Handler();
+    private final InputFrame inputFrame = new InputFrame();
+    private final LatencyHistogram inputLatency = new LatencyHistogram();
+    private final ArrayList<Player> players = new ArrayList<>();
+
+    // INITIALIZED IMMUTABLES
+    private final Runnable frameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            frame();
+            handler.postDelayed(this, Simulation.TICK_MILLIS);
+        }
+    };
+    private final Runnable closeRunnable = new Runnable() {
+        @Override
+        public void run() {
+            Log.i(LOG_TAG, "Last sender left, closing");
+            close();
+        }
+    };
+
+    // MUTABLES
+    private boolean open = true;
+    private boolean started = false;
+    private long messagesReceived = 0;
+    private long inputsReceived = 0;
+    private long inputsApplied = 0;
+    private long inputsStale = 0;
+
+    /**
+     * A sender, and the paddle it controls if it got one
+     */
+    private static class Player {
+        final FakeApiClient client;
+        final int side;
+        int lastSequence = -1;
+        int appliedSequence = -1;
+        int acknowledgedSequence = -1;
+        long acknowledgedPosition = -1;
+
+        Player(final FakeApiClient client, final int side) {
+            this.client = client;
+            this.side = side;
+        }
+    }
+
+    FakeCourt(final FakeCastDevice device, final String sessionId) {
+        this.device = device;
+        this.sessionId = sessionId;
+        simulation.setComputer(Simulation.LEFT, true);
+        simulation.setComputer(Simulation.RIGHT, true);
+        handler.postDelayed(frameRunnable, Simulation.TICK_MILLIS);
+    }
+
+    /**
+     * A sender has joined, give it a paddle if there is one free
+     */
+    void senderConnected(final FakeApiClient client) {
+        if (!open || findPlayer(client) != null) {
+            return;
+        }
+        handler.removeCallbacks(closeRunnable);
+
+        int side = -1;
+        if (findSide(Simulation.LEFT) == null) {
+            side = Simulation.LEFT;
+        } else if (findSide(Simulation.RIGHT) == null) {
+            side = Simulation.RIGHT;
+        }
+
+        final Player player = new Player(client, side);
+        players.add(player);
+        if (side >= 0) {
+            simulation.setComputer(side, false);
+        }
+
+        handler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                if (players.contains(player)) {
+                    if (player.side == Simulation.LEFT) {
+                        send(player, "PADDLE YES LEFT");
+                    } else if (player.side == Simulation.RIGHT) {
+                        send(player, "PADDLE YES RIGHT");
+                    } else {
+                        send(player, "PADDLE NONE");
+                    }
+                }
+            }
+        }, PADDLE_MESSAGE_DELAY_MILLIS);
+    }
+
+    /**
+     * A sender has left, the computer takes over its paddle
+     */
+    void senderDisconnected(final FakeApiClient client) {
+        Player player = findPlayer(client);
+        if (player == null) {
+            return;
+        }
+
+        players.remove(player);
+        if (player.side >= 0) {
+            simulation.setComputer(player.side, true);
+        }
+        if (players.isEmpty()) {
+            handler.postDelayed(closeRunnable, CLOSE_DELAY_MILLIS);
+        }
+    }
+
+    /**
+     * A message has arrived from a sender
+     *
+     * @return true if it was accepted, false if it was on a namespace we don't listen to
+     */
+    boolean receive(final FakeApiClient client, final String namespace, final String message) {
+        if (!open || !NAMESPACE.equals(namespace)) {
+            return false;
+        }
+
+        Player player = findPlayer(client);
+        if (player == null) {
+            return true;
+        }
+        messagesReceived++;
+
+        // Compact input frames are the most frequent message, so check for them first
+        if (inputFrame.decode(message)) {
+            applyInput(player);
+            return true;
+        }
+
+        // Echo a latency probe straight back to the sender that sent it
+        if (message.startsWith("Ping ")) {
+            send(player, "PONG " + message.substring(5));
+            return true;
+        }
+
+        if (message.startsWith("Difficulty ")) {
+            setDifficulty(message.substring(11));
+            return true;
+        }
+
+        switch (message) {
+            case "StartPlay":
+                if (!started || simulation.isGameOver()) {
+                    started = true;
+                    simulation.startGame();
+                } else {
+                    simulation.setPlaying(true);
+                }
+                broadcast("GAME STARTED");
+                break;
+
+            case "PausePlay":
+                simulation.setPlaying(false);
+                broadcast("GAME PAUSED");
+                break;
+
+            // Text paddle messages from older versions of the sender app
+            case "MoveUp":
+                if (player.side >= 0) {
+                    simulation.move(player.side, 1);
+                }
+                break;
+
+            case "MoveDown":
+                if (player.side >= 0) {
+                    simulation.move(player.side, -1);
+                }
+                break;
+
+            default:
+                // Court state subscriptions and acknowledgements, and telemetry requests, are not supported
+                break;
+        }
+        return true;
+    }
+
+    /**
+     * Set the difficulty of the computer on both sides, as the receiver does for its ComputerPlayer
+     *
+     * @param name "easy", "normal" or "hard", anything else is ignored
+     */
+    private void setDifficulty(final String name) {
+        int difficulty;
+        switch (name) {
+            case "easy":
+                difficulty = Simulation.DIFFICULTY_EASY;
+                break;
+            case "normal":
+                difficulty = Simulation.DIFFICULTY_NORMAL;
+                break;
+            case "hard":
+                difficulty = Simulation.DIFFICULTY_HARD;
+                break;
+            default:
+                return;
+        }
+        simulation.setDifficulty(Simulation.LEFT, difficulty);
+        simulation.setDifficulty(Simulation.RIGHT, difficulty);
+    }
+
+    /**
+     * Apply the input frame just decoded, unless a newer one has already been applied
+     */
+    private void applyInput(final Player player) {
+        inputsReceived++;
+        inputLatency.record((SystemClock.uptimeMillis() - inputFrame.getTimestamp()) & 0xFFFFFFFFL);
+
+        if (player.lastSequence != -1 && !InputFrame.isNewer(inputFrame.getSequence(), player.lastSequence)) {
+            inputsStale++;
+            return;
+        }
+        player.lastSequence = inputFrame.getSequence();
+        inputsApplied++;
+
+        if (player.side < 0) {
+            return;
+        }
+
+        switch (inputFrame.getType()) {
+            case InputFrame.TYPE_MOVE:
+                simulation.move(player.side, inputFrame.getValue());
+                break;
+
+            case InputFrame.TYPE_POSITION:
+                simulation.setTarget(player.side, inputFrame.getValue());
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Move the court on a frame, tell the players if the game is over, and acknowledge the inputs applied
+     */
+    private void frame() {
+        for (Player player : players) {
+            player.appliedSequence = player.lastSequence;
+        }
+
+        int events = simulation.tick();
+        if ((events & Simulation.EVENT_GAME_OVER) != 0) {
+            for (Player player : players) {
+                if (player.side >= 0) {
+                    send(player, player.side == simulation.getWinner() ? "GAME WON" : "GAME LOST");
+                }
+            }
+        }
+
+        for (Player player : players) {
+            if (player.side < 0) {
+                continue;
+            }
+
+            // acknowledged again while the paddle is still moving to a position input, as the receiver does
+            Paddle paddle = simulation.getPaddle(player.side);
+            int travel = Math.max(paddle.getMaxY() - paddle.getMinY(), 1);
+            long position = Math.round(((double) (paddle.getY() - paddle.getMinY()) * InputFrame.POSITION_MAX)
+                    / travel);
+            if (player.appliedSequence != player.acknowledgedSequence || position != player.acknowledgedPosition) {
+                player.acknowledgedSequence = player.appliedSequence;
+                player.acknowledgedPosition = position;
+                long step = Math.round(((double) paddle.getDefaultSpeed() * InputFrame.POSITION_MAX) / travel);
+                send(player, "INPUT " + player.appliedSequence + " " + position + " " + step);
+            }
+        }
+    }
+
+    /**
+     * Stop the receiver app
+     */
+    void close() {
+        if (!open) {
+            return;
+        }
+
+        open = false;
+        players.clear();
+        handler.removeCallbacks(frameRunnable);
+        handler.removeCallbacks(closeRunnable);
+        device.courtClosed(this);
+    }
+
+    private void send(final Player player, final String message) {
+        player.client.receiverMessage(NAMESPACE, message);
+    }
+
+    private void broadcast(final String message) {
+        for (Player player : players) {
+            send(player, message);
+        }
+    }
+
+    private Player findPlayer(final FakeApiClient client) {
+        for (Player player : players) {
+            if (player.client == client) {
+                return player;
+            }
+        }
+        return null;
+    }
+
+    private Player findSide(final int side) {
+        for (Player player : players) {
+            if (player.side == side) {
+                return player;
+            }
+        }
+        return null;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public Simulation getSimulation() {
+        return simulation;
+    }
+
+    /**
+     * @return histogram of the time input frames took from being sent to arriving
+     */
+    public LatencyHistogram getInputLatency() {
+        return inputLatency;
+    }
+
+    public long getMessagesReceived() {
+        return messagesReceived;
+    }
+
+    public long getInputsReceived() {
+        return inputsReceived;
+    }
+
+    /**
+     * @return number of input frames applied, as they were newer than any before them
+     */
+    public long getInputsApplied() {
+        return inputsApplied;
+    }
+
+    /**
+     * @return number of input frames dropped, as they arrived after a newer one
+     */
+    public long getInputsStale() {
+        return inputsStale;
+    }
+}
@@ -0,0 +1,51 @@
+package net.mackenzie.fakecast;
+
+import android.os.Handler;
+
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.Result;
+import com.google.android.gms.common.api.ResultCallback;
+
+/**
+ * A result that arrives at a time on the main Looper, given to the callback set for it then, or straight away
+ * if the callback is set after it has arrived
+ */
+class FakePendingResult<R extends Result> extends PendingResult<R> {
+    // IMMUTABLES
+    private final Handler handler = new Handler();
+
+    // MUTABLES
+    private R result;
+    private ResultCallback<? super R> callback;
+
+    /**
+     * @param delayMillis until the result arrives
+     * @param supplier    of the result when it arrives, so it can depend on what happened meanwhile
+     */
+    FakePendingResult(final long delayMillis, final Supplier<R> supplier) {
+        handler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                result = supplier.get();
+                if (callback != null) {
+                    callback.onResult(result);
+                }
+            }
+        }, delayMillis);
+    }
+
+    @Override
+    public void setResultCallback(final ResultCallback<? super R> callback) {
+        this.callback = callback;
+        if (result != null) {
+            callback.onResult(result);
+        }
+    }
+
+    /**
+     * Provides the result when it arrives
+     */
+    interface Supplier<R> {
+        R get();
+    }
+}
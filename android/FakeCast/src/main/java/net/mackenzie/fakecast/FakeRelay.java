@@ -0,0 +1,348 @@
+package net.mackenzie.fakecast;
+
+import androidx.annotation.NonNull;
+
+import net.mackenzie.chromeinteractor.InputFrame;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+
+/**
+ * A stand-in for receiver/relay.js with a receiver page behind it: a WebSocket server on the loopback interface that
+ * senders connect to with WebSocketTransport, over real sockets, and that answers the court protocol as the
+ * receiver would, just enough for a sender to play:
+ * <ul>
+ * <li>PADDLE YES LEFT when a sender connects</li>
+ * <li>GAME STARTED and GAME PAUSED for StartPlay and PausePlay</li>
+ * <li>PONG for each Ping</li>
+ * <li>INPUT acknowledgements of each input frame, which are checked to arrive in order</li>
+ * </ul>
+ * It speaks the relay's side of the protocol for senders, on the same path, so a sender that works with it works
+ * with relay.js. Each sender is served on a thread of its own, in real time. The counters are exact for one sender
+ * at a time, and can be read from any thread.
+ */
+public class FakeRelay {
+    // CONSTANTS
+    private static final String SENDER_PATH = "/sender";
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    // How far one step of a move input moves the paddle, as reported in acknowledgements
+    private static final int STEP = 20;
+    private static final int OPCODE_TEXT = 0x1;
+    private static final int OPCODE_CLOSE = 0x8;
+    private static final int OPCODE_PING = 0x9;
+    private static final int OPCODE_PONG = 0xA;
+    private static final char[] BASE64 =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    // IMMUTABLES
+    private final ServerSocket serverSocket;
+    private final ArrayList<Socket> sockets = new ArrayList<>();
+
+    // MUTABLES
+    private volatile boolean closed = false;
+    private volatile int sendersConnected = 0;
+    private volatile int sendersDisconnected = 0;
+    private volatile long messagesReceived = 0;
+    private volatile long inputsReceived = 0;
+    private volatile long inputsOutOfOrder = 0;
+    private volatile long pings = 0;
+
+    /**
+     * Listen on a free port of the loopback interface
+     */
+    public FakeRelay() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+    }
+
+    /**
+     * Start accepting senders, on a thread of its own
+     */
+    public void start() {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!closed) {
+                    try {
+                        final Socket socket = serverSocket.accept();
+                        synchronized (sockets) {
+                            sockets.add(socket);
+                        }
+                        new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                serve(socket);
+                            }
+                        }, "FakeRelay-sender").start();
+                    } catch (IOException e) {
+                        // closed
+                    }
+                }
+            }
+        }, "FakeRelay").start();
+    }
+
+    /**
+     * Stop listening and drop the senders connected
+     */
+    public void close() {
+        closed = true;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // nothing more to do
+        }
+        synchronized (sockets) {
+            for (Socket socket : sockets) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // nothing more to do
+                }
+            }
+        }
+    }
+
+    /**
+     * Upgrade a sender's connection to a WebSocket and play with it until it closes
+     */
+    private void serve(@NonNull final Socket socket) {
+        Sender sender = null;
+        try {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            OutputStream out = socket.getOutputStream();
+
+            String request = readLine(in);
+            String key = null;
+            String header;
+            while (!(header = readLine(in)).isEmpty()) {
+                int colon = header.indexOf(':');
+                if (colon > 0 && header.substring(0, colon).trim().equalsIgnoreCase("Sec-WebSocket-Key")) {
+                    key = header.substring(colon + 1).trim();
+                }
+            }
+            if (key == null || !request.startsWith("GET " + SENDER_PATH + " ")) {
+                out.write("HTTP/1.1 400 Bad Request\r\n\r\n".getBytes("ISO-8859-1"));
+                return;
+            }
+
+            out.write(("HTTP/1.1 101 Switching Protocols\r\n" +
+                    "Upgrade: websocket\r\n" +
+                    "Connection: Upgrade\r\n" +
+                    "Sec-WebSocket-Accept: " + acceptKey(key) + "\r\n\r\n").getBytes("ISO-8859-1"));
+            out.flush();
+
+            sender = new Sender(out);
+            sendersConnected++;
+            sender.send("PADDLE YES LEFT");
+            readMessages(in, sender);
+        } catch (IOException e) {
+            // the sender has gone
+        } finally {
+            if (sender != null) {
+                sendersDisconnected++;
+            }
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // nothing more to do
+            }
+        }
+    }
+
+    /**
+     * Read frames from a sender until it closes the connection, answering its messages
+     */
+    private void readMessages(@NonNull final DataInputStream in, @NonNull final Sender sender) throws IOException {
+        while (!closed) {
+            int b0 = in.readUnsignedByte();
+            int b1 = in.readUnsignedByte();
+            int opcode = b0 & 0x0F;
+            long length = b1 & 0x7F;
+            if (length == 126) {
+                length = in.readUnsignedShort();
+            } else if (length == 127) {
+                length = in.readLong();
+            }
+            if (length > Integer.MAX_VALUE || (b1 & 0x80) == 0) {
+                throw new IOException("Bad frame from sender");
+            }
+
+            // frames from clients are always masked
+            byte[] mask = new byte[4];
+            in.readFully(mask);
+            byte[] payload = new byte[(int) length];
+            in.readFully(payload);
+            for (int i = 0; i < payload.length; i++) {
+                payload[i] ^= mask[i & 3];
+            }
+
+            switch (opcode) {
+                case OPCODE_TEXT:
+                    messageReceived(sender, new String(payload, "UTF-8"));
+                    break;
+
+                case OPCODE_PING:
+                    sender.writeFrame(OPCODE_PONG, payload);
+                    break;
+
+                case OPCODE_CLOSE:
+                    sender.writeFrame(OPCODE_CLOSE, payload);
+                    return;
+
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Answer a message from a sender as the receiver would
+     */
+    private void messageReceived(@NonNull final Sender sender, @NonNull final String message) throws IOException {
+        messagesReceived++;
+        if (message.startsWith("Ping ")) {
+            pings++;
+            sender.send("PONG " + message.substring("Ping ".length()));
+        } else if (message.equals("StartPlay")) {
+            sender.send("GAME STARTED");
+        } else if (message.equals("PausePlay")) {
+            sender.send("GAME PAUSED");
+        } else if (sender.inputFrame.decode(message)) {
+            inputReceived(sender, sender.inputFrame);
+        }
+    }
+
+    /**
+     * Apply an input frame to the sender's paddle and acknowledge it, as the receiver does
+     */
+    private void inputReceived(@NonNull final Sender sender, @NonNull final InputFrame frame) throws IOException {
+        inputsReceived++;
+        if (sender.lastSequence != -1 && !InputFrame.isNewer(frame.getSequence(), sender.lastSequence)) {
+            inputsOutOfOrder++;
+            return;
+        }
+        sender.lastSequence = frame.getSequence();
+
+        if (frame.getType() == InputFrame.TYPE_POSITION) {
+            sender.position = frame.getValue();
+        } else {
+            // positive moves are up, towards 0
+            sender.position = Math.max(0, Math.min(InputFrame.POSITION_MAX,
+                    sender.position - frame.getValue() * STEP));
+        }
+        sender.send("INPUT " + sender.lastSequence + " " + sender.position + " " + STEP);
+    }
+
+    /**
+     * A sender connected, and its paddle
+     */
+    private static class Sender {
+        final OutputStream out;
+        final InputFrame inputFrame = new InputFrame();
+        int lastSequence = -1;
+        int position = InputFrame.POSITION_MAX / 2;
+
+        Sender(@NonNull final OutputStream out) {
+            this.out = out;
+        }
+
+        void send(@NonNull final String message) throws IOException {
+            writeFrame(OPCODE_TEXT, message.getBytes("UTF-8"));
+        }
+
+        /**
+         * Write a frame, unmasked as frames from a server are
+         */
+        synchronized void writeFrame(final int opcode, @NonNull final byte[] payload) throws IOException {
+            if (payload.length > 0xFFFF) {
+                throw new IOException("Message too long for the relay: " + payload.length);
+            }
+            out.write(0x80 | opcode);
+            if (payload.length < 126) {
+                out.write(payload.length);
+            } else {
+                out.write(126);
+                out.write(payload.length >> 8);
+                out.write(payload.length & 0xFF);
+            }
+            out.write(payload);
+            out.flush();
+        }
+    }
+
+    private static String readLine(@NonNull final DataInputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c == -1) {
+                throw new EOFException("Connection closed during WebSocket upgrade");
+            }
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+
+    private static String acceptKey(@NonNull final String key) throws IOException {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest((key + WEBSOCKET_GUID).getBytes("ISO-8859-1"));
+            StringBuilder out = new StringBuilder();
+            for (int b = 0; b < digest.length; b += 3) {
+                int remaining = digest.length - b;
+                int triple = (digest[b] & 0xFF) << 16;
+                if (remaining > 1) {
+                    triple |= (digest[b + 1] & 0xFF) << 8;
+                }
+                if (remaining > 2) {
+                    triple |= digest[b + 2] & 0xFF;
+                }
+                out.append(BASE64[(triple >> 18) & 0x3F]);
+                out.append(BASE64[(triple >> 12) & 0x3F]);
+                out.append(remaining > 1 ? BASE64[(triple >> 6) & 0x3F] : '=');
+                out.append(remaining > 2 ? BASE64[triple & 0x3F] : '=');
+            }
+            return out.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getSendersConnected() {
+        return sendersConnected;
+    }
+
+    public int getSendersDisconnected() {
+        return sendersDisconnected;
+    }
+
+    public long getMessagesReceived() {
+        return messagesReceived;
+    }
+
+    public long getInputsReceived() {
+        return inputsReceived;
+    }
+
+    public long getInputsOutOfOrder() {
+        return inputsOutOfOrder;
+    }
+
+    public long getPings() {
+        return pings;
+    }
+}
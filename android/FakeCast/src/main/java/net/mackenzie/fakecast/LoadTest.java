@@ -0,0 +1,313 @@
+package net.mackenzie.fakecast;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.mediarouter.media.MediaRouter;
+
+import net.mackenzie.chromeinteractor.ChromecastInteractor;
+import net.mackenzie.chromeinteractor.LatencyHistogram;
+import net.mackenzie.chromeinteractor.OutboundQueue;
+import net.mackenzie.chromeinteractor.ReceiverSession;
+import net.mackenzie.chromeinteractor.SessionListener;
+import net.mackenzie.pongcast.PongController;
+import net.mackenzie.pongcast.PongControllerView;
+
+/**
+ * Runs the sender app's controller and ChromecastInteractor against a FakeCastDevice, in virtual time on a
+ * plain JVM, and reports:
+ * <ul>
+ * <li>for each profile of network conditions, how many paddle positions sent at increasing rates were applied
+ * by the receiver and how long they took to get there, and the highest rate at which nearly all of them were</li>
+ * <li>what the sender sees, and when, as the connection is suspended, the receiver closes and the route is
+ * selected again while launches fail</li>
+ * <li>what each court sees when one sender runs games on several Chromecasts at once, with messages broadcast to
+ * all of them or sent to one</li>
+ * </ul>
+ * The network's random choices are seeded, so runs with the same arguments give the same results, apart from the
+ * times of the sender's own retries, which have random jitter.
+ * <p/>
+ * Usage: LoadTest [seconds per rate] [seed]
+ */
+public class LoadTest {
+    // CONSTANTS
+    private static final String RECEIVER_APP_ID = "FAKECAST";
+    private static final int[] RATES = {10, 20, 30, 45, 60, 90, 120, 250, 500};
+    // A rate is sustained if at least this fraction of the inputs sent at it are applied
+    private static final double SUSTAINED_FRACTION = 0.95;
+    private static final long CONNECT_TIMEOUT_MILLIS = 10000;
+    private static final long POLL_MILLIS = 50;
+    // Time allowed after the last input for the ones in flight to arrive
+    private static final long DRAIN_MILLIS = 2000;
+    private static final int RECONNECT_INPUT_RATE = 20;
+    private static final int TOURNAMENT_COURTS = 3;
+
+    // IMMUTABLES
+    private final Looper looper = Looper.getMainLooper();
+    private final Handler handler = new Handler();
+    private final FakeActivity activity = new FakeActivity();
+    private final MediaRouter mediaRouter = MediaRouter.getInstance(activity);
+    private final PongController pongController = new PongController(activity);
+    private final RecordingGameController recorder = new RecordingGameController(pongController);
+    private final ChromecastInteractor chromecastInteractor;
+    private final FakeCastDevice device;
+
+    // MUTABLES
+    private int inputsGenerated = 0;
+    private long inputsStopAt = 0;
+
+    /**
+     * A sender app, with a device on the network for it to find
+     */
+    private LoadTest(final NetworkConditions networkConditions, final long seed) {
+        new PongControllerView(activity, pongController);
+        chromecastInteractor = new ChromecastInteractor(activity, RECEIVER_APP_ID, FakeCourt.NAMESPACE, recorder);
+        device = new FakeCastDevice("fake-1", "Fake Chromecast", networkConditions, seed);
+        chromecastInteractor.resume();
+        initialize();
+        mediaRouter.addRoute(device.getRoute());
+    }
+
+    /**
+     * Initialize the interactor, waiting in real time for its background thread, without moving the time on
+     */
+    private void initialize() {
+        chromecastInteractor.initialize(null);
+        while (!chromecastInteractor.isInitialized()) {
+            looper.runUntil(SystemClock.uptimeMillis());
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public static void main(final String[] args) {
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 10;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+
+        for (NetworkConditions networkConditions : NetworkConditions.PROFILES) {
+            inputRates(networkConditions, seconds * 1000, seed);
+        }
+        reconnect(NetworkConditions.WIFI, seed);
+        tournament(NetworkConditions.WIFI, seed);
+    }
+
+    /**
+     * Send inputs at each rate in turn, with a new connection for each, and report what happened to them
+     */
+    private static void inputRates(final NetworkConditions networkConditions, final long durationMillis,
+                                   final long seed) {
+        System.out.println("Network: " + networkConditions);
+        System.out.println(String.format("%8s %8s %8s %8s %8s %8s %8s %8s %8s %8s", "rate/s", "inputs",
+                "applied", "stale", "dropped", "failed", "p50 ms", "p95 ms", "max ms", "rtt p95"));
+
+        int maxSustained = 0;
+        for (int rate : RATES) {
+            LoadTest test = new LoadTest(networkConditions, seed);
+            if (!test.connect()) {
+                System.out.println(String.format("%8d could not connect", rate));
+                test.close();
+                continue;
+            }
+
+            test.sendInputs(rate, durationMillis);
+            test.runFor(durationMillis + DRAIN_MILLIS);
+
+            FakeCourt court = test.device.getCourt();
+            OutboundQueue queue = test.chromecastInteractor.getOutboundQueue();
+            LatencyHistogram latency = court.getInputLatency();
+            System.out.println(String.format("%8d %8d %8d %8d %8d %8d %8d %8d %8d %8d", rate,
+                    test.inputsGenerated, court.getInputsApplied(), court.getInputsStale(), queue.getDropped(),
+                    queue.getFailed(), latency.getP50(), latency.getP95(), latency.getMax(),
+                    test.chromecastInteractor.getLatencyHistogram().getP95()));
+
+            if (court.getInputsApplied() >= SUSTAINED_FRACTION * test.inputsGenerated) {
+                maxSustained = rate;
+            }
+            test.close();
+        }
+        System.out.println("Max sustained input rate: " + maxSustained + "/s");
+        System.out.println();
+    }
+
+    /**
+     * Play through losing the connection and the receiver in different ways, and report what the sender saw
+     */
+    private static void reconnect(final NetworkConditions networkConditions, final long seed) {
+        System.out.println("Reconnection, network: " + networkConditions);
+        final LoadTest test = new LoadTest(networkConditions, seed);
+        test.recorder.reset();
+        test.connect();
+        test.sendInputs(RECONNECT_INPUT_RATE, 45000);
+
+        test.runFor(2000);
+        test.recorder.record("** connection suspended for 1500 ms");
+        test.device.suspendConnections(1500);
+
+        test.runFor(5000);
+        test.recorder.record("** connection suspended for 5000 ms, the receiver closes meanwhile");
+        test.device.suspendConnections(5000);
+
+        test.runFor(9000);
+        test.recorder.record("** receiver stopped");
+        test.device.stopReceiver();
+
+        test.runFor(2000);
+        test.recorder.record("** route selected again, the next 3 launches fail");
+        test.device.failLaunches(3);
+        test.mediaRouter.selectRoute(test.device.getRoute());
+
+        test.runFor(8000);
+        test.recorder.record("** route unselected, and selected again 1000 ms later");
+        test.mediaRouter.unselectRoute(test.device.getRoute());
+        test.runFor(1000);
+        test.mediaRouter.selectRoute(test.device.getRoute());
+
+        test.runFor(5000);
+        for (String event : test.recorder.getTimeline()) {
+            System.out.println(event);
+        }
+        LatencyHistogram timeToReady = test.chromecastInteractor.getTimeToReadyHistogram();
+        System.out.println("Receiver launches: " + test.device.getLaunchCount() + ", failed launches: "
+                + test.device.getFailedLaunchCount() + ", input acknowledgements: " + test.recorder.getInputAcks());
+        System.out.println("Time to receiver ready: " + timeToReady);
+        test.close();
+    }
+
+    /**
+     * Connect to several devices at once, one as the primary session and the rest as extra sessions, and drive
+     * their courts together and separately
+     */
+    private static void tournament(final NetworkConditions networkConditions, final long seed) {
+        System.out.println("Tournament of " + TOURNAMENT_COURTS + " courts, network: " + networkConditions);
+        final LoadTest test = new LoadTest(networkConditions, seed);
+        test.recorder.reset();
+        test.chromecastInteractor.setSessionListener(new SessionListener() {
+            @Override
+            public void sessionState(@NonNull ReceiverSession session,
+                                     @NonNull ChromecastInteractor.CHROMECAST_STATE state) {
+                test.recorder.record(session.getName() + ": state " + state);
+            }
+
+            @Override
+            public void sessionMessage(@NonNull ReceiverSession session, @NonNull String message) {
+                if (!message.startsWith("INPUT ")) {
+                    test.recorder.record(session.getName() + ": message \"" + message + "\"");
+                }
+            }
+
+            @Override
+            public void sessionClosed(@NonNull ReceiverSession session) {
+                test.recorder.record(session.getName() + ": closed");
+            }
+        });
+
+        FakeCastDevice[] devices = new FakeCastDevice[TOURNAMENT_COURTS];
+        devices[0] = test.device;
+        for (int i = 1; i < TOURNAMENT_COURTS; i++) {
+            devices[i] = new FakeCastDevice("fake-" + (i + 1), "Fake Chromecast " + (i + 1), networkConditions,
+                    seed + i);
+            test.mediaRouter.addRoute(devices[i].getRoute());
+        }
+
+        test.recorder.record("** route to the first court selected");
+        test.connect();
+        test.recorder.record("** sessions added for the other courts");
+        for (int i = 1; i < TOURNAMENT_COURTS; i++) {
+            test.chromecastInteractor.addCastSession(devices[i].getRoute());
+        }
+        test.runFor(2000);
+
+        test.recorder.record("** StartPlay broadcast to all courts");
+        test.chromecastInteractor.broadcastMessage("StartPlay", OutboundQueue.DROP_POLICY.NEVER_DROP);
+        test.sendInputs(RECONNECT_INPUT_RATE, 3000);
+        test.runFor(2000);
+
+        ReceiverSession last = test.chromecastInteractor.getSessions().get(TOURNAMENT_COURTS - 1);
+        test.recorder.record("** PausePlay sent to " + last.getName() + " only");
+        test.chromecastInteractor.sendMessage(last, "PausePlay", OutboundQueue.DROP_POLICY.NEVER_DROP);
+        test.runFor(2000);
+
+        for (String event : test.recorder.getTimeline()) {
+            System.out.println(event);
+        }
+        for (FakeCastDevice device : devices) {
+            FakeCourt court = device.getCourt();
+            System.out.println(String.format("%s: messages received %d, inputs applied %d, playing %b",
+                    device.getFriendlyName(), court.getMessagesReceived(), court.getInputsApplied(),
+                    court.getSimulation().isPlaying()));
+        }
+
+        test.chromecastInteractor.removeSession(last);
+        test.chromecastInteractor.setSessionListener(null);
+        test.close();
+        for (int i = 1; i < TOURNAMENT_COURTS; i++) {
+            test.mediaRouter.removeRoute(devices[i].getRoute());
+        }
+        test.looper.clearPending();
+    }
+
+    /**
+     * Select the device's route, as the user would, and wait until the receiver gives us a paddle and the game
+     * has started
+     *
+     * @return true if it did before timing out
+     */
+    private boolean connect() {
+        mediaRouter.selectRoute(device.getRoute());
+        long timeout = SystemClock.uptimeMillis() + CONNECT_TIMEOUT_MILLIS;
+        while (!recorder.hasPaddle() && SystemClock.uptimeMillis() < timeout) {
+            runFor(POLL_MILLIS);
+        }
+        if (!recorder.hasPaddle()) {
+            return false;
+        }
+
+        pongController.startGame();
+        runFor(1000);
+        return true;
+    }
+
+    /**
+     * Move the paddle between two positions at a steady rate for a while, as dragging it up and down would
+     */
+    private void sendInputs(final int rate, final long durationMillis) {
+        final long start = SystemClock.uptimeMillis();
+        inputsStopAt = start + durationMillis;
+        handler.post(new Runnable() {
+            private int count = 0;
+
+            @Override
+            public void run() {
+                if (SystemClock.uptimeMillis() >= inputsStopAt) {
+                    return;
+                }
+
+                pongController.paddlePosition((count % 2) == 0 ? 0.25f : 0.75f);
+                count++;
+                inputsGenerated++;
+                handler.postAtTime(this, start + Math.round((count * 1000.0) / rate));
+            }
+        });
+    }
+
+    private void runFor(final long millis) {
+        looper.runUntil(SystemClock.uptimeMillis() + millis);
+    }
+
+    /**
+     * Disconnect, and forget everything still to run, ready for the next test
+     */
+    private void close() {
+        inputsStopAt = 0;
+        chromecastInteractor.disconnect();
+        chromecastInteractor.pause();
+        mediaRouter.removeRoute(device.getRoute());
+        looper.clearPending();
+    }
+}
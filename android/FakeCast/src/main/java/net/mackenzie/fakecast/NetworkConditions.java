@@ -0,0 +1,85 @@
+package net.mackenzie.fakecast;
+
+import java.util.Random;
+
+/**
+ * The conditions on the network between the sender and a FakeCastDevice, applied to each message in each
+ * direction.
+ * <p/>
+ * Each message takes latencyMillis plus a random extra of up to jitterMillis to arrive. Like the TCP connection
+ * to a real Chromecast, messages arrive in the order sent, so a slow one holds up those behind it, except a
+ * reorderPercent of them which can overtake. A lossPercent of them never arrive, which the sender is told about
+ * in the result of sending, as it would be if the connection dropped them.
+ */
+public class NetworkConditions {
+    // CONSTANTS
+    public static final NetworkConditions PERFECT = new NetworkConditions("perfect", 0, 0, 0, 0);
+    public static final NetworkConditions GOOD = new NetworkConditions("good", 5, 5, 0, 0);
+    public static final NetworkConditions WIFI = new NetworkConditions("wifi", 15, 30, 0.5, 1);
+    public static final NetworkConditions CONGESTED = new NetworkConditions("congested", 60, 150, 3, 5);
+    public static final NetworkConditions[] PROFILES = {PERFECT, GOOD, WIFI, CONGESTED};
+
+    // IMMUTABLES
+    private final String name;
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double lossPercent;
+    private final double reorderPercent;
+
+    /**
+     * @param name           to report the conditions by
+     * @param latencyMillis  minimum time for a message to arrive, in each direction
+     * @param jitterMillis   maximum random extra time for a message to arrive
+     * @param lossPercent    percentage of messages that never arrive
+     * @param reorderPercent percentage of messages that can overtake the ones sent before them
+     */
+    public NetworkConditions(final String name, final long latencyMillis, final long jitterMillis,
+                             final double lossPercent, final double reorderPercent) {
+        this.name = name;
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.lossPercent = lossPercent;
+        this.reorderPercent = reorderPercent;
+    }
+
+    /**
+     * @param random to decide with
+     * @return true if the next message should be lost
+     */
+    boolean isLost(final Random random) {
+        return lossPercent > 0 && random.nextDouble() * 100 < lossPercent;
+    }
+
+    /**
+     * @param random to decide with
+     * @return true if the next message may overtake those sent before it
+     */
+    boolean isReordered(final Random random) {
+        return reorderPercent > 0 && random.nextDouble() * 100 < reorderPercent;
+    }
+
+    /**
+     * @param random to decide with
+     * @return time for the next message to arrive, if nothing is holding it up
+     */
+    long delay(final Random random) {
+        return latencyMillis + (jitterMillis > 0 ? (long) (random.nextDouble() * jitterMillis) : 0);
+    }
+
+    /**
+     * @return the longest time a message can take to arrive, if nothing is holding it up
+     */
+    public long getMaxDelay() {
+        return latencyMillis + jitterMillis;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (latency=" + latencyMillis + "ms, jitter=" + jitterMillis + "ms, loss=" + lossPercent
+                + "%, reorder=" + reorderPercent + "%)";
+    }
+}
@@ -0,0 +1,100 @@
+package net.mackenzie.fakecast;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import net.mackenzie.chromeinteractor.ChromecastInteractor;
+import net.mackenzie.chromeinteractor.GameController;
+import net.mackenzie.chromeinteractor.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Passes everything on to the sender's GameController, keeping a timeline of the state changes and messages it
+ * saw. Input acknowledgements are too frequent to list, so only the first after the receiver becomes ready is.
+ */
+public class RecordingGameController implements GameController {
+    // IMMUTABLES
+    private final GameController gameController;
+    private final ArrayList<String> timeline = new ArrayList<>();
+
+    // MUTABLES
+    private long origin = 0;
+    private boolean waitingForInputAck = false;
+    private boolean gotPaddle = false;
+    private long inputAcks = 0;
+
+    public RecordingGameController(@NonNull final GameController gameController) {
+        this.gameController = gameController;
+    }
+
+    @Override
+    public void setChromecastInteractor(@NonNull final ChromecastInteractor chromecastInteractor) {
+        gameController.setChromecastInteractor(chromecastInteractor);
+    }
+
+    @Override
+    public void newChromecastState(@NonNull final ChromecastInteractor.CHROMECAST_STATE newState) {
+        record("state " + newState);
+        if (newState == ChromecastInteractor.CHROMECAST_STATE.RECEIVER_READY) {
+            waitingForInputAck = true;
+        } else {
+            gotPaddle = false;
+        }
+        gameController.newChromecastState(newState);
+    }
+
+    @Override
+    public void receiverMessage(@NonNull final String message) {
+        if (message.startsWith("INPUT ")) {
+            inputAcks++;
+            if (waitingForInputAck) {
+                waitingForInputAck = false;
+                record("first input acknowledged");
+            }
+        } else {
+            record("message \"" + message + "\"");
+            if (message.startsWith("PADDLE YES")) {
+                gotPaddle = true;
+            }
+        }
+        gameController.receiverMessage(message);
+    }
+
+    @Override
+    public void latencyMeasured(final long roundTripMillis, @NonNull final LatencyHistogram histogram) {
+        gameController.latencyMeasured(roundTripMillis, histogram);
+    }
+
+    /**
+     * Add something else that happened to the timeline, e.g. a failure being injected
+     */
+    public void record(@NonNull final String event) {
+        timeline.add(String.format("%8d ms  %s", SystemClock.uptimeMillis() - origin, event));
+    }
+
+    /**
+     * Start the timeline again, with times from now
+     */
+    public void reset() {
+        timeline.clear();
+        origin = SystemClock.uptimeMillis();
+    }
+
+    public List<String> getTimeline() {
+        return timeline;
+    }
+
+    /**
+     * @return true if the receiver has given us a paddle since it was last ready
+     */
+    public boolean hasPaddle() {
+        return gotPaddle;
+    }
+
+    public long getInputAcks() {
+        return inputAcks;
+    }
+}
@@ -0,0 +1,183 @@
+package net.mackenzie.fakecast;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import net.mackenzie.chromeinteractor.ChromecastInteractor;
+import net.mackenzie.chromeinteractor.LatencyHistogram;
+import net.mackenzie.chromeinteractor.OutboundQueue;
+import net.mackenzie.chromeinteractor.WebSocketTransport;
+import net.mackenzie.pongcast.PongController;
+import net.mackenzie.pongcast.PongControllerView;
+
+import java.io.IOException;
+
+/**
+ * Runs the sender app's controller and ChromecastInteractor, unchanged, through a WebSocketTransport over real
+ * sockets, with no Cast device: connecting, getting a paddle, starting a game, sending paddle positions, measuring
+ * the round trip and disconnecting. It prints what the sender saw and exits with status 1 if any of it failed.
+ * <p/>
+ * Without arguments it plays against a FakeRelay in the same process. Given the host and port of receiver/relay.js,
+ * with the receiver page open in a browser, it plays against that instead.
+ * <p/>
+ * The sockets and the transport's threads run in real time, so the Looper is run in step with the real time rather
+ * than jumping ahead, and runs take as long as they say.
+ * <p/>
+ * Usage: RelayTest [host port]
+ */
+public class RelayTest {
+    // CONSTANTS
+    private static final String RECEIVER_APP_ID = "FAKECAST";
+    private static final long CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final long POLL_MILLIS = 50;
+    private static final int INPUT_RATE = 30;
+    // Long enough for a few pings, which are sent every 2 seconds
+    private static final long INPUT_MILLIS = 5000;
+    private static final long DRAIN_MILLIS = 1000;
+
+    // IMMUTABLES
+    private final Looper looper = Looper.getMainLooper();
+    private final Handler handler = new Handler();
+    private final FakeActivity activity = new FakeActivity();
+    private final PongController pongController = new PongController(activity);
+    private final RecordingGameController recorder = new RecordingGameController(pongController);
+    private final ChromecastInteractor chromecastInteractor;
+    // Virtual time is kept this far behind the real time
+    private final long virtualOffsetMillis;
+
+    // MUTABLES
+    private int inputsGenerated = 0;
+    private String failure = null;
+
+    private RelayTest() {
+        new PongControllerView(activity, pongController);
+        chromecastInteractor = new ChromecastInteractor(activity, RECEIVER_APP_ID, FakeCourt.NAMESPACE, recorder);
+        virtualOffsetMillis = System.currentTimeMillis() - SystemClock.uptimeMillis();
+    }
+
+    public static void main(final String[] args) throws IOException {
+        FakeRelay relay = null;
+        String host;
+        int port;
+        if (args.length >= 2) {
+            host = args[0];
+            port = Integer.parseInt(args[1]);
+        } else {
+            relay = new FakeRelay();
+            relay.start();
+            host = "127.0.0.1";
+            port = relay.getPort();
+        }
+
+        System.out.println("Relay: " + host + ":" + port + (relay != null ? " (in process)" : ""));
+        RelayTest test = new RelayTest();
+        test.play(host, port);
+
+        if (relay != null) {
+            System.out.println(String.format("Relay: senders connected %d, disconnected %d, messages %d, inputs %d, " +
+                            "out of order %d, pings %d", relay.getSendersConnected(), relay.getSendersDisconnected(),
+                    relay.getMessagesReceived(), relay.getInputsReceived(), relay.getInputsOutOfOrder(),
+                    relay.getPings()));
+            test.check(relay.getSendersConnected() == 1, "the relay did not see the sender connect once");
+            test.check(relay.getSendersDisconnected() == 1, "the relay did not see the sender disconnect");
+            test.check(relay.getInputsReceived() == test.inputsGenerated,
+                    "the relay received " + relay.getInputsReceived() + " of " + test.inputsGenerated + " inputs");
+            test.check(relay.getInputsOutOfOrder() == 0, "inputs arrived out of order");
+            relay.close();
+        }
+
+        if (test.failure != null) {
+            System.out.println("FAILED: " + test.failure);
+            System.exit(1);
+        }
+        System.out.println("PASSED");
+        System.exit(0);
+    }
+
+    /**
+     * Connect, play and disconnect, printing the timeline of what the sender saw
+     */
+    private void play(final String host, final int port) {
+        recorder.reset();
+        chromecastInteractor.connect(new WebSocketTransport(host, port));
+        long timeout = SystemClock.uptimeMillis() + CONNECT_TIMEOUT_MILLIS;
+        while (!recorder.hasPaddle() && SystemClock.uptimeMillis() < timeout) {
+            runFor(POLL_MILLIS);
+        }
+        check(recorder.hasPaddle(), "no paddle within " + CONNECT_TIMEOUT_MILLIS + " ms");
+
+        if (failure == null) {
+            pongController.startGame();
+            runFor(500);
+            recorder.record("** sending inputs at " + INPUT_RATE + "/s");
+            sendInputs();
+            runFor(INPUT_MILLIS + DRAIN_MILLIS);
+        }
+
+        recorder.record("** disconnecting");
+        chromecastInteractor.disconnect();
+        runFor(500);
+
+        for (String event : recorder.getTimeline()) {
+            System.out.println(event);
+        }
+
+        OutboundQueue queue = chromecastInteractor.getOutboundQueue();
+        LatencyHistogram latency = chromecastInteractor.getLatencyHistogram();
+        System.out.println(String.format("Sender: inputs %d, acknowledged %d, queued %d, sent %d, dropped %d, " +
+                        "failed %d, round trips %d, rtt p50 %d ms, max %d ms", inputsGenerated,
+                recorder.getInputAcks(), queue.getQueued(), queue.getSent(), queue.getDropped(), queue.getFailed(),
+                latency.getCount(), latency.getP50(), latency.getMax()));
+        check(recorder.getInputAcks() > 0, "no inputs were acknowledged");
+        check(latency.getCount() > 0, "no round trips were measured");
+        check(queue.getFailed() == 0, "sends failed");
+    }
+
+    /**
+     * Move the paddle between two positions at a steady rate, as dragging on the touch control would
+     */
+    private void sendInputs() {
+        final long start = SystemClock.uptimeMillis();
+        handler.post(new Runnable() {
+            private int count = 0;
+
+            @Override
+            public void run() {
+                if (SystemClock.uptimeMillis() - start >= INPUT_MILLIS) {
+                    return;
+                }
+
+                pongController.paddlePosition((count % 2) == 0 ? 0.25f : 0.75f);
+                count++;
+                inputsGenerated++;
+                handler.postAtTime(this, start + Math.round((count * 1000.0) / INPUT_RATE));
+            }
+        });
+    }
+
+    /**
+     * Run the Looper for a while in step with the real time, so events from the transport's threads are handled
+     * as they arrive
+     */
+    private void runFor(final long millis) {
+        long end = System.currentTimeMillis() + millis;
+        long now;
+        while ((now = System.currentTimeMillis()) < end) {
+            looper.runUntil(now - virtualOffsetMillis);
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        looper.runUntil(end - virtualOffsetMillis);
+    }
+
+    private void check(final boolean passed, final String what) {
+        if (!passed && failure == null) {
+            failure = what;
+        }
+    }
+}
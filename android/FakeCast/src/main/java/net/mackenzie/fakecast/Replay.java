@@ -0,0 +1,223 @@
+package net.mackenzie.fakecast;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.mediarouter.media.MediaRouter;
+
+import net.mackenzie.chromeinteractor.ChromecastInteractor;
+import net.mackenzie.chromeinteractor.LatencyHistogram;
+import net.mackenzie.chromeinteractor.OutboundQueue;
+import net.mackenzie.chromeinteractor.SessionLogReader;
+import net.mackenzie.chromeinteractor.SessionRecorder;
+import net.mackenzie.chromeinteractor.SessionReplay;
+import net.mackenzie.pongcast.PongController;
+import net.mackenzie.pongcast.PongControllerView;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Replays a session log recorded by the sender app (see SessionRecorder) against a FakeCastDevice, in virtual time
+ * on a plain JVM, at each of a list of speeds, and reports what the receiver made of it: how many of the inputs in
+ * it were applied and how long they took to get there. The same log, network and seed always give the same
+ * results, so a recorded session becomes a repeatable load and latency test.
+ * <p/>
+ * Without a log it first records one, of the sender moving its paddle steadily for a while, with a SessionRecorder
+ * as PongController.startRecording() does, and waits for it to be written out.
+ * <p/>
+ * Usage: Replay [log file|-] [speed...]
+ */
+public class Replay {
+    // CONSTANTS
+    private static final String RECEIVER_APP_ID = "FAKECAST";
+    private static final long SEED = 1;
+    private static final double[] DEFAULT_SPEEDS = {1, 4};
+    private static final long CONNECT_TIMEOUT_MILLIS = 10000;
+    // Real time to wait for the log to be written out
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+    private static final long POLL_MILLIS = 50;
+    // Time allowed after the end of the log for the inputs in flight to arrive
+    private static final long DRAIN_MILLIS = 2000;
+    private static final int RECORDED_INPUT_RATE = 30;
+    private static final long RECORDED_MILLIS = 10000;
+
+    // IMMUTABLES
+    private final Looper looper = Looper.getMainLooper();
+    private final Handler handler = new Handler();
+    private final FakeActivity activity = new FakeActivity();
+    private final MediaRouter mediaRouter = MediaRouter.getInstance(activity);
+    private final PongController pongController = new PongController(activity);
+    private final RecordingGameController recorder = new RecordingGameController(pongController);
+    private final ChromecastInteractor chromecastInteractor;
+    private final FakeCastDevice device;
+
+    /**
+     * A sender app, with a device on the network for it to find
+     */
+    private Replay(final NetworkConditions networkConditions) {
+        new PongControllerView(activity, pongController);
+        chromecastInteractor = new ChromecastInteractor(activity, RECEIVER_APP_ID, FakeCourt.NAMESPACE, recorder);
+        device = new FakeCastDevice("fake-1", "Fake Chromecast", networkConditions, SEED);
+        chromecastInteractor.resume();
+        initialize();
+        mediaRouter.addRoute(device.getRoute());
+    }
+
+    /**
+     * Initialize the interactor, waiting in real time for its background thread, without moving the time on
+     */
+    private void initialize() {
+        chromecastInteractor.initialize(null);
+        while (!chromecastInteractor.isInitialized()) {
+            looper.runUntil(SystemClock.uptimeMillis());
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public static void main(final String[] args) throws IOException {
+        File log;
+        if (args.length > 0 && !"-".equals(args[0])) {
+            log = new File(args[0]);
+        } else {
+            log = File.createTempFile("session", ".log");
+            log.deleteOnExit();
+            record(log);
+        }
+
+        double[] speeds = DEFAULT_SPEEDS;
+        if (args.length > 1) {
+            speeds = new double[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                speeds[i - 1] = Double.parseDouble(args[i]);
+            }
+        }
+
+        System.out.println("Replaying " + log + " (" + log.length() + " bytes), network: " + NetworkConditions.WIFI);
+        System.out.println(String.format("%8s %8s %8s %8s %8s %8s %8s %8s %8s %8s", "speed", "records",
+                "sent", "applied", "stale", "dropped", "p50 ms", "p95 ms", "max ms", "rtt p95"));
+        for (double speed : speeds) {
+            replay(log, speed);
+        }
+    }
+
+    /**
+     * Record a session of the paddle being moved up and down at a steady rate
+     */
+    private static void record(@NonNull final File log) {
+        final Replay sender = new Replay(NetworkConditions.WIFI);
+        if (!sender.connect()) {
+            System.out.println("Could not connect to record a session");
+            sender.close();
+            return;
+        }
+
+        SessionRecorder recorder = new SessionRecorder(log);
+        sender.chromecastInteractor.setRecorder(recorder);
+        final long start = SystemClock.uptimeMillis();
+        sender.handler.post(new Runnable() {
+            private int count = 0;
+
+            @Override
+            public void run() {
+                if (SystemClock.uptimeMillis() - start >= RECORDED_MILLIS) {
+                    return;
+                }
+
+                sender.pongController.paddlePosition((count % 2) == 0 ? 0.25f : 0.75f);
+                count++;
+                sender.handler.postAtTime(this, start + Math.round((count * 1000.0) / RECORDED_INPUT_RATE));
+            }
+        });
+        sender.runFor(RECORDED_MILLIS + DRAIN_MILLIS);
+        // the log is closed on the messaging thread, and written out and closed by the recorder's writer thread
+        sender.chromecastInteractor.setRecorder(null);
+        sender.runFor(POLL_MILLIS);
+        sender.close();
+        try {
+            if (!recorder.awaitClosed(CLOSE_TIMEOUT_MILLIS) || recorder.hasFailed()) {
+                System.out.println("Could not write the session log " + log);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("Recorded " + RECORDED_MILLIS + " ms of inputs at " + RECORDED_INPUT_RATE + "/s");
+    }
+
+    /**
+     * Replay a log at a speed to a new receiver, and report what happened to the inputs in it
+     */
+    private static void replay(@NonNull final File log, final double speed) throws IOException {
+        Replay sender = new Replay(NetworkConditions.WIFI);
+        if (!sender.connect()) {
+            System.out.println(String.format("%8.1f could not connect", speed));
+            sender.close();
+            return;
+        }
+
+        try (InputStream in = new BufferedInputStream(new FileInputStream(log))) {
+            // The receiver answers for itself, so only what the sender sent is replayed
+            SessionReplay replay = new SessionReplay(new SessionLogReader(in), sender.chromecastInteractor,
+                    sender.pongController.getInputChannel(), null, speed, null);
+            replay.start();
+            while (!replay.isFinished()) {
+                sender.runFor(POLL_MILLIS);
+            }
+            sender.runFor(DRAIN_MILLIS);
+
+            FakeCourt court = sender.device.getCourt();
+            OutboundQueue queue = sender.chromecastInteractor.getOutboundQueue();
+            LatencyHistogram latency = court.getInputLatency();
+            System.out.println(String.format("%8.1f %8d %8d %8d %8d %8d %8d %8d %8d %8d", speed,
+                    replay.getOutbound() + replay.getInbound() + replay.getStates(), replay.getOutbound(),
+                    court.getInputsApplied(), court.getInputsStale(), queue.getDropped(), latency.getP50(),
+                    latency.getP95(), latency.getMax(), sender.chromecastInteractor.getLatencyHistogram().getP95()));
+        }
+        sender.close();
+    }
+
+    /**
+     * Select the device's route, as the user would, and wait until the receiver gives us a paddle and the game
+     * has started
+     *
+     * @return true if it did before timing out
+     */
+    private boolean connect() {
+        mediaRouter.selectRoute(device.getRoute());
+        long timeout = SystemClock.uptimeMillis() + CONNECT_TIMEOUT_MILLIS;
+        while (!recorder.hasPaddle() && SystemClock.uptimeMillis() < timeout) {
+            runFor(POLL_MILLIS);
+        }
+        if (!recorder.hasPaddle()) {
+            return false;
+        }
+
+        pongController.startGame();
+        runFor(1000);
+        return true;
+    }
+
+    private void runFor(final long millis) {
+        looper.runUntil(SystemClock.uptimeMillis() + millis);
+    }
+
+    /**
+     * Disconnect, and forget everything still to run, ready for the next replay
+     */
+    private void close() {
+        chromecastInteractor.disconnect();
+        chromecastInteractor.pause();
+        mediaRouter.removeRoute(device.getRoute());
+        looper.clearPending();
+    }
+}
@@ -0,0 +1,35 @@
+package net.mackenzie.pongcast;
+
+/**
+ * Plain JVM stand-in for the resource ids generated for the app, for running on a plain JVM.
+ * Only has the ids used by the sender classes run on a plain JVM, add new ones here when they use more.
+ */
+public final class R {
+    public static final class id {
+        public static final int playButton = 1;
+        public static final int messageView = 2;
+        public static final int paddleControl = 3;
+        public static final int upButton = 4;
+        public static final int downButton = 5;
+        public static final int touchControl = 6;
+        public static final int courtMirror = 7;
+    }
+
+    public static final class layout {
+        public static final int activity_main = 1;
+    }
+
+    public static final class string {
+        public static final int enableWifi = 1;
+        public static final int noRoute = 2;
+        public static final int selectRoute = 3;
+        public static final int waiting = 4;
+        public static final int preparing = 5;
+        public static final int onCourt = 6;
+        public static final int noPaddle = 7;
+        public static final int slowNetwork = 8;
+        public static final int receiverTelemetry = 9;
+        public static final int sessionRecorded = 10;
+        public static final int sessionNotRecorded = 11;
+    }
+}
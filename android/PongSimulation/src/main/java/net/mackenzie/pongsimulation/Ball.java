@@ -0,0 +1,193 @@
+package net.mackenzie.pongsimulation;
+
+/**
+ * The ball, following the same rules as Ball in receiver/pong.js.
+ * <p/>
+ * Positions are of the middle of the ball, in the court's pixels, and speeds are in pixels per tick.
+ */
+public class Ball {
+    // CONSTANTS
+    static final int IN_PLAY = 0;
+    static final int EXIT_LEFT = -1;
+    static final int EXIT_RIGHT = 1;
+    // Times within a tick are in parts of it, see update()
+    static final int TICK_PARTS = 1000;
+    // Most walls and paddles the ball can hit in one tick
+    static final int MAX_CONTACTS = 4;
+    private static final int HIT_NONE = 0;
+    private static final int HIT_WALL = 1;
+    private static final int HIT_PADDLE = 2;
+
+    // IMMUTABLES
+    final int ballSize;
+    final int halfBallSize;
+
+    // MUTABLES
+    int x;
+    int y;
+    int xSpeed;
+    int ySpeed;
+    // counts serves and bounces off paddles, so a ComputerPlayer knows when to work out where the ball is going again
+    int trajectory = 0;
+
+    Ball(final int ballSize) {
+        this.ballSize = ballSize;
+        this.halfBallSize = ballSize / 2;
+    }
+
+    /**
+     * Put the ball back in the middle of the court, moving at the court's starting speed
+     */
+    void reset(final Simulation court) {
+        x = court.width / 2;
+        y = court.height / 2;
+        xSpeed = court.xSpeed;
+        ySpeed = court.ySpeed;
+        trajectory++;
+    }
+
+    void bounceWall(final Simulation court) {
+        ySpeed = -ySpeed;
+        court.events |= Simulation.EVENT_WALL;
+    }
+
+    /**
+     * Top and bottom thirds of the paddle return the ball by inverting or increase its angle by glancing,
+     * the middle third reflects the ball's current angle
+     */
+    void bouncePaddle(final Simulation court, final Paddle paddle) {
+        // Gain 10% of speed with every bounce
+        xSpeed = (int) (-1.1 * xSpeed);
+        trajectory++;
+        if (y < paddle.y + paddle.topSection) {
+            if (ySpeed == 0) {
+                ySpeed = court.width / 200;
+            } else if (ySpeed > 0) {
+                ySpeed = -ySpeed;
+            } else {
+                ySpeed = ySpeed * 2;
+            }
+        } else if (y > paddle.y + paddle.bottomSection) {
+            if (ySpeed == 0) {
+                ySpeed = -court.width / 200;
+            } else if (ySpeed > 0) {
+                ySpeed = ySpeed * 2;
+            } else {
+                ySpeed = -ySpeed;
+            }
+        }
+
+        court.events |= Simulation.EVENT_PADDLE;
+    }
+
+    /**
+     * Move the ball on one tick, bouncing off the walls and paddles.
+     * <p/>
+     * The ball's path during the tick is swept for the first wall or paddle front it crosses, the ball is moved to
+     * where it hits and bounced, and the rest of the tick is swept again from there at the new speed, up to
+     * MAX_CONTACTS times. So however fast the ball goes it can't pass through a paddle, and it can bounce off a paddle
+     * and a wall in one tick. Times are in TICK_PARTS of a tick, and divisions truncate towards zero like
+     * Math.trunc() in the receiver, so both get exactly the same result.
+     *
+     * @return IN_PLAY, or EXIT_LEFT or EXIT_RIGHT if the ball has left the court at that end
+     */
+    int update(final Simulation court) {
+        Paddle left = court.paddles[Simulation.LEFT];
+        Paddle right = court.paddles[Simulation.RIGHT];
+        long time = TICK_PARTS;
+
+        for (int contacts = 0; contacts < MAX_CONTACTS && time > 0; contacts++) {
+            // where the ball would get to in the time left if it hit nothing
+            long dx = (xSpeed * time) / TICK_PARTS;
+            long dy = (ySpeed * time) / TICK_PARTS;
+
+            // the first thing hit is a fraction num / den of the way there
+            int hit = HIT_NONE;
+            long num = 0;
+            long den = 1;
+
+            int topY = halfBallSize;
+            int bottomY = court.height - halfBallSize;
+            if (dy < 0 && y + dy <= topY) {
+                hit = HIT_WALL;
+                num = y - topY;
+                den = -dy;
+            } else if (dy > 0 && y + dy >= bottomY) {
+                hit = HIT_WALL;
+                num = bottomY - y;
+                den = dy;
+            }
+
+            // The ball hits a paddle when its middle crosses the paddle's front, if it overlaps the paddle then
+            Paddle paddle = null;
+            long paddleNum = 0;
+            long paddleDen = 1;
+            if (dx < 0 && x > left.frontX && x + dx <= left.frontX) {
+                paddle = left;
+                paddleNum = x - left.frontX;
+                paddleDen = -dx;
+            } else if (dx > 0 && x < right.frontX && x + dx >= right.frontX) {
+                paddle = right;
+                paddleNum = right.frontX - x;
+                paddleDen = dx;
+            }
+
+            if (paddle != null && (hit == HIT_NONE || (paddleNum * den) < (num * paddleDen))) {
+                long contactY = y + ((dy * paddleNum) / paddleDen);
+                if ((contactY + halfBallSize > paddle.y) && (contactY - halfBallSize < paddle.y + paddle.height)) {
+                    hit = HIT_PADDLE;
+                    num = paddleNum;
+                    den = paddleDen;
+                }
+            }
+
+            if (hit == HIT_NONE) {
+                x += dx;
+                y += dy;
+                break;
+            }
+
+            // move to where it hit, using up that much of the time left, and bounce
+            x += (dx * num) / den;
+            y += (dy * num) / den;
+            time -= (time * num) / den;
+
+            if (hit == HIT_WALL) {
+                y = dy < 0 ? topY : bottomY;
+                bounceWall(court);
+            } else {
+                x = paddle.frontX;
+                bouncePaddle(court, paddle);
+            }
+        }
+
+        // Check for exiting the court - using the middle of the ball to calculate that
+        if (x < 0) {
+            return EXIT_LEFT;
+        }
+        if (x > court.width) {
+            return EXIT_RIGHT;
+        }
+        return IN_PLAY;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getXSpeed() {
+        return xSpeed;
+    }
+
+    public int getYSpeed() {
+        return ySpeed;
+    }
+
+    public int getBallSize() {
+        return ballSize;
+    }
+}
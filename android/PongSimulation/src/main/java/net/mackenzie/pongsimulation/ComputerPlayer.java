@@ -0,0 +1,108 @@
+package net.mackenzie.pongsimulation;
+
+/**
+ * The computer controlling one side, following the same rules as ComputerPlayer in receiver/pong.js.
+ * <p/>
+ * Each time the ball is served or bounces off a paddle it works out where the ball will cross the front of its
+ * paddle, reflecting its path off the walls, and caches that as its target until the next time. Until then each
+ * tick just moves the paddle towards the target. When the ball is going away it heads back to the middle.
+ * <p/>
+ * The difficulty sets how long it takes to react, how far off its target can be and how fast it moves. The errors
+ * come from a generator seeded from the paddle, so the same game always plays out the same way.
+ */
+class ComputerPlayer {
+    // CONSTANTS
+    // Ticks it waits after the ball changes direction before it starts to move, for each difficulty
+    private static final int[] REACTION_TICKS = {24, 12, 4};
+    // Most it misjudges where the ball will get to by, as a percentage of the paddle's height
+    private static final int[] ERROR_PERCENT = {100, 50, 20};
+    // How fast it moves its paddle, as a percentage of the paddle's maxSpeed
+    private static final int[] SPEED_PERCENT = {33, 60, 100};
+    private static final int RANDOM_MAX = 0x7FFF;
+
+    // MUTABLES
+    int difficulty = Simulation.DIFFICULTY_NORMAL;
+    // the trajectory of the ball the target was worked out for
+    int plannedTrajectory = -1;
+    // where to move the top of the paddle to, once the reaction ticks have passed
+    int targetY = 0;
+    int reactionTicks = 0;
+    int seed = 0;
+
+    /**
+     * Start playing a paddle, working out a target afresh on the next tick
+     */
+    void start(final Paddle paddle) {
+        seed = paddle.frontX;
+        plannedTrajectory = -1;
+    }
+
+    /**
+     * @return the next number from 0 to RANDOM_MAX from a linear congruential generator
+     */
+    private int random() {
+        seed = (seed * 1103515245) + 12345;
+        return (seed >>> 16) & RANDOM_MAX;
+    }
+
+    /**
+     * Work out the target for the paddle for the ball's current trajectory
+     */
+    private void plan(final Simulation court, final Paddle paddle, final Ball ball) {
+        plannedTrajectory = ball.trajectory;
+        reactionTicks = REACTION_TICKS[difficulty];
+
+        long toFront = paddle.frontX - ball.x;
+        if (ball.xSpeed == 0 || (toFront < 0) != (ball.xSpeed < 0)) {
+            // going away, wait in the middle
+            targetY = (court.height / 2) - paddle.halfHeight;
+            return;
+        }
+
+        // Where the ball's middle would be when it reaches the paddle's front with no walls, then folded back into
+        // the range it moves in, as each wall it hits reflects the rest of its path
+        int topY = ball.halfBallSize;
+        long range = Math.max(court.height - (2 * ball.halfBallSize), 1);
+        long travel = (ball.y - topY) + ((ball.ySpeed * toFront) / ball.xSpeed);
+        long folded = travel % (2 * range);
+        if (folded < 0) {
+            folded += 2 * range;
+        }
+        int interceptY = (int) (topY + (folded <= range ? folded : (2 * range) - folded));
+
+        int maxError = (paddle.height * ERROR_PERCENT[difficulty]) / 100;
+        int error = (((2 * random()) - RANDOM_MAX) * maxError) / RANDOM_MAX;
+        targetY = interceptY + error - paddle.halfHeight;
+    }
+
+    /**
+     * @return the distance to move the paddle this tick
+     */
+    int updatePaddle(final Simulation court, final Paddle paddle, final Ball ball) {
+        if (ball.trajectory != plannedTrajectory) {
+            plan(court, paddle, ball);
+        }
+
+        if (reactionTicks > 0) {
+            reactionTicks--;
+            return 0;
+        }
+
+        int speed = Math.max((paddle.maxSpeed * SPEED_PERCENT[difficulty]) / 100, 1);
+        int distance = targetY - paddle.y;
+        if (distance > speed) {
+            return speed;
+        } else if (distance < -speed) {
+            return -speed;
+        }
+        return distance;
+    }
+
+    void copyFrom(final ComputerPlayer other) {
+        difficulty = other.difficulty;
+        plannedTrajectory = other.plannedTrajectory;
+        targetY = other.targetY;
+        reactionTicks = other.reactionTicks;
+        seed = other.seed;
+    }
+}
@@ -0,0 +1,45 @@
+package net.mackenzie.pongsimulation;
+
+/**
+ * Run the simulation with the computer playing both sides, as fast as possible, and report the speed and a hash
+ * of the final state. Two runs with the same arguments must give the same hash, so it can be used to check that
+ * changes to the rules do what was intended and nothing else.
+ * <p/>
+ * Usage: HeadlessRun [ticks] [width] [height] [speed]
+ */
+public class HeadlessRun {
+    public static void main(final String[] args) {
+        long ticks = args.length > 0 ? Long.parseLong(args[0]) : 10000000L;
+        int width = args.length > 1 ? Integer.parseInt(args[1]) : 1280;
+        int height = args.length > 2 ? Integer.parseInt(args[2]) : 720;
+        double speed = args.length > 3 ? Double.parseDouble(args[3]) : 1.3;
+
+        Simulation simulation = new Simulation(width, height, speed);
+        simulation.setComputer(Simulation.LEFT, true);
+        simulation.setComputer(Simulation.RIGHT, true);
+        simulation.startGame();
+
+        long games = 0;
+        long points = 0;
+        long bounces = 0;
+        long start = System.nanoTime();
+        for (long i = 0; i < ticks; i++) {
+            int events = simulation.tick();
+            if ((events & Simulation.EVENT_PADDLE) != 0) {
+                bounces++;
+            }
+            if ((events & (Simulation.EVENT_POINT_LEFT | Simulation.EVENT_POINT_RIGHT)) != 0) {
+                points++;
+            }
+            if ((events & Simulation.EVENT_GAME_OVER) != 0) {
+                games++;
+                simulation.startGame();
+            }
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        System.out.println("ticks=" + ticks + " games=" + games + " points=" + points + " bounces=" + bounces);
+        System.out.println("ticks/s=" + ((ticks * 1000000000L) / Math.max(elapsedNanos, 1)));
+        System.out.println("hash=" + Long.toHexString(simulation.stateHash()));
+    }
+}
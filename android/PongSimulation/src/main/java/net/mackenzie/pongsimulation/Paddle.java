@@ -0,0 +1,114 @@
+package net.mackenzie.pongsimulation;
+
+/**
+ * A paddle on the court, following the same rules as Paddle in receiver/pong.js.
+ * <p/>
+ * Positions are in the court's pixels, with y down from the top of the court.
+ */
+public class Paddle {
+    // IMMUTABLES
+    final int x;
+    final int frontX;
+    final int width;
+    final int height;
+    final int halfHeight;
+    final int defaultSpeed;
+    final int maxSpeed;
+    final int minY;
+    final int maxY;
+    final int topSection;
+    final int bottomSection;
+
+    // MUTABLES
+    int y;
+
+    /**
+     * @param x           of the left edge of the paddle
+     * @param frontX      x of the edge of the paddle the ball hits
+     * @param y           of the top of the paddle
+     * @param width       of the paddle
+     * @param height      of the paddle
+     * @param courtHeight height of the court the paddle moves in
+     */
+    Paddle(final int x, final int frontX, final int y, final int width, final int height, final int courtHeight) {
+        this.defaultSpeed = courtHeight / 150;
+        // fastest a paddle can be moved towards a position target in one tick
+        this.maxSpeed = courtHeight / 30;
+        this.x = x;
+        this.frontX = frontX;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        this.halfHeight = height / 2;
+        // restrict movement and leave a gap at top and bottom
+        this.minY = halfHeight;
+        this.maxY = courtHeight - height - halfHeight;
+        this.topSection = height / 3;
+        this.bottomSection = (2 * height) / 3;
+    }
+
+    /**
+     * Get the distance to move to get towards a position target, limited to maxSpeed
+     *
+     * @param position between 0 (top of paddle's travel) and range (bottom of paddle's travel)
+     * @param range    of position
+     * @return distance to move, positive is down
+     */
+    int distanceTo(final int position, final int range) {
+        int targetY = minY + (int) (((long) (maxY - minY) * position) / range);
+        int distance = targetY - y;
+
+        if (distance > maxSpeed) {
+            return maxSpeed;
+        } else if (distance < -maxSpeed) {
+            return -maxSpeed;
+        }
+        return distance;
+    }
+
+    /**
+     * Move the paddle, stopping at the top and bottom of its travel
+     *
+     * @param distance to move, positive is down
+     */
+    void move(final int distance) {
+        y += distance;
+
+        if (y <= minY) {
+            y = minY;
+        } else if (y >= maxY) {
+            y = maxY;
+        }
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the distance the paddle moves for each step of a move input
+     */
+    public int getDefaultSpeed() {
+        return defaultSpeed;
+    }
+
+    public int getMinY() {
+        return minY;
+    }
+
+    public int getMaxY() {
+        return maxY;
+    }
+}
@@ -0,0 +1,330 @@
+package net.mackenzie.pongsimulation;
+
+/**
+ * A deterministic simulation of a game of Pong, following the same rules as the Court, Game and Players in
+ * receiver/pong.js, so the sender can predict what the receiver will do, or play on its own.
+ * <p/>
+ * Like the receiver's Court, time advances in fixed ticks of TICK_MILLIS, either one at a time with tick() or for a
+ * period of real time with advance(). The same inputs and ticks always
+ * produce the same state, all state is held in primitives, and nothing is allocated after construction, so
+ * millions of ticks can be run quickly on a plain JVM.
+ * <p/>
+ * Each side is either controlled by inputs (like a ChromecastPlayer in the receiver), or by the computer
+ * (like a ComputerPlayer) at one of the DIFFICULTY_ levels.
+ * <p/>
+ * It is not thread safe.
+ */
+public class Simulation {
+    // CONSTANTS
+    public static final int LEFT = 0;
+    public static final int RIGHT = 1;
+    public static final int TICK_MILLIS = 16;
+    public static final int POINTS_TO_WIN = 21;
+    // Positions set with setTarget() are from 0 (top) to POSITION_MAX (bottom) of the paddle's travel
+    public static final int POSITION_MAX = 1000;
+    public static final int NO_TARGET = -1;
+    // Don't try and catch up more than this many ticks in one advance(), e.g. after being paused
+    public static final int MAX_TICKS_PER_ADVANCE = 10;
+    // Difficulty of a side controlled by the computer, see ComputerPlayer
+    public static final int DIFFICULTY_EASY = 0;
+    public static final int DIFFICULTY_NORMAL = 1;
+    public static final int DIFFICULTY_HARD = 2;
+
+    // Events that happened during the last tick, as bits
+    public static final int EVENT_WALL = 1;
+    public static final int EVENT_PADDLE = 1 << 1;
+    public static final int EVENT_POINT_LEFT = 1 << 2;
+    public static final int EVENT_POINT_RIGHT = 1 << 3;
+    public static final int EVENT_GAME_OVER = 1 << 4;
+
+    private static final int PADDLE_WIDTH = 10;
+    private static final int PADDLE_HEIGHT = 50;
+    private static final int PADDLE_X_OFFSET = 60;
+    private static final int BALL_SIZE = 10;
+
+    // IMMUTABLES
+    final int width;
+    final int height;
+    final int xSpeed;
+    final int ySpeed;
+    final Paddle[] paddles = new Paddle[2];
+    final Ball ball = new Ball(BALL_SIZE);
+    private final boolean[] computer = new boolean[2];
+    private final ComputerPlayer[] computerPlayers = {new ComputerPlayer(), new ComputerPlayer()};
+    private final int[] updownCount = new int[2];
+    private final int[] targetPosition = new int[2];
+    private final int[] scores = new int[2];
+
+    // MUTABLES
+    int events = 0;
+    private boolean playing = false;
+    private boolean gameOver = false;
+    private int winner = -1;
+    private long tickCount = 0;
+    private long accumulatedMillis = 0;
+
+    /**
+     * Create a court of the same size as the receiver's screen, to get the same results as it would
+     *
+     * @param width  of the court in pixels
+     * @param height of the court in pixels
+     * @param speed  the receiver uses, 1.3 on a Chromecast and 1.0 in a browser
+     */
+    public Simulation(final int width, final int height, final double speed) {
+        this.width = width;
+        this.height = height;
+        this.ySpeed = (int) (speed * height / 400);
+        this.xSpeed = (int) (speed * width / 200);
+
+        int courtMiddleY = (height - PADDLE_HEIGHT) / 2;
+        paddles[LEFT] = new Paddle(PADDLE_X_OFFSET, PADDLE_X_OFFSET + PADDLE_WIDTH, courtMiddleY,
+                PADDLE_WIDTH, PADDLE_HEIGHT, height);
+        int front = width - PADDLE_X_OFFSET - PADDLE_WIDTH;
+        paddles[RIGHT] = new Paddle(front, front, courtMiddleY, PADDLE_WIDTH, PADDLE_HEIGHT, height);
+
+        targetPosition[LEFT] = NO_TARGET;
+        targetPosition[RIGHT] = NO_TARGET;
+    }
+
+    /**
+     * @param side     LEFT or RIGHT
+     * @param computer true for the computer to control that side's paddle, false for it to follow inputs
+     */
+    public void setComputer(final int side, final boolean computer) {
+        if (computer && !this.computer[side]) {
+            computerPlayers[side].start(paddles[side]);
+        }
+        this.computer[side] = computer;
+    }
+
+    /**
+     * @param side       LEFT or RIGHT
+     * @param difficulty DIFFICULTY_EASY, DIFFICULTY_NORMAL or DIFFICULTY_HARD, for when the computer controls it
+     */
+    public void setDifficulty(final int side, final int difficulty) {
+        if (difficulty < DIFFICULTY_EASY || difficulty > DIFFICULTY_HARD) {
+            throw new IllegalArgumentException("No such difficulty: " + difficulty);
+        }
+        computerPlayers[side].difficulty = difficulty;
+    }
+
+    /**
+     * Start a new game, with the ball in the middle of the court and scores at zero
+     */
+    public void startGame() {
+        scores[LEFT] = 0;
+        scores[RIGHT] = 0;
+        ball.reset(this);
+        gameOver = false;
+        winner = -1;
+        playing = true;
+    }
+
+    /**
+     * Pause or restart play in a game in progress
+     */
+    public void setPlaying(final boolean playing) {
+        this.playing = playing && !gameOver;
+    }
+
+    /**
+     * Move a paddle a number of steps at the next tick, like a TYPE_MOVE input frame
+     *
+     * @param side  LEFT or RIGHT
+     * @param steps to move, positive is up
+     */
+    public void move(final int side, final int steps) {
+        targetPosition[side] = NO_TARGET;
+        updownCount[side] += steps;
+    }
+
+    /**
+     * Move a paddle towards a position over the next ticks, like a TYPE_POSITION input frame
+     *
+     * @param side     LEFT or RIGHT
+     * @param position from 0 (top) to POSITION_MAX (bottom) of the paddle's travel
+     */
+    public void setTarget(final int side, final int position) {
+        updownCount[side] = 0;
+        targetPosition[side] = position;
+    }
+
+    /**
+     * Run as many ticks as fit in the time elapsed, keeping the remainder for next time
+     *
+     * @param elapsedMillis since the last call
+     * @return the number of ticks run
+     */
+    public int advance(final long elapsedMillis) {
+        accumulatedMillis += elapsedMillis;
+        int ticks = 0;
+        while (accumulatedMillis >= TICK_MILLIS && ticks < MAX_TICKS_PER_ADVANCE) {
+            tick();
+            accumulatedMillis -= TICK_MILLIS;
+            ticks++;
+        }
+
+        if (ticks == MAX_TICKS_PER_ADVANCE) {
+            // too far behind to catch up, drop the rest
+            accumulatedMillis = 0;
+        }
+        return ticks;
+    }
+
+    /**
+     * Move the paddles and ball on by one tick, in the same order as Court.tick() in the receiver
+     *
+     * @return the EVENT_ bits for what happened during the tick
+     */
+    public int tick() {
+        events = 0;
+        if (!playing) {
+            return events;
+        }
+        tickCount++;
+
+        for (int side = LEFT; side <= RIGHT; side++) {
+            int distance = paddleMovement(side);
+            if (distance != 0) {
+                paddles[side].move(distance);
+            }
+        }
+
+        int result = ball.update(this);
+        if (result == Ball.EXIT_LEFT) {
+            point(RIGHT);
+        } else if (result == Ball.EXIT_RIGHT) {
+            point(LEFT);
+        }
+
+        return events;
+    }
+
+    /**
+     * @param side LEFT or RIGHT
+     * @return the distance to move the paddle this tick, from the computer or the inputs received since the last
+     */
+    private int paddleMovement(final int side) {
+        Paddle paddle = paddles[side];
+
+        if (computer[side]) {
+            return computerPlayers[side].updatePaddle(this, paddle, ball);
+        }
+
+        if (targetPosition[side] != NO_TARGET) {
+            return paddle.distanceTo(targetPosition[side], POSITION_MAX);
+        }
+
+        int movement = -(paddle.defaultSpeed * updownCount[side]);
+        updownCount[side] = 0;
+        return movement;
+    }
+
+    /**
+     * A side has won a point, end the game if they have enough points or serve a new ball
+     */
+    private void point(final int side) {
+        scores[side]++;
+        events |= (side == LEFT) ? EVENT_POINT_LEFT : EVENT_POINT_RIGHT;
+
+        if (scores[side] == POINTS_TO_WIN) {
+            events |= EVENT_GAME_OVER;
+            winner = side;
+            gameOver = true;
+            playing = false;
+        } else {
+            ball.reset(this);
+        }
+    }
+
+    /**
+     * Make this simulation the same as another one of the same size, e.g. to rewind to a known state before
+     * predicting forward from it
+     *
+     * @param other to copy the state of
+     */
+    public void copyFrom(final Simulation other) {
+        if (other.width != width || other.height != height || other.xSpeed != xSpeed || other.ySpeed != ySpeed) {
+            throw new IllegalArgumentException("Can only copy a simulation of the same court");
+        }
+
+        for (int side = LEFT; side <= RIGHT; side++) {
+            paddles[side].y = other.paddles[side].y;
+            computer[side] = other.computer[side];
+            computerPlayers[side].copyFrom(other.computerPlayers[side]);
+            updownCount[side] = other.updownCount[side];
+            targetPosition[side] = other.targetPosition[side];
+            scores[side] = other.scores[side];
+        }
+        ball.x = other.ball.x;
+        ball.y = other.ball.y;
+        ball.xSpeed = other.ball.xSpeed;
+        ball.ySpeed = other.ball.ySpeed;
+        ball.trajectory = other.ball.trajectory;
+        events = other.events;
+        playing = other.playing;
+        gameOver = other.gameOver;
+        winner = other.winner;
+        tickCount = other.tickCount;
+        accumulatedMillis = other.accumulatedMillis;
+    }
+
+    /**
+     * @return a hash of the state of the game, to check that two runs with the same inputs stayed the same
+     */
+    public long stateHash() {
+        long hash = 17;
+        hash = (hash * 31) + paddles[LEFT].y;
+        hash = (hash * 31) + paddles[RIGHT].y;
+        hash = (hash * 31) + ball.x;
+        hash = (hash * 31) + ball.y;
+        hash = (hash * 31) + ball.xSpeed;
+        hash = (hash * 31) + ball.ySpeed;
+        hash = (hash * 31) + computerPlayers[LEFT].targetY;
+        hash = (hash * 31) + computerPlayers[RIGHT].targetY;
+        hash = (hash * 31) + scores[LEFT];
+        hash = (hash * 31) + scores[RIGHT];
+        hash = (hash * 31) + (playing ? 1 : 0);
+        hash = (hash * 31) + tickCount;
+        return hash;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public Paddle getPaddle(final int side) {
+        return paddles[side];
+    }
+
+    public Ball getBall() {
+        return ball;
+    }
+
+    public int getScore(final int side) {
+        return scores[side];
+    }
+
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    /**
+     * @return LEFT or RIGHT if the last game was won, -1 if it is still in progress
+     */
+    public int getWinner() {
+        return winner;
+    }
+
+    public long getTickCount() {
+        return tickCount;
+    }
+}
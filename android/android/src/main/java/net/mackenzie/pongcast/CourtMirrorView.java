@@ -0,0 +1,161 @@
+package net.mackenzie.pongcast;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.SystemClock;
+import android.util.AttributeSet;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import net.mackenzie.chromeinteractor.InputFrame;
+
+/**
+ * A small mirror of the court on the chromecast, drawn from the CourtState streamed from the receiver.
+ * <p/>
+ * Between snapshots the ball is moved on using its last known speed, so it moves smoothly even though
+ * snapshots only arrive a few times a second.
+ */
+public class CourtMirrorView extends View {
+    // CONSTANTS
+    public static final int NO_PADDLE = -1;
+    public static final int LEFT_PADDLE = 0;
+    public static final int RIGHT_PADDLE = 1;
+    private static final int UNITS = 1000;
+    // Don't move the ball on for longer than this past the last snapshot, in case they have stopped coming
+    private static final long MAX_EXTRAPOLATION_MILLIS = 250;
+
+    // INITIALIZED IMMUTABLES
+    private final Paint courtPaint = new Paint();
+    private final Paint piecePaint = new Paint();
+
+    // MUTABLES
+    private CourtState courtState;
+    private int ownPaddle = NO_PADDLE;
+    private PaddlePredictor paddlePredictor;
+
+    public CourtMirrorView(final Context context) {
+        super(context);
+        init();
+    }
+
+    public CourtMirrorView(final Context context, @Nullable final AttributeSet attrs) {
+        super(context, attrs);
+        init();
+    }
+
+    public CourtMirrorView(final Context context, @Nullable final AttributeSet attrs, final int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        init();
+    }
+
+    private void init() {
+        courtPaint.setColor(Color.parseColor("#999999"));
+        piecePaint.setColor(Color.WHITE);
+    }
+
+    /**
+     * @param courtState to draw, or null to draw nothing
+     */
+    public void setCourtState(@Nullable final CourtState courtState) {
+        this.courtState = courtState;
+        invalidate();
+    }
+
+    /**
+     * @param side      of the court our paddle is on, LEFT_PADDLE, RIGHT_PADDLE or NO_PADDLE
+     * @param predictor of where our paddle is, to draw it there instead of where the last snapshot had it
+     */
+    public void setOwnPaddle(final int side, @Nullable final PaddlePredictor predictor) {
+        ownPaddle = side;
+        paddlePredictor = predictor;
+        invalidate();
+    }
+
+    /**
+     * A new snapshot has been received into the CourtState, so draw it
+     */
+    public void stateUpdated() {
+        invalidate();
+    }
+
+    /**
+     * @param side  of the court the paddle is on
+     * @param index of the paddle's top in CourtState
+     * @return the top of the paddle, predicted if it is ours
+     */
+    private int paddleTop(final int side, final int index) {
+        if (side != ownPaddle || paddlePredictor == null || !paddlePredictor.hasPosition()) {
+            return courtState.get(index);
+        }
+
+        // the paddle travels from half its height from the top, to one and a half its height from the bottom
+        int paddleHeight = courtState.get(CourtState.PADDLE_HEIGHT);
+        int minY = paddleHeight / 2;
+        int maxY = UNITS - paddleHeight - (paddleHeight / 2);
+        return minY + (((maxY - minY) * paddlePredictor.getPosition()) / InputFrame.POSITION_MAX);
+    }
+
+    @Override
+    protected void onDraw(@NonNull final Canvas canvas) {
+        super.onDraw(canvas);
+
+        if (courtState == null || !courtState.hasState() || getVisibility() != VISIBLE) {
+            return;
+        }
+
+        // Fit the court into the view keeping its aspect ratio, centered
+        int aspect = courtState.get(CourtState.ASPECT);
+        float viewWidth = getWidth() - getPaddingLeft() - getPaddingRight();
+        float viewHeight = getHeight() - getPaddingTop() - getPaddingBottom();
+        float width = viewWidth;
+        float height = viewHeight;
+        if (aspect > 0) {
+            if (viewWidth * UNITS > viewHeight * aspect) {
+                width = (viewHeight * aspect) / UNITS;
+            } else {
+                height = (viewWidth * UNITS) / aspect;
+            }
+        }
+        float left = getPaddingLeft() + ((viewWidth - width) / 2);
+        float top = getPaddingTop() + ((viewHeight - height) / 2);
+        float xScale = width / UNITS;
+        float yScale = height / UNITS;
+
+        canvas.drawRect(left, top, left + width, top + height, courtPaint);
+
+        // Paddles
+        float paddleWidth = courtState.get(CourtState.PADDLE_WIDTH) * xScale;
+        float paddleHeight = courtState.get(CourtState.PADDLE_HEIGHT) * yScale;
+        float leftPaddleX = left + (courtState.get(CourtState.PADDLE_X_OFFSET) * xScale);
+        float rightPaddleX = left + width - (courtState.get(CourtState.PADDLE_X_OFFSET) * xScale) - paddleWidth;
+        float leftPaddleY = top + (paddleTop(LEFT_PADDLE, CourtState.LEFT_PADDLE_Y) * yScale);
+        float rightPaddleY = top + (paddleTop(RIGHT_PADDLE, CourtState.RIGHT_PADDLE_Y) * yScale);
+        canvas.drawRect(leftPaddleX, leftPaddleY, leftPaddleX + paddleWidth, leftPaddleY + paddleHeight, piecePaint);
+        canvas.drawRect(rightPaddleX, rightPaddleY, rightPaddleX + paddleWidth, rightPaddleY + paddleHeight,
+                piecePaint);
+
+        // Ball, moved on from where it was in the last snapshot
+        if (courtState.get(CourtState.BALL_X) >= 0) {
+            long sinceSnapshot = Math.min(SystemClock.uptimeMillis() - courtState.getReceivedAt(),
+                    MAX_EXTRAPOLATION_MILLIS);
+            float ballX = courtState.get(CourtState.BALL_X)
+                    + ((courtState.get(CourtState.BALL_X_SPEED) * sinceSnapshot) / 1000f);
+            float ballY = courtState.get(CourtState.BALL_Y)
+                    + ((courtState.get(CourtState.BALL_Y_SPEED) * sinceSnapshot) / 1000f);
+            ballX = Math.max(0, Math.min(UNITS, ballX));
+            ballY = Math.max(0, Math.min(UNITS, ballY));
+            float halfBall = Math.max(1f, (courtState.get(CourtState.BALL_SIZE) * xScale) / 2);
+            canvas.drawRect(left + (ballX * xScale) - halfBall, top + (ballY * yScale) - halfBall,
+                    left + (ballX * xScale) + halfBall, top + (ballY * yScale) + halfBall, piecePaint);
+
+            // keep the ball moving until the next snapshot arrives, or we give up waiting for it
+            if (sinceSnapshot < MAX_EXTRAPOLATION_MILLIS) {
+                postInvalidateOnAnimation();
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package net.mackenzie.pongcast;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+/**
+ * The latest snapshot of the state of the court streamed from the receiver, see DESIGN.md.
+ * <p/>
+ * Snapshots arrive as "STATE seq base time values", where values are a comma separated list that are either
+ * complete (base of 0) or the differences from the earlier snapshot with sequence number base, left empty when
+ * unchanged. The last HISTORY snapshots are kept so deltas can be applied to whichever one they were based on.
+ * <p/>
+ * Positions and sizes are in 1/1000ths of the width (x) or height (y) of the court, speeds in the same units
+ * per second.
+ */
+public class CourtState {
+    // CONSTANTS
+    public static final String MESSAGE_PREFIX = "STATE ";
+    public static final int BALL_X = 0;
+    public static final int BALL_Y = 1;
+    public static final int BALL_X_SPEED = 2;
+    public static final int BALL_Y_SPEED = 3;
+    public static final int LEFT_PADDLE_Y = 4;
+    public static final int RIGHT_PADDLE_Y = 5;
+    public static final int LEFT_SCORE = 6;
+    public static final int RIGHT_SCORE = 7;
+    public static final int PADDLE_HEIGHT = 8;
+    public static final int PADDLE_WIDTH = 9;
+    public static final int PADDLE_X_OFFSET = 10;
+    public static final int BALL_SIZE = 11;
+    public static final int ASPECT = 12;
+    public static final int NUM_VALUES = 13;
+    private static final int HISTORY = 32;
+
+    // IMMUTABLES
+    private final int[][] history = new int[HISTORY][NUM_VALUES];
+    private final int[] historySequence = new int[HISTORY];
+
+    // MUTABLES
+    private int sequence = 0;
+    private int[] values = null;
+    private long receivedAt = 0;
+
+    /**
+     * Decode a STATE message from the receiver and make it the current state
+     *
+     * @param message starting with MESSAGE_PREFIX
+     * @return false if the message could not be decoded, e.g. because it is based on a snapshot we don't have,
+     * in which case the receiver should be asked for a complete snapshot
+     */
+    public boolean decode(@NonNull final String message) {
+        int[] position = {MESSAGE_PREFIX.length()};
+
+        int newSequence = (int) parseNumber(message, position, ' ');
+        int base = (int) parseNumber(message, position, ' ');
+        parseNumber(message, position, ' '); // receiver's time, not needed to draw the court
+        if (newSequence <= 0 || position[0] >= message.length()) {
+            return false;
+        }
+
+        // Snapshots can arrive late, never go backwards
+        if (newSequence <= sequence) {
+            return true;
+        }
+
+        int[] baseValues = null;
+        if (base != 0) {
+            int baseIndex = base % HISTORY;
+            if (historySequence[baseIndex] != base) {
+                return false;
+            }
+            baseValues = history[baseIndex];
+        }
+
+        int index = newSequence % HISTORY;
+        int[] newValues = history[index];
+        // Mark the slot as invalid while it is overwritten, in case the message is malformed
+        historySequence[index] = 0;
+        for (int i = 0; i < NUM_VALUES; i++) {
+            if (position[0] > message.length()) {
+                return false;
+            }
+            long value = parseNumber(message, position, ',');
+            newValues[i] = (int) (baseValues == null ? value : baseValues[i] + value);
+        }
+
+        historySequence[index] = newSequence;
+        sequence = newSequence;
+        values = newValues;
+        receivedAt = SystemClock.uptimeMillis();
+        return true;
+    }
+
+    /**
+     * Parse a decimal number from a message, stopping at the separator or the end of the message.
+     * An empty number is parsed as 0.
+     *
+     * @param message   to parse
+     * @param position  index to start parsing at, updated to after the separator
+     * @param separator character that ends the number
+     * @return the number parsed
+     */
+    private static long parseNumber(@NonNull final String message, @NonNull final int[] position,
+                                    final char separator) {
+        int i = position[0];
+        boolean negative = false;
+        long number = 0;
+
+        if (i < message.length() && message.charAt(i) == '-') {
+            negative = true;
+            i++;
+        }
+
+        while (i < message.length() && message.charAt(i) != separator) {
+            number = (number * 10) + (message.charAt(i) - '0');
+            i++;
+        }
+
+        position[0] = i + 1;
+        return negative ? -number : number;
+    }
+
+    /**
+     * @return true once a snapshot has been received
+     */
+    public boolean hasState() {
+        return values != null;
+    }
+
+    /**
+     * @return the sequence number of the current snapshot, to acknowledge to the receiver
+     */
+    public int getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @param index of the value, e.g. BALL_X
+     * @return the value from the current snapshot
+     */
+    public int get(final int index) {
+        return values == null ? 0 : values[index];
+    }
+
+    /**
+     * @return the SystemClock.uptimeMillis() time that the current snapshot was received
+     */
+    public long getReceivedAt() {
+        return receivedAt;
+    }
+
+    /**
+     * Forget all snapshots, e.g. when the connection to the receiver is lost
+     */
+    public void reset() {
+        for (int i = 0; i < HISTORY; i++) {
+            historySequence[i] = 0;
+        }
+        sequence = 0;
+        values = null;
+        receivedAt = 0;
+    }
+}
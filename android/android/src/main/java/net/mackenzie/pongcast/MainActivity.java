@@ -1,29 +1,64 @@
 package net.mackenzie.pongcast;
 
+import android.content.DialogInterface;
+import android.content.SharedPreferences;
 import android.content.res.Configuration;
 import android.os.Bundle;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.EditText;
 
 import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 
 import net.mackenzie.chromeinteractor.ChromecastInteractor;
+import net.mackenzie.chromeinteractor.WebSocketTransport;
+
+import java.io.File;
 
 /**
  * Main activity of the application
  */
 public class MainActivity extends AppCompatActivity {
+    private static final String PREFERENCES = "PongCast";
+    private static final String LOCAL_COURT_ADDRESS = "localCourtAddress";
+    // Sessions are recorded to this file in the app's files directory, see PongController.startRecording()
+    private static final String SESSION_LOG = "session.log";
+
     private PongController pongController;
+    private PongControllerView pongControllerView;
     private ChromecastInteractor chromecastInteractor;
 
+    /**
+     * Show the UI straight away, and only initialize the Cast stack once it has been shown
+     */
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        StartupTrace.mark(StartupTrace.PHASE.ACTIVITY_CREATED);
         super.onCreate(savedInstanceState);
 
         pongController = new PongController(this);
-        new PongControllerView(this, pongController);
+        pongControllerView = new PongControllerView(this, pongController);
         chromecastInteractor = new ChromecastInteractor(this, getString(R.string.app_id), getString(R.string.namespace),
                 pongController);
+
+        // the main thread is first idle after the UI has been laid out and drawn
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                StartupTrace.mark(StartupTrace.PHASE.UI_READY);
+                chromecastInteractor.initialize(new Runnable() {
+                    @Override
+                    public void run() {
+                        StartupTrace.mark(StartupTrace.PHASE.CAST_INITIALIZED);
+                    }
+                });
+                return false;
+            }
+        });
     }
 
     @Override
@@ -41,7 +76,7 @@ public class MainActivity extends AppCompatActivity {
 
     @Override
     public void onDestroy() {
-        chromecastInteractor.disconnect();
+        chromecastInteractor.destroy();
         super.onDestroy();
     }
 
@@ -60,7 +95,84 @@ public class MainActivity extends AppCompatActivity {
     public boolean onCreateOptionsMenu(Menu menu) {
         super.onCreateOptionsMenu(menu);
         getMenuInflater().inflate(R.menu.main, menu);
+        getMenuInflater().inflate(R.menu.controls, menu);
         chromecastInteractor.setMediaRouteSelector(menu);
         return true;
     }
+
+    /**
+     * Handle selection of the menu items for the type of paddle control, the court mirror, the local court, the
+     * receiver's frame timings and recording the session
+     *
+     * @param item - the menu item selected
+     * @return true if the selection was handled
+     */
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        if (item.getItemId() == R.id.touch_control_menu_item) {
+            item.setChecked(!item.isChecked());
+            pongControllerView.setTouchControl(item.isChecked());
+            return true;
+        } else if (item.getItemId() == R.id.show_court_menu_item) {
+            item.setChecked(!item.isChecked());
+            pongController.showCourt(item.isChecked());
+            return true;
+        } else if (item.getItemId() == R.id.local_court_menu_item) {
+            askLocalCourtAddress();
+            return true;
+        } else if (item.getItemId() == R.id.receiver_telemetry_menu_item) {
+            pongController.requestReceiverTelemetry();
+            return true;
+        } else if (item.getItemId() == R.id.record_session_menu_item) {
+            if (item.isChecked()) {
+                pongController.stopRecording();
+                item.setChecked(false);
+            } else {
+                item.setChecked(pongController.startRecording(new File(getFilesDir(), SESSION_LOG)));
+            }
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * Ask the player for the address of a local court relay (see receiver/relay.js) and connect to it directly
+     * over the local network, instead of via a Chromecast
+     */
+    private void askLocalCourtAddress() {
+        final SharedPreferences preferences = getSharedPreferences(PREFERENCES, MODE_PRIVATE);
+        final EditText addressView = new EditText(this);
+        addressView.setSingleLine(true);
+        addressView.setText(preferences.getString(LOCAL_COURT_ADDRESS, ""));
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.localCourtAddress)
+                .setView(addressView)
+                .setPositiveButton(android.R.string.ok, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        String address = addressView.getText().toString().trim();
+                        if (address.isEmpty()) {
+                            return;
+                        }
+                        preferences.edit().putString(LOCAL_COURT_ADDRESS, address).apply();
+
+                        String host = address;
+                        int port = WebSocketTransport.DEFAULT_PORT;
+                        int colon = address.lastIndexOf(':');
+                        if (colon > 0) {
+                            host = address.substring(0, colon);
+                            try {
+                                port = Integer.parseInt(address.substring(colon + 1));
+                            } catch (NumberFormatException e) {
+                                pongControllerView.message(getString(R.string.localCourtAddress));
+                                return;
+                            }
+                        }
+                        chromecastInteractor.connect(new WebSocketTransport(host, port));
+                    }
+                })
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
 }
@@ -0,0 +1,151 @@
+package net.mackenzie.pongcast;
+
+import net.mackenzie.chromeinteractor.InputFrame;
+
+/**
+ * Predicts where our paddle is on the receiver, so it can be shown without waiting for the round trip.
+ * <p/>
+ * Inputs sent to the receiver are kept until the receiver acknowledges them with the sequence number of the last
+ * input it applied and where that left the paddle. The prediction is then that position with the inputs not yet
+ * acknowledged applied on top of it, so mistakes in the prediction are corrected each acknowledgement.
+ * <p/>
+ * Positions are from 0 (top) to InputFrame.POSITION_MAX (bottom) of the paddle's travel.
+ */
+public class PaddlePredictor {
+    // CONSTANTS
+    // Inputs are sent at most every tick, so this covers well over a second of round trip time
+    private static final int MAX_PENDING = 64;
+
+    // IMMUTABLES
+    private final int[] pendingSequence = new int[MAX_PENDING];
+    private final int[] pendingType = new int[MAX_PENDING];
+    private final int[] pendingValue = new int[MAX_PENDING];
+
+    // MUTABLES
+    private int pendingStart = 0;
+    private int pendingCount = 0;
+    private int acknowledgedPosition = -1;
+    private int step = 0;
+    private int position = -1;
+    private int lastCorrection = 0;
+
+    /**
+     * An input has been sent to the receiver, apply it to the prediction
+     *
+     * @param sequence of the input sent
+     * @param type     InputFrame.TYPE_MOVE or TYPE_POSITION
+     * @param value    of the input
+     */
+    public void inputSent(final int sequence, final int type, final int value) {
+        if (pendingCount == MAX_PENDING) {
+            // Acknowledgements have stopped, forget the oldest input
+            pendingStart = (pendingStart + 1) % MAX_PENDING;
+            pendingCount--;
+        }
+
+        int index = (pendingStart + pendingCount) % MAX_PENDING;
+        pendingSequence[index] = sequence;
+        pendingType[index] = type;
+        pendingValue[index] = value;
+        pendingCount++;
+
+        if (position >= 0) {
+            position = apply(position, type, value);
+        }
+    }
+
+    /**
+     * The receiver has applied inputs up to and including sequence, leaving the paddle at position.
+     * Forget those inputs and predict again from that position using the ones still in flight.
+     *
+     * @param sequence of the last input applied by the receiver
+     * @param position of the paddle after applying it
+     * @param step     distance the paddle moves for each step of a TYPE_MOVE input
+     */
+    public void acknowledged(final int sequence, final int position, final int step) {
+        while (pendingCount > 0 && !InputFrame.isNewer(pendingSequence[pendingStart], sequence)) {
+            pendingStart = (pendingStart + 1) % MAX_PENDING;
+            pendingCount--;
+        }
+
+        this.acknowledgedPosition = position;
+        this.step = step;
+
+        int predicted = position;
+        for (int i = 0; i < pendingCount; i++) {
+            int index = (pendingStart + i) % MAX_PENDING;
+            predicted = apply(predicted, pendingType[index], pendingValue[index]);
+        }
+
+        lastCorrection = this.position >= 0 ? predicted - this.position : 0;
+        this.position = predicted;
+    }
+
+    /**
+     * @param from  position to start from
+     * @param type  of input
+     * @param value of input
+     * @return the position the paddle will be at after the input is applied
+     */
+    private int apply(final int from, final int type, final int value) {
+        int to = from;
+        switch (type) {
+            case InputFrame.TYPE_MOVE:
+                // positive moves are up, towards 0
+                to = from - (value * step);
+                break;
+
+            case InputFrame.TYPE_POSITION:
+                to = value;
+                break;
+        }
+        return Math.max(0, Math.min(InputFrame.POSITION_MAX, to));
+    }
+
+    /**
+     * @return true once the receiver has told us where the paddle is
+     */
+    public boolean hasPosition() {
+        return position >= 0;
+    }
+
+    /**
+     * @return the predicted position of the paddle, or -1 if not known yet
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * @return the position of the paddle the receiver last acknowledged, or -1 if not known yet
+     */
+    public int getAcknowledgedPosition() {
+        return acknowledgedPosition;
+    }
+
+    /**
+     * @return how far the prediction was moved by the last acknowledgement, a measure of how good it is
+     */
+    public int getLastCorrection() {
+        return lastCorrection;
+    }
+
+    /**
+     * @return number of inputs sent that the receiver has not acknowledged yet
+     */
+    public int getPendingCount() {
+        return pendingCount;
+    }
+
+    /**
+     * Forget everything, e.g. when we get a new paddle
+     */
+    public void reset() {
+        pendingStart = 0;
+        pendingCount = 0;
+        acknowledgedPosition = -1;
+        step = 0;
+        position = -1;
+        lastCorrection = 0;
+    }
+}
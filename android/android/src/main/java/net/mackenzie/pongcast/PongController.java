@@ -1,6 +1,7 @@
 package net.mackenzie.pongcast;
 
 import android.app.Activity;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -8,6 +9,13 @@ import androidx.annotation.Nullable;
 
 import net.mackenzie.chromeinteractor.ChromecastInteractor;
 import net.mackenzie.chromeinteractor.GameController;
+import net.mackenzie.chromeinteractor.InputChannel;
+import net.mackenzie.chromeinteractor.InputFrame;
+import net.mackenzie.chromeinteractor.LatencyHistogram;
+import net.mackenzie.chromeinteractor.OutboundQueue;
+import net.mackenzie.chromeinteractor.SessionRecorder;
+
+import java.io.File;
 
 /**
  * This class implements control of the Pong game, implementing the GameController Interface that permits it to
@@ -16,6 +24,9 @@ import net.mackenzie.chromeinteractor.GameController;
  * It holds the logic of what actions can be taken and how the games responds to events, according to the current
  * state of the game.
  * <p>
+ * Paddle inputs are sent through an InputChannel, so they are coalesced and sent on the ChromecastInteractor's
+ * messaging thread rather than the UI thread.
+ * <p>
  * User: andrew
  * Date: 11/01/15
  * Time: 02:15
@@ -29,18 +40,43 @@ public class PongController implements GameController {
 
     // CONSTANTS
     private static final String LOG_TAG = "PongController";
+    // Paddle movements are added up and sent at most once per tick, on a display frame
+    private static final int INPUT_TICK_MILLIS = 50;
+    private static final boolean INPUT_TICK_VSYNC = true;
+    // Paddle positions from the touch control are only sent when they change by at least this much
+    private static final int POSITION_QUANTUM = InputFrame.POSITION_MAX / 100;
+    // Warn the player if the round trip to the receiver is often slower than this, once enough are measured
+    private static final long SLOW_NETWORK_P95_MILLIS = 150;
+    private static final long SLOW_NETWORK_MIN_SAMPLES = 10;
+    // How often to ask the receiver for snapshots of the court for the mirror, and to acknowledge them
+    private static final int COURT_STATE_INTERVAL_MILLIS = 100;
+    private static final long COURT_STATE_ACK_MILLIS = 100;
 
     // MESSAGES receiver app may send
     private static final String START_GAME_MESSAGE = "StartPlay";
     private static final String PAUSE_PLAY_MESSAGE = "PausePlay";
-    private static final String PADDLE_UP_MESSAGE = "MoveUp";
-    private static final String PADDLE_DOWN_MESSAGE = "MoveDown";
+    private static final String STATE_SUBSCRIBE_MESSAGE = "StateSubscribe ";
+    private static final String STATE_ACK_MESSAGE = "StateAck ";
+    private static final String INPUT_ACK_PREFIX = "INPUT ";
+    private static final String TELEMETRY_REQUEST_MESSAGE = "TelemetryRequest";
+
+    // IMMUTABLES
+    private final CourtState courtState = new CourtState();
+    private final PaddlePredictor paddlePredictor = new PaddlePredictor();
+    private final ReceiverTelemetry receiverTelemetry = new ReceiverTelemetry();
 
     // MUTABLES
     private ChromecastInteractor.CHROMECAST_STATE chromecastState = ChromecastInteractor.CHROMECAST_STATE.NO_WIFI;
     private GAME_STATE gameState = GAME_STATE.NO_PADDLE;
     private ChromecastInteractor chromecastInteractor;
+    private InputChannel inputChannel;
     private PongControllerView gameView;
+    private int lastPositionSent = -1;
+    private boolean slowNetworkWarned = false;
+    private boolean showCourt = false;
+    private long lastStateAck = 0;
+    private SessionRecorder sessionRecorder;
+    private File sessionLog;
     private final Activity activity;
 
     public PongController(Activity ac) {
@@ -59,6 +95,15 @@ public class PongController implements GameController {
     @Override
     public void setChromecastInteractor(@NonNull final ChromecastInteractor chromecastInteractor) {
         this.chromecastInteractor = chromecastInteractor;
+        // Only the latest snapshot and input acknowledgement matter, so a busy UI thread catches up with one of each
+        chromecastInteractor.setCoalescedMessages(CourtState.MESSAGE_PREFIX, INPUT_ACK_PREFIX);
+        inputChannel = new InputChannel(chromecastInteractor, INPUT_TICK_MILLIS, INPUT_TICK_VSYNC,
+                new InputChannel.Listener() {
+                    @Override
+                    public void inputSent(int sequence, int type, int value) {
+                        paddlePredictor.inputSent(sequence, type, value);
+                    }
+                });
     }
 
     /**
@@ -76,7 +121,8 @@ public class PongController implements GameController {
      */
     public void paddleUp() {
         if (chromecastState == ChromecastInteractor.CHROMECAST_STATE.RECEIVER_READY) {
-            chromecastInteractor.sendMessage(PADDLE_UP_MESSAGE);
+            lastPositionSent = -1;
+            inputChannel.move(1);
         }
     }
 
@@ -85,14 +131,191 @@ public class PongController implements GameController {
      */
     public void paddleDown() {
         if (chromecastState == ChromecastInteractor.CHROMECAST_STATE.RECEIVER_READY) {
-            chromecastInteractor.sendMessage(PADDLE_DOWN_MESSAGE);
+            lastPositionSent = -1;
+            inputChannel.move(-1);
+        }
+    }
+
+    /**
+     * Request from the view to move the paddle to an absolute position
+     *
+     * @param fraction of the way down the court to put the paddle, from 0.0 (top) to 1.0 (bottom)
+     */
+    public void paddlePosition(final float fraction) {
+        if (chromecastState == ChromecastInteractor.CHROMECAST_STATE.RECEIVER_READY) {
+            float clamped = Math.max(0.0f, Math.min(1.0f, fraction));
+            int position = Math.round(clamped * InputFrame.POSITION_MAX / POSITION_QUANTUM) * POSITION_QUANTUM;
+            if (position != lastPositionSent) {
+                lastPositionSent = position;
+                inputChannel.position(position);
+            }
+        }
+    }
+
+    /**
+     * Reconcile the prediction of where our paddle is with an acknowledgement from the receiver of the inputs
+     * it has applied, of the form "INPUT seq position step"
+     *
+     * @param message INPUT message from the receiver
+     */
+    private void inputAcknowledged(@NonNull final String message) {
+        try {
+            int positionStart = message.indexOf(' ', INPUT_ACK_PREFIX.length()) + 1;
+            int stepStart = message.indexOf(' ', positionStart) + 1;
+            if (positionStart == 0 || stepStart == 0) {
+                return;
+            }
+
+            paddlePredictor.acknowledged(
+                    Integer.parseInt(message.substring(INPUT_ACK_PREFIX.length(), positionStart - 1)),
+                    Integer.parseInt(message.substring(positionStart, stepStart - 1)),
+                    Integer.parseInt(message.substring(stepStart)));
+            gameView.courtStateUpdated();
+        } catch (NumberFormatException e) {
+            Log.e(LOG_TAG, "Bad input acknowledgement: " + message);
         }
     }
 
+    /**
+     * Request from the view to show or hide a mirror of the court, streamed from the receiver
+     *
+     * @param show true to show the mirror
+     */
+    public void showCourt(final boolean show) {
+        showCourt = show;
+        gameView.showCourtMirror(show ? courtState : null);
+        subscribeCourtState();
+    }
+
+    /**
+     * Ask the receiver to start or stop sending snapshots of the court, depending on if the mirror is shown
+     */
+    private void subscribeCourtState() {
+        if (chromecastState == ChromecastInteractor.CHROMECAST_STATE.RECEIVER_READY) {
+            courtState.reset();
+            lastStateAck = 0;
+            chromecastInteractor.sendMessage(STATE_SUBSCRIBE_MESSAGE + (showCourt ? COURT_STATE_INTERVAL_MILLIS : 0));
+        }
+    }
+
+    /**
+     * Decode a snapshot of the court from the receiver and acknowledge it, so the next one can be sent as a delta
+     * from it. Acknowledgements are sent at most every COURT_STATE_ACK_MILLIS, as the receiver only needs a recent
+     * one, except when a snapshot can't be decoded, when acknowledging 0 asks for a complete one.
+     *
+     * @param message STATE message from the receiver
+     */
+    private void courtStateMessage(@NonNull final String message) {
+        if (courtState.decode(message)) {
+            gameView.courtStateUpdated();
+
+            long now = SystemClock.uptimeMillis();
+            if (now - lastStateAck >= COURT_STATE_ACK_MILLIS) {
+                lastStateAck = now;
+                chromecastInteractor.sendMessage(STATE_ACK_MESSAGE + courtState.getSequence(),
+                        OutboundQueue.DROP_POLICY.DROP_OLDEST);
+            }
+        } else {
+            Log.d(LOG_TAG, "Could not decode court state, asking for a complete one");
+            chromecastInteractor.sendMessage(STATE_ACK_MESSAGE + 0, OutboundQueue.DROP_POLICY.DROP_OLDEST);
+        }
+    }
+
+    /**
+     * Request from the view to show how well the receiver is keeping up with drawing the game, asking it for a
+     * summary of the timings of its last frames
+     */
+    public void requestReceiverTelemetry() {
+        if (chromecastState == ChromecastInteractor.CHROMECAST_STATE.RECEIVER_READY) {
+            chromecastInteractor.sendMessage(TELEMETRY_REQUEST_MESSAGE);
+        }
+    }
+
+    /**
+     * Decode a summary of the receiver's frame timings, log all of it and show the player the main figures
+     *
+     * @param message TELEMETRY message from the receiver
+     */
+    private void receiverTelemetryMessage(@NonNull final String message) {
+        if (!receiverTelemetry.decode(message)) {
+            Log.e(LOG_TAG, "Bad receiver telemetry: " + message);
+            return;
+        }
+
+        Log.i(LOG_TAG, receiverTelemetry.toString());
+        gameView.message(activity.getResources().getString(R.string.receiverTelemetry,
+                receiverTelemetry.getMillis(ReceiverTelemetry.FRAME, ReceiverTelemetry.P50),
+                receiverTelemetry.getMillis(ReceiverTelemetry.FRAME, ReceiverTelemetry.P99),
+                receiverTelemetry.getMillis(ReceiverTelemetry.RENDER, ReceiverTelemetry.P99),
+                receiverTelemetry.getResolutionPercent()));
+    }
+
+    /**
+     * @return the last summary of the receiver's frame timings, see requestReceiverTelemetry()
+     */
+    @NonNull
+    public ReceiverTelemetry getReceiverTelemetry() {
+        return receiverTelemetry;
+    }
+
+    /**
+     * Request from the view to record the traffic with the receiver, and the states of the connection to it, so
+     * the session can be replayed later with a SessionReplay. Records are appended to the log, so several sessions
+     * can be recorded into one.
+     * <p/>
+     * The file is opened and written by the recorder's own thread, so if it can't be, the player is told when
+     * recording is stopped.
+     *
+     * @param file to append the log to
+     * @return true as recording has started
+     */
+    public boolean startRecording(@NonNull final File file) {
+        stopRecording();
+
+        sessionRecorder = new SessionRecorder(file);
+        Log.i(LOG_TAG, "Recording session to " + file);
+        sessionLog = file;
+        chromecastInteractor.setRecorder(sessionRecorder);
+        return true;
+    }
+
+    /**
+     * Request from the view to stop recording the session, if it is, and tell the player where it was recorded to
+     */
+    public void stopRecording() {
+        if (sessionRecorder == null) {
+            return;
+        }
+
+        chromecastInteractor.setRecorder(null);
+        boolean failed = sessionRecorder.hasFailed();
+        sessionRecorder = null;
+        if (failed) {
+            Log.e(LOG_TAG, "Could not record session to " + sessionLog);
+            gameView.message(activity.getResources().getString(R.string.sessionNotRecorded));
+            return;
+        }
+        Log.i(LOG_TAG, "Session recorded to " + sessionLog);
+        gameView.message(activity.getResources().getString(R.string.sessionRecorded, sessionLog.getPath()));
+    }
+
+    public boolean isRecording() {
+        return sessionRecorder != null;
+    }
+
+    /**
+     * @return the channel paddle inputs are sent to the receiver through, e.g. for a SessionReplay to send recorded
+     * inputs through
+     */
+    public InputChannel getInputChannel() {
+        return inputChannel;
+    }
+
     /**
      * A request from the UI to pause the game
      */
     public void pause() {
+        inputChannel.cancel();
         if (chromecastState == ChromecastInteractor.CHROMECAST_STATE.RECEIVER_READY) {
             chromecastInteractor.sendMessage(PAUSE_PLAY_MESSAGE);
         }
@@ -107,9 +330,39 @@ public class PongController implements GameController {
     public void newChromecastState(@NonNull final ChromecastInteractor.CHROMECAST_STATE newState) {
         Log.d(LOG_TAG, "Previous Chromecast State = " + this.chromecastState + ", New state = " + newState);
         chromecastState = newState;
+        if (chromecastState == ChromecastInteractor.CHROMECAST_STATE.ROUTE_AVAILABLE) {
+            StartupTrace.mark(StartupTrace.PHASE.ROUTE_AVAILABLE);
+        } else if (chromecastState == ChromecastInteractor.CHROMECAST_STATE.RECEIVER_READY) {
+            StartupTrace.mark(StartupTrace.PHASE.RECEIVER_READY);
+        }
+        if (chromecastState != ChromecastInteractor.CHROMECAST_STATE.RECEIVER_READY) {
+            inputChannel.cancel();
+        } else {
+            slowNetworkWarned = false;
+            // the receiver doesn't remember subscriptions from earlier connections
+            if (showCourt) {
+                subscribeCourtState();
+            }
+        }
         gameView.setCourtState(newState);
     }
 
+    /**
+     * A new round trip time to the receiver was measured, warn the player once if the network is too slow to play
+     *
+     * @param roundTripMillis the latest round trip time measured
+     * @param histogram       of all round trip times measured since the receiver was ready
+     */
+    @Override
+    public void latencyMeasured(final long roundTripMillis, @NonNull final LatencyHistogram histogram) {
+        if (!slowNetworkWarned && histogram.getCount() >= SLOW_NETWORK_MIN_SAMPLES
+                && histogram.getP95() > SLOW_NETWORK_P95_MILLIS) {
+            Log.w(LOG_TAG, "Slow network to receiver: " + histogram);
+            slowNetworkWarned = true;
+            gameView.message(activity.getResources().getString(R.string.slowNetwork));
+        }
+    }
+
     /**
      * Parse a message from the chromecast controller into a GAME_STATE and process it
      *
@@ -117,15 +370,36 @@ public class PongController implements GameController {
      */
     @Override
     public void receiverMessage(@NonNull final String message) {
+        // Snapshots of the court arrive many times a second, so handle them without logging
+        if (message.startsWith(CourtState.MESSAGE_PREFIX)) {
+            courtStateMessage(message);
+            return;
+        }
+
+        if (message.startsWith(INPUT_ACK_PREFIX)) {
+            inputAcknowledged(message);
+            return;
+        }
+
+        if (message.startsWith(ReceiverTelemetry.MESSAGE_PREFIX)) {
+            receiverTelemetryMessage(message);
+            return;
+        }
+
         Log.i(LOG_TAG, "Receiver Message: " + message);
         switch (message) {
             case "PADDLE NONE":
+                gameView.setOwnPaddle(CourtMirrorView.NO_PADDLE, null);
                 newGameState(GAME_STATE.NO_PADDLE, null);
                 break;
             case "PADDLE YES LEFT":
+                paddlePredictor.reset();
+                gameView.setOwnPaddle(CourtMirrorView.LEFT_PADDLE, paddlePredictor);
                 newGameState(GAME_STATE.GOT_PADDLE, "You got left paddle");
                 break;
             case "PADDLE YES RIGHT":
+                paddlePredictor.reset();
+                gameView.setOwnPaddle(CourtMirrorView.RIGHT_PADDLE, paddlePredictor);
                 newGameState(GAME_STATE.GOT_PADDLE, "You got right paddle");
                 break;
             case "GAME WON":
@@ -34,8 +34,14 @@ public class PongControllerView {
     private final Button startGameButton;
     private final TextView messageView;
     private final View paddleControls;
+    private final View touchControl;
+    private final CourtMirrorView courtMirror;
     private final AppCompatActivity activity;
 
+    // MUTABLES
+    private boolean useTouchControl = false;
+    private boolean showPaddleControls = false;
+
     @SuppressLint("ClickableViewAccessibility")
     public PongControllerView(final AppCompatActivity activity,
                               final PongController pongController) {
@@ -88,6 +94,30 @@ public class PongControllerView {
             }
         }));
 
+        // Dragging on the touch control sets the position of the paddle directly
+        touchControl = activity.findViewById(R.id.touchControl);
+        touchControl.setOnTouchListener(new View.OnTouchListener() {
+            @Override
+            public boolean onTouch(View view, MotionEvent motionEvent) {
+                int action = motionEvent.getAction();
+                switch (action) {
+                    case MotionEvent.ACTION_DOWN:
+                    case MotionEvent.ACTION_MOVE:
+                        if (action == MotionEvent.ACTION_DOWN) {
+                            view.performClick();
+                        }
+                        int travel = view.getHeight() - view.getPaddingTop() - view.getPaddingBottom();
+                        if (travel > 0) {
+                            pongController.paddlePosition((motionEvent.getY() - view.getPaddingTop()) / travel);
+                        }
+                        return true;
+                }
+                return false;
+            }
+        });
+
+        courtMirror = activity.findViewById(R.id.courtMirror);
+
         pongController.setGameView(this);
     }
 
@@ -103,42 +133,42 @@ public class PongControllerView {
         switch (chromecastState) {
             case NO_WIFI:
                 startGameButton.setVisibility(View.INVISIBLE);
-                paddleControls.setVisibility(View.INVISIBLE);
+                showPaddleControls(false);
                 messageView.setVisibility(View.VISIBLE);
                 messageView.setText(R.string.enableWifi);
                 break;
 
             case NO_ROUTE_AVAILABLE:
                 startGameButton.setVisibility(View.INVISIBLE);
-                paddleControls.setVisibility(View.INVISIBLE);
+                showPaddleControls(false);
                 messageView.setVisibility(View.VISIBLE);
                 messageView.setText(R.string.noRoute);
                 break;
 
             case ROUTE_AVAILABLE:
                 startGameButton.setVisibility(View.INVISIBLE);
-                paddleControls.setVisibility(View.INVISIBLE);
+                showPaddleControls(false);
                 messageView.setVisibility(View.VISIBLE);
                 messageView.setText(R.string.selectRoute);
                 break;
 
             case CONNECTING:
                 startGameButton.setVisibility(View.INVISIBLE);
-                paddleControls.setVisibility(View.INVISIBLE);
+                showPaddleControls(false);
                 messageView.setVisibility(View.VISIBLE);
                 messageView.setText(R.string.waiting);
                 break;
 
             case CONNECTED:
                 startGameButton.setVisibility(View.INVISIBLE);
-                paddleControls.setVisibility(View.INVISIBLE);
+                showPaddleControls(false);
                 messageView.setVisibility(View.VISIBLE);
                 messageView.setText(R.string.preparing);
                 break;
 
             case RECEIVER_READY:
                 startGameButton.setVisibility(View.INVISIBLE);
-                paddleControls.setVisibility(View.INVISIBLE);
+                showPaddleControls(false);
                 messageView.setVisibility(View.VISIBLE);
                 messageView.setText(R.string.onCourt);
                 break;
@@ -156,7 +186,7 @@ public class PongControllerView {
         switch (gameState) {
             case NO_PADDLE:
                 startGameButton.setVisibility(View.INVISIBLE);
-                paddleControls.setVisibility(View.INVISIBLE);
+                showPaddleControls(false);
                 messageView.setVisibility(View.VISIBLE);
                 messageView.setText(R.string.onCourt);
                 break;
@@ -165,18 +195,67 @@ public class PongControllerView {
             case GAME_WON_LOST:
             case GAME_PAUSED:
                 startGameButton.setVisibility(View.VISIBLE);
-                paddleControls.setVisibility(View.INVISIBLE);
+                showPaddleControls(false);
                 messageView.setVisibility(View.INVISIBLE);
                 break;
 
             case GAME_STARTED:
                 startGameButton.setVisibility(View.INVISIBLE);
-                paddleControls.setVisibility(View.VISIBLE);
+                showPaddleControls(true);
                 messageView.setVisibility(View.INVISIBLE);
                 break;
         }
     }
 
+    /**
+     * Select between the up/down buttons and the touch control for moving the paddle
+     *
+     * @param touch true to use the touch control
+     */
+    public void setTouchControl(final boolean touch) {
+        useTouchControl = touch;
+        showPaddleControls(showPaddleControls);
+    }
+
+    /**
+     * Show or hide the controls for moving the paddle, according to the type of control in use
+     *
+     * @param show true to show the controls
+     */
+    private void showPaddleControls(final boolean show) {
+        showPaddleControls = show;
+        paddleControls.setVisibility(show && !useTouchControl ? View.VISIBLE : View.INVISIBLE);
+        touchControl.setVisibility(show && useTouchControl ? View.VISIBLE : View.INVISIBLE);
+    }
+
+    /**
+     * Show or hide the mirror of the court
+     *
+     * @param courtState to draw in the mirror, or null to hide it
+     */
+    public void showCourtMirror(@Nullable final CourtState courtState) {
+        courtMirror.setCourtState(courtState);
+        courtMirror.setVisibility(courtState != null ? View.VISIBLE : View.GONE);
+    }
+
+    /**
+     * Tell the mirror which paddle is ours, so it can be drawn where we predict it is rather than where the last
+     * snapshot from the receiver had it
+     *
+     * @param side      CourtMirrorView.LEFT_PADDLE, RIGHT_PADDLE or NO_PADDLE
+     * @param predictor of our paddle's position, or null
+     */
+    public void setOwnPaddle(final int side, @Nullable final PaddlePredictor predictor) {
+        courtMirror.setOwnPaddle(side, predictor);
+    }
+
+    /**
+     * A new snapshot of the court or position of our paddle has been received, so update the mirror
+     */
+    public void courtStateUpdated() {
+        courtMirror.stateUpdated();
+    }
+
     /**
      * Send a Toast (pop-up) message to the player
      * @param message to display
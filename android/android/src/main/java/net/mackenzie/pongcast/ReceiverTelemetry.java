@@ -0,0 +1,114 @@
+package net.mackenzie.pongcast;
+
+import androidx.annotation.NonNull;
+
+/**
+ * The latest summary of the timings of the frames drawn by the receiver, sent in reply to a request, see DESIGN.md.
+ * <p/>
+ * Summaries arrive as "TELEMETRY frames resolution values", where frames is the number of frames summarised,
+ * resolution is the percentage of full resolution the court is drawn at, and values are a comma separated list of
+ * percentiles in microseconds: P50, P90, P99 and MAX for each of FRAME, INPUT, PHYSICS and RENDER in turn.
+ */
+public class ReceiverTelemetry {
+    // CONSTANTS
+    public static final String MESSAGE_PREFIX = "TELEMETRY ";
+    // What is timed: time between frames, handling messages from senders, running the game's ticks, drawing it
+    public static final int FRAME = 0;
+    public static final int INPUT = 1;
+    public static final int PHYSICS = 2;
+    public static final int RENDER = 3;
+    private static final int NUM_SERIES = 4;
+    public static final int P50 = 0;
+    public static final int P90 = 1;
+    public static final int P99 = 2;
+    public static final int MAX = 3;
+    private static final int NUM_PERCENTILES = 4;
+
+    // IMMUTABLES
+    private final int[] micros = new int[NUM_SERIES * NUM_PERCENTILES];
+
+    // MUTABLES
+    private int frames = 0;
+    private int resolutionPercent = 0;
+
+    /**
+     * Decode a TELEMETRY message from the receiver and make it the current summary
+     *
+     * @param message starting with MESSAGE_PREFIX
+     * @return false if the message could not be decoded, in which case the current summary is unchanged
+     */
+    public boolean decode(@NonNull final String message) {
+        String[] fields = message.substring(MESSAGE_PREFIX.length()).split(" ");
+        if (fields.length != 3) {
+            return false;
+        }
+
+        String[] values = fields[2].split(",");
+        if (values.length != micros.length) {
+            return false;
+        }
+
+        try {
+            int newFrames = Integer.parseInt(fields[0]);
+            int newResolution = Integer.parseInt(fields[1]);
+            int[] newMicros = new int[micros.length];
+            for (int i = 0; i < values.length; i++) {
+                newMicros[i] = Integer.parseInt(values[i]);
+            }
+
+            frames = newFrames;
+            resolutionPercent = newResolution;
+            System.arraycopy(newMicros, 0, micros, 0, micros.length);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the number of frames summarised, 0 if no summary has been received
+     */
+    public int getFrames() {
+        return frames;
+    }
+
+    /**
+     * @return the percentage of full resolution the receiver draws the court at
+     */
+    public int getResolutionPercent() {
+        return resolutionPercent;
+    }
+
+    /**
+     * @param series     FRAME, INPUT, PHYSICS or RENDER
+     * @param percentile P50, P90, P99 or MAX
+     * @return the time in microseconds
+     */
+    public int getMicros(final int series, final int percentile) {
+        return micros[(series * NUM_PERCENTILES) + percentile];
+    }
+
+    /**
+     * @param series     FRAME, INPUT, PHYSICS or RENDER
+     * @param percentile P50, P90, P99 or MAX
+     * @return the time in milliseconds
+     */
+    public float getMillis(final int series, final int percentile) {
+        return getMicros(series, percentile) / 1000.0f;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("ReceiverTelemetry{frames=").append(frames)
+                .append(", resolution=").append(resolutionPercent).append('%');
+        String[] names = {"frame", "input", "physics", "render"};
+        for (int series = 0; series < NUM_SERIES; series++) {
+            builder.append(", ").append(names[series])
+                    .append(" p50=").append(getMillis(series, P50))
+                    .append(" p90=").append(getMillis(series, P90))
+                    .append(" p99=").append(getMillis(series, P99))
+                    .append(" max=").append(getMillis(series, MAX));
+        }
+        return builder.append('}').toString();
+    }
+}
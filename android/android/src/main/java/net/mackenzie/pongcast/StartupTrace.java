@@ -0,0 +1,89 @@
+package net.mackenzie.pongcast;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Timing marks for the phases of a cold start of the app, from the process starting to the receiver being ready
+ * to play, logged as each is reached and summarized once the receiver is ready.
+ * <p/>
+ * Each phase is only marked the first time it is reached, so later reconnections don't count. Times are from
+ * the start of the process, or on phones before Android 7.0, from this class being loaded, which happens as the
+ * main activity is created.
+ * <p/>
+ * It must only be used on the main thread.
+ */
+public final class StartupTrace {
+    // ENUMS
+    public enum PHASE {
+        PROCESS_START,     // The process was started, by the launcher
+        ACTIVITY_CREATED,  // MainActivity.onCreate() was called
+        UI_READY,          // The UI has been shown and the main thread is idle
+        CAST_INITIALIZED,  // The Cast stack has been initialized in the background
+        ROUTE_AVAILABLE,   // A Chromecast was found
+        RECEIVER_READY,    // Connected to a Chromecast and the receiver is ready to play
+    }
+
+    // CONSTANTS
+    private static final String LOG_TAG = "StartupTrace";
+    private static final long NOT_REACHED = -1;
+    private static final long LOADED_AT = SystemClock.uptimeMillis();
+    private static final long[] PHASE_TIMES = new long[PHASE.values().length];
+
+    static {
+        for (int i = 0; i < PHASE_TIMES.length; i++) {
+            PHASE_TIMES[i] = NOT_REACHED;
+        }
+        PHASE_TIMES[PHASE.PROCESS_START.ordinal()] =
+                Build.VERSION.SDK_INT >= Build.VERSION_CODES.N ? Process.getStartUptimeMillis() : LOADED_AT;
+    }
+
+    private StartupTrace() {
+    }
+
+    /**
+     * Mark a phase as reached now, if it hasn't been already
+     *
+     * @param phase reached
+     */
+    public static void mark(@NonNull final PHASE phase) {
+        if (PHASE_TIMES[phase.ordinal()] != NOT_REACHED) {
+            return;
+        }
+
+        PHASE_TIMES[phase.ordinal()] = SystemClock.uptimeMillis();
+        Log.i(LOG_TAG, phase + " at " + getMillis(phase) + "ms");
+
+        if (phase == PHASE.RECEIVER_READY) {
+            Log.i(LOG_TAG, summary());
+        }
+    }
+
+    /**
+     * @param phase to get the time of
+     * @return milliseconds from the start of the process to the phase being reached, or -1 if it hasn't been
+     */
+    public static long getMillis(@NonNull final PHASE phase) {
+        long time = PHASE_TIMES[phase.ordinal()];
+        return time == NOT_REACHED ? NOT_REACHED : time - PHASE_TIMES[PHASE.PROCESS_START.ordinal()];
+    }
+
+    /**
+     * @return the time of each phase reached so far, on one line
+     */
+    @NonNull
+    public static String summary() {
+        StringBuilder builder = new StringBuilder("Startup:");
+        for (PHASE phase : PHASE.values()) {
+            long millis = getMillis(phase);
+            if (millis != NOT_REACHED) {
+                builder.append(' ').append(phase).append('=').append(millis).append("ms");
+            }
+        }
+        return builder.toString();
+    }
+}
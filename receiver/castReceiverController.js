@@ -2,6 +2,298 @@ function sleep(ms) {
   return new Promise(resolve => setTimeout(resolve, ms));
 }
 
+// Compact input frames sent by the sender app, see InputFrame.java for the format
+const INPUT_FRAME_VERSION = 1;
+const INPUT_FRAME_MARKER = '#';
+const INPUT_FRAME_LENGTH = 13;
+const INPUT_TYPE_MOVE = 1;
+const INPUT_TYPE_POSITION = 2;
+const INPUT_POSITION_MAX = 1000;
+
+/*
+ Decode an input frame from the sender: a '#' followed by 9 bytes in base64.
+ Returns null if the message is not a frame, or is of a version we don't understand.
+ */
+function decodeInputFrame(data) {
+    if (data.length !== INPUT_FRAME_LENGTH || data.charAt(0) !== INPUT_FRAME_MARKER) {
+        return null;
+    }
+
+    let bytes;
+    try {
+        bytes = atob(data.substring(1));
+    } catch (err) {
+        return null;
+    }
+
+    let header = bytes.charCodeAt(0);
+    if ((header >> 4) !== INPUT_FRAME_VERSION) {
+        console.log("Unsupported input frame version: " + (header >> 4));
+        return null;
+    }
+
+    return {
+        type: header & 0x0F,
+        value: ((bytes.charCodeAt(1) << 24) | (bytes.charCodeAt(2) << 16)) >> 16,
+        sequence: (bytes.charCodeAt(3) << 8) | bytes.charCodeAt(4),
+        timestamp: ((bytes.charCodeAt(5) << 24) | (bytes.charCodeAt(6) << 16) |
+            (bytes.charCodeAt(7) << 8) | bytes.charCodeAt(8)) >>> 0
+    };
+}
+
+// true if sequence number a is later than b, allowing for them wrapping around at 16 bits
+function isNewerSequence(a, b) {
+    let diff = (a - b) & 0xFFFF;
+    return diff !== 0 && diff < 0x8000;
+}
+
+// Snapshots of the state of the court are sent to senders that subscribe, delta encoded against the last
+// one each of them acknowledged
+const STATE_HISTORY = 32;
+const STATE_MIN_INTERVAL = 33;
+const snapshotValues = new Int32Array(SNAPSHOT_SIZE);
+
+/*
+ Keeps track of the snapshots sent to one sender, so each can be encoded as a delta against the last one the sender
+ acknowledged. Snapshots are sent as "STATE <seq> <base seq> <time> <values>", where values are comma separated
+ differences from the base snapshot, left empty if unchanged. A base seq of 0 means the values are not a delta.
+ */
+function StatePublisher() {
+    this.interval = 0;
+    this.lastSent = 0;
+    this.sequence = 0;
+    this.acknowledged = 0;
+    this.history = new Array(STATE_HISTORY);
+    for (let i = 0; i < STATE_HISTORY; i++) {
+        this.history[i] = {sequence: 0, values: new Int32Array(SNAPSHOT_SIZE)};
+    }
+}
+
+StatePublisher.prototype.subscribe = function (interval) {
+    this.interval = interval > 0 ? Math.max(interval, STATE_MIN_INTERVAL) : 0;
+    this.acknowledged = 0;
+};
+
+StatePublisher.prototype.acknowledge = function (sequence) {
+    if (sequence <= this.sequence) {
+        this.acknowledged = sequence;
+    }
+};
+
+StatePublisher.prototype.isDue = function (now) {
+    return this.interval > 0 && (now - this.lastSent) >= this.interval;
+};
+
+StatePublisher.prototype.encode = function (now, values) {
+    this.sequence++;
+    this.lastSent = now;
+
+    let base = null;
+    if (this.acknowledged > 0 && (this.sequence - this.acknowledged) < STATE_HISTORY) {
+        base = this.history[this.acknowledged % STATE_HISTORY];
+        if (base.sequence !== this.acknowledged) {
+            base = null;
+        }
+    }
+
+    let fields = new Array(SNAPSHOT_SIZE);
+    for (let i = 0; i < SNAPSHOT_SIZE; i++) {
+        if (base === null) {
+            fields[i] = values[i];
+        } else {
+            let diff = values[i] - base.values[i];
+            fields[i] = diff === 0 ? "" : diff;
+        }
+    }
+
+    let entry = this.history[this.sequence % STATE_HISTORY];
+    entry.sequence = this.sequence;
+    entry.values.set(values);
+
+    return "STATE " + this.sequence + " " + (base === null ? 0 : base.sequence) + " " + (now | 0) + " " +
+        fields.join(",");
+};
+
+// Called after each update of the court, to send snapshots to the senders that are due one
+function publishState(now) {
+    let taken = false;
+
+    for (let senderId in window.players) {
+        let publisher = window.players[senderId].statePublisher;
+        if (publisher.isDue(now)) {
+            if (!taken) {
+                window.court.snapshot(snapshotValues);
+                taken = true;
+            }
+            //noinspection JSUnresolvedFunction
+            window.messageBus.getCastChannel(senderId).send(publisher.encode(now, snapshotValues));
+        }
+    }
+}
+
+/*
+ Called after each update of the court, to tell each sender the sequence number of the last input of theirs that
+ has been applied and where it left their paddle, so they can reconcile their prediction of where it is. Sent as
+ "INPUT <seq> <position> <step>", with position from 0 (top) to INPUT_POSITION_MAX (bottom) of the paddle's travel
+ and step the distance one step of a move input moves the paddle, in the same units.
+ The paddle moves to a position input at no more than its top speed, so it can still be moving after the
+ acknowledgement of the input, and it is acknowledged again after each update that moves it until it gets there.
+ */
+function acknowledgeInputs() {
+    for (let senderId in window.players) {
+        let player = window.players[senderId];
+        if (!player.paddle) {
+            continue;
+        }
+
+        let paddle = player.paddle;
+        let travel = Math.max(paddle.maxY - paddle.minY, 1);
+        let position = Math.round(((paddle.y - paddle.minY) * INPUT_POSITION_MAX) / travel);
+        if (player.appliedSequence !== player.acknowledgedSequence || position !== player.acknowledgedPosition) {
+            player.acknowledgedSequence = player.appliedSequence;
+            player.acknowledgedPosition = position;
+            let step = Math.round((paddle.defaultSpeed * INPUT_POSITION_MAX) / travel);
+            //noinspection JSUnresolvedFunction
+            window.messageBus.getCastChannel(senderId).send("INPUT " + player.appliedSequence + " " + position +
+                " " + step);
+        }
+    }
+}
+
+function senderUpdate(now) {
+    acknowledgeInputs();
+    publishState(now);
+}
+
+/*
+ Handlers for senders connecting, disconnecting and sending messages. They are used by the CastController, and
+ by the WebSocketController for senders on the local network, which provides a window.messageBus that works
+ the same way as the Cast one.
+ */
+async function senderConnected(event) {
+    //noinspection JSUnresolvedVariable
+    let name = event.senderId;
+    console.log("Player Connected: " + name);
+
+    // Keep track of all people connected, indexing them by unique name
+    let player = new ChromecastPlayer(name);
+    window.players = window.players || {};
+    window.players[name] = player;
+    window.court.onUpdate = senderUpdate;
+
+    // have the player enter the court
+    let response = window.court.enter(player);
+
+    // Try to increase reliability by waiting a little after sender connected event
+    await sleep(500);
+
+    // send a message to the player to tell them if they got a paddle and which one
+    //noinspection JSUnresolvedFunction,JSUnresolvedVariable
+    let senderChannel = window.messageBus.getCastChannel(event.senderId);
+    senderChannel.send(response);
+}
+
+function senderDisconnected(event) {
+    //noinspection JSUnresolvedVariable
+    let player = window.players && window.players[event.senderId];
+    if (player) {
+        window.court.leave(player);
+        //noinspection JSUnresolvedVariable
+        delete window.players[event.senderId];
+    }
+}
+
+/*
+ Handle a message from a sender, timing it as input for the frame telemetry
+ */
+function senderMessage(event) {
+    //noinspection JSUnresolvedVariable
+    let start = performance.now();
+    handleSenderMessage(event);
+    //noinspection JSUnresolvedVariable
+    window.court.telemetry.addInput(performance.now() - start);
+}
+
+function handleSenderMessage(event) {
+    // Paddle inputs arrive many times a second, so only log messages when debugging
+    if (window.debug) {
+        //noinspection JSUnresolvedVariable
+        console.log('Message [' + event.senderId + ']: ' + event.data);
+    }
+
+    // Compact input frames are the most frequent message, so check for them first
+    let frame = decodeInputFrame(event.data);
+    if (frame) {
+        //noinspection JSUnresolvedVariable
+        window.players[event.senderId].applyInput(frame);
+        return;
+    }
+
+    if (event.data.startsWith("StateAck ")) {
+        //noinspection JSUnresolvedVariable
+        window.players[event.senderId].statePublisher.acknowledge(parseInt(event.data.substring(9), 10));
+        return;
+    }
+
+    if (event.data.startsWith("StateSubscribe ")) {
+        //noinspection JSUnresolvedVariable
+        window.players[event.senderId].statePublisher.subscribe(parseInt(event.data.substring(15), 10));
+        return;
+    }
+
+    if (event.data === "TelemetryRequest") {
+        //noinspection JSUnresolvedFunction,JSUnresolvedVariable
+        window.messageBus.getCastChannel(event.senderId).send(
+            window.court.telemetry.summary(window.court.governor.getResolution()));
+        return;
+    }
+
+    if (event.data.startsWith("Difficulty ")) {
+        window.court.setDifficulty(event.data.substring(11));
+        return;
+    }
+
+    // Echo a latency probe straight back to the sender that sent it
+    if (event.data.startsWith("Ping ")) {
+        //noinspection JSUnresolvedFunction,JSUnresolvedVariable
+        window.messageBus.getCastChannel(event.senderId).send("PONG " + event.data.substring(5));
+        return;
+    }
+
+    // handle message
+    switch (event.data) {
+        case "StartPlay":
+            window.court.startPlay();
+            //noinspection JSUnresolvedFunction
+            window.messageBus.broadcast("GAME STARTED");
+            break;
+
+        case "PausePlay":
+            window.court.pausePlay();
+            //noinspection JSUnresolvedFunction
+            window.messageBus.broadcast("GAME PAUSED");
+            break;
+
+        // Text paddle messages from older versions of the sender app
+        case "MoveUp":
+            //noinspection JSUnresolvedVariable
+            window.players[event.senderId].targetPosition = null;
+            //noinspection JSUnresolvedVariable
+            window.players[event.senderId].updownCount++;
+            break;
+
+        case "MoveDown":
+            //noinspection JSUnresolvedVariable
+            window.players[event.senderId].targetPosition = null;
+            //noinspection JSUnresolvedVariable
+            window.players[event.senderId].updownCount--;
+            break;
+
+        default:
+            break;
+    }
+}
+
 function CastController() {
     //noinspection JSUnresolvedVariable,JSUnresolvedFunction
     cast.receiver.logger.setLevelValue(cast.receiver.LoggerLevel.WARNING);
@@ -21,33 +313,14 @@ function CastController() {
 
     // handler for 'senderconnected' event - this player can then enter the court
     castReceiverManager.onSenderConnected = async function (event) {
-        //noinspection JSUnresolvedVariable
-        let name = event.senderId;
-        console.log("Player Connected: " + name);
         //noinspection JSUnresolvedFunction
         console.log("Players Connected: " + window.castReceiverManager.getSenders().length);
-
-        // Keep track of all people connected, indexing them by unique name
-        let player = new ChromecastPlayer(name);
-        window.players = [];
-        window.players[name] = player;
-
-        // have the player enter the court
-        let response = window.court.enter(player);
-
-        // Try to increase reliability by waiting a little after sender connected event
-        await sleep(500);
-
-        // send a message to the player to tell them if they got a paddle and which one
-        //noinspection JSUnresolvedFunction,JSUnresolvedVariable
-        let senderChannel = window.messageBus.getCastChannel(event.senderId);
-        senderChannel.send(response);
+        await senderConnected(event);
     };
 
     // handler for 'senderdisconnected' event
     castReceiverManager.onSenderDisconnected = function (event) {
-        //noinspection JSUnresolvedVariable
-        window.court.leave(window.players[event.senderId]);
+        senderDisconnected(event);
 
         // when the last man leaves - switch out the lights
         //noinspection JSUnresolvedFunction
@@ -59,38 +332,7 @@ function CastController() {
     };
 
     // handler for incoming messages on the message bus
-    window.messageBus.onMessage = function (event) {
-        //noinspection JSUnresolvedVariable
-        console.log('Message [' + event.senderId + ']: ' + event.data);
-
-        // handle message
-        switch (event.data) {
-            case "StartPlay":
-                window.court.startPlay();
-                //noinspection JSUnresolvedFunction
-                window.messageBus.broadcast("GAME STARTED");
-                break;
-
-            case "PausePlay":
-                window.court.pausePlay();
-                //noinspection JSUnresolvedFunction
-                window.messageBus.broadcast("GAME PAUSED");
-                break;
-
-            case "MoveUp":
-                //noinspection JSUnresolvedVariable
-                window.players[event.senderId].updownCount++;
-                break;
-
-            case "MoveDown":
-                //noinspection JSUnresolvedVariable
-                window.players[event.senderId].updownCount--;
-                break;
-
-            default:
-                break;
-        }
-    };
+    window.messageBus.onMessage = senderMessage;
 
     // Messages are different depending on the Controller being used
     window.court.setMessages("CONNECT TO CHROMECAST", "CLICK PLAY ICON", "CLICK PLAY TO RESTART");
@@ -109,13 +351,51 @@ function ChromecastPlayer(name) {
     Player.apply(this, court);
     this.name = name;
     this.updownCount = 0;
+    this.targetPosition = null;
+    this.lastSequence = -1;
+    this.appliedSequence = -1;
+    this.acknowledgedSequence = -1;
+    this.acknowledgedPosition = -1;
+    this.statePublisher = new StatePublisher();
 }
 
 /*
- This is called on each update of the screen. Move the paddle corresponding to the number of requests we got
- to move up/down from the sender since the last update
+ Apply an input frame from the sender, ignoring any that arrive late or are duplicated
+ */
+ChromecastPlayer.prototype.applyInput = function (frame) {
+    if (this.lastSequence !== -1 && !isNewerSequence(frame.sequence, this.lastSequence)) {
+        return;
+    }
+    this.lastSequence = frame.sequence;
+
+    switch (frame.type) {
+        case INPUT_TYPE_MOVE:
+            this.targetPosition = null;
+            this.updownCount += frame.value;
+            break;
+
+        case INPUT_TYPE_POSITION:
+            this.updownCount = 0;
+            this.targetPosition = frame.value;
+            break;
+
+        default:
+            break;
+    }
+};
+
+/*
+ This is called on each tick of the court. Move the paddle towards the position requested by the sender, or
+ corresponding to the number of requests we got to move up/down from the sender since the last tick
  */
 ChromecastPlayer.prototype.updatePaddle = function () {
+    // all inputs received so far are applied by this tick, acknowledgeInputs() will tell the sender
+    this.appliedSequence = this.lastSequence;
+
+    if (this.targetPosition !== null) {
+        return this.paddle.distanceTo(this.targetPosition, INPUT_POSITION_MAX);
+    }
+
     let movement = -(this.paddle.defaultSpeed * this.updownCount) | 0;
     this.updownCount = 0;
     return movement;
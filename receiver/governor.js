@@ -0,0 +1,152 @@
+// Adapting the receiver to the display it is running on: the resolution the court is drawn at, and the size of the
+// text around it
+
+// Resolutions the canvas can be drawn at, as fractions of the court's size in CSS pixels, highest first
+const GOVERNOR_LEVELS = [1, 0.75, 0.5, 0.35];
+// Number of frames measured before deciding whether to change the resolution
+const GOVERNOR_WINDOW = 60;
+// A frame is late if it took this many times as long as the display's refresh period
+const GOVERNOR_LATE_FRAME = 1.5;
+// Drop the resolution if more than this fraction of the frames in a window were late
+const GOVERNOR_DROP_LATE = 0.1;
+// Raise it again if fewer than this fraction were late, in enough windows in a row
+const GOVERNOR_RAISE_LATE = 0.02;
+const GOVERNOR_MIN_RAISE_WINDOWS = 5;
+const GOVERNOR_MAX_RAISE_WINDOWS = 80;
+// Longest refresh period of a display, that of a 50Hz TV
+const GOVERNOR_MAX_REFRESH_MILLIS = 20;
+// Gaps longer than this are the receiver being busy or in the background, not the time to draw a frame
+const GOVERNOR_MAX_FRAME_MILLIS = 250;
+
+// Displays with fewer CSS pixels than this on their shorter side are small, like those on smart displays
+const SMALL_DISPLAY_SIZE = 720;
+
+/*
+ Measures the time between frames while the court is being played on, and lowers the resolution of its canvas if the
+ receiver can't keep up with the display, or raises it when the receiver has kept up for long enough.
+
+ It is only enabled when the court's renderer repaints the canvas every frame. The LayeredRenderer moves the ball
+ and paddles on layers of their own and leaves the canvas alone, so lowering its resolution would save nothing and
+ only make the court blurrier.
+
+ There is hysteresis so that it doesn't flap between two resolutions: it takes one bad window to drop the resolution
+ but several good ones in a row to raise it, and each time a raised resolution has to be dropped again straight away
+ the number of good windows needed to try again doubles. The window after a change is not measured, as the change
+ itself takes time.
+
+ The display's refresh period is taken to be the shortest of the frame times seen at the 10th percentile of a window,
+ so it is found even when most frames are late, but no longer than that of a 50Hz display. Otherwise a receiver that
+ never keeps up, and so draws every other frame, would look like it was keeping up with a slower display.
+ */
+function ResolutionGovernor(court, enabled) {
+    this.court = court;
+    this.enabled = enabled;
+    this.level = 0;
+    this.frameTimes = new Float64Array(GOVERNOR_WINDOW);
+    this.frames = 0;
+    this.refreshMillis = GOVERNOR_MAX_REFRESH_MILLIS;
+    this.goodWindows = 0;
+    this.raiseWindows = GOVERNOR_MIN_RAISE_WINDOWS;
+    this.justRaised = false;
+    this.skipWindow = false;
+
+    if (!enabled) {
+        console.log("Court resolution fixed, as the renderer doesn't repaint the canvas");
+    }
+}
+
+/*
+ Start a new window, e.g. after being paused
+ */
+ResolutionGovernor.prototype.restart = function () {
+    this.frames = 0;
+};
+
+/*
+ Returns the resolution the court is drawn at, as a fraction of full resolution
+ */
+ResolutionGovernor.prototype.getResolution = function () {
+    return GOVERNOR_LEVELS[this.level];
+};
+
+/*
+ Called on each animation frame with the time since the last one
+ */
+ResolutionGovernor.prototype.frameTime = function (elapsed) {
+    if (!this.enabled) {
+        return;
+    }
+
+    if (elapsed > GOVERNOR_MAX_FRAME_MILLIS) {
+        this.frames = 0;
+        return;
+    }
+
+    this.frameTimes[this.frames++] = elapsed;
+    if (this.frames === GOVERNOR_WINDOW) {
+        this.frames = 0;
+        if (this.skipWindow) {
+            this.skipWindow = false;
+        } else {
+            this.windowMeasured();
+        }
+    }
+};
+
+ResolutionGovernor.prototype.windowMeasured = function () {
+    this.frameTimes.sort();
+    this.refreshMillis = Math.min(this.refreshMillis, this.frameTimes[(GOVERNOR_WINDOW / 10) | 0]);
+
+    let lateMillis = this.refreshMillis * GOVERNOR_LATE_FRAME;
+    let late = 0;
+    for (let i = GOVERNOR_WINDOW - 1; i >= 0 && this.frameTimes[i] > lateMillis; i--) {
+        late++;
+    }
+    let lateFraction = late / GOVERNOR_WINDOW;
+
+    if (lateFraction > GOVERNOR_DROP_LATE) {
+        this.goodWindows = 0;
+        if (this.justRaised) {
+            // the higher resolution was too much, wait longer before trying it again
+            this.raiseWindows = Math.min(this.raiseWindows * 2, GOVERNOR_MAX_RAISE_WINDOWS);
+            this.justRaised = false;
+        }
+        this.setLevel(this.level + 1);
+    } else {
+        this.justRaised = false;
+        if (lateFraction < GOVERNOR_RAISE_LATE && ++this.goodWindows >= this.raiseWindows) {
+            this.goodWindows = 0;
+            if (this.setLevel(this.level - 1)) {
+                this.justRaised = true;
+            }
+        }
+    }
+};
+
+/*
+ Change to a resolution level, if there is one
+ Returns true if it was changed
+ */
+ResolutionGovernor.prototype.setLevel = function (level) {
+    if (level < 0 || level >= GOVERNOR_LEVELS.length) {
+        return false;
+    }
+
+    this.level = level;
+    this.skipWindow = true;
+    console.log("Court resolution set to " + GOVERNOR_LEVELS[level] + " for display refresh of " +
+        this.refreshMillis.toFixed(1) + " ms");
+    this.court.setResolution(GOVERNOR_LEVELS[level]);
+    return true;
+};
+
+/*
+ Mark the page as being on a small display, like that of a smart display, so the text around the court is sized
+ to fit it
+ */
+function fitDisplay() {
+    if (Math.min(window.innerWidth, window.innerHeight) < SMALL_DISPLAY_SIZE) {
+        console.log("Small display: " + window.innerWidth + "x" + window.innerHeight);
+        document.body.classList.add("small-display");
+    }
+}
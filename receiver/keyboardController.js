@@ -1,4 +1,5 @@
-// Keyboard Controller - can introduce a new KeyboardPlayer into the court on pressing "e" or "E" for "Enter"
+// Keyboard Controller - can introduce a new KeyboardPlayer into the court on pressing "e" or "E" for "Enter",
+// and set how hard the computer is to play against with "1", "2" or "3"
 
 function KeyboardController() {
     console.log("KeyboardController starting");
@@ -45,6 +46,15 @@ function KeyboardPlayer(name) {
             case "KeyL":
                 window.court.leave(window.keyboardPlayer);
                 break;
+            case "Digit1":
+                window.court.setDifficulty("easy");
+                break;
+            case "Digit2":
+                window.court.setDifficulty("normal");
+                break;
+            case "Digit3":
+                window.court.setDifficulty("hard");
+                break;
         }
     });
 
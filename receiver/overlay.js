@@ -0,0 +1,217 @@
+// The score and messages, drawn on a canvas of their own above the court from glyphs rendered once in advance
+
+// Font of the text, loaded from pong.ttf by the page's @font-face
+const OVERLAY_FONT = "Pong";
+const OVERLAY_COLOR = "#ffffff";
+const SCORE_CHARACTERS = "0123456789";
+// Printable ASCII, anything else in a message is left as a space
+const MESSAGE_CHARACTERS = (function () {
+    let characters = "";
+    for (let code = 32; code < 127; code++) {
+        characters += String.fromCharCode(code);
+    }
+    return characters;
+})();
+// Sizes in CSS pixels, on normal and small displays (see fitDisplay()):
+// height of the score, its distance from the top, and the gap either side of the middle of the court
+const SCORE_SIZE = [80, 48];
+const SCORE_TOP = [20, 10];
+const SCORE_GAP = [200, 100];
+// height of the messages and their distance from the bottom
+const MESSAGE_SIZE = [50, 30];
+const MESSAGE_BOTTOM = [20, 10];
+// Width of the atlas canvas, glyphs are laid out in rows across it
+const ATLAS_WIDTH = 1024;
+// Space around each glyph in the atlas, so neighbours don't bleed into each other when drawn
+const ATLAS_PADDING = 2;
+
+//////////////////////////////////// GLYPH ATLAS ////////////////////////////////
+/*
+ The characters of a font at one size, each drawn once with fillText onto an offscreen canvas. Drawing text is then
+ a drawImage of each glyph from there, with no text shaping or layout to do. With fixedWidth all glyphs take the
+ width of the widest, centred in it, so digits line up and a score changing only changes the digits that differ.
+ */
+function GlyphAtlas(characters, size, fixedWidth) {
+    this.characters = characters;
+    this.size = size | 0;
+    this.fixedWidth = fixedWidth;
+    this.canvas = document.createElement("canvas");
+    // where each character is in the atlas and how wide it is
+    this.glyphs = {};
+    this.height = 0;
+    this.build();
+}
+
+/*
+ Draw the glyphs onto the atlas, e.g. again once the font has loaded
+ */
+GlyphAtlas.prototype.build = function () {
+    let context = this.canvas.getContext("2d");
+    let font = this.size + "px " + OVERLAY_FONT;
+    context.font = font;
+
+    let widths = new Array(this.characters.length);
+    let widest = 0;
+    for (let i = 0; i < this.characters.length; i++) {
+        widths[i] = Math.ceil(context.measureText(this.characters.charAt(i)).width);
+        widest = Math.max(widest, widths[i]);
+    }
+
+    // lay the glyphs out in rows
+    this.height = Math.ceil(this.size * 1.25);
+    let cellHeight = this.height + (2 * ATLAS_PADDING);
+    let x = 0;
+    let y = 0;
+    for (let i = 0; i < this.characters.length; i++) {
+        let width = this.fixedWidth ? widest : widths[i];
+        if (x + width + (2 * ATLAS_PADDING) > ATLAS_WIDTH) {
+            x = 0;
+            y += cellHeight;
+        }
+        this.glyphs[this.characters.charAt(i)] = {x: x + ATLAS_PADDING, y: y + ATLAS_PADDING, width: width};
+        x += width + (2 * ATLAS_PADDING);
+    }
+
+    // resizing the canvas clears it and resets its context
+    this.canvas.width = ATLAS_WIDTH;
+    this.canvas.height = y + cellHeight;
+    context.font = font;
+    context.textBaseline = "top";
+    context.textAlign = "center";
+    context.fillStyle = OVERLAY_COLOR;
+    for (let character in this.glyphs) {
+        let glyph = this.glyphs[character];
+        context.fillText(character, glyph.x + (glyph.width / 2), glyph.y);
+    }
+};
+
+/*
+ Width a character is drawn in, that of a space if it isn't in the atlas
+ */
+GlyphAtlas.prototype.width = function (character) {
+    let glyph = this.glyphs[character] || this.glyphs[" "];
+    return glyph ? glyph.width : 0;
+};
+
+/*
+ Draw a character with its top left at x, y of a context, nothing if it isn't in the atlas
+ */
+GlyphAtlas.prototype.draw = function (context, character, x, y) {
+    let glyph = this.glyphs[character];
+    if (glyph) {
+        context.drawImage(this.canvas, glyph.x, glyph.y, glyph.width, this.height, x, y, glyph.width, this.height);
+    }
+};
+
+//////////////////////////////////// TEXT OVERLAY ////////////////////////////////
+/*
+ A transparent canvas over the court holding the score of each side and the court's message. Changing them only
+ clears and draws the glyphs that changed, on this canvas, so there is no DOM text to lay out and nothing under it
+ is repainted, which on a Chromecast would hold up the frame in which a point is scored.
+ */
+function TextOverlay(canvas) {
+    this.canvas = canvas;
+    this.canvas.width = canvas.clientWidth;
+    this.canvas.height = canvas.clientHeight;
+    this.context = canvas.getContext("2d");
+
+    let small = document.body.classList.contains("small-display") ? 1 : 0;
+    this.scoreAtlas = new GlyphAtlas(SCORE_CHARACTERS, SCORE_SIZE[small], true);
+    this.messageAtlas = new GlyphAtlas(MESSAGE_CHARACTERS, MESSAGE_SIZE[small], false);
+    this.scoreTop = SCORE_TOP[small];
+    this.scoreGap = SCORE_GAP[small];
+    this.messageBottom = MESSAGE_BOTTOM[small];
+
+    // the characters drawn in each score's cells, counting from the middle of the court outwards
+    this.scores = [{text: "", cells: []}, {text: "", cells: []}];
+    // the message shown, and the area it was drawn in
+    this.message = "";
+    this.messageX = 0;
+    this.messageWidth = 0;
+
+    // The atlases may have been drawn with a fallback font, draw them again when the real one has loaded
+    //noinspection JSUnresolvedVariable
+    if (document.fonts) {
+        let overlay = this;
+        //noinspection JSUnresolvedVariable,JSUnresolvedFunction
+        document.fonts.load(SCORE_SIZE[small] + "px " + OVERLAY_FONT)
+            .then(function () {
+                overlay.fontLoaded();
+            })
+            .catch(function (err) {
+                console.log("Could not load font: " + err);
+            });
+    }
+}
+
+TextOverlay.prototype.fontLoaded = function () {
+    this.scoreAtlas.build();
+    this.messageAtlas.build();
+
+    this.context.clearRect(0, 0, this.canvas.width, this.canvas.height);
+    for (let side = 0; side < 2; side++) {
+        let score = this.scores[side];
+        score.cells.length = 0;
+        this.drawScore(side, score.text);
+    }
+    let message = this.message;
+    this.message = "";
+    this.messageWidth = 0;
+    this.showMessage(message);
+};
+
+/*
+ Show the score of a side, 0 for left and 1 for right. Left's ends a gap to the left of the middle of the court and
+ right's starts the same gap to the right of it, so each cell holds the same place in the score whatever it is, and
+ only the cells whose digit changed are drawn again.
+ */
+TextOverlay.prototype.drawScore = function (side, text) {
+    let score = this.scores[side];
+    let atlas = this.scoreAtlas;
+    let cellWidth = atlas.width("0");
+    let middle = (this.canvas.width / 2) | 0;
+    score.text = text;
+
+    let cells = Math.max(text.length, score.cells.length);
+    for (let cell = 0; cell < cells; cell++) {
+        let character = side === 0 ? text.charAt(text.length - 1 - cell) : text.charAt(cell);
+        if (character !== score.cells[cell]) {
+            let x = side === 0 ? middle - this.scoreGap - ((cell + 1) * cellWidth) :
+                middle + this.scoreGap + (cell * cellWidth);
+            this.context.clearRect(x, this.scoreTop, cellWidth, atlas.height);
+            atlas.draw(this.context, character, x, this.scoreTop);
+            score.cells[cell] = character;
+        }
+    }
+};
+
+/*
+ Show a message centred along the bottom of the court, replacing the last one. Empty to show none
+ */
+TextOverlay.prototype.showMessage = function (text) {
+    text = text || "";
+    if (text === this.message) {
+        return;
+    }
+
+    let atlas = this.messageAtlas;
+    let y = this.canvas.height - this.messageBottom - atlas.height;
+    if (this.messageWidth > 0) {
+        this.context.clearRect(this.messageX, y, this.messageWidth, atlas.height);
+    }
+
+    let width = 0;
+    for (let i = 0; i < text.length; i++) {
+        width += atlas.width(text.charAt(i));
+    }
+
+    let x = ((this.canvas.width - width) / 2) | 0;
+    this.message = text;
+    this.messageX = x;
+    this.messageWidth = width;
+    for (let i = 0; i < text.length; i++) {
+        let character = text.charAt(i);
+        atlas.draw(this.context, character, x, y);
+        x += atlas.width(character);
+    }
+};
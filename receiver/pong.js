@@ -1,13 +1,27 @@
+// The game moves on in fixed ticks, whatever the display's frame rate, see Court.update()
+const TICK_MILLIS = 16;
+// Don't try and catch up more than this many ticks in one frame, e.g. after the receiver was busy
+const MAX_TICKS_PER_FRAME = 10;
+
+// Position a fraction alpha of the way from where something was at the last tick to where it is now
+function interpolate(previous, current, alpha) {
+    return (previous + ((current - previous) * alpha)) | 0;
+}
+
 //////////////////////////////////// PADDLE ////////////////////////////////
-function Paddle(x, frontX, y, width, height, courtHeight, context) {
+function Paddle(x, frontX, y, width, height, courtHeight) {
     this.defaultSpeed = (courtHeight / 150) | 0;
+    /* fastest a paddle can be moved towards a position target in one update */
+    this.maxSpeed = (courtHeight / 30) | 0;
     this.x = x | 0;
     this.frontX = frontX | 0;
     this.y = y | 0;
+    // where it was before the last tick, and where it was last drawn
+    this.previousY = this.y;
+    this.drawnY = this.y;
     this.width = width | 0;
     this.height = height | 0;
     this.halfHeight = (this.height / 2) | 0;
-    this.context = context;
     /* restrict movement and leave a gap at top and bottom */
     this.minY = this.halfHeight | 0;
     this.maxY = ((courtHeight | 0) - this.height - this.halfHeight) | 0;
@@ -16,18 +30,27 @@ function Paddle(x, frontX, y, width, height, courtHeight, context) {
 }
 
 Paddle.prototype.bounce = function () {
-    window.paddle.play();
-};
-
-Paddle.prototype.clear = function () {
-    this.context.clearRect(this.x, this.y, this.width, this.height);
+    window.sounds.play("paddle", window.court.soundTime());
 };
 
-Paddle.prototype.draw = function () {
-    this.context.fillRect(this.x, this.y, this.width, this.height);
+/*
+ Return the distance to move to get towards a position target, limited to maxSpeed.
+ position is between 0 (top of paddle's travel) and range (bottom of paddle's travel).
+ */
+Paddle.prototype.distanceTo = function (position, range) {
+    let targetY = (this.minY + ((this.maxY - this.minY) * position) / range) | 0;
+    let distance = (targetY - this.y) | 0;
+
+    if (distance > this.maxSpeed) {
+        return this.maxSpeed | 0;
+    } else if (distance < -this.maxSpeed) {
+        return -this.maxSpeed | 0;
+    }
+    return distance;
 };
 
 Paddle.prototype.move = function (distance) {
+    this.previousY = this.y;
     this.y += (distance | 0);
 
     // Stop at the top of the court
@@ -48,33 +71,144 @@ Player.prototype.givePaddle = function (paddle) {
 };
 
 //////////////////////////////////// COMPUTER PLAYER ////////////////////////////////
+// Difficulty of the ComputerPlayer, an index into the tables below
+const DIFFICULTY_EASY = 0;
+const DIFFICULTY_NORMAL = 1;
+const DIFFICULTY_HARD = 2;
+const DIFFICULTY_NAMES = ["easy", "normal", "hard"];
+// Ticks it waits after the ball changes direction before it starts to move
+const AI_REACTION_TICKS = [24, 12, 4];
+// Most it misjudges where the ball will get to by, as a percentage of the paddle's height
+const AI_ERROR_PERCENT = [100, 50, 20];
+// How fast it moves its paddle, as a percentage of the paddle's maxSpeed
+const AI_SPEED_PERCENT = [33, 60, 100];
+
 ComputerPlayer.prototype = new Player();
 
-function ComputerPlayer(name) {
+/*
+ An automatic player. Each time the ball is served or bounces off a paddle it works out where the ball will cross
+ the front of its paddle, reflecting its path off the walls, and caches that as its target until the next time.
+ Until then each tick just moves the paddle towards the target, so it costs almost nothing. When the ball is going
+ away it heads back to the middle.
+
+ The difficulty sets how long it takes to react, how far off its target can be and how fast it moves. The errors
+ come from a generator seeded from the paddle, and all arithmetic is on integers, so Simulation.java plays exactly
+ the same way.
+ */
+function ComputerPlayer(name, difficulty) {
     Player.apply(this);
     this.name = name;
+    this.difficulty = difficulty | 0;
+    // the ball and trajectory of it the target was worked out for
+    this.plannedBall = null;
+    this.plannedTrajectory = -1;
+    // where to move the top of the paddle to, once the reaction ticks have passed
+    this.targetY = 0;
+    this.reactionTicks = 0;
+    this.seed = 0;
 }
 
+ComputerPlayer.prototype.givePaddle = function (paddle) {
+    Player.prototype.givePaddle.call(this, paddle);
+    this.seed = paddle.frontX | 0;
+    this.plannedBall = null;
+};
+
+ComputerPlayer.prototype.setDifficulty = function (difficulty) {
+    this.difficulty = difficulty | 0;
+};
+
+/*
+ Next number from 0 to 0x7FFF from a linear congruential generator
+ */
+ComputerPlayer.prototype.random = function () {
+    this.seed = (Math.imul(this.seed, 1103515245) + 12345) | 0;
+    return (this.seed >>> 16) & 0x7FFF;
+};
+
+/*
+ Work out the target for the paddle for the ball's current trajectory
+ */
+ComputerPlayer.prototype.plan = function (ball) {
+    let paddle = this.paddle;
+    let courtHeight = ball.court.height;
+    this.plannedBall = ball;
+    this.plannedTrajectory = ball.trajectory;
+    this.reactionTicks = AI_REACTION_TICKS[this.difficulty];
+
+    let toFront = paddle.frontX - ball.x;
+    if (ball.x_speed === 0 || (toFront < 0) !== (ball.x_speed < 0)) {
+        // going away, wait in the middle
+        this.targetY = ((courtHeight / 2) | 0) - paddle.halfHeight;
+        return;
+    }
+
+    // Where the ball's middle would be when it reaches the paddle's front with no walls, then folded back into
+    // the range it moves in, as each wall it hits reflects the rest of its path
+    let topY = ball.halfBallSize;
+    let range = Math.max(courtHeight - (2 * ball.halfBallSize), 1);
+    let travel = (ball.y - topY) + Math.trunc((ball.y_speed * toFront) / ball.x_speed);
+    let folded = travel % (2 * range);
+    if (folded < 0) {
+        folded += 2 * range;
+    }
+    let interceptY = topY + (folded <= range ? folded : (2 * range) - folded);
+
+    let maxError = Math.trunc((paddle.height * AI_ERROR_PERCENT[this.difficulty]) / 100);
+    let error = Math.trunc((((2 * this.random()) - 0x7FFF) * maxError) / 0x7FFF);
+    this.targetY = interceptY + error - paddle.halfHeight;
+};
+
+/*
+ Called on each tick of the court. Returns the distance to move the paddle
+ */
 ComputerPlayer.prototype.updatePaddle = function (ball) {
-    let diff = this.paddle.y + this.paddle.halfHeight - ball.y;
-    return ((-diff / 4)  | 0);
+    if (ball !== this.plannedBall || ball.trajectory !== this.plannedTrajectory) {
+        this.plan(ball);
+    }
+
+    if (this.reactionTicks > 0) {
+        this.reactionTicks--;
+        return 0 | 0;
+    }
+
+    let speed = Math.max(Math.trunc((this.paddle.maxSpeed * AI_SPEED_PERCENT[this.difficulty]) / 100), 1);
+    let distance = this.targetY - this.paddle.y;
+    if (distance > speed) {
+        return speed | 0;
+    } else if (distance < -speed) {
+        return -speed | 0;
+    }
+    return distance | 0;
 };
 
 ComputerPlayer.prototype.gameOver = function (won) {
 };
 
 //////////////////////////////////// BALL ////////////////////////////////
-function Ball(court, ballSize, context, courtColor, ballColor) {
+// Times within a tick are in parts of it, see Ball.update()
+const TICK_PARTS = 1000;
+// Most walls and paddles the ball can hit in one tick
+const MAX_CONTACTS = 4;
+const HIT_NONE = 0;
+const HIT_WALL = 1;
+const HIT_PADDLE = 2;
+
+function Ball(court, ballSize) {
     this.court = court;
     this.ballSize = ballSize | 0;
     this.halfBallSize = (ballSize / 2) | 0;
-    this.context = context;
-    this.courtColor = courtColor;
-    this.ballColor = ballColor;
     this.x = ((this.court.width  | 0) / 2) | 0;
     this.y = ((this.court.height | 0) / 2) | 0;
+    // where it was before the last tick, and where it was last drawn
+    this.previousX = this.x;
+    this.previousY = this.y;
+    this.drawnX = this.x;
+    this.drawnY = this.y;
     this.y_speed = court.y_speed | 0;
     this.x_speed = court.x_speed | 0;
+    // counts the bounces off paddles, so a ComputerPlayer knows when to work out where the ball is going again
+    this.trajectory = 0;
 }
 
 Ball.prototype.bounceWall = function (court) {
@@ -89,6 +223,7 @@ Ball.prototype.bounceWall = function (court) {
 Ball.prototype.bouncePaddle = function (paddle) {
     // Gain 10% of speed with every bounce
     this.x_speed = (-1.1 * this.x_speed) | 0;
+    this.trajectory++;
     if (this.y < paddle.y + paddle.topSection) {
         if (this.y_speed === 0) {
             this.y_speed = (court.width / 200) | 0;
@@ -110,74 +245,98 @@ Ball.prototype.bouncePaddle = function (paddle) {
     paddle.bounce();
 };
 
+/*
+ Move the ball on one tick, bouncing off the walls and paddles.
+ The ball's path during the tick is swept for the first wall or paddle front it crosses, the ball is moved to where
+ it hits and bounced, and the rest of the tick is swept again from there at the new speed, up to MAX_CONTACTS
+ times. So however fast the ball goes it can't pass through a paddle, and it can bounce off a paddle and a wall
+ in one tick. Times are in TICK_PARTS of a tick, and all arithmetic is on integers so Simulation.java gets exactly
+ the same result.
+ Returns 0 while the ball is in play, or -1 or 1 if it has left the court at the left or right
+ */
 Ball.prototype.update = function () {
-    let oldX = this.x | 0;
-
-    // update position according to its speed
-    this.x += this.x_speed;
-    this.y += this.y_speed;
-
-    // check for hitting the top wall
-    let top_y = (this.y - this.halfBallSize) | 0;
-    if (top_y <= 0) {
-        this.y = this.halfBallSize | 0;
-        this.bounceWall(this.court);
-        return 0 | 0;
-    }
+    this.previousX = this.x;
+    this.previousY = this.y;
+
+    let court = this.court;
+    let time = TICK_PARTS;
+
+    for (let contacts = 0; contacts < MAX_CONTACTS && time > 0; contacts++) {
+        // where the ball would get to in the time left if it hit nothing
+        let dx = Math.trunc((this.x_speed * time) / TICK_PARTS);
+        let dy = Math.trunc((this.y_speed * time) / TICK_PARTS);
+
+        // the first thing hit is a fraction num / den of the way there
+        let hit = HIT_NONE;
+        let num = 0;
+        let den = 1;
+
+        let topY = this.halfBallSize;
+        let bottomY = court.height - this.halfBallSize;
+        if (dy < 0 && this.y + dy <= topY) {
+            hit = HIT_WALL;
+            num = this.y - topY;
+            den = -dy;
+        } else if (dy > 0 && this.y + dy >= bottomY) {
+            hit = HIT_WALL;
+            num = bottomY - this.y;
+            den = dy;
+        }
 
-    // check for hitting bottom wall
-    let bottom_y = (this.y + this.halfBallSize) | 0;
-    if (bottom_y >= this.court.height) {
-        this.y = (this.court.height - this.halfBallSize) | 0;
-        this.bounceWall(this.court);
-        return 0 | 0;
-    }
+        // The ball hits a paddle when its middle crosses the paddle's front, if it overlaps the paddle then
+        let paddle = null;
+        let paddleNum = 0;
+        let paddleDen = 1;
+        if (dx < 0 && this.x > court.paddles[0].frontX && this.x + dx <= court.paddles[0].frontX) {
+            paddle = court.paddles[0];
+            paddleNum = this.x - paddle.frontX;
+            paddleDen = -dx;
+        } else if (dx > 0 && this.x < court.paddles[1].frontX && this.x + dx >= court.paddles[1].frontX) {
+            paddle = court.paddles[1];
+            paddleNum = paddle.frontX - this.x;
+            paddleDen = dx;
+        }
 
-    if (this.x_speed < (0 | 0)) { // Going left
-        // touching or behind paddle
-        if ((this.x <= this.court.paddles[0].frontX)) {
-            // Check for exiting court left - using the middle of the ball to calculate that
-            if (this.x < 0) {
-                return -1 | 0;
+        if (paddle !== null && (hit === HIT_NONE || (paddleNum * den) < (num * paddleDen))) {
+            let contactY = this.y + Math.trunc((dy * paddleNum) / paddleDen);
+            if ((contactY + this.halfBallSize > paddle.y) &&
+                (contactY - this.halfBallSize < paddle.y + paddle.height)) {
+                hit = HIT_PADDLE;
+                num = paddleNum;
+                den = paddleDen;
             }
+        }
 
-            // was in front off, and now touching or behind paddle
-            if ((oldX > this.court.paddles[0].frontX) && (bottom_y > this.court.paddles[0].y) &&
-                (top_y < (this.court.paddles[0].y + this.court.paddles[0].height))) {
-                this.bouncePaddle(this.court.paddles[0]);
-            }
+        if (hit === HIT_NONE) {
+            this.x += dx;
+            this.y += dy;
+            break;
         }
-    } else { // Going right
-        // touching or behind paddle
-        if ((this.x > this.court.paddles[1].frontX)) {
-            // if leaves the court at the right
-            if (this.x > this.court.width) {
-                return 1 | 0;
-            }
 
-            // was in front off, and now touching or behind paddle
-            if ((oldX < this.court.paddles[1].frontX) && (bottom_y > this.court.paddles[1].y) &&
-                (top_y < (this.court.paddles[1].y + this.court.paddles[1].height))) {
-                this.bouncePaddle(this.court.paddles[1]);
-            }
+        // move to where it hit, using up that much of the time left, and bounce
+        this.x += Math.trunc((dx * num) / den);
+        this.y += Math.trunc((dy * num) / den);
+        time -= Math.trunc((time * num) / den);
+
+        if (hit === HIT_WALL) {
+            this.y = dy < 0 ? topY : bottomY;
+            this.bounceWall(court);
+        } else {
+            this.x = paddle.frontX;
+            this.bouncePaddle(paddle);
         }
     }
 
+    // Check for exiting the court - using the middle of the ball to calculate that
+    if (this.x < 0) {
+        return -1 | 0;
+    }
+    if (this.x > court.width) {
+        return 1 | 0;
+    }
     return 0 | 0;
 };
 
-Ball.prototype.clear = function () {
-    this.context.clearRect(this.x - this.halfBallSize,
-        this.y - this.halfBallSize,
-        this.ballSize, this.ballSize);
-};
-
-Ball.prototype.draw = function () {
-    this.context.fillRect(this.x - this.halfBallSize,
-        this.y - this.halfBallSize,
-        this.ballSize, this.ballSize);
-};
-
 //////////////////////////////////// GAME ////////////////////////////////
 function Game(court) {
     console.log("New Game");
@@ -186,11 +345,11 @@ function Game(court) {
     this.pointsToWin = 21 | 0;
 
     // Create a new ball in the center of the court - Moving
-    this.court.ball = new Ball(this.court, this.court.ballSize, this.court.context, this.court.courtColor, this.court.ballColor);
+    this.court.newBall();
 
     // add players until enough for a game (2)
     while (this.court.numPlayers < (2 | 0)) {
-        this.court.enter(new ComputerPlayer("Computer"));
+        this.court.enter(new ComputerPlayer("Computer", this.court.difficulty));
     }
 
     this.court.players[0].score = 0 | 0;
@@ -217,7 +376,7 @@ Game.prototype.end = function (winner, looser) {
     winner.gameOver(true);
     looser.gameOver(false);
 
-    window.win.play();
+    window.sounds.play("win", this.court.soundTime());
 
     this.court.pausePlay();
     this.court.game = null;
@@ -226,15 +385,15 @@ Game.prototype.end = function (winner, looser) {
 };
 
 //////////////////////////////////// SCOREBOARD ////////////////////////////////
-function ScoreBoard(court, scoreboardElement) {
+function ScoreBoard(court, overlay) {
     this.court = court;
-    this.leftScore = scoreboardElement.getElementsByClassName("left")[0];
-    this.rightScore = scoreboardElement.getElementsByClassName("right")[0];
+    // draws the scores, see overlay.js
+    this.overlay = overlay;
 }
 
 ScoreBoard.prototype.pointWon = function (player) {
     // Play point won sound
-    window.point.play();
+    window.sounds.play("point", this.court.soundTime());
 
     // increment score of that player
     player.score++;
@@ -244,53 +403,68 @@ ScoreBoard.prototype.pointWon = function (player) {
 };
 
 ScoreBoard.prototype.draw = function () {
-    this.leftScore.innerHTML = this.court.players[0].score.toString();
-    this.rightScore.innerHTML = this.court.players[1].score.toString();
+    this.overlay.drawScore(0, this.court.players[0].score.toString());
+    this.overlay.drawScore(1, this.court.players[1].score.toString());
 };
 
 //////////////////////////////////// COURT ////////////////////////////////
-function Court(canvas, speed) {
+function Court(canvas, speed, rendererName) {
+    this.canvas = canvas;
     this.context = canvas.getContext('2d');
     this.courtColor = "#999999";
 
-    canvas.width = canvas.clientWidth | 0;
-    canvas.height = canvas.clientHeight | 0;
-
-    this.width = canvas.width | 0;
-    this.height = canvas.height | 0;
+    // The court is measured in CSS pixels. The canvas is scaled to fill it, but its resolution in real pixels is
+    // set by the ResolutionGovernor, see setResolution()
+    this.width = canvas.clientWidth | 0;
+    this.height = canvas.clientHeight | 0;
 
     this.y_speed = (speed * this.height / 400) | 0;
     this.x_speed = (speed * this.width / 200) | 0;
 
-    // Draw court initially
-    this.context.fillStyle = this.courtColor;
-    this.context.fillRect(0, 0, this.width, this.height);
-    // set the fill for ball and paddles from now on
-    this.context.fillStyle = "#FFFFFF";
-
     let paddleWidth = 10 | 0;
     let paddleHeight = 50 | 0;
     let paddleXOffset = 60 | 0;
     let courtMiddleY = ((this.height - paddleHeight) / 2) | 0;
 
     this.paddles = new Array(2);
-    this.paddles[0] = new Paddle(paddleXOffset, paddleXOffset + paddleWidth, courtMiddleY, paddleWidth, paddleHeight, this.height, this.context);
+    this.paddles[0] = new Paddle(paddleXOffset, paddleXOffset + paddleWidth, courtMiddleY, paddleWidth, paddleHeight, this.height);
     let front = this.width - paddleXOffset - paddleWidth;
-    this.paddles[1] = new Paddle(front, front, courtMiddleY, paddleWidth, paddleHeight, this.height, this.context);
+    this.paddles[1] = new Paddle(front, front, courtMiddleY, paddleWidth, paddleHeight, this.height);
 
     // Create a new ball in the center of the court - not moving
     this.ballSize = 10 | 0;
     this.ballColor = "#FFFFFF";
 
-    this.scoreboard = new ScoreBoard(this, document.getElementById("scoreboard"));
+    // draws the ball and paddles, see renderer.js
+    this.renderer = createRenderer(rendererName, canvas, this.context, this.width, this.ballColor);
+
+    // Draw court initially at full resolution, it doesn't change after that unless the resolution does
+    this.setResolution(1);
+    this.governor = new ResolutionGovernor(this, this.renderer.repaintsCanvas);
+    // timings of the frames drawn, see telemetry.js
+    this.telemetry = new FrameTelemetry();
+
+    this.scoreboard = new ScoreBoard(this, window.overlay);
 
     this.paused = false;
 
+    // time of the last animation frame, or null to start afresh, and time not yet simulated in ticks
+    this.lastFrame = null;
+    this.accumulatedMillis = 0;
+    // time the tick being run ends, or null when not running one
+    this.tickTime = null;
+    // id of the animation frame requested, or 0 if none is
+    this.animationFrame = 0;
+    // optional function called after each update, e.g. to publish the state of the court
+    this.onUpdate = null;
+
     this.players = new Array(2);
     this.players[0] = null;
     this.players[1] = null;
     this.numPlayers = 0 | 0;
     this.game = null;
+    // of the ComputerPlayer added to make up a game, see setDifficulty()
+    this.difficulty = DIFFICULTY_NORMAL;
 
     this.courtMessage();
 
@@ -298,6 +472,41 @@ function Court(canvas, speed) {
     window.court = this;
 }
 
+/*
+ Set the resolution of the canvas as a fraction of the court's size in CSS pixels, and draw the court on it again.
+ The context is scaled so everything is still drawn in court units, and the browser scales the canvas up to fill
+ the court.
+ */
+Court.prototype.setResolution = function (scale) {
+    // resizing the canvas clears it and resets its context
+    this.canvas.width = Math.max((this.width * scale) | 0, 1);
+    this.canvas.height = Math.max((this.height * scale) | 0, 1);
+    this.context.setTransform(this.canvas.width / this.width, 0, 0, this.canvas.height / this.height, 0, 0);
+
+    this.context.fillStyle = this.courtColor;
+    this.context.fillRect(0, 0, this.width, this.height);
+    this.renderer.reset();
+};
+
+/*
+ Set the difficulty of the ComputerPlayer on the court, if there is one, and of any added later.
+ name is one of DIFFICULTY_NAMES, anything else is ignored
+ */
+Court.prototype.setDifficulty = function (name) {
+    let difficulty = DIFFICULTY_NAMES.indexOf(name);
+    if (difficulty < 0) {
+        return;
+    }
+
+    console.log("Difficulty set to " + name);
+    this.difficulty = difficulty;
+    for (let i = 0; i < 2; i++) {
+        if (this.players[i] instanceof ComputerPlayer) {
+            this.players[i].setDifficulty(difficulty);
+        }
+    }
+};
+
 Court.prototype.courtMessage = function () {
     if (this.numPlayers > (0 | 0)) {
         window.message(window.court.startMessage);
@@ -314,12 +523,27 @@ Court.prototype.setMessages = function(enter, start, pause) {
 }
 
 Court.prototype.newBall = function() {
+    // Remove the old ball from where it was last drawn
+    if (this.ball) {
+        this.renderer.clearBall(this.ball);
+    }
+
     // Create a new ball in the center of the court - Moving
-    this.ball = new Ball(this, this.ballSize, this.context, this.courtColor, this.ballColor);
+    this.ball = new Ball(this, this.ballSize);
 }
 
 Court.prototype.bounce = function () {
-    window.wall.play();
+    window.sounds.play("wall", this.soundTime());
+};
+
+/*
+ The time, from performance.now(), to play the sound of something happening now, at the moment it is drawn.
+ During a tick that is when the state at the end of the tick is drawn, which is a tick after the time the tick ends
+ as the court is drawn interpolated between the last two ticks. Otherwise it is straight away.
+ */
+Court.prototype.soundTime = function () {
+    //noinspection JSUnresolvedVariable
+    return this.tickTime !== null ? this.tickTime + TICK_MILLIS : performance.now();
 };
 
 Court.prototype.enter = function (player) {
@@ -328,14 +552,14 @@ Court.prototype.enter = function (player) {
     if (this.players[0] == null) {
         this.players[0] = player;
         this.players[0].givePaddle(this.paddles[0]);
-        this.paddles[0].draw();
+        this.renderer.drawPaddle(this.paddles[0], 1);
         this.numPlayers++;
         console.log("Player '" + player.name + "' enters court, gets left paddle");
         response = "PADDLE YES LEFT";
     } else if (this.players[1] == null) {
         this.players[1] = player;
         this.players[1].givePaddle(this.paddles[1]);
-        this.paddles[1].draw();
+        this.renderer.drawPaddle(this.paddles[1], 1);
         this.numPlayers++;
         console.log("Player '" + player.name + "' enters court, gets right paddle");
         response = "PADDLE YES RIGHT";
@@ -370,11 +594,11 @@ Court.prototype.leave = function (leaver) {
     this.numPlayers--;
 
     if (this.ball) {
-        this.ball.clear();
+        this.renderer.clearBall(this.ball);
     }
 
     // Reclaim his paddle
-    leaver.paddle.clear();
+    this.renderer.clearPaddle(leaver.paddle);
     leaver.paddle = null;
 };
 
@@ -388,7 +612,7 @@ Court.prototype.startPlay = function () {
 
     console.log("Starting play");
     this.paused = false;
-    this.update();
+    this.requestUpdates();
 };
 
 // TODO Control game state here
@@ -403,7 +627,20 @@ Court.prototype.restartPlay = function () {
     this.paused = false;
     window.message("");
     console.log("Play restarted");
-    this.update();
+    this.requestUpdates();
+};
+
+/*
+ Start updating on each animation frame, without trying to catch up on the time spent paused. If an animation frame
+ is already requested, e.g. when restarted straight after being paused, that one is used.
+ */
+Court.prototype.requestUpdates = function () {
+    this.lastFrame = null;
+    this.accumulatedMillis = 0;
+    this.governor.restart();
+    if (!this.animationFrame) {
+        this.animationFrame = window.requestAnimationFrame(this.update);
+    }
 };
 
 // TODO Control game state here
@@ -416,32 +653,20 @@ Court.prototype.togglePlay = function () {
     }
 };
 
-Court.prototype.draw = function () {
+/*
+ Move the paddles and ball on by one tick of TICK_MILLIS, and score any point won
+ */
+Court.prototype.tick = function () {
     // update paddle positions
     if (this.players[0]) {
-        let move_0 = this.players[0].updatePaddle(this.ball);
-        if (move_0 !== (0 | 0)) {
-            this.paddles[0].clear();
-            this.paddles[0].move(move_0);
-        }
+        this.paddles[0].move(this.players[0].updatePaddle(this.ball));
     }
 
     if (this.players[1]) {
-        let move_1 = this.players[1].updatePaddle(this.ball);
-        if (move_1 !== (0 | 0)) {
-            this.paddles[1].clear();
-            this.paddles[1].move(move_1);
-        }
-    }
-
-    if (window.debug) {
-        //noinspection JSUnresolvedVariable
-        console.log('        +--> paddles clear() & move() finished after ' + (performance.now() - window.start) + ' ms');
+        this.paddles[1].move(this.players[1].updatePaddle(this.ball));
     }
 
     if (this.ball) {
-        this.ball.clear();
-
         // Update the ball position and detect if it has exited one end of the court or another
         let result = this.ball.update();
 
@@ -451,48 +676,106 @@ Court.prototype.draw = function () {
             else
                 this.game.point(this.players[0], this.players[1]);
         }
+    }
+};
 
-        // Draw the ball at the new position
-        this.ball.draw();
+/*
+ Draw the ball and paddles a fraction alpha of the way from where they were before the last tick to where they are
+ now, so they move smoothly whatever the display's frame rate
+ */
+Court.prototype.render = function (alpha) {
+    this.renderer.render(this, alpha);
+};
 
-        if (window.debug) {
-            //noinspection JSUnresolvedVariable
-            console.log('        +--> ball clear() & update() && draw() finished at ' + (performance.now() - window.start) + ' ms');
-        }
+// Number of values in a snapshot of the state of the court, see Court.snapshot()
+const SNAPSHOT_SIZE = 13;
+
+/*
+ Fill values with a snapshot of the state of the court, using court-relative units of 1/1000th of the court's
+ width (for x values) or height (for y values), so they don't depend on the screen resolution. Speeds are in
+ units per second. The ball's position is -1 when there is no ball.
+ */
+Court.prototype.snapshot = function (values) {
+    let perSecond = 1000 / TICK_MILLIS;
+    let ball = this.ball;
+
+    values[0] = ball ? ((ball.x * 1000) / this.width) | 0 : -1;                    // ball x
+    values[1] = ball ? ((ball.y * 1000) / this.height) | 0 : -1;                   // ball y
+    values[2] = ball ? ((ball.x_speed * perSecond * 1000) / this.width) | 0 : 0;   // ball x speed
+    values[3] = ball ? ((ball.y_speed * perSecond * 1000) / this.height) | 0 : 0;  // ball y speed
+    values[4] = ((this.paddles[0].y * 1000) / this.height) | 0;                    // left paddle top
+    values[5] = ((this.paddles[1].y * 1000) / this.height) | 0;                    // right paddle top
+    values[6] = (this.players[0] && this.players[0].score) | 0;                   // left score
+    values[7] = (this.players[1] && this.players[1].score) | 0;                   // right score
+    values[8] = ((this.paddles[0].height * 1000) / this.height) | 0;               // paddle height
+    values[9] = ((this.paddles[0].width * 1000) / this.width) | 0;                 // paddle width
+    values[10] = ((this.paddles[0].x * 1000) / this.width) | 0;                    // paddle distance from end
+    values[11] = ((this.ballSize * 1000) / this.width) | 0;                        // ball size
+    values[12] = ((this.width * 1000) / this.height) | 0;                          // aspect ratio x 1000
+};
 
-        // Draw them after the ball may have deleted a part of them
-        this.paddles[0].draw();
-        this.paddles[1].draw();
+/*
+ This will be called from window on each animation frame, with the time of the frame.
+ The game is simulated in fixed ticks of TICK_MILLIS, as many as fit in the time since the last frame with the
+ remainder carried over to the next, so it plays at the same speed at 30, 50 or 60 frames per second. Then it is
+ drawn part of the way between the last two ticks, by the fraction of a tick carried over.
+ */
+Court.prototype.update = function (now) {
+    let court = window.court;
+    court.animationFrame = 0;
 
-        if (window.debug) {
-            //noinspection JSUnresolvedVariable
-            console.log('        +--> paddles.draw() finished at ' + (performance.now() - window.start) + ' ms');
-        }
+    if (court.paused) {
+        return;
     }
-};
 
-// This will be called from window on refresh
-Court.prototype.update = function () {
-    if (!window.court.paused) {
-        if (window.debug) {
-            //noinspection JSUnresolvedVariable
-            console.log('time since last update ' + (performance.now() - window.start) + ' ms');
+    //noinspection JSUnresolvedVariable
+    let start = performance.now();
+    let elapsed = -1;
+    if (court.lastFrame !== null) {
+        elapsed = now - court.lastFrame;
+        court.accumulatedMillis += elapsed;
+        // may change the resolution, before the court is drawn again below
+        court.governor.frameTime(elapsed);
+    }
+    court.lastFrame = now;
+
+    let ticks = 0;
+    // a point that ends the game pauses the court, so stop there
+    while (!court.paused && court.accumulatedMillis >= TICK_MILLIS && ticks < MAX_TICKS_PER_FRAME) {
+        court.tickTime = now - court.accumulatedMillis + TICK_MILLIS;
+        court.tick();
+        court.accumulatedMillis -= TICK_MILLIS;
+        ticks++;
+    }
 
-            //noinspection JSUnresolvedVariable
-            window.start = performance.now();
-        }
+    court.tickTime = null;
 
-        window.court.draw(); // my drawing routing
+    if (ticks === MAX_TICKS_PER_FRAME) {
+        // too far behind to catch up, drop the rest
+        court.accumulatedMillis = 0;
+    }
 
-        if (window.debug) {
-            //noinspection JSUnresolvedVariable
-            let end = performance.now();
+    //noinspection JSUnresolvedVariable
+    let ticked = performance.now();
+    court.render(court.paused ? 1 : court.accumulatedMillis / TICK_MILLIS);
+    //noinspection JSUnresolvedVariable
+    let rendered = performance.now();
 
-            console.log('    +--> court.draw() finished after ' + (end - window.start) + ' ms');
-        }
+    if (court.onUpdate) {
+        court.onUpdate(now);
+        //noinspection JSUnresolvedVariable
+        court.telemetry.addInput(performance.now() - rendered);
+    }
+
+    // The first frame after starting has no time since the last one
+    if (elapsed >= 0 && court.telemetry.record(elapsed, ticked - start, rendered - ticked) && window.debug) {
+        // a summary now and then, as logging on every frame would slow them down
+        console.log(court.telemetry.summary(court.governor.getResolution()));
+    }
 
-        // reschedule next animation update
-        window.requestAnimationFrame(window.court.update);
+    // reschedule next animation update
+    if (!court.paused) {
+        court.animationFrame = window.requestAnimationFrame(court.update);
     }
 };
 
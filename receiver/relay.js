@@ -0,0 +1,243 @@
+// Local network relay for playing without a Chromecast - run with "node relay.js [port]"
+//
+// A browser can't accept connections, so this serves the receiver page to a browser on the local network
+// and relays messages between it and sender apps that connect using WebSocketTransport.
+//
+// Senders connect to ws://<host>:<port>/sender and the receiver page to ws://<host>:<port>/receiver.
+// The receiver page is told of senders connecting, disconnecting and sending messages with JSON messages like
+//     {"event": "connected", "senderId": "sender-1"}
+//     {"event": "message", "senderId": "sender-1", "data": "StartPlay"}
+//     {"event": "disconnected", "senderId": "sender-1"}
+// and sends {"senderId": "sender-1", "data": "GAME STARTED"} to reply to one sender, or without a senderId
+// to broadcast to all of them.
+//
+// Only uses node's built in modules, so there is nothing to install.
+
+const http = require('http');
+const crypto = require('crypto');
+const fs = require('fs');
+const path = require('path');
+
+const PORT = parseInt(process.argv[2], 10) || 8090;
+const WEBSOCKET_GUID = '258EAFA5-E914-47DA-95CA-C5AB0DC85B11';
+const CONTENT_TYPES = {
+    '.html': 'text/html; charset=utf-8',
+    '.js': 'application/javascript',
+    '.mp3': 'audio/mpeg',
+    '.ttf': 'font/ttf'
+};
+
+let receiver = null;
+let senders = new Map();
+let nextSenderId = 1;
+
+//////////////////////////////////// WEBSOCKET ////////////////////////////////
+function WebSocketConnection(socket, onMessage, onClose) {
+    this.socket = socket;
+    this.buffer = Buffer.alloc(0);
+    this.fragments = [];
+    this.closed = false;
+
+    socket.setNoDelay(true);
+    socket.on('data', (data) => {
+        this.buffer = Buffer.concat([this.buffer, data]);
+        this.readFrames(onMessage);
+    });
+    socket.on('close', () => {
+        this.closed = true;
+        onClose();
+    });
+    socket.on('error', () => socket.destroy());
+}
+
+WebSocketConnection.prototype.readFrames = function (onMessage) {
+    while (this.buffer.length >= 2) {
+        let fin = (this.buffer[0] & 0x80) !== 0;
+        let opcode = this.buffer[0] & 0x0F;
+        let masked = (this.buffer[1] & 0x80) !== 0;
+        let length = this.buffer[1] & 0x7F;
+        let offset = 2;
+
+        if (length === 126) {
+            if (this.buffer.length < 4) return;
+            length = this.buffer.readUInt16BE(2);
+            offset = 4;
+        } else if (length === 127) {
+            if (this.buffer.length < 10) return;
+            length = Number(this.buffer.readBigUInt64BE(2));
+            offset = 10;
+        }
+
+        let maskOffset = offset;
+        if (masked) {
+            offset += 4;
+        }
+        if (this.buffer.length < offset + length) return;
+
+        let payload = Buffer.from(this.buffer.subarray(offset, offset + length));
+        if (masked) {
+            for (let i = 0; i < payload.length; i++) {
+                payload[i] ^= this.buffer[maskOffset + (i & 3)];
+            }
+        }
+        this.buffer = this.buffer.subarray(offset + length);
+
+        switch (opcode) {
+            case 0x0: // continuation
+            case 0x1: // text
+                this.fragments.push(payload);
+                if (fin) {
+                    let text = Buffer.concat(this.fragments).toString('utf8');
+                    this.fragments = [];
+                    onMessage(text);
+                }
+                break;
+
+            case 0x8: // close
+                this.writeFrame(0x8, payload);
+                this.socket.end();
+                return;
+
+            case 0x9: // ping
+                this.writeFrame(0xA, payload);
+                break;
+
+            default:
+                break;
+        }
+    }
+};
+
+WebSocketConnection.prototype.writeFrame = function (opcode, payload) {
+    if (this.closed) {
+        return;
+    }
+
+    let header;
+    if (payload.length < 126) {
+        header = Buffer.from([0x80 | opcode, payload.length]);
+    } else if (payload.length < 65536) {
+        header = Buffer.from([0x80 | opcode, 126, payload.length >> 8, payload.length & 0xFF]);
+    } else {
+        header = Buffer.alloc(10);
+        header[0] = 0x80 | opcode;
+        header[1] = 127;
+        header.writeBigUInt64BE(BigInt(payload.length), 2);
+    }
+    this.socket.write(Buffer.concat([header, payload]));
+};
+
+WebSocketConnection.prototype.send = function (text) {
+    this.writeFrame(0x1, Buffer.from(text, 'utf8'));
+};
+
+//////////////////////////////////// RELAY ////////////////////////////////
+function sendToReceiver(message) {
+    if (receiver) {
+        receiver.send(JSON.stringify(message));
+    }
+}
+
+function senderConnected(socket) {
+    let senderId = "sender-" + nextSenderId++;
+    let connection = new WebSocketConnection(socket,
+        (data) => sendToReceiver({event: "message", senderId: senderId, data: data}),
+        () => {
+            senders.delete(senderId);
+            console.log("Sender disconnected: " + senderId);
+            sendToReceiver({event: "disconnected", senderId: senderId});
+        });
+
+    senders.set(senderId, connection);
+    console.log("Sender connected: " + senderId);
+    sendToReceiver({event: "connected", senderId: senderId});
+}
+
+function receiverConnected(socket) {
+    let connection = new WebSocketConnection(socket,
+        (text) => {
+            let message;
+            try {
+                message = JSON.parse(text);
+            } catch (err) {
+                return;
+            }
+
+            if (message.senderId) {
+                let sender = senders.get(message.senderId);
+                if (sender) {
+                    sender.send(message.data);
+                }
+            } else {
+                senders.forEach((sender) => sender.send(message.data));
+            }
+        },
+        () => {
+            if (receiver === connection) {
+                console.log("Receiver disconnected");
+                receiver = null;
+            }
+        });
+
+    if (receiver) {
+        receiver.socket.end();
+    }
+    receiver = connection;
+    console.log("Receiver connected");
+
+    // tell the new receiver about senders that were waiting for it
+    senders.forEach((sender, senderId) => sendToReceiver({event: "connected", senderId: senderId}));
+}
+
+//////////////////////////////////// SERVER ////////////////////////////////
+const server = http.createServer((request, response) => {
+    let url = new URL(request.url, 'http://localhost');
+    if (url.pathname === '/') {
+        response.writeHead(302, {'Location': '/index.html?relay'});
+        response.end();
+        return;
+    }
+
+    let file = path.join(__dirname, path.normalize(url.pathname));
+    let contentType = CONTENT_TYPES[path.extname(file)];
+    if (!file.startsWith(__dirname) || !contentType) {
+        response.writeHead(404);
+        response.end();
+        return;
+    }
+
+    fs.readFile(file, (err, data) => {
+        if (err) {
+            response.writeHead(404);
+            response.end();
+        } else {
+            response.writeHead(200, {'Content-Type': contentType});
+            response.end(data);
+        }
+    });
+});
+
+server.on('upgrade', (request, socket) => {
+    let key = request.headers['sec-websocket-key'];
+    let pathname = new URL(request.url, 'http://localhost').pathname;
+    if (!key || (pathname !== '/sender' && pathname !== '/receiver')) {
+        socket.end('HTTP/1.1 400 Bad Request\r\n\r\n');
+        return;
+    }
+
+    let accept = crypto.createHash('sha1').update(key + WEBSOCKET_GUID).digest('base64');
+    socket.write('HTTP/1.1 101 Switching Protocols\r\n' +
+        'Upgrade: websocket\r\n' +
+        'Connection: Upgrade\r\n' +
+        'Sec-WebSocket-Accept: ' + accept + '\r\n\r\n');
+
+    if (pathname === '/sender') {
+        senderConnected(socket);
+    } else {
+        receiverConnected(socket);
+    }
+});
+
+server.listen(PORT, () => {
+    console.log("PongCast relay listening on port " + PORT + ", open http://<this host>:" + PORT + "/ in Chrome");
+});
@@ -0,0 +1,190 @@
+// Renderers draw the ball and paddles of the Court, which draws the static court on its canvas once. Each has:
+// render(court, alpha) - draw the ball and the paddles of players on the court, alpha of the way between ticks
+// drawPaddle(paddle, alpha) - draw one paddle, e.g. when a player enters the court
+// clearPaddle(paddle) and clearBall(ball) - remove them from where they were last drawn
+// reset() - after the canvas has been resized and the court drawn on it again
+// repaintsCanvas - true if it paints the canvas every frame, so drawing it at a lower resolution makes frames cheaper
+// and the ResolutionGovernor is worth running
+
+/*
+ Create the renderer to use: the LayeredRenderer where the browser composites layers, otherwise the CanvasRenderer.
+ name "canvas" or "layered" forces one of them, e.g. from the page's "renderer" parameter to compare them.
+ */
+function createRenderer(name, canvas, context, width, color) {
+    if (name !== "canvas" && (name === "layered" || LayeredRenderer.isSupported())) {
+        console.log("Using layered renderer");
+        return new LayeredRenderer(canvas, width, color);
+    }
+
+    console.log("Using canvas renderer");
+    return new CanvasRenderer(context, color);
+}
+
+//////////////////////////////////// CANVAS RENDERER ////////////////////////////////
+// The canvas may be at a lower resolution than the court, so the edges of the ball and paddles are blended into the
+// pixels around them, and this many court units around them are cleared too so they leave no trail
+const CLEAR_MARGIN = 1;
+
+/*
+ Draws the ball and paddles on the court's canvas with its 2D context, clearing each from where it was last drawn
+ and drawing it again every frame. Works everywhere, but every frame repaints the canvas.
+ */
+function CanvasRenderer(context, color) {
+    this.repaintsCanvas = true;
+    this.context = context;
+    this.color = color;
+}
+
+CanvasRenderer.prototype.reset = function () {
+    // set the fill for ball and paddles from now on
+    this.context.fillStyle = this.color;
+};
+
+CanvasRenderer.prototype.render = function (court, alpha) {
+    if (court.ball) {
+        this.clearBall(court.ball);
+    }
+    for (let i = 0; i < 2; i++) {
+        if (court.players[i]) {
+            this.clearPaddle(court.paddles[i]);
+        }
+    }
+
+    if (court.ball) {
+        let ball = court.ball;
+        ball.drawnX = interpolate(ball.previousX, ball.x, alpha);
+        ball.drawnY = interpolate(ball.previousY, ball.y, alpha);
+        this.context.fillRect(ball.drawnX - ball.halfBallSize, ball.drawnY - ball.halfBallSize,
+            ball.ballSize, ball.ballSize);
+    }
+
+    // Draw them after the ball may have deleted a part of them
+    for (let i = 0; i < 2; i++) {
+        if (court.players[i]) {
+            this.drawPaddle(court.paddles[i], alpha);
+        }
+    }
+};
+
+CanvasRenderer.prototype.drawPaddle = function (paddle, alpha) {
+    paddle.drawnY = interpolate(paddle.previousY, paddle.y, alpha);
+    this.context.fillRect(paddle.x, paddle.drawnY, paddle.width, paddle.height);
+};
+
+CanvasRenderer.prototype.clearPaddle = function (paddle) {
+    this.context.clearRect(paddle.x - CLEAR_MARGIN, paddle.drawnY - CLEAR_MARGIN,
+        paddle.width + (2 * CLEAR_MARGIN), paddle.height + (2 * CLEAR_MARGIN));
+};
+
+CanvasRenderer.prototype.clearBall = function (ball) {
+    this.context.clearRect(ball.drawnX - ball.halfBallSize - CLEAR_MARGIN,
+        ball.drawnY - ball.halfBallSize - CLEAR_MARGIN,
+        ball.ballSize + (2 * CLEAR_MARGIN), ball.ballSize + (2 * CLEAR_MARGIN));
+};
+
+//////////////////////////////////// LAYERED RENDERER ////////////////////////////////
+/*
+ Puts the ball and each paddle on a layer of its own above the canvas, which then only holds the static court.
+ Moving one just changes the transform of its layer, which the browser's compositor applies on the GPU without
+ repainting anything, so nothing needs clearing and the ball can't erase part of a paddle. A layer's transform is
+ only changed when it has moved.
+ */
+function LayeredRenderer(canvas, width, color) {
+    // the canvas only holds the static court, drawn once, so its resolution makes no difference to each frame
+    this.repaintsCanvas = false;
+    this.canvas = canvas;
+    this.color = color;
+    // CSS pixels per court unit
+    this.scale = canvas.clientWidth / width;
+    this.ballLayer = null;
+    this.paddleLayers = new Map();
+}
+
+/*
+ True if the browser can put an element on a composited layer of its own and move it with a transform
+ */
+LayeredRenderer.isSupported = function () {
+    return typeof window.CSS !== "undefined" && typeof window.CSS.supports === "function" &&
+        window.CSS.supports("will-change", "transform") && window.CSS.supports("transform", "translate3d(0, 0, 0)");
+};
+
+/*
+ Create a hidden layer of a size in court units, just above the canvas so the scoreboard and messages stay on top
+ */
+LayeredRenderer.prototype.createLayer = function (width, height) {
+    let layer = document.createElement("div");
+    layer.style.position = "fixed";
+    layer.style.left = "0";
+    layer.style.top = "0";
+    layer.style.width = (width * this.scale) + "px";
+    layer.style.height = (height * this.scale) + "px";
+    layer.style.background = this.color;
+    layer.style.pointerEvents = "none";
+    layer.style.visibility = "hidden";
+    layer.style.willChange = "transform";
+    this.canvas.parentNode.insertBefore(layer, this.canvas.nextSibling);
+    return layer;
+};
+
+/*
+ Move a layer to a position in court units, and show it
+ */
+LayeredRenderer.prototype.moveLayer = function (layer, x, y) {
+    if (layer.x !== x || layer.y !== y) {
+        layer.x = x;
+        layer.y = y;
+        layer.style.transform = "translate3d(" + (x * this.scale) + "px, " + (y * this.scale) + "px, 0)";
+    }
+    if (!layer.shown) {
+        layer.shown = true;
+        layer.style.visibility = "visible";
+    }
+};
+
+LayeredRenderer.prototype.hideLayer = function (layer) {
+    if (layer && layer.shown) {
+        layer.shown = false;
+        layer.style.visibility = "hidden";
+    }
+};
+
+LayeredRenderer.prototype.reset = function () {
+    // the layers are above the canvas, so they are unchanged
+};
+
+LayeredRenderer.prototype.render = function (court, alpha) {
+    if (court.ball) {
+        let ball = court.ball;
+        // Every ball is the same size, so they all share one layer
+        if (this.ballLayer === null) {
+            this.ballLayer = this.createLayer(ball.ballSize, ball.ballSize);
+        }
+        ball.drawnX = interpolate(ball.previousX, ball.x, alpha);
+        ball.drawnY = interpolate(ball.previousY, ball.y, alpha);
+        this.moveLayer(this.ballLayer, ball.drawnX - ball.halfBallSize, ball.drawnY - ball.halfBallSize);
+    }
+
+    for (let i = 0; i < 2; i++) {
+        if (court.players[i]) {
+            this.drawPaddle(court.paddles[i], alpha);
+        }
+    }
+};
+
+LayeredRenderer.prototype.drawPaddle = function (paddle, alpha) {
+    let layer = this.paddleLayers.get(paddle);
+    if (!layer) {
+        layer = this.createLayer(paddle.width, paddle.height);
+        this.paddleLayers.set(paddle, layer);
+    }
+    paddle.drawnY = interpolate(paddle.previousY, paddle.y, alpha);
+    this.moveLayer(layer, paddle.x, paddle.drawnY);
+};
+
+LayeredRenderer.prototype.clearPaddle = function (paddle) {
+    this.hideLayer(this.paddleLayers.get(paddle));
+};
+
+LayeredRenderer.prototype.clearBall = function (ball) {
+    this.hideLayer(this.ballLayer);
+};
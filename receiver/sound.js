@@ -0,0 +1,118 @@
+// Sound effects played with Web Audio, so they can be lined up with what is on the screen
+
+// Sounds used in the game, and the files to decode them from
+const SOUND_FILES = {
+    wall: "wall.mp3",
+    paddle: "paddle.mp3",
+    point: "point.mp3",
+    win: "win.mp3"
+};
+// Sounds that can be playing at once, the one that would finish first is cut short to play another
+const MAX_VOICES = 6;
+
+/*
+ Decodes each sound once at startup into an AudioBuffer, and plays them through a fixed pool of voices, each a gain
+ node connected to the output. Playing a sound just starts a buffer source on a voice, at a time on the audio clock,
+ so there is no media element to seek, load or decode for each event, and sounds can be scheduled for when the event
+ that caused them is drawn rather than whenever the media element gets round to it.
+
+ Where Web Audio isn't available it falls back to playing audio elements.
+ */
+function SoundEngine(files) {
+    this.buffers = {};
+    this.elements = null;
+
+    let AudioContext = window.AudioContext || window.webkitAudioContext;
+    if (!AudioContext) {
+        console.log("No Web Audio, using audio elements");
+        this.elements = {};
+        for (let name in files) {
+            this.elements[name] = new Audio(files[name]);
+        }
+        return;
+    }
+
+    this.context = new AudioContext();
+    this.voices = new Array(MAX_VOICES);
+    for (let i = 0; i < MAX_VOICES; i++) {
+        let gain = this.context.createGain();
+        gain.connect(this.context.destination);
+        this.voices[i] = {gain: gain, source: null, endTime: 0};
+    }
+
+    for (let name in files) {
+        this.load(name, files[name]);
+    }
+}
+
+SoundEngine.prototype.load = function (name, file) {
+    let engine = this;
+    fetch(file)
+        .then(function (response) {
+            return response.arrayBuffer();
+        })
+        .then(function (data) {
+            // the callback form works on older receivers, where decodeAudioData doesn't return a promise
+            engine.context.decodeAudioData(data, function (buffer) {
+                engine.buffers[name] = buffer;
+            }, function (err) {
+                console.log("Could not decode sound '" + name + "': " + err);
+            });
+        })
+        .catch(function (err) {
+            console.log("Could not load sound '" + name + "': " + err);
+        });
+};
+
+/*
+ Convert a time from performance.now() to the audio clock
+ */
+SoundEngine.prototype.audioTime = function (time) {
+    let stamp = this.context.getOutputTimestamp ? this.context.getOutputTimestamp() : null;
+    if (stamp && stamp.performanceTime) {
+        return stamp.contextTime + ((time - stamp.performanceTime) / 1000);
+    }
+    //noinspection JSUnresolvedVariable
+    return this.context.currentTime + ((time - performance.now()) / 1000);
+};
+
+/*
+ Play a sound at a time from performance.now(), or as soon as possible if that has passed
+ */
+SoundEngine.prototype.play = function (name, time) {
+    if (this.elements) {
+        this.elements[name].play();
+        return;
+    }
+
+    // Browsers may not let the audio start until the page has been interacted with
+    if (this.context.state === "suspended") {
+        this.context.resume();
+    }
+
+    let buffer = this.buffers[name];
+    if (!buffer) {
+        // not decoded yet
+        return;
+    }
+
+    let when = Math.max(this.audioTime(time), this.context.currentTime);
+
+    // Use a free voice, or cut short the one that will finish first
+    let voice = this.voices[0];
+    for (let i = 1; i < MAX_VOICES && voice.endTime > when; i++) {
+        if (this.voices[i].endTime < voice.endTime) {
+            voice = this.voices[i];
+        }
+    }
+    if (voice.source && voice.endTime > when) {
+        voice.source.stop(when);
+    }
+
+    let source = this.context.createBufferSource();
+    source.buffer = buffer;
+    source.connect(voice.gain);
+    source.start(when);
+    voice.source = source;
+    voice.endTime = when + buffer.duration;
+};
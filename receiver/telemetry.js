@@ -0,0 +1,81 @@
+// Timings of the last frames drawn, summarised for the senders on request, see DESIGN.md
+
+// Number of frames kept, about 8 seconds at 60 frames per second
+const TELEMETRY_FRAMES = 512;
+// What is timed in each frame: the time since the last frame, handling messages from senders and sending them
+// updates, running the ticks of the game, and drawing it
+const TELEMETRY_FRAME = 0;
+const TELEMETRY_INPUT = 1;
+const TELEMETRY_PHYSICS = 2;
+const TELEMETRY_RENDER = 3;
+const TELEMETRY_SERIES = 4;
+// Percentiles summarised for each, the last being the maximum
+const TELEMETRY_PERCENTILES = [0.5, 0.9, 0.99, 1];
+
+/*
+ A ring of the timings of the last TELEMETRY_FRAMES frames, in a typed array allocated once, so recording a frame
+ costs a few stores and no garbage. Percentiles are only worked out when a summary is asked for.
+ */
+function FrameTelemetry() {
+    this.samples = new Float32Array(TELEMETRY_FRAMES * TELEMETRY_SERIES);
+    this.sorted = new Float32Array(TELEMETRY_FRAMES);
+    this.next = 0;
+    this.count = 0;
+    // time spent on input since the last frame was recorded
+    this.inputMillis = 0;
+}
+
+/*
+ Add time spent handling input, e.g. a message from a sender, to the frame being timed
+ */
+FrameTelemetry.prototype.addInput = function (millis) {
+    this.inputMillis += millis;
+};
+
+/*
+ Record the timings of a frame, with the input time added since the last one.
+ Returns true each time the ring has been filled with new frames
+ */
+FrameTelemetry.prototype.record = function (frameMillis, physicsMillis, renderMillis) {
+    let base = this.next * TELEMETRY_SERIES;
+    this.samples[base + TELEMETRY_FRAME] = frameMillis;
+    this.samples[base + TELEMETRY_INPUT] = this.inputMillis;
+    this.samples[base + TELEMETRY_PHYSICS] = physicsMillis;
+    this.samples[base + TELEMETRY_RENDER] = renderMillis;
+    this.inputMillis = 0;
+
+    this.next = (this.next + 1) % TELEMETRY_FRAMES;
+    if (this.count < TELEMETRY_FRAMES) {
+        this.count++;
+    }
+    return this.next === 0;
+};
+
+/*
+ Add the percentiles of one series to values, in microseconds
+ */
+FrameTelemetry.prototype.percentiles = function (series, values) {
+    let sorted = this.sorted.subarray(0, this.count);
+    for (let i = 0; i < this.count; i++) {
+        sorted[i] = this.samples[(i * TELEMETRY_SERIES) + series];
+    }
+    sorted.sort();
+
+    for (let i = 0; i < TELEMETRY_PERCENTILES.length; i++) {
+        let index = Math.floor(TELEMETRY_PERCENTILES[i] * (this.count - 1));
+        values.push(this.count > 0 ? Math.round(sorted[index] * 1000) : 0);
+    }
+};
+
+/*
+ Summarise the frames recorded as "TELEMETRY <frames> <resolution> <values>", where resolution is the percentage of
+ full resolution the court is drawn at, and values are comma separated percentiles in microseconds: 50th, 90th,
+ 99th and the maximum of the frame time, then the same for input, physics and render.
+ */
+FrameTelemetry.prototype.summary = function (resolution) {
+    let values = [];
+    for (let series = 0; series < TELEMETRY_SERIES; series++) {
+        this.percentiles(series, values);
+    }
+    return "TELEMETRY " + this.count + " " + Math.round(resolution * 100) + " " + values.join(",");
+};
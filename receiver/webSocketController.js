@@ -0,0 +1,49 @@
+// WebSocket Controller - lets sender apps on the local network play in the browser version of the receiver,
+// by connecting to the relay (relay.js) that served this page, which passes messages to and from them.
+
+function WebSocketController() {
+    console.log("WebSocketController starting");
+    let socket = new WebSocket("ws://" + window.location.host + "/receiver");
+
+    // A message bus that works like the Cast one, so the same sender handlers can be used
+    window.messageBus = {
+        getCastChannel: function (senderId) {
+            return {
+                send: function (data) {
+                    socket.send(JSON.stringify({senderId: senderId, data: data}));
+                }
+            };
+        },
+        broadcast: function (data) {
+            socket.send(JSON.stringify({data: data}));
+        }
+    };
+
+    socket.onopen = function () {
+        console.log("Connected to relay, waiting for senders");
+    };
+
+    socket.onmessage = function (event) {
+        let message = JSON.parse(event.data);
+        switch (message.event) {
+            case "connected":
+                senderConnected(message);
+                break;
+
+            case "disconnected":
+                senderDisconnected(message);
+                break;
+
+            case "message":
+                senderMessage(message);
+                break;
+
+            default:
+                break;
+        }
+    };
+
+    socket.onclose = function () {
+        console.log("Lost connection to relay");
+    };
+}